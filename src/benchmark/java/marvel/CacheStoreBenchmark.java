@@ -0,0 +1,136 @@
+package marvel;
+
+import marvel.model.character.CharacterInfo;
+import marvel.model.input.CacheConnectionPool;
+import marvel.model.input.CacheEntry;
+import marvel.model.input.CacheStore;
+import marvel.model.input.CharacterInfoCodec;
+import marvel.model.input.MappedLogCacheStore;
+import marvel.model.input.ResponseHandler;
+import marvel.model.input.SqliteCacheStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the same lookup workload against SqliteCacheStore and MappedLogCacheStore and prints throughput and latency.
+ *
+ * <p>Writes binary records built from the dummy API response under distinct names,
+ * then reads random names single-threaded and from several threads at once.
+ * Run with <code>gradle cacheStoreBenchmark</code>, optionally passing the record count and read count as arguments.</p>
+ */
+public class CacheStoreBenchmark {
+    private static final String DUMMY_RESPONSE_PATH = "./src/main/resources/marvel/DummyApiResponse.json";
+    private static final int THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int reads = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        String body = new String(Files.readAllBytes(Paths.get(DUMMY_RESPONSE_PATH)));
+        CharacterInfo info = new ResponseHandler().parseResponseBody(body);
+        byte[] payload = new CharacterInfoCodec().encode(info);
+        List<CacheEntry> entries = new ArrayList<>();
+        for(int i = 0 ; i < records ; i++){
+            entries.add(new CacheEntry("character-" + i, CacheEntry.FORMAT_BINARY, CacheEntry.CODEC_NONE, 0,
+                    null, payload, "etag-" + i, System.currentTimeMillis()));
+        }
+
+        Path directory = Files.createTempDirectory("cache-store-benchmark");
+        Class.forName("org.sqlite.JDBC");
+        CacheConnectionPool pool = new CacheConnectionPool(directory.resolve("bench.sqlite").toString(), THREADS);
+        try{
+            run("sqlite", new SqliteCacheStore(pool), entries, reads);
+        } finally {
+            pool.close();
+        }
+        run("mapped-log", new MappedLogCacheStore(directory.resolve("bench.log")), entries, reads);
+    }
+
+    /**
+     * Writes the entries to a store in batches, then times random reads single-threaded and with THREADS threads
+     */
+    private static void run(String label, CacheStore store, List<CacheEntry> entries, int reads) throws Exception {
+        try{
+            long start = System.nanoTime();
+            for(int i = 0 ; i < entries.size() ; i += 500){
+                store.write(entries.subList(i, Math.min(entries.size(), i + 500)));
+            }
+            double writeSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-10s write     %10.0f records/s%n", label, entries.size() / writeSeconds);
+
+            //warm up the JIT and the page cache before measuring
+            readRandom(store, entries.size(), reads / 10, 1);
+
+            report(label, "read x1", readRandom(store, entries.size(), reads, 1));
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try{
+                List<Future<long[]>> futures = new ArrayList<>();
+                long parallelStart = System.nanoTime();
+                for(int t = 0 ; t < THREADS ; t++){
+                    int seed = t + 2;
+                    futures.add(executor.submit(() -> readRandom(store, entries.size(), reads / THREADS, seed)));
+                }
+                List<long[]> results = new ArrayList<>();
+                for(Future<long[]> future : futures){
+                    results.add(future.get());
+                }
+                long elapsed = System.nanoTime() - parallelStart;
+                long[] merged = new long[0];
+                for(long[] result : results){
+                    long[] latencies = Arrays.copyOf(result, result.length - 1);
+                    int offset = merged.length;
+                    merged = Arrays.copyOf(merged, offset + latencies.length);
+                    System.arraycopy(latencies, 0, merged, offset, latencies.length);
+                }
+                merged = Arrays.copyOf(merged, merged.length + 1);
+                merged[merged.length - 1] = elapsed;
+                report(label, "read x" + THREADS, merged);
+            } finally {
+                executor.shutdown();
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Reads random names from a store
+     *
+     * @return long[] - latency of each read in nanoseconds, followed by the total elapsed time
+     */
+    private static long[] readRandom(CacheStore store, int records, int reads, long seed) throws IOException {
+        Random random = new Random(seed);
+        long[] result = new long[reads + 1];
+        long start = System.nanoTime();
+        for(int i = 0 ; i < reads ; i++){
+            long before = System.nanoTime();
+            if(store.read("character-" + random.nextInt(records)) == null){
+                throw new IllegalStateException("record missing from " + store.getClass().getSimpleName());
+            }
+            result[i] = System.nanoTime() - before;
+        }
+        result[reads] = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void report(String label, String phase, long[] result){
+        long[] latencies = Arrays.copyOf(result, result.length - 1);
+        Arrays.sort(latencies);
+        double seconds = result[result.length - 1] / 1e9;
+        System.out.printf("%-10s %-9s %10.0f ops/s   p50 %7.1f us   p99 %7.1f us%n", label, phase,
+                latencies.length / seconds,
+                latencies[latencies.length / 2] / 1e3,
+                latencies[(int) (latencies.length * 0.99)] / 1e3);
+    }
+}
@@ -7,6 +7,7 @@ import javafx.scene.Scene;
 import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
 import marvel.model.*;
+import marvel.model.input.CacheWarmer;
 import marvel.model.input.InputModel;
 import marvel.model.input.OfflineMarvelModel;
 import marvel.model.input.OnlineMarvelModel;
@@ -15,6 +16,10 @@ import marvel.model.output.OnlinePastebinModel;
 import marvel.model.output.OutputModel;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Entry point for JavaFX application. Set up configurations on application set up.
@@ -36,6 +41,30 @@ public class App extends Application {
      * Path to configuration file containing user's API developer keys
      */
     static String configFilePath = "./src/main/resources/marvel/KeyConfig.json";
+    /**
+     * Whether cached characters are shown at once and refreshed from the API in the background
+     */
+    static boolean staleWhileRevalidate = false;
+    /**
+     * Number of characters fetched at once by a warm-up when not given on the command line
+     */
+    static final int DEFAULT_WARM_PARALLELISM = 4;
+    /**
+     * Minimum time between progress lines printed by a warm-up
+     */
+    static final long WARM_REPORT_INTERVAL_MILLIS = 1000;
+    /**
+     * Timeline the startup phases of the application are recorded in, started when the class is loaded
+     */
+    static final StartupTimeline startupTimeline = new StartupTimeline(ManagementFactory.getRuntimeMXBean().getUptime());
+    /**
+     * Time launch() was called, from StartupTimeline.start()
+     */
+    static long launchStart;
+    /**
+     * Model created on start, shut down when the application exits
+     */
+    private ModelFacade model;
 
     /**
      * The application main method.
@@ -46,10 +75,45 @@ public class App extends Application {
      *
      * <p>If no arguments are specified, will run application using online models by default.</p>
      *
+     * <p>An optional third argument "swr" shows cached characters at once and refreshes them from the API in the background.</p>
+     *
+     * <p>"warm namesFile [parallelism]" fills the cache with the characters named in the file without starting the window.
+     * "export snapshotFile" and "import snapshotFile" copy the cache to and from a snapshot file.
+     * "migrate" converts a cache written by an older version once, so characters cached under names as they were typed are found again
+     * and evicted characters free space in the cache file.
+     * A command with missing or invalid arguments prints the usage and exits with status 2.</p>
+     *
      * @param args command line arguments
      */
     public static void main(String[] args) {
 
+        if(args.length > 0 && args[0].equals("warm")){
+            if(args.length < 2 || args.length > 3){
+                exitWithUsage("warm takes a names file and an optional parallelism");
+            }
+            Path namesFile = Paths.get(args[1]);
+            if(!Files.isReadable(namesFile)){
+                exitWithUsage("Cannot read names file " + namesFile);
+            }
+            int parallelism = args.length > 2 ? parseParallelism(args[2]) : DEFAULT_WARM_PARALLELISM;
+            if(parallelism < 1){
+                exitWithUsage("Parallelism must be a whole number of at least 1, not " + args[2]);
+            }
+            System.exit(warmCache(namesFile, parallelism) ? 0 : 1);
+        }
+        if(args.length > 0 && (args[0].equals("export") || args[0].equals("import"))){
+            if(args.length != 2){
+                exitWithUsage(args[0] + " takes a snapshot file");
+            }
+            System.exit(copyCache(args[0].equals("export"), Paths.get(args[1])) ? 0 : 1);
+        }
+        if(args.length > 0 && args[0].equals("migrate")){
+            if(args.length != 1){
+                exitWithUsage("migrate takes no arguments");
+            }
+            System.exit(migrateCache() ? 0 : 1);
+        }
+
         if(args.length < 1){
             System.out.println("Give --args=\"offline offline\" to switch to offline mode.\nRunning online mode by default.");
         } else {
@@ -68,32 +132,158 @@ public class App extends Application {
                 offlineOutput = false;
                 System.out.println("[OUTPUT API] Running online version.");
             }
+
+            if(args.length > 2 && args[2].equals("swr")){
+                staleWhileRevalidate = true;
+                System.out.println("[CACHE] Refreshing cached characters in the background.");
+            }
         }
 
+        launchStart = startupTimeline.start();
         launch(args);
     }
 
+    /**
+     * Prints what was wrong with the command line arguments and the commands the application accepts, then exits with status 2.
+     *
+     * @param problem what was wrong with the arguments
+     */
+    static void exitWithUsage(String problem){
+        System.out.println(problem);
+        System.out.println("Usage: [online|offline] [online|offline] [swr]\n"
+                + "       warm namesFile [parallelism]\n"
+                + "       export snapshotFile\n"
+                + "       import snapshotFile\n"
+                + "       migrate");
+        System.exit(2);
+    }
+
+    /**
+     * Parses the parallelism argument of a warm-up
+     *
+     * @param argument command line argument
+     * @return int - parallelism, 0 if the argument is not a whole number
+     */
+    static int parseParallelism(String argument){
+        try{
+            return Integer.parseInt(argument.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Fetches and caches every character named in a file using the online input model, printing progress as it goes.
+     *
+     * @param namesFile file listing the names to cache, one per line
+     * @param parallelism maximum number of characters fetched at once
+     * @return boolean - true if every name completed, false if any failed or the warm-up could not run
+     */
+    static boolean warmCache(Path namesFile, int parallelism){
+        ModelFacade warmModel = new ModelImpl(new OnlineMarvelModel(), new OfflinePastebinModel(), new ConfigHandler(configFilePath));
+        try{
+            long[] lastReport = {0};
+            CacheWarmer.Progress progress = warmModel.warmCache(namesFile, parallelism, current -> {
+                synchronized (lastReport){
+                    if(current.getElapsedMillis() - lastReport[0] >= WARM_REPORT_INTERVAL_MILLIS){
+                        lastReport[0] = current.getElapsedMillis();
+                        System.out.println("[CACHE] " + current);
+                    }
+                }
+            });
+            System.out.println("[CACHE] Warm-up finished: " + progress);
+            return progress.getFailed() == 0;
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            warmModel.shutdown();
+        }
+    }
+
+    /**
+     * Exports the cache to a snapshot file or imports a snapshot file into the cache.
+     *
+     * @param export true to export, false to import
+     * @param snapshotFile path to the snapshot file
+     * @return boolean - true if the snapshot was written or imported
+     */
+    static boolean copyCache(boolean export, Path snapshotFile){
+        ModelFacade cacheModel = new ModelImpl(new OnlineMarvelModel(), new OfflinePastebinModel(), new ConfigHandler(configFilePath));
+        try{
+            long count = export ? cacheModel.exportCache(snapshotFile) : cacheModel.importCache(snapshotFile);
+            System.out.println("[CACHE] " + (export ? "Exported " : "Imported ") + count + " characters");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            cacheModel.shutdown();
+        }
+    }
+
+    /**
+     * Converts the cache written by an older version, while nothing else uses it.
+     *
+     * @return boolean - true if the cache was converted
+     */
+    static boolean migrateCache(){
+        ModelFacade cacheModel = new ModelImpl(new OnlineMarvelModel(), new OfflinePastebinModel(), new ConfigHandler(configFilePath));
+        try{
+            int converted = cacheModel.migrateCache();
+            System.out.println("[CACHE] Migrated cache, " + converted + " characters moved to their key or converted to binary format");
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            cacheModel.shutdown();
+        }
+    }
+
     /**
      *  Starts the JavaFX application.
      *
      *  <p>Sets up key components of MVP pattern for data-presentation separation of the application.</p>
      *
-     *  <p>Initialise a ModelImpl model object as a ModelFacade with sub models based on command line arguments given and path to keys configuration file.</p>
-     *
      *  <p>Sets scene from Main.fxml and sets a MainView object as its JavaFX Controller class</p>
      *
-     *  <p>Initialise a MainPresenter presenter object with ModelFacade and MainView objects</p>
+     *  <p>Sets the scene to stage and shows it before the model is created, so the window appears without waiting on the model</p>
      *
-     *  <p>Sets the scene to stage</p>
+     *  <p>Initialise a ModelImpl model object as a ModelFacade with sub models based on command line arguments given and path to keys configuration file.
+     *  The model opens the cache and the HTTP client in the background, and every phase is recorded in the startup timeline.</p>
+     *
+     *  <p>Initialise a MainPresenter presenter object with ModelFacade and MainView objects</p>
      *
      * @param stage primary stage for the application
      * @throws IOException if file to Main view cannot be loaded by FXMLLoader
      */
     @Override
     public void start(Stage stage) throws Exception {
+        startupTimeline.end("javafx launch", launchStart);
 
+        long start = startupTimeline.start();
         Scene scene = new Scene(new Pane());
+        MainView view = new MainView();
+        Parent root = null;
+        try{
+            FXMLLoader viewLoader = new FXMLLoader(App.class.getResource("Main.fxml"));
+            viewLoader.setController(view);
+            root = viewLoader.load();
+            scene.setRoot(root);
 
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+        startupTimeline.end("view", start);
+
+        start = startupTimeline.start();
+        stage.setScene(scene);
+        stage.setTitle("Marvel Characters");
+        stage.show();
+        startupTimeline.end("window", start);
+
+        start = startupTimeline.start();
         OutputModel output;
         InputModel input;
         if(offlineInput){
@@ -109,24 +299,22 @@ public class App extends Application {
         }
 
         ConfigHandler config = new ConfigHandler(configFilePath);
-        ModelFacade model = new ModelImpl(input, output, config);
-        MainView view = new MainView();
+        model = new ModelImpl(input, output, config, startupTimeline);
+        model.setStaleWhileRevalidate(staleWhileRevalidate);
         MainPresenter presenter = new MainPresenter(model, view);
+        startupTimeline.end("model", start);
 
-        Parent root = null;
-        try{
-            FXMLLoader viewLoader = new FXMLLoader(App.class.getResource("Main.fxml"));
-            viewLoader.setController(view);
-            root = viewLoader.load();
-            scene.setRoot(root);
+    }
 
-        } catch (IOException e){
-            e.printStackTrace();
+    /**
+     * Stops the JavaFX application.
+     *
+     * <p>Asks the model to release its resources so pending cache writes and database connections are closed cleanly.</p>
+     */
+    @Override
+    public void stop() {
+        if(model != null){
+            model.shutdown();
         }
-
-        stage.setScene(scene);
-        stage.setTitle("Marvel Characters");
-        stage.show();
-
     }
 }
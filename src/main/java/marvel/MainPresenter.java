@@ -85,8 +85,8 @@ public class MainPresenter implements ModelObserver, ViewObserver {
             lastSearched = name;
         }
 
-        //Check if there is cached data in database
-        if(model.isInfoInCache(name)){
+        //Check if there is cached data in database - no need to ask when cached data is refreshed in the background anyway
+        if(!model.isStaleWhileRevalidate() && model.isInfoInCache(name)){
             //If cache exists - ask user for option to load from API or cache
             instruction = instruction.concat("Found information on " + name + " in cache, " +
                     "\nclick <Load from cache> to get information from cache," +
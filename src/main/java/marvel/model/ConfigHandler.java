@@ -1,5 +1,7 @@
 package marvel.model;
 
+import marvel.model.input.HttpTransport;
+import marvel.model.input.RateLimiter;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -11,6 +13,15 @@ import java.io.InputStream;
 /**
  *  Reads and stores API keys as configured inside KeyConfig.json file.
  *
+ *  <p>The budget of calls to the Marvel API may also be configured, with marvelDailyLimit and marvelPerSecondLimit,
+ *  and the HTTP transport with httpConnectTimeoutMillis, httpRequestTimeoutMillis and httpMaxInFlightPerHost.
+ *  Values that are missing or less than 1 are left at their defaults.</p>
+ *
+ *  <p>Optional cache features are off unless switched on: cacheWriteBehind queues cache writes and saves them in batches,
+ *  cacheCompression compresses cached characters with a trained dictionary,
+ *  cacheCatalog catalogs cached characters with their comics, stories, events and series,
+ *  and cacheMaxBytes keeps the cached characters under that many bytes by evicting the least recently used ones.</p>
+ *
  *  @see ModelImpl
  */
 public class ConfigHandler {
@@ -26,11 +37,48 @@ public class ConfigHandler {
      * User's developer public key for Pastebin API
      */
     private String outputKey = "";
+    /**
+     * Calls to the Marvel API allowed per day
+     */
+    private long inputDailyLimit = RateLimiter.DEFAULT_DAILY_LIMIT;
+    /**
+     * Calls to the Marvel API allowed per second
+     */
+    private long inputPerSecondLimit = RateLimiter.DEFAULT_PER_SECOND_LIMIT;
+    /**
+     * Timeout for opening a connection to either API
+     */
+    private long connectTimeoutMillis = HttpTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    /**
+     * Timeout for a response from either API
+     */
+    private long requestTimeoutMillis = HttpTransport.DEFAULT_REQUEST_TIMEOUT_MILLIS;
+    /**
+     * Requests in flight to one host
+     */
+    private int maxInFlightPerHost = HttpTransport.DEFAULT_MAX_IN_FLIGHT_PER_HOST;
+    /**
+     * Whether cache writes are queued and saved in batches on a background thread
+     */
+    private boolean cacheWriteBehind = false;
+    /**
+     * Whether cached characters are compressed with a trained dictionary
+     */
+    private boolean cacheCompression = false;
+    /**
+     * Whether cached characters are cataloged with their comics, stories, events and series
+     */
+    private boolean cacheCatalog = false;
+    /**
+     * Bytes of cached characters beyond which the least recently used are evicted, 0 for no limit
+     */
+    private long cacheMaxBytes = 0;
 
     /**
      * Takes in path to KeyConfig.json file to parse API public and private keys
      *
-     * <p>Retrieves and stores the 3 API keys from configuration file.</p>
+     * <p>Retrieves and stores the 3 API keys from configuration file,
+     * and the daily and per second limits of calls to the Marvel API, the HTTP transport settings and the cache features if configured.</p>
      *
      * @param filePath - path to KeyConfig.json file
      */
@@ -42,6 +90,27 @@ public class ConfigHandler {
             inputPublicKey = (String) jsonObject.get("marvelKey");
             inputPrivateKey = (String) jsonObject.get("marvelPrivateKey");
             outputKey = (String) jsonObject.get("pastebinKey");
+            if(jsonObject.get("marvelDailyLimit") instanceof Number && ((Number) jsonObject.get("marvelDailyLimit")).longValue() > 0){
+                inputDailyLimit = ((Number) jsonObject.get("marvelDailyLimit")).longValue();
+            }
+            if(jsonObject.get("marvelPerSecondLimit") instanceof Number && ((Number) jsonObject.get("marvelPerSecondLimit")).longValue() > 0){
+                inputPerSecondLimit = ((Number) jsonObject.get("marvelPerSecondLimit")).longValue();
+            }
+            if(jsonObject.get("httpConnectTimeoutMillis") instanceof Number && ((Number) jsonObject.get("httpConnectTimeoutMillis")).longValue() > 0){
+                connectTimeoutMillis = ((Number) jsonObject.get("httpConnectTimeoutMillis")).longValue();
+            }
+            if(jsonObject.get("httpRequestTimeoutMillis") instanceof Number && ((Number) jsonObject.get("httpRequestTimeoutMillis")).longValue() > 0){
+                requestTimeoutMillis = ((Number) jsonObject.get("httpRequestTimeoutMillis")).longValue();
+            }
+            if(jsonObject.get("httpMaxInFlightPerHost") instanceof Number && ((Number) jsonObject.get("httpMaxInFlightPerHost")).intValue() > 0){
+                maxInFlightPerHost = ((Number) jsonObject.get("httpMaxInFlightPerHost")).intValue();
+            }
+            cacheWriteBehind = Boolean.TRUE.equals(jsonObject.get("cacheWriteBehind"));
+            cacheCompression = Boolean.TRUE.equals(jsonObject.get("cacheCompression"));
+            cacheCatalog = Boolean.TRUE.equals(jsonObject.get("cacheCatalog"));
+            if(jsonObject.get("cacheMaxBytes") instanceof Number && ((Number) jsonObject.get("cacheMaxBytes")).longValue() > 0){
+                cacheMaxBytes = ((Number) jsonObject.get("cacheMaxBytes")).longValue();
+            }
 
         } catch (ParseException | IOException e) {
             e.printStackTrace();
@@ -74,4 +143,85 @@ public class ConfigHandler {
     public String getOutputKey() {
         return outputKey;
     }
+
+    /**
+     * Getter for the number of calls to the Marvel API allowed per day
+     *
+     * @return long - daily limit, RateLimiter.DEFAULT_DAILY_LIMIT if not configured
+     */
+    public long getInputDailyLimit() {
+        return inputDailyLimit;
+    }
+
+    /**
+     * Getter for the number of calls to the Marvel API allowed per second
+     *
+     * @return long - per second limit, RateLimiter.DEFAULT_PER_SECOND_LIMIT if not configured
+     */
+    public long getInputPerSecondLimit() {
+        return inputPerSecondLimit;
+    }
+
+    /**
+     * Getter for the timeout for opening a connection to either API
+     *
+     * @return long - connect timeout in milliseconds, HttpTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS if not configured
+     */
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Getter for the timeout for a response from either API
+     *
+     * @return long - request timeout in milliseconds, HttpTransport.DEFAULT_REQUEST_TIMEOUT_MILLIS if not configured
+     */
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    /**
+     * Getter for the maximum number of requests in flight to one host
+     *
+     * @return int - per host limit, HttpTransport.DEFAULT_MAX_IN_FLIGHT_PER_HOST if not configured
+     */
+    public int getMaxInFlightPerHost() {
+        return maxInFlightPerHost;
+    }
+
+    /**
+     * Getter for whether cache writes are queued and saved in batches on a background thread
+     *
+     * @return boolean - true if cacheWriteBehind is set to true, otherwise false
+     */
+    public boolean isCacheWriteBehind() {
+        return cacheWriteBehind;
+    }
+
+    /**
+     * Getter for whether cached characters are compressed with a trained dictionary
+     *
+     * @return boolean - true if cacheCompression is set to true, otherwise false
+     */
+    public boolean isCacheCompression() {
+        return cacheCompression;
+    }
+
+    /**
+     * Getter for whether cached characters are cataloged with their comics, stories, events and series
+     *
+     * @return boolean - true if cacheCatalog is set to true, otherwise false
+     */
+    public boolean isCacheCatalog() {
+        return cacheCatalog;
+    }
+
+    /**
+     * Getter for the bytes of cached characters beyond which the least recently used are evicted
+     *
+     * @return long - byte limit, 0 if cacheMaxBytes is not set
+     */
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
 }
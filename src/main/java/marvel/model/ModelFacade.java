@@ -2,10 +2,14 @@ package marvel.model;
 
 import javafx.scene.image.Image;
 import marvel.model.character.CharacterInfo;
+import marvel.model.input.CacheWarmer;
 import marvel.model.input.InputModel;
 import marvel.model.output.OutputModel;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Provides methods for clients to make mutable and accessor calls to APIs.
@@ -87,6 +91,50 @@ public interface ModelFacade {
      */
     public void loadInfoFromCache(String name);
 
+    /**
+     * Fetches and caches every character named in a file, one name per line, with at most parallelism requests at once.
+     *
+     * <p>Completed names are recorded in a progress file next to the names file,
+     * so running the warm-up again after an interruption carries on where it stopped.</p>
+     *
+     * @param namesFile file listing the names to cache
+     * @param parallelism maximum number of characters fetched at once
+     * @param listener called with the current progress after every name completes, may be null
+     * @return CacheWarmer.Progress - final counts of the warm-up
+     * @throws IOException if the names file or progress file cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for the warm-up
+     */
+    public CacheWarmer.Progress warmCache(Path namesFile, int parallelism, Consumer<CacheWarmer.Progress> listener)
+            throws IOException, InterruptedException;
+
+    /**
+     * Writes every cached character to a snapshot file, for importing into the cache of another machine
+     *
+     * @param snapshotFile path to the snapshot file, replaced if it exists
+     * @return long - number of records exported
+     * @throws IOException if the cache cannot be read or the snapshot cannot be written
+     */
+    public long exportCache(Path snapshotFile) throws IOException;
+
+    /**
+     * Merges the characters in a snapshot file into the cache, keeping whichever copy of each character was fetched last
+     *
+     * @param snapshotFile path to a snapshot file written by exportCache()
+     * @return long - number of records imported
+     * @throws IOException if the snapshot is damaged or cannot be read, or the cache cannot be written
+     */
+    public long importCache(Path snapshotFile) throws IOException;
+
+    /**
+     * Converts a cache written by an older version, so characters cached under names as they were typed are found under their
+     * normalized key, evicted characters free space in the cache file, and cached characters are stored in the binary format.
+     * Meant to be run once, while nothing else uses the cache.
+     *
+     * @return int - number of characters moved to their key or converted to the binary format
+     * @throws IOException if the cache cannot be opened or converted
+     */
+    public int migrateCache() throws IOException;
+
     //Observer pattern methods
     /**
      * Adds observer to list of ModelObserver, to be notified upon API requests completed
@@ -122,4 +170,24 @@ public interface ModelFacade {
      * @return List<String> - list of names of characters searched
      */
     public List<String> getSearchedList();
+
+    /**
+     * Turns stale-while-revalidate mode on or off, where searches for cached characters return the cached character at once
+     * and refresh it from the API in the background
+     *
+     * @param enabled true to turn the mode on
+     */
+    public void setStaleWhileRevalidate(boolean enabled);
+
+    /**
+     * Whether stale-while-revalidate mode is on
+     *
+     * @return boolean - true if cached characters are served at once and refreshed in the background
+     */
+    public boolean isStaleWhileRevalidate();
+
+    /**
+     * Releases resources held by the sub models, called when the application exits
+     */
+    public void shutdown();
 }
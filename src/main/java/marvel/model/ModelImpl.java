@@ -2,15 +2,31 @@ package marvel.model;
 
 import marvel.model.character.CharacterInfo;
 import marvel.model.input.CacheHandler;
+import marvel.model.input.CacheWarmer;
+import marvel.model.input.CharacterInfoCodec;
 import marvel.model.input.InputModel;
+import marvel.model.input.ContentDecoding;
+import marvel.model.input.HttpTransport;
 import marvel.model.input.MarvelApiHandler;
+import marvel.model.input.RateLimiter;
 import marvel.model.input.ResponseHandler;
 import marvel.model.output.OutputModel;
 import marvel.model.output.PastebinApiHandler;
 import marvel.model.output.ReportService;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Provides methods for clients to make mutable and accessor calls to APIs.
@@ -21,6 +37,35 @@ import java.util.List;
  * @see OutputModel
  */
 public class ModelImpl implements ModelFacade{
+    /**
+     * Number of queued cache writes that triggers an immediate batch write
+     */
+    private static final int CACHE_WRITE_BATCH_SIZE = 32;
+    /**
+     * Maximum time in milliseconds a queued cache write waits before being written
+     */
+    private static final long CACHE_WRITE_FLUSH_MILLIS = 500;
+    /**
+     * Time in milliseconds after which a cached character is revalidated with the API
+     */
+    private static final long CACHE_TIME_TO_LIVE_MILLIS = 24 * 60 * 60 * 1000L;
+    /**
+     * Time in milliseconds between cache eviction and compaction runs
+     */
+    private static final long CACHE_MAINTENANCE_MILLIS = 60 * 1000L;
+    /**
+     * Sample API response used to train the cache compression dictionary
+     */
+    private static final String DICTIONARY_SAMPLE_PATH = "./src/main/resources/marvel/DummyApiResponse.json";
+    /**
+     * Number of threads the cache and the HTTP client are started on in parallel
+     */
+    private static final int STARTUP_THREADS = 2;
+    /**
+     * Name the Marvel API rate limiter is registered and its usage saved under
+     */
+    private static final String MARVEL_API = "marvel";
+
     /**
      * Reference to a InputModel
      */
@@ -32,7 +77,7 @@ public class ModelImpl implements ModelFacade{
     /**
      * Reference to a CharacterInfo that was built from the last successful search
      */
-    CharacterInfo currentCharacter;
+    volatile CharacterInfo currentCharacter;
     /**
      * List of ModelObservers that listens to this model for requests completion.
      */
@@ -56,32 +101,202 @@ public class ModelImpl implements ModelFacade{
     private int searchCount = 0;
 
     /**
-     * Takes in a version of InputModel and OutputModel for online/offline versions.
+     * Cache handler given to the input model, null until it has been opened in the background
+     */
+    private CacheHandler cacheHandler;
+
+    /**
+     * Completes with the cache handler once it has been opened and given to the input model
+     */
+    private final CompletableFuture<CacheHandler> cacheReady;
+
+    /**
+     * Startup phases of this model are recorded in
+     */
+    private final StartupTimeline timeline;
+
+    /**
+     * Whether searches for cached characters return the cached character at once and refresh it in the background
+     */
+    private volatile boolean staleWhileRevalidate = false;
+
+    /**
+     * Runs background refreshes in stale-while-revalidate mode, refreshThread unless set with setRefreshExecutor()
+     */
+    private Executor refreshExecutor;
+
+    /**
+     * Thread this model runs background refreshes on, created on first use and shut down with the model
+     */
+    private ExecutorService refreshThread;
+
+    /**
+     * Used to compare a refreshed character with the cached one it replaces
+     */
+    private final CharacterInfoCodec codec = new CharacterInfoCodec();
+
+    /**
+     * Budget of calls to the Marvel API, registered with JMX so the remaining calls can be watched
+     */
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Byte counters of compressed Marvel API responses, registered with JMX so the bandwidth saved can be watched
+     */
+    private final ContentDecoding marvelDecoding;
+
+    /**
+     * Byte counters of compressed Pastebin API responses, registered with JMX
+     */
+    private final ContentDecoding pastebinDecoding;
+
+    /**
+     * Transport both API handlers send their requests on, registered with JMX so request timings can be watched
+     */
+    private final HttpTransport transport;
+
+    /**
+     * Configuration the optional cache features are switched on by
+     */
+    private final ConfigHandler config;
+
+    /**
+     * Takes in a version of InputModel and OutputModel for online/offline versions, without printing a startup timeline.
+     *
      * @param input A InputModel object that can be online or offline
      * @param output A OutputModel object that can be online or offline
      * @param handler A ConfigHandler object used for getting API keys
+     * @see #ModelImpl(InputModel, OutputModel, ConfigHandler, StartupTimeline)
      */
     public ModelImpl(InputModel input, OutputModel output, ConfigHandler handler){
+        this(input, output, handler, null);
+    }
+
+    /**
+     * Takes in a version of InputModel and OutputModel for online/offline versions.
+     *
+     * <p>Returns without waiting on the cache database or the HTTP client - they are started in parallel on background threads,
+     * and each call that needs the cache waits only until the cache is open. The time each took is recorded in the timeline.</p>
+     *
+     * <p>The cache handler given to the input model saves characters in the binary format, so cache loads do not parse JSON.
+     * If the configuration switches on cacheCompression, they are compressed with a dictionary trained from DICTIONARY_SAMPLE_PATH.
+     * If the configuration switches on cacheWriteBehind, writes are queued and saved in batches,
+     * so searches do not wait on the database write - shutdown() flushes them.</p>
+     * <p>If the configuration sets cacheMaxBytes, the cache is kept under it by evicting the least recently used characters
+     * in the background.</p>
+     * <p>If the configuration switches on cacheCatalog, cached characters are cataloged with their comics, stories, events and series
+     * for queries across characters.</p>
+     * <p>Calls to the Marvel API are limited to the daily and per second budget of the configuration.
+     * Both API handlers send their requests on one HttpTransport, with the timeouts and per host limit of the configuration.</p>
+     * @param input A InputModel object that can be online or offline
+     * @param output A OutputModel object that can be online or offline
+     * @param handler A ConfigHandler object used for getting API keys
+     * @param timeline timeline the startup phases of this model are recorded in, printed once the cache and HTTP client are ready;
+     *                 null to record them in a timeline of its own that is not printed
+     */
+    public ModelImpl(InputModel input, OutputModel output, ConfigHandler handler, StartupTimeline timeline){
         this.input = input;
         this.output = output;
         this.observers = new ArrayList<>();
         this.searchedList = new ArrayList<>();
+        this.timeline = timeline != null ? timeline : new StartupTimeline();
+        this.config = handler;
 
-        input.setApiHandler(new MarvelApiHandler(handler.getInputPublicKey(), handler.getInputPrivateKey()));
-        output.setApiHandler(new PastebinApiHandler(handler.getOutputKey()));
+        transport = new HttpTransport(handler.getConnectTimeoutMillis(), handler.getRequestTimeoutMillis(), handler.getMaxInFlightPerHost());
+        transport.register("api");
+        MarvelApiHandler marvelApi = new MarvelApiHandler(handler.getInputPublicKey(), handler.getInputPrivateKey());
+        marvelApi.setTransport(transport);
+        rateLimiter = new RateLimiter(handler.getInputDailyLimit(), handler.getInputPerSecondLimit());
+        rateLimiter.register(MARVEL_API);
+        marvelApi.setRateLimiter(rateLimiter);
+        PastebinApiHandler pastebinApi = new PastebinApiHandler(handler.getOutputKey());
+        pastebinApi.setTransport(transport);
+        marvelDecoding = marvelApi.getContentDecoding();
+        marvelDecoding.register("marvel");
+        pastebinDecoding = pastebinApi.getContentDecoding();
+        pastebinDecoding.register("pastebin");
+        input.setApiHandler(marvelApi);
+        output.setApiHandler(pastebinApi);
 
         input.setResponseHandler(new ResponseHandler());
-        input.setCacheHandler(new CacheHandler());
         output.setReportService(new ReportService());
 
+        ExecutorService startup = Executors.newFixedThreadPool(STARTUP_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "model-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cacheReady = CompletableFuture.supplyAsync(this::openCache, startup);
+        CompletableFuture<Void> httpReady = CompletableFuture.runAsync(() -> {
+            long start = this.timeline.start();
+            transport.warmUp();
+            this.timeline.end("http client", start);
+        }, startup);
+        startup.shutdown();
+        if(timeline != null){
+            CompletableFuture.allOf(cacheReady, httpReady).whenComplete((ignored, e) -> System.out.println(timeline));
+        }
+    }
+
+    /**
+     * Opens and configures the cache handler, then gives it to the input sub model. Runs on a startup thread.
+     *
+     * @return CacheHandler - the opened cache handler
+     */
+    private CacheHandler openCache(){
+        long start = timeline.start();
+        CacheHandler handler = new CacheHandler();
+        timeline.end("cache open", start);
+
+        start = timeline.start();
+        handler.setStorageFormat(CacheHandler.StorageFormat.BINARY);
+        if(config.isCacheCompression()){
+            handler.enableCompression(DICTIONARY_SAMPLE_PATH);
+        }
+        if(config.isCacheWriteBehind()){
+            handler.enableWriteBehind(CACHE_WRITE_BATCH_SIZE, CACHE_WRITE_FLUSH_MILLIS);
+        }
+        if(config.getCacheMaxBytes() > 0){
+            handler.enableSizeLimit(CacheHandler.NO_LIMIT, config.getCacheMaxBytes(), CACHE_MAINTENANCE_MILLIS);
+        }
+        if(config.isCacheCatalog()){
+            handler.enableCatalog();
+        }
+        handler.restoreApiUsage(MARVEL_API, rateLimiter);
+        synchronized (this){
+            handler.setTimeToLive(staleWhileRevalidate ? CacheHandler.NO_EXPIRY : CACHE_TIME_TO_LIVE_MILLIS);
+            cacheHandler = handler;
+        }
+        input.setCacheHandler(handler);
+        timeline.end("cache setup", start);
+        return handler;
+    }
+
+    /**
+     * Waits until the cache handler started by the constructor has been opened and given to the input sub model.
+     *
+     * @return CacheHandler - the cache handler, null if it could not be opened
+     */
+    private CacheHandler awaitCache(){
+        try{
+            return cacheReady.join();
+        } catch (CompletionException | CancellationException e){
+            e.printStackTrace();
+            return null;
+        }
     }
 
     /**
      * Getter for input sub model
+     *
+     * <p>Waits until the cache handler has been given to the input sub model,
+     * so a handler the caller sets afterwards is not replaced by the one opening in the background.</p>
+     *
      * @return InputModel - InputModel object that handles functionalities to input API
      */
     @Override
     public InputModel getInputSubModel() {
+        awaitCache();
         return input;
     }
 
@@ -107,6 +322,9 @@ public class ModelImpl implements ModelFacade{
      *
      * <p>After searched list is updated, notify observers about the update</p>
      *
+     * <p>In stale-while-revalidate mode a character found in cache is returned at once without waiting on the API,
+     * and refreshed in the background. Observers are notified a second time only if the refreshed character differs.</p>
+     *
      * @param name String of name of character to search API with.
      */
     @Override
@@ -117,19 +335,135 @@ public class ModelImpl implements ModelFacade{
         if(name.isEmpty() || name.isBlank()){
             throw new IllegalArgumentException();
         }
+        awaitCache();
+        if(staleWhileRevalidate){
+            Optional<CharacterInfo> cached = input.findInCache(name);
+            if(cached.isPresent()){
+                currentCharacter = cached.get();
+                notifyObserversGetInfoComplete();
+                addToSearchedList(name);
+                refreshInBackground(name, cached.get());
+                return;
+            }
+        }
         currentCharacter = input.getInfoByName(name);
         notifyObserversGetInfoComplete();
 
         //Add name to search list and notify observers
         if (currentCharacter != null) {
-            if(searchedList.size() < 3){
-                searchedList.add(name);
-            } else {
-                searchedList.set(indexSelected, name);
+            addToSearchedList(name);
+        }
+    }
+
+    /**
+     * Adds name to search list and notifies observers,
+     * adding name to list in order of search when list is not full and
+     * replacing name in list at matching index chosen by user when list is full
+     *
+     * @param name name of character found
+     */
+    private void addToSearchedList(String name){
+        if(searchedList.size() < 3){
+            searchedList.add(name);
+        } else {
+            searchedList.set(indexSelected, name);
+        }
+        searchCount++;
+        notifyObserversSearchedListUpdated();
+    }
+
+    /**
+     * Searches the API for a character that was served from cache, on a background thread.
+     *
+     * <p>If the API returns a character that differs from the cached one, and the user has not moved on to another character since,
+     * the current character is replaced and observers are notified again.</p>
+     *
+     * @param name name the cached character was found under
+     * @param cached character served from cache
+     */
+    private void refreshInBackground(String name, CharacterInfo cached){
+        Executor executor;
+        synchronized (this){
+            if(refreshExecutor == null){
+                refreshThread = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "cache-revalidate");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                refreshExecutor = refreshThread;
             }
-            searchCount++;
-            notifyObserversSearchedListUpdated();
+            executor = refreshExecutor;
         }
+        executor.execute(() -> {
+            try{
+                CharacterInfo fresh = input.getInfoByName(name);
+                if(fresh == null || Arrays.equals(codec.encode(cached), codec.encode(fresh))){
+                    return;
+                }
+                if(replaceCurrentCharacter(cached, fresh)){
+                    notifyObserversGetInfoComplete();
+                }
+            } catch (RuntimeException e){
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Replaces the current character only if it is still the expected one
+     *
+     * @param expected character that must still be current
+     * @param replacement character to make current
+     * @return boolean - true if the current character was replaced, otherwise false
+     */
+    private synchronized boolean replaceCurrentCharacter(CharacterInfo expected, CharacterInfo replacement){
+        if(currentCharacter != expected){
+            return false;
+        }
+        currentCharacter = replacement;
+        return true;
+    }
+
+    /**
+     * Turns stale-while-revalidate mode on or off.
+     *
+     * <p>While on, every search refreshes a cached character in the background,
+     * so the cache's time to live is suspended to avoid blocking cache loads on revalidation.</p>
+     *
+     * @param enabled true to serve cached characters at once and refresh them in the background
+     */
+    @Override
+    public void setStaleWhileRevalidate(boolean enabled){
+        synchronized (this){
+            this.staleWhileRevalidate = enabled;
+            if(cacheHandler != null){
+                cacheHandler.setTimeToLive(enabled ? CacheHandler.NO_EXPIRY : CACHE_TIME_TO_LIVE_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Whether stale-while-revalidate mode is on
+     *
+     * @return boolean - true if cached characters are served at once and refreshed in the background
+     */
+    @Override
+    public boolean isStaleWhileRevalidate(){
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * Sets the executor background refreshes run on in stale-while-revalidate mode, a thread of this model by default.
+     *
+     * <p>An executor that runs tasks on the calling thread finishes the refresh before getCharacterInfo() returns.</p>
+     *
+     * @param executor executor for background refreshes
+     */
+    public synchronized void setRefreshExecutor(Executor executor){
+        if(executor == null){
+            throw new NullPointerException();
+        }
+        this.refreshExecutor = executor;
     }
 
     /**
@@ -202,13 +536,14 @@ public class ModelImpl implements ModelFacade{
         if(name == null || name.isEmpty()){
             throw new IllegalArgumentException();
         }
+        awaitCache();
         return input.isInfoInCache(name);
     }
 
     /**
      * Performs operations needed to retrieve information on character matching given name from the cache database
      *
-     * <p>Ask input model to search for record with name as key from cache</p>
+     * <p>Ask input model to look up the record with name as key from cache, in a single round trip</p>
      *
      * <p>If found and CharacterInfo created from record, set current character reference to it</p>
      *
@@ -227,24 +562,92 @@ public class ModelImpl implements ModelFacade{
         if(name == null || name.isEmpty()){
             throw new IllegalArgumentException();
         }
-        if(input.isInfoInCache(name)){
-            CharacterInfo info = input.getInfoByNameFromCache(name);
-            if(info != null){
-                currentCharacter = info;
-            }
+        awaitCache();
+        Optional<CharacterInfo> info = input.findInCache(name);
+        if(info.isPresent()){
+            currentCharacter = info.get();
             notifyObserversGetInfoComplete();
 
             //Add name to search list and notify observers
-            if (currentCharacter != null) {
-                if(searchedList.size() < 3){
-                    searchedList.add(name);
-                } else {
-                    searchedList.set(indexSelected, name);
-                }
-                searchCount++;
-                notifyObserversSearchedListUpdated();
-            }
+            addToSearchedList(name);
+        }
+    }
+
+    /**
+     * Fetches and caches every character named in a file with a CacheWarmer over the input sub model.
+     *
+     * <p>Progress is recorded in a file named after the names file with a .progress suffix.</p>
+     *
+     * @param namesFile file listing the names to cache
+     * @param parallelism maximum number of characters fetched at once
+     * @param listener called with the current progress after every name completes, may be null
+     * @return CacheWarmer.Progress - final counts of the warm-up
+     * @throws IOException if the names file or progress file cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for the warm-up
+     */
+    @Override
+    public CacheWarmer.Progress warmCache(Path namesFile, int parallelism, Consumer<CacheWarmer.Progress> listener)
+            throws IOException, InterruptedException {
+        if(namesFile == null){
+            throw new NullPointerException();
+        }
+        awaitCache();
+        CacheWarmer warmer = new CacheWarmer(input, parallelism);
+        warmer.setProgressListener(listener);
+        return warmer.warm(namesFile, namesFile.resolveSibling(namesFile.getFileName() + ".progress"));
+    }
+
+    /**
+     * Asks the cache handler given to the input model to write every cached character to a snapshot file
+     *
+     * @param snapshotFile path to the snapshot file, replaced if it exists
+     * @return long - number of records exported
+     * @throws IOException if the cache cannot be read or the snapshot cannot be written
+     */
+    @Override
+    public long exportCache(Path snapshotFile) throws IOException {
+        return openedCache().exportSnapshot(snapshotFile);
+    }
+
+    /**
+     * Asks the cache handler given to the input model to merge the characters in a snapshot file into the cache
+     *
+     * @param snapshotFile path to a snapshot file written by exportCache()
+     * @return long - number of records imported
+     * @throws IOException if the snapshot is damaged or cannot be read, or the cache cannot be written
+     */
+    @Override
+    public long importCache(Path snapshotFile) throws IOException {
+        return openedCache().importSnapshot(snapshotFile);
+    }
+
+    /**
+     * Asks the cache handler given to the input model to move characters cached under names typed before keys were normalized
+     * to their keys, to convert the cache database to incremental vacuum, then to convert every cached JSON character to the binary format
+     *
+     * @return int - number of characters moved to their key or converted to the binary format
+     * @throws IOException if the cache cannot be opened or converted
+     */
+    @Override
+    public int migrateCache() throws IOException {
+        CacheHandler handler = openedCache();
+        int normalized = handler.normalizeKeys();
+        handler.enableIncrementalVacuum();
+        return normalized + handler.migrateToBinary();
+    }
+
+    /**
+     * Waits for the cache handler to be opened
+     *
+     * @return CacheHandler - the opened cache handler
+     * @throws IOException if the cache could not be opened
+     */
+    private CacheHandler openedCache() throws IOException {
+        CacheHandler handler = awaitCache();
+        if(handler == null){
+            throw new IOException("Cache could not be opened");
         }
+        return handler;
     }
 
     /**
@@ -306,5 +709,31 @@ public class ModelImpl implements ModelFacade{
         return this.searchedList;
     }
 
+    /**
+     * Ask input sub model to release its resources, such as connections to the cache database
+     *
+     * <p>The cache handler this model opened is closed as well, flushing writes still queued in write-behind mode,
+     * even if the input sub model was given another handler since. The calls of the daily Marvel API budget used are
+     * saved to it first, and taken out of the budget again when the next run opens the cache.</p>
+     */
+    @Override
+    public void shutdown(){
+        synchronized (this){
+            if(refreshThread != null){
+                refreshThread.shutdownNow();
+            }
+        }
+        CacheHandler handler = awaitCache();
+        input.shutdown();
+        if(handler != null){
+            handler.saveApiUsage(MARVEL_API, rateLimiter);
+            handler.close();
+        }
+        rateLimiter.unregister();
+        marvelDecoding.unregister();
+        pastebinDecoding.unregister();
+        transport.shutdown();
+    }
+
 
 }
@@ -0,0 +1,170 @@
+package marvel.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each phase of application startup took, and when it started relative to the timeline.
+ *
+ * <p>Phases may run in parallel on different threads, so each phase keeps its own start offset and duration
+ * rather than being measured from the end of the previous one. Nothing is printed as phases end -
+ * toString() lists every phase recorded so far in order of start, to be printed once startup is complete.</p>
+ *
+ * @see ModelImpl
+ */
+public class StartupTimeline {
+    /**
+     * A phase of startup that has ended
+     */
+    public static class Phase {
+        private final String name;
+        private final long startMillis;
+        private final long durationMillis;
+        private final String thread;
+
+        /**
+         * Constructor for an ended phase
+         *
+         * @param name name of the phase
+         * @param startMillis milliseconds from the start of the timeline to the start of the phase
+         * @param durationMillis milliseconds the phase took
+         * @param thread name of the thread the phase ran on
+         */
+        public Phase(String name, long startMillis, long durationMillis, String thread){
+            this.name = name;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+            this.thread = thread;
+        }
+
+        /**
+         * Getter for the name of the phase
+         *
+         * @return String - phase name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Getter for the start of the phase
+         *
+         * @return long - milliseconds from the start of the timeline
+         */
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * Getter for the duration of the phase
+         *
+         * @return long - milliseconds the phase took
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * Getter for the thread the phase ran on
+         *
+         * @return String - thread name
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("+%5d ms %-16s %5d ms  [%s]", startMillis, name, durationMillis, thread);
+        }
+    }
+
+    /**
+     * Time the timeline started at, from System.nanoTime()
+     */
+    private final long originNanos = System.nanoTime();
+    /**
+     * Phases ended so far
+     */
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Constructor which starts the timeline now
+     */
+    public StartupTimeline(){
+    }
+
+    /**
+     * Constructor which starts the timeline now, recording the time the JVM took to get here as the first phase.
+     *
+     * <p>Only meaningful when created as the application launches, with the uptime of the JVM at that point.</p>
+     *
+     * @param jvmUptimeMillis milliseconds since the JVM started, as from RuntimeMXBean.getUptime()
+     */
+    public StartupTimeline(long jvmUptimeMillis){
+        record(new Phase("jvm", -jvmUptimeMillis, jvmUptimeMillis, Thread.currentThread().getName()));
+    }
+
+    /**
+     * Marks the start of a phase
+     *
+     * @return long - start time to pass to end()
+     */
+    public long start(){
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a phase that started at the given time and ends now
+     *
+     * @param name name of the phase
+     * @param startNanos start time returned by start()
+     * @return Phase - the recorded phase
+     */
+    public Phase end(String name, long startNanos){
+        long now = System.nanoTime();
+        Phase phase = new Phase(name, (startNanos - originNanos) / 1_000_000, (now - startNanos) / 1_000_000,
+                Thread.currentThread().getName());
+        record(phase);
+        return phase;
+    }
+
+    /**
+     * Adds a phase to the timeline
+     *
+     * @param phase ended phase
+     */
+    private void record(Phase phase){
+        synchronized (phases){
+            phases.add(phase);
+        }
+    }
+
+    /**
+     * Getter for the phases ended so far, in order of start
+     *
+     * @return List&lt;Phase&gt; - copy of the recorded phases
+     */
+    public List<Phase> getPhases(){
+        List<Phase> copy;
+        synchronized (phases){
+            copy = new ArrayList<>(phases);
+        }
+        copy.sort((a, b) -> Long.compare(a.getStartMillis(), b.getStartMillis()));
+        return copy;
+    }
+
+    /**
+     * Lists every phase recorded so far, one per line in order of start
+     *
+     * @return String - startup timeline
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Startup timeline:");
+        for(Phase phase : getPhases()){
+            sb.append("\n  ").append(phase);
+        }
+        return sb.toString();
+    }
+}
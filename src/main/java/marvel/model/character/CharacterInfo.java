@@ -60,19 +60,19 @@ public class CharacterInfo {
      */
     private int nSeries = 0;
     /**
-     * Resource list of comics which feature this character (API has return limit of up to 20 items)
+     * Resource list of comics which feature this character (API has return limit of up to 20 items, InputModel.loadAllAppearances() loads the rest)
      */
     private List<Comic> comicList = new ArrayList<>();
     /**
-     * Resource list of stories which this character appears (API has return limit of up to 20 items)
+     * Resource list of stories which this character appears (API has return limit of up to 20 items, InputModel.loadAllAppearances() loads the rest)
      */
     private List<Story> storyList = new ArrayList<>();
     /**
-     * Resource list of events which this character appears (API has return limit of up to 20 items)
+     * Resource list of events which this character appears (API has return limit of up to 20 items, InputModel.loadAllAppearances() loads the rest)
      */
     private List<Event> eventList = new ArrayList<>();
     /**
-     * Resource list of series which this character appears (API has return limit of up to 20 items)
+     * Resource list of series which this character appears (API has return limit of up to 20 items, InputModel.loadAllAppearances() loads the rest)
      */
     private List<Series> seriesList = new ArrayList<>();
 
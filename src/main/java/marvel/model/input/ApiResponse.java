@@ -0,0 +1,82 @@
+package marvel.model.input;
+
+/**
+ * Result of a request sent to the Marvel web API by MarvelApiHandler.
+ *
+ * <p>Holds the status code, the response body and the entity tag identifying the version of the returned data.
+ * A 304 Not Modified result has no body - the data cached under the entity tag sent with the request is still current.</p>
+ *
+ * @see MarvelApiHandler
+ */
+public class ApiResponse {
+    /**
+     * Status code of a conditional request whose cached data is still current
+     */
+    public static final int NOT_MODIFIED = 304;
+    /**
+     * Status code of a request refused because the rate limit of the account was exceeded
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * HTTP status code of the response
+     */
+    private final int statusCode;
+    /**
+     * Response body, null for a 304 response
+     */
+    private final String body;
+    /**
+     * Entity tag of the returned data, null if the API did not provide one
+     */
+    private final String etag;
+
+    /**
+     * Constructor for ApiResponse
+     *
+     * @param statusCode HTTP status code of the response
+     * @param body Response body, null for a 304 response
+     * @param etag Entity tag of the returned data, null if the API did not provide one
+     */
+    public ApiResponse(int statusCode, String body, String etag) {
+        this.statusCode = statusCode;
+        this.body = body;
+        this.etag = etag;
+    }
+
+    /**
+     * Getter for the HTTP status code of the response
+     *
+     * @return int - status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Getter for the response body
+     *
+     * @return String - response body, null for a 304 response
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * Getter for the entity tag of the returned data
+     *
+     * @return String - entity tag, null if the API did not provide one
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Whether the API confirmed that the data cached under the entity tag sent with the request is still current
+     *
+     * @return boolean - true for a 304 response, otherwise false
+     */
+    public boolean isNotModified(){
+        return statusCode == NOT_MODIFIED;
+    }
+}
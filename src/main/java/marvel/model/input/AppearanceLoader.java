@@ -0,0 +1,397 @@
+package marvel.model.input;
+
+import marvel.model.character.CharacterInfo;
+import marvel.model.character.Comic;
+import marvel.model.character.Event;
+import marvel.model.character.Series;
+import marvel.model.character.Story;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads every comic, story, event and series of a character, beyond the first 20 of each listed in a character search response.
+ *
+ * <p>Pages of PAGE_SIZE items are requested from /characters/{id}/comics, stories, events and series,
+ * with up to pagesInFlight requests at once across all four lists, so a character with thousands of comics
+ * loads in a few parallel round trips. The number of pages of each list comes from the available counts of the character.</p>
+ *
+ * <p>Each page is parsed as its body arrives, item by item, rather than after it has been read into a String and built into a JSON tree,
+ * so the parse overlaps the download and no page is held in memory more than once as bytes.
+ * The bytes read are cached under the request path of the page, a key starting with CacheHandler.RESOURCE_KEY_PREFIX,
+ * and read back from the cache until it is stale.</p>
+ *
+ * <p>A list with any page that cannot be fetched or parsed keeps the items of the search response.</p>
+ *
+ * @see OnlineMarvelModel
+ * @see CharacterCatalog.Appearance
+ */
+public class AppearanceLoader {
+    /**
+     * Number of items requested per page, the maximum the API allows
+     */
+    public static final int PAGE_SIZE = 100;
+    /**
+     * Number of pages requested at once when not given
+     */
+    public static final int DEFAULT_PAGES_IN_FLIGHT = 10;
+
+    /**
+     * A page of one of the lists of a character, and its items once fetched
+     */
+    private static class Page {
+        private final CharacterCatalog.Appearance kind;
+        private final int offset;
+        private volatile List<?> items;
+
+        private Page(CharacterCatalog.Appearance kind, int offset){
+            this.kind = kind;
+            this.offset = offset;
+        }
+    }
+
+    private final MarvelApiHandler apiHandler;
+    private final ResponseHandler responseHandler;
+    private final CacheHandler cacheHandler;
+    private final Executor executor;
+    private final int pagesInFlight;
+
+    /**
+     * Constructor for an AppearanceLoader
+     *
+     * @param apiHandler sends the page requests
+     * @param responseHandler parses the pages
+     * @param cacheHandler caches the pages
+     * @param executor runs cache reads and writes and the parsing of pages, which blocks while a page downloads
+     * @param pagesInFlight maximum number of page requests at once
+     * @throws IllegalArgumentException if pagesInFlight is less than 1
+     */
+    public AppearanceLoader(MarvelApiHandler apiHandler, ResponseHandler responseHandler, CacheHandler cacheHandler,
+                            Executor executor, int pagesInFlight){
+        if(pagesInFlight < 1){
+            throw new IllegalArgumentException();
+        }
+        this.apiHandler = apiHandler;
+        this.responseHandler = responseHandler;
+        this.cacheHandler = cacheHandler;
+        this.executor = executor;
+        this.pagesInFlight = pagesInFlight;
+    }
+
+    /**
+     * Loads every comic, story, event and series of a character.
+     *
+     * <p>Cancelling the returned future cancels the page requests in flight.</p>
+     *
+     * @param info character from a search response
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with a copy of the character holding the complete lists
+     */
+    public CompletableFuture<CharacterInfo> load(CharacterInfo info){
+        List<Page> pages = new ArrayList<>();
+        for(CharacterCatalog.Appearance kind : CharacterCatalog.Appearance.values()){
+            for(int offset = 0 ; offset < available(info, kind) ; offset += PAGE_SIZE){
+                pages.add(new Page(kind, offset));
+            }
+        }
+        if(pages.isEmpty()){
+            return CompletableFuture.completedFuture(info);
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+        Set<Closeable> reading = ConcurrentHashMap.newKeySet();
+        done.whenComplete((ignored, e) -> {
+            if(done.isCancelled()){
+                for(CompletableFuture<?> request : running){
+                    request.cancel(true);
+                }
+                for(Closeable body : reading){
+                    close(body);
+                }
+            }
+        });
+        Queue<Page> queue = new ConcurrentLinkedQueue<>(pages);
+        AtomicInteger remaining = new AtomicInteger(pages.size());
+        for(int i = Math.min(pagesInFlight, pages.size()) ; i > 0 ; i--){
+            fetchNext(info.getId(), queue, remaining, running, reading, done);
+        }
+
+        CompletableFuture<CharacterInfo> result = done.thenApplyAsync(ignored -> assemble(info, pages), executor);
+        result.whenComplete((ignored, e) -> {
+            if(result.isCancelled()){
+                done.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Fetches the next page of the queue from the cache or the API, and the one after it when done.
+     *
+     * @param characterId Marvel ID of the character
+     * @param queue pages not started yet
+     * @param remaining pages not fetched yet
+     * @param running page requests in flight
+     * @param reading page bodies being parsed
+     * @param done completed once every page has been fetched or has failed
+     */
+    private void fetchNext(int characterId, Queue<Page> queue, AtomicInteger remaining,
+                           Set<CompletableFuture<?>> running, Set<Closeable> reading, CompletableFuture<Void> done){
+        Page page = queue.poll();
+        if(page == null || done.isDone()){
+            return;
+        }
+        String key = pageKey(characterId, page);
+        CompletableFuture.supplyAsync(() -> cacheHandler.isStale(key) ? null : parseCached(page.kind, cacheHandler.loadFromCache(key)), executor)
+                .thenCompose(cached -> {
+                    if(cached != null || done.isDone()){
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    CompletableFuture<HttpResponse<InputStream>> request = apiHandler.fetchResourcePageStreamAsync(characterId, page.kind.getResource(), page.offset, PAGE_SIZE);
+                    running.add(request);
+                    if(done.isCancelled()){
+                        request.cancel(true);
+                    }
+                    return request.thenApplyAsync(response -> {
+                        running.remove(request);
+                        return readPage(key, page.kind, response, reading, done);
+                    }, executor);
+                })
+                .whenComplete((items, e) -> {
+                    if(e != null && !done.isCancelled()){
+                        e.printStackTrace();
+                    }
+                    page.items = e == null ? items : null;
+                    if(remaining.decrementAndGet() == 0){
+                        done.complete(null);
+                    } else {
+                        fetchNext(characterId, queue, remaining, running, reading, done);
+                    }
+                });
+    }
+
+    /**
+     * Parses a page as its body arrives, and caches the bytes read if the page could be parsed.
+     *
+     * @param key cache key of the page
+     * @param kind kind of the items of the page
+     * @param response response with the body not read yet, may be null
+     * @param reading holds the body while it is read, so it can be closed if loading is cancelled
+     * @param done completed once every page has been fetched or has failed
+     * @return List&lt;?&gt; - items of the page, null if the request failed or the page cannot be parsed
+     */
+    private List<?> readPage(String key, CharacterCatalog.Appearance kind, HttpResponse<InputStream> response,
+                             Set<Closeable> reading, CompletableFuture<Void> done){
+        if(response == null){
+            return null;
+        }
+        InputStream body = response.body();
+        reading.add(body);
+        try(body){
+            if(response.statusCode() != 200 || done.isCancelled()){
+                return null;
+            }
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            List<?> items = parse(kind, new InputStreamReader(new CopyingInputStream(body, copy), StandardCharsets.UTF_8));
+            if(items != null){
+                cacheHandler.saveToCache(key, copy.toString(StandardCharsets.UTF_8));
+            }
+            return items;
+        } catch (IOException e){
+            if(!done.isCancelled()){
+                e.printStackTrace();
+            }
+            return null;
+        } finally {
+            reading.remove(body);
+        }
+    }
+
+    /**
+     * Parses a page read back from the cache
+     *
+     * @param kind kind of the items of the page
+     * @param body cached body of the page, may be null
+     * @return List&lt;?&gt; - items of the page, null if nothing is cached or it cannot be parsed
+     */
+    private List<?> parseCached(CharacterCatalog.Appearance kind, String body){
+        return body == null ? null : parse(kind, new StringReader(body));
+    }
+
+    /**
+     * Parses a page with the ResponseHandler parser for its kind of items
+     *
+     * @param kind kind of the items of the page
+     * @param body body of the page
+     * @return List&lt;?&gt; - items of the page, null if it cannot be parsed
+     */
+    private List<?> parse(CharacterCatalog.Appearance kind, Reader body){
+        switch (kind){
+            case COMIC:
+                return responseHandler.parseComicPage(body);
+            case STORY:
+                return responseHandler.parseStoryPage(body);
+            case EVENT:
+                return responseHandler.parseEventPage(body);
+            default:
+                return responseHandler.parseSeriesPage(body);
+        }
+    }
+
+    /**
+     * Closes a page body, ignoring a failure to close
+     *
+     * @param body page body being read
+     */
+    private static void close(Closeable body){
+        try{
+            body.close();
+        } catch (IOException e){
+            // the body is abandoned either way
+        }
+    }
+
+    /**
+     * Cache key of a page, its request path
+     *
+     * @param characterId Marvel ID of the character
+     * @param page page of one of the lists of the character
+     * @return String - key starting with CacheHandler.RESOURCE_KEY_PREFIX
+     */
+    private static String pageKey(int characterId, Page page){
+        return CacheHandler.RESOURCE_KEY_PREFIX + "characters/" + characterId + "/" + page.kind.getResource()
+                + "?offset=" + page.offset + "&limit=" + PAGE_SIZE;
+    }
+
+    /**
+     * Number of items of one kind the API reports for a character
+     *
+     * @param info character from a search response
+     * @param kind kind of the items
+     * @return int - available count
+     */
+    private static int available(CharacterInfo info, CharacterCatalog.Appearance kind){
+        switch (kind){
+            case COMIC:
+                return info.getNComics();
+            case STORY:
+                return info.getNStories();
+            case EVENT:
+                return info.getNEvents();
+            default:
+                return info.getNSeries();
+        }
+    }
+
+    /**
+     * Builds a copy of the character with each list replaced by the items of its pages, in page order.
+     *
+     * @param info character from a search response
+     * @param pages every page requested, in offset order within each list
+     * @return CharacterInfo - copy of the character holding the complete lists
+     */
+    private CharacterInfo assemble(CharacterInfo info, List<Page> pages){
+        CharacterInfo full = new CharacterInfo(info.getId(), info.getName(), info.getDescription(), info.getModified());
+        full.setThumbnail(info.getThumbnail());
+        full.setUrls(info.getUrls());
+        full.setNComics(info.getNComics());
+        full.setNStories(info.getNStories());
+        full.setNEvents(info.getNEvents());
+        full.setNSeries(info.getNSeries());
+
+        List<Comic> comics = collect(pages, CharacterCatalog.Appearance.COMIC);
+        full.setComicList(comics != null ? comics : info.getComicList());
+        List<Story> stories = collect(pages, CharacterCatalog.Appearance.STORY);
+        full.setStoryList(stories != null ? stories : info.getStoryList());
+        List<Event> events = collect(pages, CharacterCatalog.Appearance.EVENT);
+        full.setEventList(events != null ? events : info.getEventList());
+        List<Series> series = collect(pages, CharacterCatalog.Appearance.SERIES);
+        full.setSeriesList(series != null ? series : info.getSeriesList());
+        return full;
+    }
+
+    /**
+     * Joins the items of every page of one list.
+     *
+     * @param pages every page requested
+     * @param kind kind of the list
+     * @param <T> type of the items, the one parse() gives for kind
+     * @return List&lt;T&gt; - items of every page in order, null if the list has no pages or any page is missing or could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> collect(List<Page> pages, CharacterCatalog.Appearance kind){
+        List<T> items = null;
+        for(Page page : pages){
+            if(page.kind != kind){
+                continue;
+            }
+            if(page.items == null){
+                return null;
+            }
+            if(items == null){
+                items = new ArrayList<>();
+            }
+            items.addAll((List<T>) page.items);
+        }
+        return items;
+    }
+
+    /**
+     * Input stream that keeps a copy of every byte read through it, so a page parsed as it arrives can be cached afterwards.
+     */
+    private static class CopyingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream copy;
+
+        private CopyingInputStream(InputStream in, ByteArrayOutputStream copy){
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0){
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if(n > 0){
+                copy.write(buffer, offset, n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] skipped = new byte[(int) Math.min(n, 8192)];
+            int read = read(skipped, 0, skipped.length);
+            return Math.max(read, 0);
+        }
+    }
+}
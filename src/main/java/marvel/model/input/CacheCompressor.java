@@ -0,0 +1,224 @@
+package marvel.model.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses cached payloads with DEFLATE, optionally primed with a preset dictionary trained from sample responses.
+ *
+ * <p>Cached Marvel responses repeat the same strings in every record - the attribution text, field names,
+ * and resource URI prefixes such as http://gateway.marvel.com/v1/public/comics/.
+ * A preset dictionary containing those strings lets even a small record refer back to them instead of spelling them out.</p>
+ *
+ * <p>Keeps counters of bytes in and out of compress() and of time spent in decompress(),
+ * used to report the compression ratio and average decode time.</p>
+ *
+ * @see CacheHandler
+ */
+public class CacheCompressor {
+    /**
+     * Largest useful dictionary, the DEFLATE window size
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    /**
+     * Shortest repeated segment worth placing in a dictionary
+     */
+    private static final int MIN_SEGMENT_LENGTH = 8;
+
+    /**
+     * Bytes passed in to compress()
+     */
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    /**
+     * Bytes returned from compress()
+     */
+    private final AtomicLong compressedBytes = new AtomicLong();
+    /**
+     * Number of decompress() calls
+     */
+    private final AtomicLong decodeCount = new AtomicLong();
+    /**
+     * Time spent in decompress(), in nanoseconds
+     */
+    private final AtomicLong decodeNanos = new AtomicLong();
+
+    /**
+     * Compresses data with DEFLATE.
+     *
+     * @param data bytes to compress
+     * @param dictionary preset dictionary to prime the compressor with, null for none
+     * @return byte[] - compressed bytes
+     */
+    public byte[] compress(byte[] data, byte[] dictionary){
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try{
+            if(dictionary != null){
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[4096];
+            while(!deflater.finished()){
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            byte[] compressed = out.toByteArray();
+            uncompressedBytes.addAndGet(data.length);
+            compressedBytes.addAndGet(compressed.length);
+            return compressed;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses data produced by compress().
+     *
+     * @param data compressed bytes
+     * @param dictionary the same preset dictionary the data was compressed with, null for none
+     * @return byte[] - original bytes
+     * @throws IOException if the data is corrupt or needs a dictionary that was not given
+     */
+    public byte[] decompress(byte[] data, byte[] dictionary) throws IOException {
+        long start = System.nanoTime();
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while(!inflater.finished()){
+                int count = inflater.inflate(buffer);
+                if(count == 0){
+                    if(inflater.needsDictionary()){
+                        if(dictionary == null){
+                            throw new IOException("Compressed payload needs a dictionary");
+                        }
+                        inflater.setDictionary(dictionary);
+                    } else if(inflater.needsInput()){
+                        throw new IOException("Truncated compressed payload");
+                    }
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+            decodeCount.incrementAndGet();
+            decodeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Builds a preset dictionary from sample payloads.
+     *
+     * <p>Splits each sample into segments at digits, since IDs, counts and dates are what differ most between records,
+     * then scores every distinct segment by how many bytes it would save across all samples.
+     * The best segments are packed into the dictionary with the most valuable last,
+     * because DEFLATE encodes references to the end of the dictionary most cheaply.</p>
+     *
+     * @param samples payloads representative of what will be compressed
+     * @param maxSize maximum dictionary size in bytes, at most MAX_DICTIONARY_SIZE
+     * @return byte[] - trained dictionary, empty if the samples have no repeated segments
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int maxSize){
+        int limit = Math.min(maxSize, MAX_DICTIONARY_SIZE);
+        Map<String, Integer> counts = new HashMap<>();
+        for(byte[] sample : samples){
+            String text = new String(sample, StandardCharsets.ISO_8859_1);
+            int start = 0;
+            for(int i = 0 ; i <= text.length() ; i++){
+                boolean boundary = i == text.length() || Character.isDigit(text.charAt(i));
+                if(boundary){
+                    if(i - start >= MIN_SEGMENT_LENGTH){
+                        counts.merge(text.substring(start, i), 1, Integer::sum);
+                    }
+                    start = i + 1;
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> segments = new ArrayList<>(counts.entrySet());
+        //a segment seen once is still worth having when training on a single sample
+        int minCount = samples.size() > 1 ? 2 : 1;
+        segments.removeIf(entry -> entry.getValue() < minCount);
+        segments.sort(Comparator.comparingLong((Map.Entry<String, Integer> entry) ->
+                (long) entry.getValue() * entry.getKey().length()).reversed());
+
+        List<String> chosen = new ArrayList<>();
+        int size = 0;
+        for(Map.Entry<String, Integer> entry : segments){
+            int length = entry.getKey().length();
+            if(size + length > limit){
+                continue;
+            }
+            chosen.add(entry.getKey());
+            size += length;
+        }
+
+        StringBuilder dictionary = new StringBuilder(size);
+        for(int i = chosen.size() - 1 ; i >= 0 ; i--){
+            dictionary.append(chosen.get(i));
+        }
+        return dictionary.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Ratio of uncompressed to compressed size over every compress() call
+     *
+     * @return double - compression ratio, 1.0 if nothing has been compressed
+     */
+    public double getCompressionRatio(){
+        long compressed = compressedBytes.get();
+        return compressed == 0 ? 1.0 : (double) uncompressedBytes.get() / compressed;
+    }
+
+    /**
+     * Average time spent in a decompress() call
+     *
+     * @return double - average decode time in microseconds, 0 if nothing has been decompressed
+     */
+    public double getAverageDecodeMicros(){
+        long count = decodeCount.get();
+        return count == 0 ? 0 : decodeNanos.get() / 1000.0 / count;
+    }
+
+    /**
+     * Getter for the number of bytes passed in to compress()
+     *
+     * @return long - uncompressed bytes
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    /**
+     * Getter for the number of bytes returned from compress()
+     *
+     * @return long - compressed bytes
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Getter for the number of decompress() calls
+     *
+     * @return long - decode count
+     */
+    public long getDecodeCount() {
+        return decodeCount.get();
+    }
+}
@@ -0,0 +1,233 @@
+package marvel.model.input;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manages the connections to the SQLite cache database used by CacheHandler.
+ *
+ * <p>The database is opened in WAL (write-ahead log) journal mode,
+ * which lets readers run concurrently with each other and with a single writer.</p>
+ *
+ * <p>The pool holds one writer connection, guarded by a lock so only one write runs at a time,
+ * and a fixed number of read-only reader connections that are handed out to concurrent lookups.</p>
+ *
+ * @see CacheHandler
+ * @see PooledConnection
+ */
+public class CacheConnectionPool {
+    /**
+     * Milliseconds a connection waits on a locked database before failing
+     */
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+    /**
+     * Seconds a caller waits for a free reader connection before failing
+     */
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Work to run with a connection borrowed from the pool.
+     *
+     * @param <T> type of result produced by the work
+     */
+    public interface SqlWork<T> {
+        /**
+         * Runs the work with the given connection.
+         *
+         * @param connection connection borrowed from the pool, only valid for the duration of the call
+         * @return T - result of the work
+         * @throws SQLException if a query fails
+         */
+        T run(PooledConnection connection) throws SQLException;
+    }
+
+    /**
+     * The single connection allowed to modify the database
+     */
+    private final PooledConnection writer;
+    /**
+     * Serialises access to the writer connection
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Reader connections currently available to borrow
+     */
+    private final BlockingQueue<PooledConnection> readers;
+    /**
+     * Every reader connection opened by the pool, used for closing
+     */
+    private final List<PooledConnection> allReaders = new ArrayList<>();
+    /**
+     * Whether close() has been called
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Opens the writer connection, switches the database to WAL mode, then opens the reader connections.
+     *
+     * @param databasePath path to the SQLite database file
+     * @param readerCount number of read-only connections to open, must be at least 1
+     * @throws SQLException if a connection cannot be opened
+     * @throws IllegalArgumentException if readerCount is less than 1
+     */
+    public CacheConnectionPool(String databasePath, int readerCount) throws SQLException {
+        if(readerCount < 1){
+            throw new IllegalArgumentException();
+        }
+        String url = "jdbc:sqlite:".concat(databasePath);
+
+        writer = new PooledConnection(DriverManager.getConnection(url));
+        writer.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+        //only takes effect on a new database, older ones are converted by SqliteCacheStore.enableIncrementalVacuum()
+        writer.execute("PRAGMA auto_vacuum = INCREMENTAL");
+        writer.execute("PRAGMA journal_mode = WAL");
+        writer.execute("PRAGMA synchronous = NORMAL");
+
+        readers = new ArrayBlockingQueue<>(readerCount);
+        for(int i = 0 ; i < readerCount ; i++){
+            PooledConnection reader = new PooledConnection(DriverManager.getConnection(url));
+            reader.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+            reader.execute("PRAGMA query_only = true");
+            allReaders.add(reader);
+            readers.add(reader);
+        }
+    }
+
+    /**
+     * Runs read-only work on a borrowed reader connection.
+     *
+     * <p>Blocks until a reader is free if all readers are in use.</p>
+     *
+     * @param work queries to run
+     * @param <T> type of result produced by the work
+     * @return T - result of the work
+     * @throws SQLException if the pool is closed, no reader becomes free in time, or a query fails
+     */
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        PooledConnection reader = acquireReader();
+        try{
+            return work.run(reader);
+        } finally {
+            readers.add(reader);
+        }
+    }
+
+    /**
+     * Runs work on the writer connection while holding the write lock.
+     *
+     * @param work statements to run
+     * @param <T> type of result produced by the work
+     * @return T - result of the work
+     * @throws SQLException if the pool is closed or a statement fails
+     */
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        writeLock.lock();
+        try{
+            if(closed){
+                throw new SQLException("Cache connection pool is closed");
+            }
+            return work.run(writer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs work on the writer connection inside a single transaction.
+     *
+     * <p>The transaction is committed if the work completes and rolled back if it throws.</p>
+     *
+     * @param work statements to run
+     * @param <T> type of result produced by the work
+     * @return T - result of the work
+     * @throws SQLException if the pool is closed or a statement fails
+     */
+    public <T> T transaction(SqlWork<T> work) throws SQLException {
+        return write(connection -> {
+            connection.getConnection().setAutoCommit(false);
+            try{
+                T result = work.run(connection);
+                connection.getConnection().commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.getConnection().rollback();
+                throw e;
+            } finally {
+                connection.getConnection().setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Closes every connection in the pool.
+     *
+     * <p>Waits for a running write to finish, and for borrowed readers to be returned up to the acquire timeout.</p>
+     */
+    public void close(){
+        if(closed){
+            return;
+        }
+        writeLock.lock();
+        try{
+            closed = true;
+            for(int i = 0 ; i < allReaders.size() ; i++){
+                try{
+                    PooledConnection reader = readers.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    if(reader == null){
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            for(PooledConnection reader : allReaders){
+                reader.close();
+            }
+            writer.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Whether this pool has been closed
+     *
+     * @return boolean - true if close() has been called, otherwise false
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Takes a free reader connection from the pool, waiting up to the acquire timeout.
+     *
+     * @return PooledConnection - reader connection that must be returned to the queue after use
+     * @throws SQLException if the pool is closed, no reader becomes free in time, or the wait is interrupted
+     */
+    private PooledConnection acquireReader() throws SQLException {
+        if(closed){
+            throw new SQLException("Cache connection pool is closed");
+        }
+        try{
+            PooledConnection reader = readers.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if(reader == null){
+                throw new SQLException("Timed out waiting for a cache reader connection");
+            }
+            if(closed){
+                readers.add(reader);
+                throw new SQLException("Cache connection pool is closed");
+            }
+            return reader;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a cache reader connection", e);
+        }
+    }
+}
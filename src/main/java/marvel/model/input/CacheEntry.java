@@ -0,0 +1,176 @@
+package marvel.model.input;
+
+/**
+ * A single cached record as stored in the Character table of the cache database.
+ *
+ * <p>A record holds a character either as the raw JSON response string from the API,
+ * or as a binary encoding produced by CharacterInfoCodec. The format column tells which one is present.</p>
+ *
+ * <p>Either form may be compressed, in which case the compressed bytes are held in the payload
+ * and the codec column tells how to decompress them. Rows written with different codecs coexist in the same table.</p>
+ *
+ * <p>Every record also keeps the entity tag of the API response it was built from and the time it was fetched,
+ * used to decide when it has expired and to revalidate it with a conditional request.</p>
+ *
+ * @see CacheHandler
+ * @see CharacterInfoCodec
+ */
+public class CacheEntry {
+    /**
+     * Format of a record holding the raw JSON response in the Response column
+     */
+    public static final int FORMAT_JSON = 0;
+    /**
+     * Format of a record holding a CharacterInfoCodec encoding in the Payload column
+     */
+    public static final int FORMAT_BINARY = 1;
+    /**
+     * Codec of an uncompressed record
+     */
+    public static final int CODEC_NONE = 0;
+    /**
+     * Codec of a record compressed with DEFLATE and a preset dictionary, identified by the dictionary ID column
+     */
+    public static final int CODEC_DEFLATE_DICTIONARY = 1;
+
+    /**
+     * Search name the record is stored under
+     */
+    private final String name;
+    /**
+     * Storage format of the record, FORMAT_JSON or FORMAT_BINARY
+     */
+    private final int format;
+    /**
+     * Compression codec of the record, CODEC_NONE or CODEC_DEFLATE_DICTIONARY
+     */
+    private final int codec;
+    /**
+     * ID of the dictionary a compressed record was compressed with, 0 for uncompressed records
+     */
+    private final int dictionaryId;
+    /**
+     * Raw JSON response, null for binary and compressed records
+     */
+    private final String response;
+    /**
+     * Binary encoding of the character or compressed bytes, null for uncompressed JSON records
+     */
+    private final byte[] payload;
+    /**
+     * Entity tag of the API response the record was built from, null if unknown
+     */
+    private final String etag;
+    /**
+     * Time the response was fetched from or last revalidated with the API, in milliseconds since the epoch
+     */
+    private final long fetchedAt;
+
+    /**
+     * Constructor for an uncompressed cached record.
+     *
+     * @param name Search name the record is stored under
+     * @param format Storage format of the record, FORMAT_JSON or FORMAT_BINARY
+     * @param response Raw JSON response, null for binary records
+     * @param payload Binary encoding of the character, null for JSON records
+     */
+    public CacheEntry(String name, int format, String response, byte[] payload) {
+        this(name, format, CODEC_NONE, 0, response, payload, null, 0);
+    }
+
+    /**
+     * Constructor for a cached record with any codec.
+     *
+     * @param name Search name the record is stored under
+     * @param format Storage format of the record, FORMAT_JSON or FORMAT_BINARY
+     * @param codec Compression codec of the record, CODEC_NONE or CODEC_DEFLATE_DICTIONARY
+     * @param dictionaryId ID of the dictionary the record was compressed with, 0 if uncompressed
+     * @param response Raw JSON response, null for binary and compressed records
+     * @param payload Binary encoding of the character or compressed bytes, null for uncompressed JSON records
+     * @param etag Entity tag of the API response the record was built from, null if unknown
+     * @param fetchedAt Time the response was fetched or last revalidated, in milliseconds since the epoch
+     */
+    public CacheEntry(String name, int format, int codec, int dictionaryId, String response, byte[] payload,
+                      String etag, long fetchedAt) {
+        this.name = name;
+        this.format = format;
+        this.codec = codec;
+        this.dictionaryId = dictionaryId;
+        this.response = response;
+        this.payload = payload;
+        this.etag = etag;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Getter for the search name the record is stored under
+     *
+     * @return String - key of the record
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the storage format of the record
+     *
+     * @return int - FORMAT_JSON or FORMAT_BINARY
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * Getter for the compression codec of the record
+     *
+     * @return int - CODEC_NONE or CODEC_DEFLATE_DICTIONARY
+     */
+    public int getCodec() {
+        return codec;
+    }
+
+    /**
+     * Getter for the ID of the dictionary the record was compressed with
+     *
+     * @return int - dictionary ID, 0 for uncompressed records
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * Getter for the raw JSON response
+     *
+     * @return String - JSON response, null for binary and compressed records
+     */
+    public String getResponse() {
+        return response;
+    }
+
+    /**
+     * Getter for the binary encoding of the character
+     *
+     * @return byte[] - encoded character or compressed bytes, null for uncompressed JSON records
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Getter for the entity tag of the API response the record was built from
+     *
+     * @return String - entity tag, null if unknown
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Getter for the time the response was fetched from or last revalidated with the API
+     *
+     * @return long - milliseconds since the epoch, 0 if unknown
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+}
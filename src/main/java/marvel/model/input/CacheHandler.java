@@ -1,118 +1,2091 @@
 package marvel.model.input;
 
-import java.sql.*;
+import marvel.model.character.CharacterInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Responsible for processing SQL queries to the database for cached responses.
  *
  * <p>Connects to a SQLite database named MarvelCache.sqlite,
- * which is used for caching JSON responses from previous character information searches.</p>
+ * which is used for caching responses from previous character information searches.</p>
  *
  * <p>The database schema is a key-value pair consisting of the search name provided by the user in a previous search as the key,
- * and the JSON response containing character data from the API</p>
+ * and the character data from the API</p>
  *
- * <p>The database uses one table named Character which has 2 columns, <b>Name</b> and <b>Response</b></p>
+ * <p>Character records are held by a CacheStore - by default the Character table, which has 9 columns,
+ * <b>Name</b>, <b>Response</b>, <b>Format</b>, <b>Payload</b>, <b>Codec</b>, <b>DictionaryId</b>, <b>ETag</b>, <b>FetchedAt</b> and <b>AccessedAt</b>.
+ * A record holds the raw JSON response in Response, or a binary encoding of the parsed character in Payload.</p>
  *
  * <p><b>Name</b> is a Primary key that is set to replace on conflict - only one response is stored for each search query name string.</p>
  *
- * <p>Caching is done automatically on a search that hits the API with a response that contains one character data.</p>
+ * <p>Caching is done automatically on a search that hits the API with a response that contains one character data.
+ * Misses, compression dictionaries, the full-text index and the optional catalog are kept in tables of their own.</p>
  *
  * @see InputModel
  * @see OnlineMarvelModel
  * @see OfflineMarvelModel
+ * @see CacheConnectionPool
+ * @see CacheWriteQueue
+ * @see CharacterInfoCache
+ * @see CharacterInfoCodec
+ * @see CacheCompressor
+ * @see CacheStore
+ * @see CacheSnapshot
+ * @see CacheMetrics
+ * @see CharacterCatalog
+ * @see NameFilter
  */
 public class CacheHandler {
     /**
-     * Reference to the connection session to the database
+     * How character records are written to the Character table
+     */
+    public enum StorageFormat {
+        /** Raw JSON response string, parsed on every load */
+        JSON,
+        /** CharacterInfoCodec binary encoding, decoded on load without parsing */
+        BINARY
+    }
+
+    /**
+     * Path to the cache database used when no path is given
+     */
+    public static final String DEFAULT_DATABASE_PATH = "MarvelCache.sqlite";
+    /**
+     * Number of reader connections opened when no count is given
+     */
+    public static final int DEFAULT_READER_COUNT = 4;
+    /**
+     * Number of parsed characters kept in memory when no memory cache is set
+     */
+    public static final int DEFAULT_MEMORY_CACHE_ENTRIES = 256;
+    /**
+     * Number of records converted per transaction by migrateToBinary()
+     */
+    private static final int MIGRATION_BATCH_SIZE = 100;
+    /**
+     * Maximum number of cached records sampled when training a compression dictionary
+     */
+    private static final int DICTIONARY_SAMPLE_ROWS = 200;
+    /**
+     * Number of records read from the store or written to it at a time by snapshot export and import
+     */
+    private static final int SNAPSHOT_BATCH_SIZE = 1000;
+    /**
+     * Number of records removed at a time when evicting
+     */
+    private static final int EVICTION_BATCH_SIZE = 500;
+    /**
+     * No limit on the number of records or bytes
+     */
+    public static final long NO_LIMIT = 0;
+    /**
+     * Time to live meaning records never expire
+     */
+    public static final long NO_EXPIRY = 0;
+    /**
+     * Default milliseconds a name the API found no character for is remembered
+     */
+    public static final long DEFAULT_MISS_TIME_TO_LIVE = 10 * 60 * 1000L;
+    /**
+     * Smallest number of names the name filter is sized for
+     */
+    private static final int MIN_FILTER_CAPACITY = 1024;
+    /**
+     * False positive rate the name filter is sized for
+     */
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+    /**
+     * Start of the keys of records holding a raw API resource page rather than a character, such as "/characters/1009610/comics?offset=0&amp;limit=100"
+     */
+    public static final String RESOURCE_KEY_PREFIX = "/";
+    /**
+     * Default maximum number of names returned by searchCache()
+     */
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+    /**
+     * Splits a search query into the words looked up in the full-text index
+     */
+    private static final Pattern SEARCH_TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Pool of connections to the cache database, null if the database could not be opened
+     */
+    private CacheConnectionPool pool = null;
+    /**
+     * Storage backend for character records, null if it could not be opened
+     */
+    private CacheStore store = null;
+    /**
+     * Queue of writes waiting to be flushed, null unless write-behind mode is enabled
+     */
+    private volatile CacheWriteQueue writeQueue = null;
+    /**
+     * In-memory cache of parsed characters, checked before the database
+     */
+    private CharacterInfoCache memoryCache = new CharacterInfoCache(DEFAULT_MEMORY_CACHE_ENTRIES, 0);
+    /**
+     * Handler used to parse cached responses into CharacterInfo objects
+     */
+    private ResponseHandler responseHandler = new ResponseHandler();
+    /**
+     * Encoder and decoder for binary records
+     */
+    private final CharacterInfoCodec codec = new CharacterInfoCodec();
+    /**
+     * Format new records are written in
+     */
+    private volatile StorageFormat storageFormat = StorageFormat.JSON;
+    /**
+     * Compressor for records, also keeps the compression counters
+     */
+    private final CacheCompressor compressor = new CacheCompressor();
+    /**
+     * Compression dictionaries loaded from the database, keyed by ID
+     */
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    /**
+     * ID of the dictionary new records are compressed with, 0 if new records are not compressed
+     */
+    private volatile int currentDictionaryId = 0;
+    /**
+     * Milliseconds after fetching that a record expires and should be revalidated, NO_EXPIRY if records never expire
+     */
+    private volatile long timeToLive = NO_EXPIRY;
+    /**
+     * Milliseconds a name the API found no character for is remembered
+     */
+    private volatile long missTimeToLive = DEFAULT_MISS_TIME_TO_LIVE;
+
+    /**
+     * Filter over every cached name, null if it could not be built
+     */
+    private volatile NameFilter nameFilter = null;
+    /**
+     * Guards adding names to the filter against a concurrent rebuild
+     */
+    private final Object filterLock = new Object();
+    /**
+     * Whether the CharacterSearch full-text index exists, false if this SQLite build has no FTS5
+     */
+    private volatile boolean searchIndexAvailable = false;
+    /**
+     * Normalized catalog of cached characters, null until enableCatalog() is called
+     */
+    private volatile CharacterCatalog catalog = null;
+    /**
+     * Whether this handler has marked the catalog out of date, after writing records while the catalog was not enabled
+     */
+    private volatile boolean catalogMarkedOutOfDate = false;
+
+    /**
+     * Maximum number of records kept in the store, NO_LIMIT for no limit
+     */
+    private volatile long maxRecords = NO_LIMIT;
+    /**
+     * Maximum size of the store in bytes, NO_LIMIT for no limit
+     */
+    private volatile long maxBytes = NO_LIMIT;
+    /**
+     * Access times of records read since the last maintenance run, written to the store in one batch by runMaintenance()
+     */
+    private final ConcurrentHashMap<String, Long> pendingAccesses = new ConcurrentHashMap<>();
+    /**
+     * Runs eviction and compaction in the background, null until a size limit is enabled
+     */
+    private volatile ScheduledExecutorService maintenance = null;
+    /**
+     * Counters and histograms of lookups and writes
      */
-    public static Connection connection = null;
+    private final CacheMetrics metrics = new CacheMetrics();
+    /**
+     * Whether close() has been called, so later calls return at once
+     */
+    private boolean closed = false;
 
     /**
-     * Constructor which establishes connection to the database on initialisation.
+     * Constructor which establishes connection to the default database on initialisation.
      */
     public CacheHandler(){
+        this(DEFAULT_DATABASE_PATH, DEFAULT_READER_COUNT);
+    }
+
+    /**
+     * Constructor which establishes connections to the given database on initialisation, storing records in its Character table.
+     *
+     * <p>Creates the Character table if the database does not have one yet,
+     * and adds columns introduced by later versions to an existing table.</p>
+     *
+     * @param databasePath path to the SQLite database file
+     * @param readerCount number of read-only connections to keep open for concurrent lookups
+     */
+    public CacheHandler(String databasePath, int readerCount){
+        this(databasePath, readerCount, null);
+    }
+
+    /**
+     * Constructor which stores character records in the given store.
+     *
+     * <p>Compression dictionaries, remembered misses and the full-text index are kept in the SQLite database at the given path
+     * whichever store holds the records.</p>
+     *
+     * @param databasePath path to the SQLite database file
+     * @param readerCount number of read-only connections to keep open for concurrent lookups
+     * @param store storage backend for character records, null to store them in the Character table of the database
+     */
+    public CacheHandler(String databasePath, int readerCount, CacheStore store){
         try{
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:MarvelCache.sqlite");
+            pool = new CacheConnectionPool(databasePath, readerCount);
+            this.store = store != null ? store : new SqliteCacheStore(pool);
+            boolean indexCreated = pool.write(connection -> {
+                connection.execute("CREATE TABLE IF NOT EXISTS CompressionDictionary (Id INTEGER PRIMARY KEY AUTOINCREMENT, Data BLOB NOT NULL, CreatedAt INTEGER NOT NULL)");
+                connection.execute("CREATE TABLE IF NOT EXISTS Miss (Name VARCHAR PRIMARY KEY ON CONFLICT REPLACE, MissedAt INTEGER NOT NULL)");
+                connection.execute("CREATE TABLE IF NOT EXISTS ApiUsage (Api VARCHAR PRIMARY KEY ON CONFLICT REPLACE, Used INTEGER NOT NULL, SavedAt INTEGER NOT NULL)");
+                return createSearchIndex(connection);
+            });
+            rebuildNameFilter();
+            if(indexCreated){
+                rebuildSearchIndex();
+            }
+            metrics.register(databasePath);
 
-        } catch (ClassNotFoundException | SQLException e) {
+        } catch (ClassNotFoundException | SQLException | IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Saves the provided name and response string as a record in the database
+     * Creates the CharacterSearch full-text index if the database does not have one yet.
      *
-     * <p>Database schema designed to overwrite existing record with the name is already a key in the cache.</p>
+     * <p>Prefix indexes for 2, 3 and 4 character prefixes make prefix queries as fast as whole word queries.</p>
      *
-     * @param name To be inserted as the Name value in the Character table, a key to the record
-     * @param response To be inserted as the Response value in the Character table, value of the record
+     * @param connection writer connection
+     * @return boolean - true if the index was just created and has to be filled from the stored records
+     * @throws SQLException if the schema cannot be read
      */
-    public void saveToCache(String name, String response){
+    private boolean createSearchIndex(PooledConnection connection) throws SQLException {
+        PreparedStatement pr = connection.prepare("SELECT 1 FROM sqlite_master WHERE name = 'CharacterSearch';");
+        try(ResultSet rs = pr.executeQuery()){
+            if(rs.next()){
+                searchIndexAvailable = true;
+                return false;
+            }
+        }
+        try{
+            connection.execute("CREATE VIRTUAL TABLE CharacterSearch USING fts5(Name UNINDEXED, SearchName, CharacterName, Description, " +
+                    "tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3 4')");
+            searchIndexAvailable = true;
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Full-text search unavailable, searching cached names only");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Rebuilds the name filter from every stored name and every name waiting in the write-behind queue.
+     *
+     * <p>The filter is sized for twice the current number of names, so it is rebuilt rarely as the cache grows.</p>
+     *
+     * @throws IOException if the names cannot be read, in which case lookups fall back to always querying the store
+     */
+    private void rebuildNameFilter() throws IOException {
+        synchronized (filterLock){
+            nameFilter = null;
+            //pending names are read first, so a name flushed in between is still found in the store
+            List<String> names = new ArrayList<>();
+            CacheWriteQueue queue = writeQueue;
+            if(queue != null){
+                names.addAll(queue.getPendingNames());
+            }
+            names.addAll(store.names());
+            NameFilter filter = new NameFilter(Math.max(MIN_FILTER_CAPACITY, names.size() * 2), FILTER_FALSE_POSITIVE_RATE);
+            for(String name : names){
+                filter.add(name);
+            }
+            nameFilter = filter;
+        }
+    }
 
-        String query = "INSERT INTO Character (Name, Response) \nVALUES(?, ?)";
+    /**
+     * Adds a name just queued or written to the name filter, rebuilding the filter first if it is over capacity.
+     *
+     * @param name key of the record being saved
+     */
+    private void addToNameFilter(String name){
+        synchronized (filterLock){
+            NameFilter filter = nameFilter;
+            if(filter == null){
+                return;
+            }
+            if(filter.isFull()){
+                try{
+                    rebuildNameFilter();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+            }
+            nameFilter.add(name);
+        }
+    }
 
-        try{
-            PreparedStatement pr = connection.prepareStatement(query);
-            System.out.println("Saved to cache : " + name);
-            pr.setString(1, name);
-            pr.setString(2, response);
-            pr.execute();
+    /**
+     * Whether a name is definitely not cached, according to the name filter
+     *
+     * @param name key to look up
+     * @return boolean - true if the name is definitely not cached, false if it might be or there is no filter
+     */
+    private boolean isDefinitelyAbsent(String name){
+        NameFilter filter = nameFilter;
+        return filter != null && !filter.mightContain(name);
+    }
+
+    /**
+     * Getter for the filter over every cached name
+     *
+     * @return NameFilter - name filter, null if it could not be built
+     */
+    public NameFilter getNameFilter() {
+        return nameFilter;
+    }
+
+    /**
+     * Sets the format new records are written in.
+     *
+     * <p>Existing records keep their format until they are rewritten, so records of both formats can be read at any time.</p>
+     *
+     * @param storageFormat format for new records
+     */
+    public void setStorageFormat(StorageFormat storageFormat) {
+        if(storageFormat == null){
+            throw new NullPointerException();
+        }
+        this.storageFormat = storageFormat;
+    }
+
+    /**
+     * Getter for the format new records are written in
+     *
+     * @return StorageFormat - format for new records
+     */
+    public StorageFormat getStorageFormat() {
+        return storageFormat;
+    }
 
+    /**
+     * Compresses new records with the latest stored dictionary, training one first if the database has none.
+     *
+     * <p>Existing records keep their codec until they are rewritten.</p>
+     *
+     * @param sampleFilePath path to a sample API response used for training when no dictionary is stored, such as DummyApiResponse.json
+     */
+    public void enableCompression(String sampleFilePath){
+        if(pool == null){
+            return;
+        }
+        String query = "SELECT MAX(Id) AS Id from CompressionDictionary;";
+        try{
+            int latest = pool.read(connection -> {
+                try(ResultSet rs = connection.prepare(query).executeQuery()){
+                    return rs.next() ? rs.getInt("Id") : 0;
+                }
+            });
+            if(latest == 0){
+                latest = trainDictionary(sampleFilePath);
+            }
+            currentDictionaryId = latest;
         } catch (SQLException e) {
             e.printStackTrace();
         }
+    }
 
+    /**
+     * Stops compressing new records. Compressed records stay readable.
+     */
+    public void disableCompression(){
+        currentDictionaryId = 0;
     }
 
     /**
-     * Loads the response string cached in the database given a name key.
+     * Trains a new compression dictionary, stores it, and uses it for new records if compression is enabled.
      *
-     * @param name To be used as key to search for a matching response record in the database
-     * @return String - return the cached response string if a record with Name key matching provide name is found, otherwise return null
+     * <p>Samples the response in the given file, in both JSON and binary form,
+     * plus up to DICTIONARY_SAMPLE_ROWS records already in the cache.</p>
+     *
+     * @param sampleFilePath path to a sample API response such as DummyApiResponse.json, may be null to only sample cached records
+     * @return int - ID of the new dictionary, 0 if no dictionary could be trained
      */
-    public String loadFromCache(String name){
-        String query = "SELECT * from Character where Name = ?;";
+    public int trainDictionary(String sampleFilePath){
+        if(pool == null || store == null){
+            return 0;
+        }
+        List<byte[]> samples = new ArrayList<>();
+        if(sampleFilePath != null){
+            try{
+                String sample = Files.readString(Path.of(sampleFilePath));
+                samples.add(sample.getBytes(StandardCharsets.UTF_8));
+                CharacterInfo info = responseHandler.parseResponseBody(sample);
+                if(info != null){
+                    samples.add(codec.encode(info));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
 
         try{
-            PreparedStatement pr = connection.prepareStatement(query);
-            pr.setString(1, name);
+            List<CacheEntry> rows = store.scan("", DICTIONARY_SAMPLE_ROWS);
+            for(CacheEntry row : rows){
+                try{
+                    samples.add(rawBytes(row));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            byte[] dictionary = CacheCompressor.trainDictionary(samples, CacheCompressor.MAX_DICTIONARY_SIZE);
+            if(dictionary.length == 0){
+                return 0;
+            }
+            String insert = "INSERT INTO CompressionDictionary (Data, CreatedAt) VALUES(?, ?);";
+            int id = pool.write(connection -> {
+                PreparedStatement pr = connection.prepare(insert);
+                pr.setBytes(1, dictionary);
+                pr.setLong(2, System.currentTimeMillis());
+                pr.executeUpdate();
+                try(Statement statement = connection.getConnection().createStatement();
+                    ResultSet rs = statement.executeQuery("SELECT last_insert_rowid()")){
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+            dictionaries.put(id, dictionary);
+            if(currentDictionaryId != 0){
+                currentDictionaryId = id;
+            }
+            metrics.recordDictionaryTrained();
+            return id;
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
 
-            ResultSet rs = pr.executeQuery();
+    /**
+     * Getter for the compressor, used for reading the compression ratio and decode time
+     *
+     * @return CacheCompressor - compressor used for records
+     */
+    public CacheCompressor getCompressor() {
+        return compressor;
+    }
 
-            if(rs.next()){
-                return rs.getString("Response");
+    /**
+     * Returns a stored compression dictionary, loading it from the database on first use.
+     *
+     * @param id ID of the dictionary
+     * @return byte[] - dictionary, null if it is not stored
+     * @throws SQLException if the query fails
+     */
+    private byte[] dictionary(int id) throws SQLException {
+        byte[] dictionary = dictionaries.get(id);
+        if(dictionary != null){
+            return dictionary;
+        }
+        String query = "SELECT Data from CompressionDictionary where Id = ?;";
+        dictionary = pool.read(connection -> {
+            PreparedStatement pr = connection.prepare(query);
+            pr.setInt(1, id);
+            try(ResultSet rs = pr.executeQuery()){
+                return rs.next() ? rs.getBytes("Data") : null;
             }
+        });
+        if(dictionary != null){
+            dictionaries.put(id, dictionary);
+        }
+        return dictionary;
+    }
 
-            return null;
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Replaces the in-memory cache of parsed characters, for example to change its bounds.
+     *
+     * @param memoryCache cache checked before the database, must not be null
+     */
+    public void setMemoryCache(CharacterInfoCache memoryCache) {
+        if(memoryCache == null){
+            throw new NullPointerException();
         }
-        return null;
+        this.memoryCache = memoryCache;
     }
 
     /**
-     * Search if there exists any matching response record in the cache database
+     * Getter for the in-memory cache of parsed characters, used for reading its counters
      *
-     * @param name To be used as key to search for a matching response record in the database
-     * @return boolean - return true if a matching response is found, otherwise return false
+     * @return CharacterInfoCache - cache checked before the database
      */
-    public boolean isInfoInCache(String name){
-        String query = "SELECT Response from Character where Name = ?;";
+    public CharacterInfoCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Sets the handler used to parse cached responses into CharacterInfo objects.
+     *
+     * @param responseHandler handler for parsing JSON responses
+     */
+    public void setResponseHandler(ResponseHandler responseHandler) {
+        if(responseHandler == null){
+            throw new NullPointerException();
+        }
+        this.responseHandler = responseHandler;
+    }
+
+    /**
+     * Switches this handler to write-behind mode.
+     *
+     * <p>saveToCache() queues writes instead of running them, and a background thread flushes them in batched transactions.
+     * Pending writes are only flushed when close() is called, so the owner must close this handler before exiting.</p>
+     *
+     * <p>Has no effect if write-behind mode is already enabled or the database could not be opened.</p>
+     *
+     * @param batchSize number of pending writes that triggers an immediate flush
+     * @param flushIntervalMillis maximum time in milliseconds a write waits before being flushed
+     */
+    public synchronized void enableWriteBehind(int batchSize, long flushIntervalMillis){
+        if(store == null || writeQueue != null){
+            return;
+        }
+        writeQueue = new CacheWriteQueue(this::writeBatch, batchSize, flushIntervalMillis);
+    }
+
+    /**
+     * Saves the provided name and response string as a record in the database
+     *
+     * <p>Database schema designed to overwrite existing record with the name is already a key in the cache.
+     * A record with the same name and response as the one stored is skipped.</p>
+     *
+     * <p>In write-behind mode the record is queued and written by a later batch.</p>
+     *
+     * @param name To be inserted as the Name value in the Character table, a key to the record
+     * @param response To be inserted as the Response value in the Character table, value of the record
+     */
+    public void saveToCache(String name, String response){
+        if(store == null || name == null || response == null){
+            return;
+        }
+        memoryCache.invalidate(name);
+        CacheWriteQueue queue = writeQueue;
+        if(queue != null && queue.enqueue(name, response)){
+            addToNameFilter(name);
+            return;
+        }
+
         try{
-            PreparedStatement pr = connection.prepareStatement(query);
-            pr.setString(1, name);
-            ResultSet rs = pr.executeQuery();
+            Map<String, String> record = Map.of(name, response);
+            writeBatch(record);
+            addToNameFilter(name);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-            if(rs.next()){
-                System.out.println(name + " is in cache!");
-                return true;
+    }
+
+    /**
+     * Converts name and response pairs to records in the current storage format and writes them in a single transaction.
+     *
+     * <p>Responses that cannot be parsed are stored as JSON, whatever the storage format.</p>
+     *
+     * <p>Each response is parsed at most once, for both the binary record and the full-text index.</p>
+     *
+     * @param batch name and response pairs to write
+     * @return int - number of records inserted or replaced
+     * @throws IOException if the records cannot be written
+     */
+    private int writeBatch(Map<String, String> batch) throws IOException {
+        List<CacheEntry> entries = new ArrayList<>(batch.size());
+        Map<String, CharacterInfo> documents = new HashMap<>();
+        boolean parse = storageFormat == StorageFormat.BINARY || needsDocuments();
+        for(Map.Entry<String, String> pair : batch.entrySet()){
+            CharacterInfo info = parse && !isResourceKey(pair.getKey()) ? responseHandler.parseResponseBody(pair.getValue()) : null;
+            entries.add(toEntry(pair.getKey(), pair.getValue(), info));
+            if(info != null){
+                documents.put(pair.getKey(), info);
             }
-            return false;
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return false;
+        return writeEntries(entries, documents);
+    }
+
+    /**
+     * Builds the record for a response in the current storage format.
+     *
+     * @param name key of the record
+     * @param response raw JSON response
+     * @param info character parsed from the response, null if it could not be parsed or was not needed
+     * @return CacheEntry - record to write
+     */
+    private CacheEntry toEntry(String name, String response, CharacterInfo info){
+        String etag = ResponseHandler.parseEtag(response);
+        long fetchedAt = System.currentTimeMillis();
+        if(storageFormat == StorageFormat.BINARY && info != null){
+            return toBinaryEntry(name, info, etag, fetchedAt);
+        }
+        return compressEntry(name, CacheEntry.FORMAT_JSON, response.getBytes(StandardCharsets.UTF_8), response, etag, fetchedAt);
+    }
+
+    /**
+     * Builds the binary record for a character, compressed if compression is enabled.
+     *
+     * @param name key of the record
+     * @param info character to encode
+     * @param etag entity tag of the response the character was built from
+     * @param fetchedAt time the response was fetched, in milliseconds since the epoch
+     * @return CacheEntry - record to write
+     */
+    private CacheEntry toBinaryEntry(String name, CharacterInfo info, String etag, long fetchedAt){
+        return compressEntry(name, CacheEntry.FORMAT_BINARY, codec.encode(info), null, etag, fetchedAt);
+    }
+
+    /**
+     * Compresses a record's bytes with the current dictionary if compression is enabled and it makes the record smaller.
+     *
+     * @param name key of the record
+     * @param format storage format of the record
+     * @param raw uncompressed bytes of the record
+     * @param response raw JSON response for JSON records, null for binary records
+     * @param etag entity tag of the response the record was built from
+     * @param fetchedAt time the response was fetched, in milliseconds since the epoch
+     * @return CacheEntry - compressed or uncompressed record
+     */
+    private CacheEntry compressEntry(String name, int format, byte[] raw, String response, String etag, long fetchedAt){
+        int dictionaryId = currentDictionaryId;
+        if(dictionaryId != 0){
+            try{
+                byte[] dictionary = dictionary(dictionaryId);
+                if(dictionary != null){
+                    byte[] compressed = compressor.compress(raw, dictionary);
+                    if(compressed.length < raw.length){
+                        return new CacheEntry(name, format, CacheEntry.CODEC_DEFLATE_DICTIONARY, dictionaryId, null, compressed,
+                                etag, fetchedAt);
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        if(format == CacheEntry.FORMAT_JSON){
+            return new CacheEntry(name, format, CacheEntry.CODEC_NONE, 0, response, null, etag, fetchedAt);
+        }
+        return new CacheEntry(name, format, CacheEntry.CODEC_NONE, 0, null, raw, etag, fetchedAt);
+    }
+
+    /**
+     * Returns the uncompressed bytes of a record - UTF-8 JSON for JSON records, the codec encoding for binary records.
+     *
+     * @param entry stored record
+     * @return byte[] - uncompressed bytes
+     * @throws IOException if the record cannot be decompressed
+     */
+    private byte[] rawBytes(CacheEntry entry) throws IOException {
+        if(entry.getCodec() == CacheEntry.CODEC_NONE){
+            if(entry.getFormat() == CacheEntry.FORMAT_JSON){
+                return entry.getResponse() == null ? new byte[0] : entry.getResponse().getBytes(StandardCharsets.UTF_8);
+            }
+            return entry.getPayload();
+        }
+        if(entry.getCodec() != CacheEntry.CODEC_DEFLATE_DICTIONARY){
+            throw new IOException("Unknown cache codec " + entry.getCodec());
+        }
+        try{
+            byte[] dictionary = dictionary(entry.getDictionaryId());
+            if(dictionary == null){
+                throw new IOException("Missing compression dictionary " + entry.getDictionaryId());
+            }
+            return compressor.decompress(entry.getPayload(), dictionary);
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the JSON response held by a JSON record, decompressing it if needed.
+     *
+     * @param entry stored record
+     * @return String - JSON response, null for binary records or records that cannot be decompressed
+     */
+    private String responseOf(CacheEntry entry){
+        if(entry.getFormat() != CacheEntry.FORMAT_JSON){
+            return null;
+        }
+        if(entry.getCodec() == CacheEntry.CODEC_NONE){
+            return entry.getResponse();
+        }
+        try{
+            return new String(rawBytes(entry), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes records to the store, without changing the full-text index.
+     *
+     * <p>Used when the characters held by the records do not change, such as converting a record to another format.</p>
+     *
+     * @param entries records to write
+     * @return int - number of records inserted or replaced
+     * @throws IOException if the records cannot be written
+     */
+    private int writeEntries(List<CacheEntry> entries) throws IOException {
+        return writeEntries(entries, Map.of());
+    }
+
+    /**
+     * Writes records to the store as a single batch, then reindexes the characters of the records written.
+     *
+     * <p>Records identical to a stored record are skipped rather than replaced, and only have their fetch time refreshed.</p>
+     *
+     * @param entries records to write
+     * @param documents characters held by the records, keyed by name, to index for full-text search
+     * @return int - number of records inserted or replaced
+     * @throws IOException if the records cannot be written
+     */
+    private int writeEntries(List<CacheEntry> entries, Map<String, CharacterInfo> documents) throws IOException {
+        long start = System.nanoTime();
+        boolean[] written = store.write(entries);
+        long nanos = System.nanoTime() - start;
+        int count = 0;
+        Map<String, CharacterInfo> changed = new HashMap<>();
+        for(int i = 0 ; i < written.length ; i++){
+            if(written[i]){
+                count++;
+                metrics.recordPayload(sizeOf(entries.get(i)));
+                CharacterInfo info = documents.get(entries.get(i).getName());
+                if(info != null){
+                    changed.put(entries.get(i).getName(), info);
+                }
+            }
+        }
+        metrics.recordWrite(count, written.length - count, nanos);
+        if(count > 0){
+            markCatalogOutOfDate();
+        }
+        CharacterCatalog current = catalog;
+        if(needsDocuments() && !changed.isEmpty()){
+            try{
+                pool.transaction(connection -> {
+                    indexDocuments(connection, changed);
+                    if(current != null){
+                        current.index(connection, changed);
+                    }
+                    return null;
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether written records have to be parsed to keep the full-text index or the catalog up to date.
+     *
+     * @return boolean - true if either is enabled
+     */
+    private boolean needsDocuments(){
+        return searchIndexAvailable || catalog != null;
+    }
+
+    /**
+     * Replaces the full-text index rows of the given characters, on a connection already inside a transaction.
+     *
+     * @param connection writer connection
+     * @param documents characters to index, keyed by the name they are cached under
+     * @throws SQLException if the index cannot be written
+     */
+    private void indexDocuments(PooledConnection connection, Map<String, CharacterInfo> documents) throws SQLException {
+        if(!searchIndexAvailable || documents.isEmpty()){
+            return;
+        }
+        PreparedStatement delete = connection.prepare("DELETE FROM CharacterSearch WHERE rowid = ?;");
+        PreparedStatement insert = connection.prepare("INSERT INTO CharacterSearch (rowid, Name, SearchName, CharacterName, Description) VALUES (?, ?, ?, ?, ?);");
+        for(Map.Entry<String, CharacterInfo> document : documents.entrySet()){
+            long documentId = documentId(document.getKey());
+            delete.setLong(1, documentId);
+            delete.addBatch();
+            insert.setLong(1, documentId);
+            insert.setString(2, document.getKey());
+            insert.setString(3, document.getKey());
+            insert.setString(4, document.getValue().getName());
+            insert.setString(5, document.getValue().getDescription());
+            insert.addBatch();
+        }
+        delete.executeBatch();
+        insert.executeBatch();
+    }
+
+    /**
+     * Whether a record holds a raw API resource page rather than a character
+     *
+     * @param name key of the record
+     * @return boolean - true if the key starts with RESOURCE_KEY_PREFIX
+     */
+    public static boolean isResourceKey(String name){
+        return name != null && name.startsWith(RESOURCE_KEY_PREFIX);
+    }
+
+    /**
+     * Key a character searched for by name is cached under, shared by every input model so searches for
+     * the same character in any case find the same record, as the API matches names ignoring case
+     *
+     * @param name character name searched for
+     * @return String - name trimmed and in lower case
+     */
+    public static String keyOf(String name){
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Row ID of the full-text index row for a name.
+     *
+     * <p>FTS5 tables can only be looked up cheaply by row ID, and Character row IDs change whenever a record is replaced,
+     * so the row ID is a 63-bit FNV-1a hash of the name instead.</p>
+     *
+     * @param name key of the record
+     * @return long - non-negative row ID
+     */
+    private static long documentId(String name){
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0 ; i < name.length() ; i++){
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+
+    /**
+     * Rebuilds the CharacterSearch full-text index from every stored record.
+     *
+     * <p>Run when the index is first created for an existing cache. Records are read in batches ordered by name,
+     * so the whole table is never held in memory.</p>
+     *
+     * @return int - number of characters indexed, 0 if full-text search is unavailable
+     */
+    public int rebuildSearchIndex(){
+        if(store == null || !searchIndexAvailable){
+            return 0;
+        }
+        int indexed = 0;
+        String lastName = "";
+        try{
+            pool.write(connection -> {
+                connection.execute("DELETE FROM CharacterSearch");
+                return null;
+            });
+            while(true){
+                List<CacheEntry> batch = store.scan(lastName, MIGRATION_BATCH_SIZE);
+                if(batch.isEmpty()){
+                    break;
+                }
+                lastName = batch.get(batch.size() - 1).getName();
+
+                Map<String, CharacterInfo> documents = new HashMap<>();
+                for(CacheEntry row : batch){
+                    CharacterInfo info = decodeEntry(row);
+                    if(info != null){
+                        documents.put(row.getName(), info);
+                    }
+                }
+                pool.transaction(connection -> {
+                    indexDocuments(connection, documents);
+                    return null;
+                });
+                indexed += documents.size();
+            }
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+        return indexed;
+    }
+
+    /**
+     * Starts keeping a normalized CharacterCatalog of cached characters, updated on every write from then on.
+     *
+     * <p>Creates the catalog tables if the database does not have them yet. Rebuilds them from the stored records
+     * when they were just created, or when records were written or removed while the catalog was not enabled.</p>
+     *
+     * @return CharacterCatalog - the catalog, null if it could not be created
+     */
+    public synchronized CharacterCatalog enableCatalog(){
+        if(catalog != null || pool == null){
+            return catalog;
+        }
+        CharacterCatalog created = new CharacterCatalog(pool);
+        try{
+            boolean outOfDate = pool.write(created::createSchema);
+            catalog = created;
+            if(outOfDate){
+                rebuildCatalog();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return catalog;
+    }
+
+    /**
+     * Marks the catalog out of date the first time this handler changes stored records while the catalog is not enabled,
+     * so the catalog is rebuilt the next time it is enabled instead of serving missing or stale rows.
+     */
+    private void markCatalogOutOfDate(){
+        if(catalog != null || catalogMarkedOutOfDate || pool == null){
+            return;
+        }
+        try{
+            pool.write(connection -> {
+                CharacterCatalog.markOutOfDate(connection);
+                return null;
+            });
+            catalogMarkedOutOfDate = true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Getter for the normalized catalog of cached characters
+     *
+     * @return CharacterCatalog - catalog, null if enableCatalog() has not been called
+     */
+    public CharacterCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Rebuilds the catalog from every stored record, in batches ordered by name like rebuildSearchIndex().
+     *
+     * @return int - number of characters cataloged, 0 if the catalog is not enabled
+     */
+    public int rebuildCatalog(){
+        CharacterCatalog current = catalog;
+        if(store == null || current == null){
+            return 0;
+        }
+        int cataloged = 0;
+        String lastName = "";
+        try{
+            pool.transaction(connection -> {
+                current.clear(connection);
+                return null;
+            });
+            while(true){
+                List<CacheEntry> batch = store.scan(lastName, MIGRATION_BATCH_SIZE);
+                if(batch.isEmpty()){
+                    break;
+                }
+                lastName = batch.get(batch.size() - 1).getName();
+
+                Map<String, CharacterInfo> documents = new HashMap<>();
+                for(CacheEntry row : batch){
+                    CharacterInfo info = decodeEntry(row);
+                    if(info != null){
+                        documents.put(row.getName(), info);
+                    }
+                }
+                pool.transaction(connection -> {
+                    current.index(connection, documents);
+                    return null;
+                });
+                cataloged += documents.size();
+            }
+            pool.write(connection -> {
+                current.markUpToDate(connection);
+                return null;
+            });
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+        return cataloged;
+    }
+
+    /**
+     * Searches cached characters by keywords or prefixes of their search name, character name and description.
+     *
+     * <p>Every word of the query must match the start of a word in the character, so "spi" finds Spider-Man
+     * and "radioactive bite" finds characters whose description mentions both. Best matches come first.</p>
+     *
+     * <p>If full-text search is unavailable, only search names starting with the query are found.</p>
+     *
+     * @param query words or word prefixes to search for
+     * @param limit maximum number of names to return
+     * @return List&lt;String&gt; - names the matching characters are cached under, empty if none match or the query fails
+     */
+    public List<String> searchCache(String query, int limit){
+        List<String> names = new ArrayList<>();
+        if(pool == null || store == null || query == null || limit <= 0){
+            return names;
+        }
+        String match = toMatchExpression(query);
+        if(match.isEmpty()){
+            return names;
+        }
+        if(!searchIndexAvailable){
+            String prefix = query.trim();
+            try{
+                for(String name : store.names()){
+                    if(name.startsWith(prefix) && names.size() < limit){
+                        names.add(name);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            names.sort(null);
+            return names;
+        }
+        String sql = "SELECT Name FROM CharacterSearch WHERE CharacterSearch MATCH ? ORDER BY rank LIMIT ?;";
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(sql);
+                pr.setString(1, match);
+                pr.setInt(2, limit);
+                try(ResultSet rs = pr.executeQuery()){
+                    while(rs.next()){
+                        names.add(rs.getString("Name"));
+                    }
+                }
+                return names;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return names;
+    }
+
+    /**
+     * Converts a user query to an FTS5 match expression where every word is a quoted prefix, so user input is never parsed as FTS5 syntax.
+     *
+     * @param query user query
+     * @return String - match expression, empty if the query has no words
+     */
+    private static String toMatchExpression(String query){
+        StringBuilder match = new StringBuilder();
+        for(String token : SEARCH_TOKEN_SEPARATOR.split(query)){
+            if(token.isEmpty()){
+                continue;
+            }
+            if(match.length() > 0){
+                match.append(' ');
+            }
+            match.append('"').append(token).append("\"*");
+        }
+        return match.toString();
+    }
+
+    /**
+     * Writes all records queued in write-behind mode to the database now.
+     *
+     * <p>Does nothing if write-behind mode is not enabled.</p>
+     */
+    public void flush(){
+        CacheWriteQueue queue = writeQueue;
+        if(queue == null){
+            return;
+        }
+        try{
+            queue.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Number of records queued in write-behind mode that are not written to the database yet
+     *
+     * @return int - depth of the write-behind queue, 0 if write-behind mode is not enabled
+     */
+    public int getPendingWriteCount(){
+        CacheWriteQueue queue = writeQueue;
+        return queue == null ? 0 : queue.getDepth();
+    }
+
+    /**
+     * Getter for the write-behind queue, used for reading its counters
+     *
+     * @return CacheWriteQueue - queue of pending writes, null if write-behind mode is not enabled
+     */
+    public CacheWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Loads the response string cached in the database given a name key.
+     *
+     * <p>Only records stored in the JSON format hold a response string - use loadInfoFromCache() to load records of any format.</p>
+     *
+     * @param name To be used as key to search for a matching response record in the database
+     * @return String - return the cached response string if a JSON record with Name key matching provide name is found, otherwise return null
+     */
+    public String loadFromCache(String name){
+        if(store == null){
+            return null;
+        }
+        CacheWriteQueue queue = writeQueue;
+        if(queue != null){
+            String pending = queue.getPending(name);
+            if(pending != null){
+                return pending;
+            }
+        }
+        CacheEntry entry = readEntry(name);
+        return entry == null ? null : responseOf(entry);
+    }
+
+    /**
+     * Size of a record's response or payload as stored, used for byte counters
+     *
+     * @param entry stored record
+     * @return long - size in bytes, response length in characters for uncompressed JSON records
+     */
+    private static long sizeOf(CacheEntry entry){
+        if(entry.getPayload() != null){
+            return entry.getPayload().length;
+        }
+        return entry.getResponse() == null ? 0 : entry.getResponse().length();
+    }
+
+    /**
+     * Getter for the counters and histograms of lookups and writes made through this handler
+     *
+     * @return CacheMetrics - live metrics, read a consistent copy with snapshot()
+     */
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reads the record stored under a name key with a single lookup.
+     *
+     * @param name key of the record
+     * @return CacheEntry - stored record, null if not found or the store cannot be read
+     */
+    private CacheEntry readEntry(String name){
+        try{
+            return store.read(name);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Loads the CharacterInfo cached under the given name key.
+     *
+     * @param name To be used as key to search for a matching record
+     * @return CharacterInfo - character built from the cached record, null if no record is found or it cannot be read
+     * @see #findInCache(String)
+     */
+    public CharacterInfo loadInfoFromCache(String name){
+        return findInCache(name).orElse(null);
+    }
+
+    /**
+     * Looks up the CharacterInfo cached under the given name key in a single round trip.
+     *
+     * <p>Replaces checking isInfoInCache() before loading. Names the name filter rules out return at once without querying SQLite.
+     * Otherwise checks the in-memory cache, then pending writes, then reads the record from the database with a single query,
+     * decodes a binary record or parses a JSON one, and offers the result to the in-memory cache.</p>
+     *
+     * <p>Lookups never write - JSON records are converted to the binary format by migrateToBinary().</p>
+     *
+     * @param name To be used as key to search for a matching record
+     * @return Optional&lt;CharacterInfo&gt; - character built from the cached record, empty if no record is found or it cannot be read
+     */
+    public Optional<CharacterInfo> findInCache(String name){
+        if(name == null || store == null || isResourceKey(name)){
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        CharacterInfo info = memoryCache.get(name);
+        if(info != null){
+            recordAccess(name);
+            metrics.recordLookup(CacheMetrics.Lookup.MEMORY_HIT, System.nanoTime() - start);
+            return Optional.of(info);
+        }
+        CacheWriteQueue queue = writeQueue;
+        String pending = queue == null ? null : queue.getPending(name);
+        CacheMetrics.Lookup outcome = CacheMetrics.Lookup.PENDING_HIT;
+        if(pending != null){
+            info = responseHandler.parseResponseBody(pending);
+        } else {
+            if(isDefinitelyAbsent(name)){
+                metrics.recordLookup(CacheMetrics.Lookup.FILTERED_MISS, System.nanoTime() - start);
+                return Optional.empty();
+            }
+            CacheEntry entry = readEntry(name);
+            if(entry == null){
+                metrics.recordLookup(CacheMetrics.Lookup.MISS, System.nanoTime() - start);
+                return Optional.empty();
+            }
+            metrics.recordBytesRead(sizeOf(entry));
+            outcome = CacheMetrics.Lookup.STORE_HIT;
+            info = decodeEntry(entry);
+        }
+        if(info != null){
+            memoryCache.put(name, info);
+            recordAccess(name);
+        }
+        metrics.recordLookup(info != null ? outcome : CacheMetrics.Lookup.MISS, System.nanoTime() - start);
+        return Optional.ofNullable(info);
+    }
+
+    /**
+     * Builds the character held by a record, decoding binary records and parsing JSON ones.
+     *
+     * @param entry stored record
+     * @return CharacterInfo - character held by the record, null if it cannot be read
+     */
+    private CharacterInfo decodeEntry(CacheEntry entry){
+        if(isResourceKey(entry.getName())){
+            return null;
+        }
+        if(entry.getFormat() == CacheEntry.FORMAT_BINARY){
+            try{
+                return codec.decode(rawBytes(entry));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        String response = responseOf(entry);
+        if(response == null){
+            return null;
+        }
+        return responseHandler.parseResponseBody(response);
+    }
+
+    /**
+     * Converts every JSON record in the store to the binary format.
+     *
+     * <p>Records are converted in batches, each written in its own transaction, so lookups keep running during a migration.
+     * Records whose response cannot be parsed are left as JSON.</p>
+     *
+     * @return int - number of records converted
+     */
+    public int migrateToBinary(){
+        if(store == null){
+            return 0;
+        }
+        int migrated = 0;
+        String lastName = "";
+        try{
+            while(true){
+                List<CacheEntry> batch = store.scan(lastName, MIGRATION_BATCH_SIZE);
+                if(batch.isEmpty()){
+                    break;
+                }
+                lastName = batch.get(batch.size() - 1).getName();
+
+                List<CacheEntry> converted = new ArrayList<>();
+                for(CacheEntry row : batch){
+                    if(row.getFormat() != CacheEntry.FORMAT_JSON || isResourceKey(row.getName())){
+                        continue;
+                    }
+                    String response = responseOf(row);
+                    CharacterInfo info = response == null ? null : responseHandler.parseResponseBody(response);
+                    if(info != null){
+                        converted.add(toBinaryEntry(row.getName(), info, row.getEtag(), row.getFetchedAt()));
+                    }
+                }
+                if(!converted.isEmpty()){
+                    migrated += writeEntries(converted);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return migrated;
+    }
+
+    /**
+     * Moves every character record cached under a name that is not a key from keyOf() to its key, along with its
+     * full-text index and catalog rows, and forgets misses remembered under such names.
+     *
+     * <p>Caches written before keys were normalized hold records under the names as they were typed,
+     * which no search reaches any more but still count towards the size limit.
+     * When several names share a key, the most recently fetched record is kept. Meant to be run once, while nothing else uses the cache.</p>
+     *
+     * @return int - number of records moved or dropped in favour of a newer record under the same key
+     */
+    public int normalizeKeys(){
+        if(store == null){
+            return 0;
+        }
+        flush();
+        int normalized = 0;
+        String lastName = "";
+        try{
+            while(true){
+                List<CacheEntry> batch = store.scan(lastName, MIGRATION_BATCH_SIZE);
+                if(batch.isEmpty()){
+                    break;
+                }
+                lastName = batch.get(batch.size() - 1).getName();
+
+                Map<String, CacheEntry> moved = new HashMap<>();
+                List<String> oldNames = new ArrayList<>();
+                for(CacheEntry row : batch){
+                    String key = keyOf(row.getName());
+                    if(isResourceKey(row.getName()) || key.isEmpty() || key.equals(row.getName())){
+                        continue;
+                    }
+                    oldNames.add(row.getName());
+                    CacheEntry newer = moved.get(key);
+                    if(newer == null){
+                        newer = store.readHeader(key);
+                    }
+                    if(newer == null || newer.getFetchedAt() < row.getFetchedAt()){
+                        moved.put(key, new CacheEntry(key, row.getFormat(), row.getCodec(), row.getDictionaryId(),
+                                row.getResponse(), row.getPayload(), row.getEtag(), row.getFetchedAt()));
+                    }
+                }
+                if(oldNames.isEmpty()){
+                    continue;
+                }
+                Map<String, CharacterInfo> documents = new HashMap<>();
+                if(needsDocuments()){
+                    for(CacheEntry entry : moved.values()){
+                        CharacterInfo info = decodeEntry(entry);
+                        if(info != null){
+                            documents.put(entry.getName(), info);
+                        }
+                    }
+                }
+                writeEntries(new ArrayList<>(moved.values()), documents);
+                store.delete(oldNames);
+                removeDocuments(oldNames);
+                for(String name : oldNames){
+                    memoryCache.invalidate(name);
+                }
+                for(String key : moved.keySet()){
+                    memoryCache.invalidate(key);
+                    addToNameFilter(key);
+                }
+                normalized += oldNames.size();
+            }
+            pool.transaction(connection -> {
+                List<String> misses = new ArrayList<>();
+                try(ResultSet rs = connection.prepare("SELECT Name FROM Miss;").executeQuery()){
+                    while(rs.next()){
+                        String name = rs.getString("Name");
+                        if(!keyOf(name).equals(name)){
+                            misses.add(name);
+                        }
+                    }
+                }
+                PreparedStatement delete = connection.prepare("DELETE FROM Miss WHERE Name = ?;");
+                for(String name : misses){
+                    delete.setString(1, name);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+                return null;
+            });
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+        }
+        return normalized;
+    }
+
+    /**
+     * Writes every record in the cache to a snapshot file, for importing into the cache of another machine.
+     *
+     * <p>Pending writes are flushed first. Records are read in batches ordered by name and streamed to the file uncompressed,
+     * inside the snapshot's own DEFLATE stream, so the snapshot does not depend on this cache's compression dictionaries.
+     * The snapshot is written to a temporary file and moved into place when complete, so an existing snapshot at the path
+     * is never left half written.</p>
+     *
+     * <p>Records that cannot be decompressed are left out.</p>
+     *
+     * @param path path to the snapshot file, replaced if it exists
+     * @return long - number of records exported
+     * @throws IOException if the store cannot be read or the snapshot cannot be written
+     * @see CacheSnapshot
+     */
+    public long exportSnapshot(Path path) throws IOException {
+        if(store == null){
+            throw new IOException("Cache is not open");
+        }
+        flush();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long exported;
+        try(CacheSnapshot.Writer writer = new CacheSnapshot.Writer(temporary)){
+            String lastName = "";
+            while(true){
+                List<CacheEntry> batch = store.scan(lastName, SNAPSHOT_BATCH_SIZE);
+                if(batch.isEmpty()){
+                    break;
+                }
+                lastName = batch.get(batch.size() - 1).getName();
+                for(CacheEntry row : batch){
+                    byte[] raw;
+                    try{
+                        raw = rawBytes(row);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        continue;
+                    }
+                    boolean json = row.getFormat() == CacheEntry.FORMAT_JSON;
+                    writer.write(new CacheEntry(row.getName(), row.getFormat(), CacheEntry.CODEC_NONE, 0,
+                            json ? new String(raw, StandardCharsets.UTF_8) : null, json ? null : raw,
+                            row.getEtag(), row.getFetchedAt()));
+                }
+            }
+            exported = writer.getCount();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return exported;
+    }
+
+    /**
+     * Merges the records in a snapshot file into the cache.
+     *
+     * <p>The whole snapshot is read once to check its checksum before anything is written, so a damaged or truncated snapshot
+     * imports nothing. Records are then written in batches of SNAPSHOT_BATCH_SIZE, each as a single store write,
+     * in this cache's storage format and compressed with this cache's dictionary.</p>
+     *
+     * <p>A record is only imported if no record is stored under its name, or the stored record was fetched earlier -
+     * whichever copy was fetched last wins. Imported names are added to the name filter and the full-text index.</p>
+     *
+     * @param path path to the snapshot file
+     * @return long - number of records imported
+     * @throws IOException if the snapshot is damaged or cannot be read, or the records cannot be written
+     * @see CacheSnapshot
+     */
+    public long importSnapshot(Path path) throws IOException {
+        if(store == null){
+            throw new IOException("Cache is not open");
+        }
+        long total = CacheSnapshot.verify(path);
+        flush();
+        long imported = 0;
+        try(CacheSnapshot.Reader reader = new CacheSnapshot.Reader(path)){
+            List<CacheEntry> entries = new ArrayList<>(SNAPSHOT_BATCH_SIZE);
+            Map<String, CharacterInfo> documents = new HashMap<>();
+            CacheEntry record;
+            while((record = reader.next()) != null){
+                CacheEntry current = store.readHeader(record.getName());
+                if(current != null && current.getFetchedAt() >= record.getFetchedAt()){
+                    continue;
+                }
+                entries.add(fromSnapshot(record, documents));
+                if(entries.size() >= SNAPSHOT_BATCH_SIZE){
+                    imported += importBatch(entries, documents);
+                }
+            }
+            imported += importBatch(entries, documents);
+        }
+        return imported;
+    }
+
+    /**
+     * Converts an uncompressed snapshot record to a record in this cache's storage format and compression.
+     *
+     * @param record record read from a snapshot
+     * @param documents characters to index for full-text search, the record's character is added if it is parsed
+     * @return CacheEntry - record to write
+     * @throws IOException if the record's bytes cannot be read
+     */
+    private CacheEntry fromSnapshot(CacheEntry record, Map<String, CharacterInfo> documents) throws IOException {
+        boolean toBinary = record.getFormat() == CacheEntry.FORMAT_JSON && storageFormat == StorageFormat.BINARY;
+        CharacterInfo info = toBinary || needsDocuments() ? decodeEntry(record) : null;
+        if(info != null){
+            documents.put(record.getName(), info);
+        }
+        if(toBinary && info != null){
+            return toBinaryEntry(record.getName(), info, record.getEtag(), record.getFetchedAt());
+        }
+        return compressEntry(record.getName(), record.getFormat(), rawBytes(record), record.getResponse(),
+                record.getEtag(), record.getFetchedAt());
+    }
+
+    /**
+     * Writes a batch of imported records, then clears the batch.
+     *
+     * @param entries records to write, cleared afterwards
+     * @param documents characters held by the records, cleared afterwards
+     * @return int - number of records inserted or replaced
+     * @throws IOException if the records cannot be written
+     */
+    private int importBatch(List<CacheEntry> entries, Map<String, CharacterInfo> documents) throws IOException {
+        if(entries.isEmpty()){
+            return 0;
+        }
+        int written = writeEntries(entries, documents);
+        for(CacheEntry entry : entries){
+            memoryCache.invalidate(entry.getName());
+            addToNameFilter(entry.getName());
+        }
+        entries.clear();
+        documents.clear();
+        return written;
+    }
+
+    /**
+     * Offers an already parsed character to the in-memory cache, so the next load does not parse its response again.
+     *
+     * <p>Called after saveToCache() with the character parsed from the saved response.</p>
+     *
+     * @param name Key the response was saved under
+     * @param info Character parsed from the saved response
+     */
+    public void rememberInfo(String name, CharacterInfo info){
+        memoryCache.put(name, info);
+    }
+
+    /**
+     * Sets how long after fetching a record expires and should be revalidated with the API.
+     *
+     * @param timeToLive milliseconds a record stays fresh, NO_EXPIRY if records never expire
+     * @throws IllegalArgumentException if timeToLive is negative
+     */
+    public void setTimeToLive(long timeToLive) {
+        if(timeToLive < 0){
+            throw new IllegalArgumentException();
+        }
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Getter for how long after fetching a record expires
+     *
+     * @return long - milliseconds a record stays fresh, NO_EXPIRY if records never expire
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the entity tag of the API response cached under the given name, used for conditional requests.
+     *
+     * @param name key of the record
+     * @return String - entity tag, null if no record is found or it has no entity tag
+     */
+    public String getEtag(String name){
+        if(store == null || name == null){
+            return null;
+        }
+        try{
+            CacheEntry header = store.readHeader(name);
+            return header == null ? null : header.getEtag();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Whether the record cached under the given name was fetched longer ago than the time to live.
+     *
+     * <p>Records waiting in the write-behind queue were just fetched and are never stale.</p>
+     *
+     * @param name key of the record
+     * @return boolean - true if a stored record has expired, false if it is fresh, records never expire, or no record is found
+     */
+    public boolean isStale(String name){
+        long ttl = timeToLive;
+        if(store == null || name == null || ttl == NO_EXPIRY){
+            return false;
+        }
+        CacheWriteQueue queue = writeQueue;
+        if(queue != null && queue.getPending(name) != null){
+            return false;
+        }
+        try{
+            CacheEntry header = store.readHeader(name);
+            return header != null && System.currentTimeMillis() - header.getFetchedAt() > ttl;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Marks the record cached under the given name as fetched now, after the API confirmed it is still current.
+     *
+     * <p>Only the fetch time is written - the record itself is neither downloaded nor parsed again.</p>
+     *
+     * @param name key of the record
+     */
+    public void touch(String name){
+        if(store == null || name == null){
+            return;
+        }
+        try{
+            store.touch(name, System.currentTimeMillis());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sets how long a name the API found no character for is remembered.
+     *
+     * @param missTimeToLive milliseconds a miss is remembered, 0 to stop answering searches from remembered misses
+     * @throws IllegalArgumentException if missTimeToLive is negative
+     */
+    public void setMissTimeToLive(long missTimeToLive) {
+        if(missTimeToLive < 0){
+            throw new IllegalArgumentException();
+        }
+        this.missTimeToLive = missTimeToLive;
+    }
+
+    /**
+     * Getter for how long a name the API found no character for is remembered
+     *
+     * @return long - milliseconds a miss is remembered
+     */
+    public long getMissTimeToLive() {
+        return missTimeToLive;
+    }
+
+    /**
+     * Remembers that the API found no character for the given name.
+     *
+     * <p>Expired misses are removed in the same transaction, keeping the Miss table small.</p>
+     *
+     * @param name search name that returned no results
+     */
+    public void saveMissToCache(String name){
+        if(pool == null || name == null){
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long ttl = missTimeToLive;
+        try{
+            pool.transaction(connection -> {
+                PreparedStatement prune = connection.prepare("DELETE FROM Miss WHERE MissedAt < ?;");
+                prune.setLong(1, now - ttl);
+                prune.executeUpdate();
+                PreparedStatement pr = connection.prepare("INSERT INTO Miss (Name, MissedAt) VALUES (?, ?);");
+                pr.setString(1, name);
+                pr.setLong(2, now);
+                return pr.executeUpdate();
+            });
+            metrics.recordNegativeWrite();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Whether the API found no character for the given name within the miss time to live.
+     *
+     * @param name search name
+     * @return boolean - true if a remembered miss has not expired, otherwise false
+     */
+    public boolean isKnownMiss(String name){
+        long ttl = missTimeToLive;
+        if(pool == null || name == null || ttl == 0){
+            return false;
+        }
+        String query = "SELECT MissedAt from Miss where Name = ?;";
+        try{
+            long missedAt = pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                pr.setString(1, name);
+                try(ResultSet rs = pr.executeQuery()){
+                    return rs.next() ? rs.getLong("MissedAt") : -1L;
+                }
+            });
+            boolean hit = missedAt >= 0 && System.currentTimeMillis() - missedAt <= ttl;
+            metrics.recordNegativeLookup(hit);
+            return hit;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Saves the calls of the daily budget the given rate limiter has used, so the next run can restore them.
+     *
+     * @param api name of the API the limiter is for
+     * @param limiter rate limiter whose usage is saved
+     */
+    public void saveApiUsage(String api, RateLimiter limiter){
+        if(pool == null || api == null){
+            return;
+        }
+        try{
+            pool.write(connection -> {
+                PreparedStatement pr = connection.prepare("INSERT INTO ApiUsage (Api, Used, SavedAt) VALUES (?, ?, ?);");
+                pr.setString(1, api);
+                pr.setLong(2, limiter.getUsedDaily());
+                pr.setLong(3, System.currentTimeMillis());
+                return pr.executeUpdate();
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Takes the calls saved by saveApiUsage() out of the daily budget of the given rate limiter.
+     *
+     * @param api name of the API the limiter is for
+     * @param limiter rate limiter whose usage is restored
+     * @return boolean - true if a saved usage was found, otherwise false
+     */
+    public boolean restoreApiUsage(String api, RateLimiter limiter){
+        if(pool == null || api == null){
+            return false;
+        }
+        try{
+            long[] usage = pool.read(connection -> {
+                PreparedStatement pr = connection.prepare("SELECT Used, SavedAt FROM ApiUsage WHERE Api = ?;");
+                pr.setString(1, api);
+                try(ResultSet rs = pr.executeQuery()){
+                    return rs.next() ? new long[]{rs.getLong("Used"), rs.getLong("SavedAt")} : null;
+                }
+            });
+            if(usage != null){
+                limiter.restoreUsage(usage[0], usage[1]);
+                return true;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Getter for the number of misses saved to the cache by this handler
+     *
+     * @return long - number of misses saved
+     */
+    public long getMissCount() {
+        return metrics.getNegativeWriteCount();
+    }
+
+    /**
+     * Getter for the number of isKnownMiss() lookups
+     *
+     * @return long - number of miss lookups
+     */
+    public long getMissLookupCount() {
+        return metrics.getNegativeLookupCount();
+    }
+
+    /**
+     * Getter for the number of isKnownMiss() lookups answered by a remembered miss
+     *
+     * @return long - number of searches saved from a network round trip
+     */
+    public long getMissHitCount() {
+        return metrics.getNegativeHitCount();
+    }
+
+    /**
+     * Fraction of isKnownMiss() lookups answered by a remembered miss
+     *
+     * @return double - miss cache hit rate between 0 and 1, 0 if there were no lookups
+     */
+    public double getMissHitRate(){
+        long lookups = metrics.getNegativeLookupCount();
+        return lookups == 0 ? 0 : (double) metrics.getNegativeHitCount() / lookups;
+    }
+
+    /**
+     * Search if there exists any matching response record in the cache database
+     *
+     * @param name To be used as key to search for a matching response record in the database
+     * @return boolean - return true if a matching response is found, otherwise return false
+     */
+    public boolean isInfoInCache(String name){
+        if(store == null){
+            return false;
+        }
+        CacheWriteQueue queue = writeQueue;
+        try{
+            boolean pending = queue != null && queue.getPending(name) != null;
+            if(!pending && isDefinitelyAbsent(name)){
+                return false;
+            }
+            return pending || store.contains(name);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Limits the size of the store, evicting the least recently read records in the background to stay under the limit.
+     *
+     * <p>Reading a record only notes its access time in memory. Every maintenance interval the noted times are written
+     * to the store in one batch, the least recently read records over either limit are removed,
+     * and the space they held is reclaimed with CacheStore.compact(), all on a background thread.</p>
+     *
+     * <p>The byte limit is checked against CacheStore.sizeInBytes(), so the number of records to evict is estimated
+     * from the average record size. Does nothing if a size limit is already enabled.</p>
+     *
+     * @param maxRecords maximum number of records, NO_LIMIT for no limit
+     * @param maxBytes maximum size of the store in bytes, NO_LIMIT for no limit
+     * @param maintenanceIntervalMillis time between maintenance runs
+     */
+    public synchronized void enableSizeLimit(long maxRecords, long maxBytes, long maintenanceIntervalMillis){
+        if(store == null || maintenance != null){
+            return;
+        }
+        if(maxRecords < 0 || maxBytes < 0 || maintenanceIntervalMillis <= 0){
+            throw new IllegalArgumentException();
+        }
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::runMaintenance, maintenanceIntervalMillis, maintenanceIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Getter for the maximum number of records kept in the store
+     *
+     * @return long - record limit, NO_LIMIT if there is none
+     */
+    public long getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Getter for the maximum size of the store in bytes
+     *
+     * @return long - byte limit, NO_LIMIT if there is none
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Getter for the number of records evicted to stay under the size limit
+     *
+     * @return long - eviction count
+     */
+    public long getEvictionCount() {
+        return metrics.getEvictionCount();
+    }
+
+    /**
+     * Notes that a record was read, if a size limit is enabled
+     *
+     * @param name key of the record
+     */
+    private void recordAccess(String name){
+        if(maintenance != null){
+            pendingAccesses.put(name, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Writes noted access times to the store, evicts the least recently read records over the size limit,
+     * and reclaims the space they held.
+     *
+     * <p>Runs on the maintenance thread every maintenance interval once a size limit is enabled, and can be run directly.</p>
+     *
+     * @return int - number of records evicted
+     */
+    public synchronized int runMaintenance(){
+        if(store == null || closed){
+            return 0;
+        }
+        int evicted = 0;
+        try{
+            flushAccesses();
+            //pending writes would otherwise be written back after their record is evicted
+            flush();
+            evicted = evict();
+            if(evicted > 0){
+                store.compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        return evicted;
+    }
+
+    /**
+     * Converts a SQLite store created before incremental vacuum was turned on, so maintenance can reclaim the space
+     * of evicted records.
+     *
+     * <p>Pending writes are flushed first. Rewrites the whole database, so it is meant to be run once, while nothing else
+     * uses the cache. Other stores reclaim space without a conversion.</p>
+     *
+     * @return boolean - true if the store was converted, false if there was nothing to convert
+     * @throws IOException if the store cannot be converted
+     */
+    public synchronized boolean enableIncrementalVacuum() throws IOException {
+        if(!(store instanceof SqliteCacheStore)){
+            return false;
+        }
+        flush();
+        return ((SqliteCacheStore) store).enableIncrementalVacuum();
+    }
+
+    /**
+     * Writes the access times noted since the last call to the store in one batch.
+     *
+     * @throws IOException if the access times cannot be written
+     */
+    private void flushAccesses() throws IOException {
+        if(pendingAccesses.isEmpty()){
+            return;
+        }
+        Map<String, Long> accesses = new HashMap<>();
+        for(String name : new ArrayList<>(pendingAccesses.keySet())){
+            Long accessedAt = pendingAccesses.remove(name);
+            if(accessedAt != null){
+                accesses.put(name, accessedAt);
+            }
+        }
+        store.recordAccess(accesses);
+    }
+
+    /**
+     * Removes the least recently read records until the store is under both limits.
+     *
+     * @return int - number of records evicted
+     * @throws IOException if the store cannot be read or written
+     */
+    private int evict() throws IOException {
+        long count = store.count();
+        long target = maxRecords == NO_LIMIT ? count : Math.min(count, maxRecords);
+        if(maxBytes != NO_LIMIT){
+            long bytes = store.sizeInBytes();
+            if(bytes > maxBytes){
+                target = Math.min(target, (long) (count * ((double) maxBytes / bytes)));
+            }
+        }
+        long excess = count - target;
+        int evicted = 0;
+        while(excess > 0){
+            List<String> names = store.leastRecentlyAccessed((int) Math.min(excess, EVICTION_BATCH_SIZE));
+            int deleted = store.delete(names);
+            if(deleted == 0){
+                break;
+            }
+            removeDocuments(names);
+            for(String name : names){
+                memoryCache.invalidate(name);
+            }
+            evicted += deleted;
+            excess -= deleted;
+        }
+        if(evicted > 0){
+            metrics.recordEvictions(evicted);
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes the full-text index and catalog rows of the given names in a single transaction.
+     *
+     * @param names keys of removed records
+     */
+    private void removeDocuments(List<String> names){
+        markCatalogOutOfDate();
+        CharacterCatalog current = catalog;
+        if(!needsDocuments() || names.isEmpty()){
+            return;
+        }
+        try{
+            pool.transaction(connection -> {
+                if(searchIndexAvailable){
+                    PreparedStatement delete = connection.prepare("DELETE FROM CharacterSearch WHERE rowid = ?;");
+                    for(String name : names){
+                        delete.setLong(1, documentId(name));
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+                if(current != null){
+                    current.remove(connection, names);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes writes still pending in write-behind mode, then closes the store and all connections to the cache database.
+     *
+     * <p>Waits for a maintenance run and running queries to finish. Later calls to this handler behave as if the cache is empty.
+     * Calling close() again has no effect.</p>
+     */
+    public void close(){
+        ScheduledExecutorService scheduled;
+        synchronized (this){
+            if(closed){
+                return;
+            }
+            closed = true;
+            scheduled = maintenance;
+        }
+        if(scheduled != null){
+            //let a maintenance run in progress finish before the store and pool it uses are closed
+            scheduled.shutdown();
+            try{
+                scheduled.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this){
+                try{
+                    flushAccesses();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        CacheWriteQueue queue = writeQueue;
+        if(queue != null){
+            queue.close();
+        }
+        if(store != null){
+            store.close();
+        }
+        if(pool != null){
+            pool.close();
+        }
+        metrics.unregister();
     }
 
 }
@@ -0,0 +1,491 @@
+package marvel.model.input;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms describing how well the cache is working, kept by CacheHandler.
+ *
+ * <p>Counts lookups by outcome - answered from memory, from pending writes or from the store, or missed,
+ * and whether the name filter answered a miss without reading the store. Counts known-miss lookups, records written and skipped,
+ * evictions, compression dictionaries trained, and bytes read and written, and keeps histograms of lookup latency, write latency and record size.</p>
+ *
+ * <p>Counters are LongAdders, so recording costs an uncontended increment even with many threads looking up at once.
+ * Read the numbers with snapshot(), or through JMX once register() has been called.</p>
+ *
+ * @see CacheHandler#getMetrics()
+ * @see CacheMetricsMBean
+ * @see Histogram
+ */
+public class CacheMetrics extends RegisteredMBean implements CacheMetricsMBean {
+    /**
+     * JMX domain and type the metrics are registered under
+     */
+    public static final String OBJECT_NAME_PREFIX = "marvel.cache:type=CacheMetrics,name=";
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder pendingHits = new LongAdder();
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder filteredMisses = new LongAdder();
+    private final LongAdder negativeLookups = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder negativeWrites = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder skippedWrites = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder trainedDictionaries = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final Histogram readNanos = new Histogram();
+    private final Histogram writeNanos = new Histogram();
+    private final Histogram payloadBytes = new Histogram();
+
+    /**
+     * Constructor for a CacheMetrics with all counters at zero
+     */
+    public CacheMetrics(){
+        super(OBJECT_NAME_PREFIX);
+    }
+
+    /**
+     * Outcome of a cache lookup
+     */
+    public enum Lookup {
+        /**
+         * Answered from the in-memory cache
+         */
+        MEMORY_HIT,
+        /**
+         * Answered from a write still queued in write-behind mode
+         */
+        PENDING_HIT,
+        /**
+         * Answered by reading the store
+         */
+        STORE_HIT,
+        /**
+         * Nothing found, the name filter ruled the name out without reading the store
+         */
+        FILTERED_MISS,
+        /**
+         * Nothing found in the store
+         */
+        MISS
+    }
+
+    /**
+     * Records a lookup and how long it took
+     *
+     * @param outcome where the lookup was answered
+     * @param nanos time taken, in nanoseconds
+     */
+    public void recordLookup(Lookup outcome, long nanos){
+        switch (outcome){
+            case MEMORY_HIT:
+                memoryHits.increment();
+                break;
+            case PENDING_HIT:
+                pendingHits.increment();
+                break;
+            case STORE_HIT:
+                storeHits.increment();
+                break;
+            case FILTERED_MISS:
+                filteredMisses.increment();
+                misses.increment();
+                break;
+            default:
+                misses.increment();
+        }
+        readNanos.record(nanos);
+    }
+
+    /**
+     * Records the size of a record read from the store
+     *
+     * @param bytes size of the record's response or payload
+     */
+    public void recordBytesRead(long bytes){
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Records a known-miss lookup
+     *
+     * @param hit true if a remembered miss answered it
+     */
+    public void recordNegativeLookup(boolean hit){
+        negativeLookups.increment();
+        if(hit){
+            negativeHits.increment();
+        }
+    }
+
+    /**
+     * Records a miss saved to the cache
+     */
+    public void recordNegativeWrite(){
+        negativeWrites.increment();
+    }
+
+    /**
+     * Records a store write of a batch of records
+     *
+     * @param written number of records written
+     * @param skipped number of records skipped as identical to the stored record
+     * @param nanos time taken, in nanoseconds
+     */
+    public void recordWrite(int written, int skipped, long nanos){
+        writes.add(written);
+        skippedWrites.add(skipped);
+        writeNanos.record(nanos);
+    }
+
+    /**
+     * Records the size of a record written to the store
+     *
+     * @param bytes size of the record's response or payload
+     */
+    public void recordPayload(long bytes){
+        bytesWritten.add(bytes);
+        payloadBytes.record(bytes);
+    }
+
+    /**
+     * Records records evicted to stay under the size limit
+     *
+     * @param count number of records evicted
+     */
+    public void recordEvictions(long count){
+        evictions.add(count);
+    }
+
+    /**
+     * Records a compression dictionary trained from sample records
+     */
+    public void recordDictionaryTrained(){
+        trainedDictionaries.increment();
+    }
+
+    /**
+     * Copies every counter into an immutable snapshot
+     *
+     * @return Snapshot - current values
+     */
+    public Snapshot snapshot(){
+        return new Snapshot(this);
+    }
+
+    @Override
+    public long getLookupCount() {
+        return getHitCount() + misses.sum();
+    }
+
+    @Override
+    public long getHitCount() {
+        return memoryHits.sum() + pendingHits.sum() + storeHits.sum();
+    }
+
+    @Override
+    public long getMemoryHitCount() {
+        return memoryHits.sum();
+    }
+
+    /**
+     * Getter for the number of lookups answered from writes still queued in write-behind mode
+     *
+     * @return long - pending write hits
+     */
+    public long getPendingHitCount() {
+        return pendingHits.sum();
+    }
+
+    /**
+     * Getter for the number of lookups answered by reading the store
+     *
+     * @return long - store hits
+     */
+    public long getStoreHitCount() {
+        return storeHits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getFilteredMissCount() {
+        return filteredMisses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = getHitCount();
+        long lookups = hits + misses.sum();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getNegativeLookupCount() {
+        return negativeLookups.sum();
+    }
+
+    @Override
+    public long getNegativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    @Override
+    public long getNegativeWriteCount() {
+        return negativeWrites.sum();
+    }
+
+    @Override
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    @Override
+    public long getSkippedWriteCount() {
+        return skippedWrites.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getTrainedDictionaryCount() {
+        return trainedDictionaries.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public double getMeanPayloadBytes() {
+        return payloadBytes.getMean();
+    }
+
+    @Override
+    public long getP99PayloadBytes() {
+        return payloadBytes.getPercentile(0.99);
+    }
+
+    @Override
+    public double getMeanReadMicros() {
+        return readNanos.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getP50ReadMicros() {
+        return readNanos.getPercentile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99ReadMicros() {
+        return readNanos.getPercentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getMaxReadMicros() {
+        return readNanos.getMax() / 1000.0;
+    }
+
+    @Override
+    public double getMeanWriteMicros() {
+        return writeNanos.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getP50WriteMicros() {
+        return writeNanos.getPercentile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99WriteMicros() {
+        return writeNanos.getPercentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getMaxWriteMicros() {
+        return writeNanos.getMax() / 1000.0;
+    }
+
+    /**
+     * Getter for the histogram of lookup latencies, in nanoseconds
+     *
+     * @return Histogram - lookup latencies
+     */
+    public Histogram getReadLatency() {
+        return readNanos;
+    }
+
+    /**
+     * Getter for the histogram of store write latencies, in nanoseconds
+     *
+     * @return Histogram - write latencies
+     */
+    public Histogram getWriteLatency() {
+        return writeNanos;
+    }
+
+    /**
+     * Getter for the histogram of sizes of records written, in bytes
+     *
+     * @return Histogram - record sizes
+     */
+    public Histogram getPayloadSize() {
+        return payloadBytes;
+    }
+
+    @Override
+    public void reset() {
+        for(LongAdder counter : new LongAdder[]{memoryHits, pendingHits, storeHits, misses, filteredMisses, negativeLookups,
+                negativeHits, negativeWrites, writes, skippedWrites, evictions, trainedDictionaries, bytesRead, bytesWritten}){
+            counter.reset();
+        }
+        readNanos.reset();
+        writeNanos.reset();
+        payloadBytes.reset();
+    }
+
+    /**
+     * Values of every counter at one point in time
+     */
+    public static class Snapshot {
+        private final long lookups;
+        private final long hits;
+        private final long memoryHits;
+        private final long misses;
+        private final long filteredMisses;
+        private final long negativeLookups;
+        private final long negativeHits;
+        private final long writes;
+        private final long skippedWrites;
+        private final long evictions;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final double meanPayloadBytes;
+        private final double p50ReadMicros;
+        private final double p99ReadMicros;
+        private final double p50WriteMicros;
+        private final double p99WriteMicros;
+
+        private Snapshot(CacheMetrics metrics){
+            this.memoryHits = metrics.getMemoryHitCount();
+            this.hits = metrics.getHitCount();
+            this.misses = metrics.getMissCount();
+            this.lookups = hits + misses;
+            this.filteredMisses = metrics.getFilteredMissCount();
+            this.negativeLookups = metrics.getNegativeLookupCount();
+            this.negativeHits = metrics.getNegativeHitCount();
+            this.writes = metrics.getWriteCount();
+            this.skippedWrites = metrics.getSkippedWriteCount();
+            this.evictions = metrics.getEvictionCount();
+            this.bytesRead = metrics.getBytesRead();
+            this.bytesWritten = metrics.getBytesWritten();
+            this.meanPayloadBytes = metrics.getMeanPayloadBytes();
+            this.p50ReadMicros = metrics.getP50ReadMicros();
+            this.p99ReadMicros = metrics.getP99ReadMicros();
+            this.p50WriteMicros = metrics.getP50WriteMicros();
+            this.p99WriteMicros = metrics.getP99WriteMicros();
+        }
+
+        public long getLookups() {
+            return lookups;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMemoryHits() {
+            return memoryHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getFilteredMisses() {
+            return filteredMisses;
+        }
+
+        /**
+         * Fraction of lookups that were hits
+         *
+         * @return double - hit rate between 0 and 1, 0 if there were no lookups
+         */
+        public double getHitRate() {
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        public long getNegativeLookups() {
+            return negativeLookups;
+        }
+
+        public long getNegativeHits() {
+            return negativeHits;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getSkippedWrites() {
+            return skippedWrites;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public double getMeanPayloadBytes() {
+            return meanPayloadBytes;
+        }
+
+        public double getP50ReadMicros() {
+            return p50ReadMicros;
+        }
+
+        public double getP99ReadMicros() {
+            return p99ReadMicros;
+        }
+
+        public double getP50WriteMicros() {
+            return p50WriteMicros;
+        }
+
+        public double getP99WriteMicros() {
+            return p99WriteMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("lookups=%d hitRate=%.3f (memory=%d) misses=%d (filtered=%d) negative=%d/%d "
+                            + "writes=%d skipped=%d evictions=%d read=%dB written=%dB meanPayload=%.0fB "
+                            + "read p50=%.1fus p99=%.1fus write p50=%.1fus p99=%.1fus",
+                    lookups, getHitRate(), memoryHits, misses, filteredMisses, negativeHits, negativeLookups,
+                    writes, skippedWrites, evictions, bytesRead, bytesWritten, meanPayloadBytes,
+                    p50ReadMicros, p99ReadMicros, p50WriteMicros, p99WriteMicros);
+        }
+    }
+}
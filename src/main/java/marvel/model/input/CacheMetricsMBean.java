@@ -0,0 +1,140 @@
+package marvel.model.input;
+
+/**
+ * JMX management interface of CacheMetrics, shown under marvel.cache:type=CacheMetrics in JConsole or VisualVM.
+ *
+ * <p>Latencies are in microseconds and sizes in bytes. Percentiles are accurate to within an eighth of their value.</p>
+ *
+ * @see CacheMetrics
+ */
+public interface CacheMetricsMBean {
+    /**
+     * @return long - number of cache lookups
+     */
+    public long getLookupCount();
+
+    /**
+     * @return long - number of lookups answered from the in-memory cache, pending writes or the store
+     */
+    public long getHitCount();
+
+    /**
+     * @return long - number of lookups answered from the in-memory cache
+     */
+    public long getMemoryHitCount();
+
+    /**
+     * @return long - number of lookups that found nothing
+     */
+    public long getMissCount();
+
+    /**
+     * @return long - number of misses answered by the name filter without reading the store
+     */
+    public long getFilteredMissCount();
+
+    /**
+     * @return double - fraction of lookups that were hits, between 0 and 1
+     */
+    public double getHitRate();
+
+    /**
+     * @return long - number of known-miss lookups
+     */
+    public long getNegativeLookupCount();
+
+    /**
+     * @return long - number of known-miss lookups answered by a remembered miss
+     */
+    public long getNegativeHitCount();
+
+    /**
+     * @return long - number of misses saved
+     */
+    public long getNegativeWriteCount();
+
+    /**
+     * @return long - number of records written to the store
+     */
+    public long getWriteCount();
+
+    /**
+     * @return long - number of records not written because an identical record was stored
+     */
+    public long getSkippedWriteCount();
+
+    /**
+     * @return long - number of records evicted to stay under the size limit
+     */
+    public long getEvictionCount();
+
+    /**
+     * @return long - number of compression dictionaries trained
+     */
+    public long getTrainedDictionaryCount();
+
+    /**
+     * @return long - bytes of records read from the store
+     */
+    public long getBytesRead();
+
+    /**
+     * @return long - bytes of records written to the store
+     */
+    public long getBytesWritten();
+
+    /**
+     * @return double - mean size of a record written
+     */
+    public double getMeanPayloadBytes();
+
+    /**
+     * @return long - 99th percentile size of a record written
+     */
+    public long getP99PayloadBytes();
+
+    /**
+     * @return double - mean lookup latency
+     */
+    public double getMeanReadMicros();
+
+    /**
+     * @return double - median lookup latency
+     */
+    public double getP50ReadMicros();
+
+    /**
+     * @return double - 99th percentile lookup latency
+     */
+    public double getP99ReadMicros();
+
+    /**
+     * @return double - slowest lookup
+     */
+    public double getMaxReadMicros();
+
+    /**
+     * @return double - mean latency of a store write
+     */
+    public double getMeanWriteMicros();
+
+    /**
+     * @return double - median latency of a store write
+     */
+    public double getP50WriteMicros();
+
+    /**
+     * @return double - 99th percentile latency of a store write
+     */
+    public double getP99WriteMicros();
+
+    /**
+     * @return double - slowest store write
+     */
+    public double getMaxWriteMicros();
+
+    /**
+     * Clears every counter and histogram
+     */
+    public void reset();
+}
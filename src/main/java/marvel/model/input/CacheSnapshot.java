@@ -0,0 +1,248 @@
+package marvel.model.input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * File format for a snapshot of every record in the cache, used to copy a warm cache to another machine.
+ *
+ * <p>A snapshot starts with a magic number and format version, followed by a single DEFLATE stream holding the records
+ * and a trailer with the record count and the CRC32 of the record bytes.
+ * Records are held uncompressed - raw JSON for JSON records, the CharacterInfoCodec encoding for binary records -
+ * so a snapshot does not depend on the compression dictionaries of the machine it was exported from.
+ * The DEFLATE stream compresses the whole snapshot instead.</p>
+ *
+ * <p>Both the writer and the reader stream one record at a time, so a snapshot is never held in memory.</p>
+ *
+ * @see CacheHandler#exportSnapshot(Path)
+ * @see CacheHandler#importSnapshot(Path)
+ */
+public class CacheSnapshot {
+    /**
+     * Magic number at the start of a snapshot, "MCSN"
+     */
+    private static final int MAGIC = 0x4d43534e;
+    /**
+     * Version of the snapshot format
+     */
+    public static final int VERSION = 1;
+    /**
+     * Marker in front of every record
+     */
+    private static final int RECORD = 1;
+    /**
+     * Marker after the last record, followed by the trailer
+     */
+    private static final int END = 0;
+
+    /**
+     * Writes records to a new snapshot file
+     */
+    public static class Writer implements Closeable {
+        private final Deflater compressor = new Deflater(Deflater.BEST_SPEED);
+        private final DeflaterOutputStream deflater;
+        private final CRC32 crc = new CRC32();
+        private final DataOutputStream records;
+        private long count = 0;
+
+        /**
+         * Constructor for Writer, creates or replaces the snapshot file and writes its header
+         *
+         * @param path path to the snapshot file
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(Path path) throws IOException {
+            OutputStream file = new BufferedOutputStream(Files.newOutputStream(path));
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            deflater = new DeflaterOutputStream(file, compressor, 1 << 16);
+            records = new DataOutputStream(new CheckedOutputStream(deflater, crc));
+        }
+
+        /**
+         * Appends a record to the snapshot
+         *
+         * @param entry uncompressed record, with its bytes in the response for JSON records and in the payload for binary records
+         * @throws IOException if the record cannot be written
+         */
+        public void write(CacheEntry entry) throws IOException {
+            if(entry.getCodec() != CacheEntry.CODEC_NONE){
+                throw new IllegalArgumentException("Snapshot records must be uncompressed");
+            }
+            byte[] raw = entry.getFormat() == CacheEntry.FORMAT_JSON
+                    ? entry.getResponse().getBytes(StandardCharsets.UTF_8)
+                    : entry.getPayload();
+            records.writeByte(RECORD);
+            records.writeUTF(entry.getName());
+            records.writeByte(entry.getFormat());
+            records.writeBoolean(entry.getEtag() != null);
+            if(entry.getEtag() != null){
+                records.writeUTF(entry.getEtag());
+            }
+            records.writeLong(entry.getFetchedAt());
+            records.writeInt(raw.length);
+            records.write(raw);
+            count++;
+        }
+
+        /**
+         * Getter for the number of records written so far
+         *
+         * @return long - record count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Writes the end marker and trailer, then closes the file. The snapshot is only complete once closed.
+         *
+         * @throws IOException if the trailer cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            records.writeByte(END);
+            records.flush();
+            //the trailer goes straight to the deflater so it is not part of its own checksum
+            DataOutputStream trailer = new DataOutputStream(deflater);
+            trailer.writeLong(count);
+            trailer.writeInt((int) crc.getValue());
+            trailer.flush();
+            try{
+                deflater.close();
+            } finally {
+                //a Deflater passed to the stream is not released when the stream is closed
+                compressor.end();
+            }
+        }
+    }
+
+    /**
+     * Reads records from a snapshot file in the order they were written
+     */
+    public static class Reader implements Closeable {
+        private final Inflater decompressor = new Inflater();
+        private final InflaterInputStream inflater;
+        private final CRC32 crc = new CRC32();
+        private final DataInputStream records;
+        private long count = 0;
+        private boolean finished = false;
+
+        /**
+         * Constructor for Reader, opens the snapshot file and checks its header
+         *
+         * @param path path to the snapshot file
+         * @throws IOException if the file cannot be opened, or is not a snapshot of a supported version
+         */
+        public Reader(Path path) throws IOException {
+            InputStream file = new BufferedInputStream(Files.newInputStream(path));
+            DataInputStream header = new DataInputStream(file);
+            try{
+                if(header.readInt() != MAGIC){
+                    throw new IOException("Not a cache snapshot: " + path);
+                }
+                int version = header.readInt();
+                if(version != VERSION){
+                    throw new IOException("Unsupported cache snapshot version " + version);
+                }
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            inflater = new InflaterInputStream(file, decompressor, 1 << 16);
+            records = new DataInputStream(new CheckedInputStream(inflater, crc));
+        }
+
+        /**
+         * Reads the next record
+         *
+         * <p>After the last record, checks the record count and checksum in the trailer.</p>
+         *
+         * @return CacheEntry - next uncompressed record, null after the last record
+         * @throws IOException if the snapshot is truncated or damaged, or its checksum does not match
+         */
+        public CacheEntry next() throws IOException {
+            if(finished){
+                return null;
+            }
+            int marker = records.readUnsignedByte();
+            if(marker == END){
+                finished = true;
+                DataInputStream trailer = new DataInputStream(inflater);
+                long expectedCount = trailer.readLong();
+                int expectedCrc = trailer.readInt();
+                if(expectedCount != count || expectedCrc != (int) crc.getValue()){
+                    throw new IOException("Cache snapshot checksum does not match");
+                }
+                return null;
+            }
+            if(marker != RECORD){
+                throw new IOException("Damaged cache snapshot at record " + count);
+            }
+            String name = records.readUTF();
+            int format = records.readUnsignedByte();
+            String etag = records.readBoolean() ? records.readUTF() : null;
+            long fetchedAt = records.readLong();
+            int length = records.readInt();
+            if(length < 0){
+                throw new IOException("Damaged cache snapshot at record " + count);
+            }
+            byte[] raw = new byte[length];
+            records.readFully(raw);
+            count++;
+            if(format == CacheEntry.FORMAT_JSON){
+                return new CacheEntry(name, format, CacheEntry.CODEC_NONE, 0,
+                        new String(raw, StandardCharsets.UTF_8), null, etag, fetchedAt);
+            }
+            return new CacheEntry(name, format, CacheEntry.CODEC_NONE, 0, null, raw, etag, fetchedAt);
+        }
+
+        /**
+         * Closes the snapshot file
+         *
+         * @throws IOException if the file cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            try{
+                records.close();
+            } finally {
+                decompressor.end();
+            }
+        }
+    }
+
+    /**
+     * Reads a whole snapshot to check it is complete and its checksum matches, without keeping any records.
+     *
+     * @param path path to the snapshot file
+     * @return long - number of records in the snapshot
+     * @throws IOException if the snapshot cannot be read, is truncated or damaged, or its checksum does not match
+     */
+    public static long verify(Path path) throws IOException {
+        try(Reader reader = new Reader(path)){
+            long count = 0;
+            while(reader.next() != null){
+                count++;
+            }
+            return count;
+        }
+    }
+}
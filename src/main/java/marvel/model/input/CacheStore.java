@@ -0,0 +1,140 @@
+package marvel.model.input;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage backend for the cached character records used by CacheHandler.
+ *
+ * <p>A store maps each search name to exactly one CacheEntry. It only stores and returns records -
+ * encoding, compression, the name filter and the in-memory cache are handled by CacheHandler on top of any store.</p>
+ *
+ * <p>Implementations must be safe to use from multiple threads.</p>
+ *
+ * @see CacheHandler
+ * @see SqliteCacheStore
+ * @see MappedLogCacheStore
+ */
+public interface CacheStore {
+    /**
+     * Reads the record stored under a name
+     *
+     * @param name key of the record
+     * @return CacheEntry - stored record, null if no record is stored under the name
+     * @throws IOException if the store cannot be read
+     */
+    public CacheEntry read(String name) throws IOException;
+
+    /**
+     * Reads the record stored under a name without its response and payload, for checking its entity tag and fetch time
+     *
+     * @param name key of the record
+     * @return CacheEntry - stored record with null response and payload, null if no record is stored under the name
+     * @throws IOException if the store cannot be read
+     */
+    public CacheEntry readHeader(String name) throws IOException;
+
+    /**
+     * Whether a record is stored under a name
+     *
+     * @param name key of the record
+     * @return boolean - true if a record is found, otherwise false
+     * @throws IOException if the store cannot be read
+     */
+    public boolean contains(String name) throws IOException;
+
+    /**
+     * Writes records, replacing any record stored under the same name, as a single atomic batch where the backend supports it.
+     *
+     * <p>A record with the same format, codec, response and payload as the stored one is not rewritten.
+     * Instead the stored record's fetch time is raised to the new one, and its entity tag replaced if the new record has one.</p>
+     *
+     * @param entries records to write
+     * @return boolean[] - for each record in order, true if it was written, false if an identical record was already stored
+     * @throws IOException if the records cannot be written
+     */
+    public boolean[] write(List<CacheEntry> entries) throws IOException;
+
+    /**
+     * Sets the fetch time of the record stored under a name
+     *
+     * @param name key of the record
+     * @param fetchedAt new fetch time, in milliseconds since the epoch
+     * @return boolean - true if a record was updated, false if no record is stored under the name
+     * @throws IOException if the record cannot be updated
+     */
+    public boolean touch(String name, long fetchedAt) throws IOException;
+
+    /**
+     * Reads records in name order, for walking the whole store in batches
+     *
+     * @param afterName only records with names after this one are returned, empty string to start from the first record
+     * @param limit maximum number of records to return
+     * @return List&lt;CacheEntry&gt; - records after afterName in name order, empty when there are no more
+     * @throws IOException if the store cannot be read
+     */
+    public List<CacheEntry> scan(String afterName, int limit) throws IOException;
+
+    /**
+     * Lists the names of every stored record
+     *
+     * @return List&lt;String&gt; - names of stored records
+     * @throws IOException if the store cannot be read
+     */
+    public List<String> names() throws IOException;
+
+    /**
+     * Records when records were last read, used to pick records to evict
+     *
+     * @param accessedAt access time of each name, in milliseconds since the epoch - names not stored are ignored
+     * @throws IOException if the access times cannot be written
+     */
+    public void recordAccess(Map<String, Long> accessedAt) throws IOException;
+
+    /**
+     * Lists the names of the records read least recently, records never read counting as read when fetched
+     *
+     * @param limit maximum number of names to return
+     * @return List&lt;String&gt; - names of stored records, least recently read first
+     * @throws IOException if the store cannot be read
+     */
+    public List<String> leastRecentlyAccessed(int limit) throws IOException;
+
+    /**
+     * Removes the records stored under the given names, as a single atomic batch where the backend supports it
+     *
+     * @param names keys of the records to remove
+     * @return int - number of records removed
+     * @throws IOException if the records cannot be removed
+     */
+    public int delete(List<String> names) throws IOException;
+
+    /**
+     * Number of records stored
+     *
+     * @return long - record count
+     * @throws IOException if the store cannot be read
+     */
+    public long count() throws IOException;
+
+    /**
+     * Space on disk taken by the stored records, not counting space freed by removed records that has not been reclaimed yet
+     *
+     * @return long - size in bytes
+     * @throws IOException if the store cannot be read
+     */
+    public long sizeInBytes() throws IOException;
+
+    /**
+     * Reclaims space freed by replaced and removed records, in steps short enough that lookups are not held up
+     *
+     * @throws IOException if the store cannot be compacted
+     */
+    public void compact() throws IOException;
+
+    /**
+     * Releases the resources held by the store. Later calls behave as if the store is empty.
+     */
+    public void close();
+}
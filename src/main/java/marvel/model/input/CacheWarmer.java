@@ -0,0 +1,305 @@
+package marvel.model.input;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fills the cache with a list of characters ahead of time, so their first search is answered from the cache.
+ *
+ * <p>The names are looked up through the input model with getInfoByNames(), which fetches, parses and caches each character
+ * with at most a given number of requests in flight, taking BULK permits so the reserve of the daily budget is left to interactive searches.
+ * Names that are already cached are skipped without a request.</p>
+ *
+ * <p>Every name with a confirmed outcome - a cached character, or a miss the input model remembers - is appended to a progress file
+ * as soon as it completes. A warm-up that is interrupted or killed can be run again with the same progress file and carries on
+ * with the names it had not reached. Names whose search failed, such as on a network error or an exhausted quota, are not recorded,
+ * so they are retried.</p>
+ *
+ * @see InputModel
+ */
+public class CacheWarmer {
+    /**
+     * Input model used to fetch and cache each character
+     */
+    private final InputModel input;
+    /**
+     * Maximum number of characters fetched at once
+     */
+    private final int parallelism;
+    /**
+     * Called after every completed name, null for no progress reports
+     */
+    private Consumer<Progress> listener;
+
+    /**
+     * Counts of a warm-up at a point in time
+     */
+    public static class Progress {
+        private final int total;
+        private final int cached;
+        private final int notFound;
+        private final int failed;
+        private final int skipped;
+        private final long elapsedMillis;
+
+        /**
+         * Constructor for Progress
+         *
+         * @param total number of names in the warm-up, including skipped names
+         * @param cached number of names fetched and cached
+         * @param notFound number of names the API found no character for
+         * @param failed number of names whose search failed
+         * @param skipped number of names already cached or completed by an earlier run
+         * @param elapsedMillis time since the warm-up started
+         */
+        public Progress(int total, int cached, int notFound, int failed, int skipped, long elapsedMillis) {
+            this.total = total;
+            this.cached = cached;
+            this.notFound = notFound;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Getter for the number of names in the warm-up, including skipped names
+         *
+         * @return int - total names
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Getter for the number of names fetched and cached
+         *
+         * @return int - cached names
+         */
+        public int getCached() {
+            return cached;
+        }
+
+        /**
+         * Getter for the number of names the API found no character for
+         *
+         * @return int - names not found
+         */
+        public int getNotFound() {
+            return notFound;
+        }
+
+        /**
+         * Getter for the number of names whose search failed and will be retried by the next run
+         *
+         * @return int - failed names
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * Getter for the number of names skipped because they were already cached or completed by an earlier run
+         *
+         * @return int - skipped names
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Getter for the number of names done so far, in any way
+         *
+         * @return int - done names
+         */
+        public int getDone() {
+            return cached + notFound + failed + skipped;
+        }
+
+        /**
+         * Getter for the time since the warm-up started
+         *
+         * @return long - elapsed milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Getter for the rate names were fetched at, not counting skipped names
+         *
+         * @return double - fetched names per second
+         */
+        public double getThroughput() {
+            return elapsedMillis == 0 ? 0 : (cached + notFound + failed) * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d done - %d cached, %d not found, %d failed, %d skipped - %.1f names/s",
+                    getDone(), total, cached, notFound, failed, skipped, getThroughput());
+        }
+    }
+
+    /**
+     * Constructor for CacheWarmer
+     *
+     * @param input input model with its handlers set, used to fetch and cache each character
+     * @param parallelism maximum number of characters fetched at once
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public CacheWarmer(InputModel input, int parallelism){
+        if(input == null){
+            throw new NullPointerException();
+        }
+        if(parallelism <= 0){
+            throw new IllegalArgumentException();
+        }
+        this.input = input;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets a listener called with the current progress after every name completes, one call at a time
+     *
+     * @param listener progress listener, null for no progress reports
+     */
+    public void setProgressListener(Consumer<Progress> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Warms the cache with the names in a file, one name per line.
+     *
+     * <p>Blank lines and lines starting with # are ignored.</p>
+     *
+     * @param namesFile file listing the names to cache
+     * @param progressFile file recording completed names, created if it does not exist
+     * @return Progress - final counts of the warm-up
+     * @throws IOException if the names file or progress file cannot be read, or the progress file cannot be written
+     * @throws InterruptedException if interrupted while waiting, in which case lookups in flight are cancelled and not recorded
+     */
+    public Progress warm(Path namesFile, Path progressFile) throws IOException, InterruptedException {
+        List<String> names = new ArrayList<>();
+        for(String line : Files.readAllLines(namesFile, StandardCharsets.UTF_8)){
+            String name = line.trim();
+            if(!name.isEmpty() && !name.startsWith("#")){
+                names.add(name);
+            }
+        }
+        return warm(names, progressFile);
+    }
+
+    /**
+     * Warms the cache with the given names, skipping names already recorded in the progress file and names already cached.
+     *
+     * @param names names to cache, duplicates are searched once
+     * @param progressFile file recording completed names, created if it does not exist
+     * @return Progress - final counts of the warm-up
+     * @throws IOException if the progress file cannot be read or written
+     * @throws InterruptedException if interrupted while waiting, in which case lookups in flight are cancelled and not recorded
+     */
+    public Progress warm(List<String> names, Path progressFile) throws IOException, InterruptedException {
+        Set<String> done = new HashSet<>();
+        if(Files.exists(progressFile)){
+            done.addAll(Files.readAllLines(progressFile, StandardCharsets.UTF_8));
+        }
+        Set<String> unique = new LinkedHashSet<>(names);
+        int total = unique.size();
+        List<String> pending = new ArrayList<>();
+        int skipped = 0;
+        for(String name : unique){
+            if(done.contains(name) || input.isInfoInCache(name)){
+                skipped++;
+            } else {
+                pending.add(name);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        AtomicInteger cached = new AtomicInteger();
+        AtomicInteger notFound = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        int skippedCount = skipped;
+
+        try(BufferedWriter progress = Files.newBufferedWriter(progressFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)){
+            CompletableFuture<Void> lookups = input.getInfoByNames(pending, parallelism, (name, info) -> {
+                if(info != null){
+                    cached.incrementAndGet();
+                    record(progress, name, stopped);
+                } else if(input.isKnownMiss(name)){
+                    notFound.incrementAndGet();
+                    record(progress, name, stopped);
+                } else {
+                    failed.incrementAndGet();
+                    System.out.println("Failed to warm cache for " + name);
+                }
+                report(new Progress(total, cached.get(), notFound.get(), failed.get(), skippedCount,
+                        System.currentTimeMillis() - start));
+            });
+            try{
+                lookups.get();
+            } catch (InterruptedException e) {
+                //cancel the lookups in flight and stop recording, so names not confirmed are searched again by the next run
+                lookups.cancel(true);
+                synchronized (progress){
+                    stopped.set(true);
+                }
+                throw e;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                failed.set(pending.size() - cached.get() - notFound.get());
+            }
+        }
+        return new Progress(total, cached.get(), notFound.get(), failed.get(), skipped, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Appends a completed name to the progress file and flushes it, so it is not searched again if the warm-up is killed
+     *
+     * @param progress writer appending to the progress file
+     * @param name completed name
+     * @param stopped set once the warm-up was interrupted, after which nothing more is recorded
+     */
+    private static void record(BufferedWriter progress, String name, AtomicBoolean stopped){
+        synchronized (progress){
+            if(stopped.get()){
+                return;
+            }
+            try{
+                progress.write(name);
+                progress.newLine();
+                progress.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Passes progress to the listener, if one is set
+     *
+     * @param progress current counts
+     */
+    private void report(Progress progress){
+        Consumer<Progress> current = listener;
+        if(current != null){
+            current.accept(progress);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package marvel.model.input;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue that collects cache writes in memory and flushes them to the database in batches.
+ *
+ * <p>Writes are flushed by a background thread once the number of pending writes reaches the batch size,
+ * or when the flush interval elapses, whichever comes first. Each flush is written in one transaction.</p>
+ *
+ * <p>Pending writes are keyed by name - a later write for the same name replaces an earlier one that is not flushed yet,
+ * and a write identical to the pending one is skipped.</p>
+ *
+ * <p>Writes stay visible through getPending() until they are flushed, so lookups see their own writes.</p>
+ *
+ * @see CacheHandler
+ */
+public class CacheWriteQueue {
+    /**
+     * Writes a batch of name and response pairs to the database.
+     */
+    public interface BatchWriter {
+        /**
+         * Writes all entries of the batch in one transaction.
+         *
+         * @param batch name and response pairs to write, in the order they were queued
+         * @return int - number of rows actually changed, identical rows already stored are not counted
+         * @throws IOException if the batch cannot be written
+         */
+        int write(Map<String, String> batch) throws IOException;
+    }
+
+    /**
+     * Destination the batches are flushed to
+     */
+    private final BatchWriter writer;
+    /**
+     * Number of pending writes that triggers an immediate flush
+     */
+    private final int batchSize;
+    /**
+     * Writes waiting to be flushed, keyed by name, guarded by itself
+     */
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    /**
+     * Serialises flushes so batches are written in order
+     */
+    private final Object flushLock = new Object();
+    /**
+     * Background thread that runs the flushes
+     */
+    private final ScheduledExecutorService flusher;
+    /**
+     * Number of rows changed by flushed batches
+     */
+    private final AtomicLong writtenCount = new AtomicLong();
+    /**
+     * Number of writes skipped because an identical write was pending or already stored
+     */
+    private final AtomicLong skippedCount = new AtomicLong();
+    /**
+     * Number of batches flushed
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+    /**
+     * Whether the queue no longer accepts writes
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a queue and starts its background flush thread.
+     *
+     * @param writer destination the batches are flushed to
+     * @param batchSize number of pending writes that triggers an immediate flush, must be at least 1
+     * @param flushIntervalMillis maximum time in milliseconds a write waits before being flushed, must be positive
+     * @throws IllegalArgumentException if batchSize or flushIntervalMillis is out of range
+     */
+    public CacheWriteQueue(BatchWriter writer, int batchSize, long flushIntervalMillis){
+        if(batchSize < 1 || flushIntervalMillis <= 0){
+            throw new IllegalArgumentException();
+        }
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a write to be flushed later.
+     *
+     * @param name key of the record
+     * @param response value of the record
+     * @return boolean - true if the write was queued or skipped as a duplicate, false if the queue is closed
+     */
+    public boolean enqueue(String name, String response){
+        if(closed){
+            return false;
+        }
+        int depth;
+        synchronized (pending){
+            if(response.equals(pending.get(name))){
+                skippedCount.incrementAndGet();
+                return true;
+            }
+            pending.put(name, response);
+            depth = pending.size();
+        }
+        if(depth >= batchSize){
+            try{
+                flusher.execute(this::flushQuietly);
+            } catch (RuntimeException e) {
+                //flusher already shut down - close() will flush what is pending
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the response of a write that is queued but not flushed yet.
+     *
+     * @param name key of the record
+     * @return String - pending response for the name, null if nothing is pending for it
+     */
+    public String getPending(String name){
+        synchronized (pending){
+            return pending.get(name);
+        }
+    }
+
+    /**
+     * Returns the names of every write that is queued but not flushed yet.
+     *
+     * @return List&lt;String&gt; - copy of the pending names, in the order they were first queued
+     */
+    public List<String> getPendingNames(){
+        synchronized (pending){
+            return new ArrayList<>(pending.keySet());
+        }
+    }
+
+    /**
+     * Writes every pending write to the database in one transaction, on the calling thread.
+     *
+     * <p>Writes that fail stay pending and are retried by the next flush.</p>
+     *
+     * @throws IOException if the batch cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock){
+            Map<String, String> batch;
+            synchronized (pending){
+                if(pending.isEmpty()){
+                    return;
+                }
+                batch = new LinkedHashMap<>(pending);
+            }
+            int written = writer.write(batch);
+            synchronized (pending){
+                for(Map.Entry<String, String> entry : batch.entrySet()){
+                    pending.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            writtenCount.addAndGet(written);
+            skippedCount.addAndGet(batch.size() - written);
+            batchCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops accepting writes, stops the background thread and flushes everything still pending.
+     *
+     * <p>Guarantees that every write accepted before this call is flushed before it returns,
+     * unless the database itself fails.</p>
+     */
+    public void close(){
+        if(closed){
+            return;
+        }
+        closed = true;
+        flusher.shutdown();
+        try{
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * Number of writes waiting to be flushed
+     *
+     * @return int - current depth of the queue
+     */
+    public int getDepth(){
+        synchronized (pending){
+            return pending.size();
+        }
+    }
+
+    /**
+     * Number of rows changed by flushed batches
+     *
+     * @return long - rows written since the queue was created
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Number of writes skipped because an identical write was pending or already stored
+     *
+     * @return long - writes skipped since the queue was created
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Number of batches flushed
+     *
+     * @return long - batches flushed since the queue was created
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Flushes pending writes, printing rather than throwing on failure.
+     */
+    private void flushQuietly(){
+        try{
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
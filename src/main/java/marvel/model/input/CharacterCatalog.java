@@ -0,0 +1,438 @@
+package marvel.model.input;
+
+import marvel.model.character.CharacterInfo;
+import marvel.model.character.Comic;
+import marvel.model.character.Event;
+import marvel.model.character.Series;
+import marvel.model.character.Story;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Normalized copy of cached characters and their comics, stories, events and series, kept in the cache database
+ * so questions across characters are answered by indexed SQL instead of decoding every cached record.
+ *
+ * <p>The <b>MarvelCharacter</b> table holds one row per Marvel character ID, and <b>CachedName</b> maps every name
+ * a character is cached under to its ID. The <b>Comic</b>, <b>Story</b>, <b>Event</b> and <b>Series</b> tables hold
+ * one row per Marvel ID, parsed from the last segment of the resource URI.
+ * Link tables such as <b>CharacterComic</b> have the pair of IDs as primary key, and an index on the reversed pair
+ * so lookups from either side are index searches.</p>
+ *
+ * <p>Links are rebuilt from scratch whenever a character is written, so a link table holds exactly the items listed
+ * in the latest cached response of each character - the API lists at most 20 items of each kind.</p>
+ *
+ * <p>Write methods take a connection already inside a transaction, so CacheHandler updates the catalog
+ * in the same transaction as the full-text index.</p>
+ *
+ * <p>The <b>CatalogState</b> table records whether the catalog holds every stored record. A CacheHandler without the catalog enabled
+ * marks it out of date on its first write or removal, and the catalog is rebuilt the next time it is enabled.</p>
+ *
+ * @see CacheHandler
+ */
+public class CharacterCatalog {
+    /**
+     * Kind of item a character appears in, with the tables that hold it
+     */
+    public enum Appearance {
+        /** Comics the character appears in */
+        COMIC("Comic", "CharacterComic", "ComicId", "ComicCharacter", "comics"),
+        /** Stories the character appears in */
+        STORY("Story", "CharacterStory", "StoryId", "StoryCharacter", "stories"),
+        /** Events the character appears in */
+        EVENT("Event", "CharacterEvent", "EventId", "EventCharacter", "events"),
+        /** Series the character appears in */
+        SERIES("Series", "CharacterSeries", "SeriesId", "SeriesCharacter", "series");
+
+        private final String table;
+        private final String linkTable;
+        private final String idColumn;
+        private final String reverseIndex;
+        private final String resource;
+
+        Appearance(String table, String linkTable, String idColumn, String reverseIndex, String resource){
+            this.table = table;
+            this.linkTable = linkTable;
+            this.idColumn = idColumn;
+            this.reverseIndex = reverseIndex;
+            this.resource = resource;
+        }
+
+        /**
+         * Getter for the table holding one row per item
+         *
+         * @return String - table name
+         */
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * Getter for the table linking characters to items
+         *
+         * @return String - link table name
+         */
+        public String getLinkTable() {
+            return linkTable;
+        }
+
+        /**
+         * Getter for the API resource listing the items of a character, as in /characters/{id}/comics
+         *
+         * @return String - last segment of the resource path
+         */
+        public String getResource() {
+            return resource;
+        }
+    }
+
+    private final CacheConnectionPool pool;
+
+    /**
+     * Constructor for a catalog in the database of the given pool. Call createSchema() before using it.
+     *
+     * @param pool connections to the cache database
+     */
+    public CharacterCatalog(CacheConnectionPool pool){
+        this.pool = pool;
+    }
+
+    /**
+     * Creates the catalog tables and indexes if the database does not have them yet.
+     *
+     * @param connection writer connection
+     * @return boolean - true if the catalog was just created or is out of date, and has to be rebuilt from the stored records
+     * @throws SQLException if the schema cannot be created
+     */
+    public boolean createSchema(PooledConnection connection) throws SQLException {
+        connection.execute("CREATE TABLE IF NOT EXISTS CatalogState (Id INTEGER PRIMARY KEY CHECK (Id = 1), UpToDate INTEGER NOT NULL)");
+        PreparedStatement pr = connection.prepare("SELECT UpToDate FROM CatalogState WHERE Id = 1;");
+        boolean upToDate;
+        try(ResultSet rs = pr.executeQuery()){
+            upToDate = rs.next() && rs.getInt("UpToDate") == 1;
+        }
+        connection.execute("CREATE TABLE IF NOT EXISTS MarvelCharacter (Id INTEGER PRIMARY KEY, Name VARCHAR NOT NULL, Description VARCHAR, Modified VARCHAR)");
+        connection.execute("CREATE INDEX IF NOT EXISTS MarvelCharacterName ON MarvelCharacter (Name COLLATE NOCASE)");
+        connection.execute("CREATE TABLE IF NOT EXISTS CachedName (Name VARCHAR PRIMARY KEY, CharacterId INTEGER NOT NULL)");
+        connection.execute("CREATE INDEX IF NOT EXISTS CachedNameCharacter ON CachedName (CharacterId)");
+        for(Appearance appearance : Appearance.values()){
+            String type = appearance == Appearance.STORY ? ", Type VARCHAR" : "";
+            connection.execute("CREATE TABLE IF NOT EXISTS " + appearance.table + " (Id INTEGER PRIMARY KEY, Title VARCHAR NOT NULL" + type + ")");
+            connection.execute("CREATE TABLE IF NOT EXISTS " + appearance.linkTable + " (CharacterId INTEGER NOT NULL, "
+                    + appearance.idColumn + " INTEGER NOT NULL, PRIMARY KEY (CharacterId, " + appearance.idColumn + ")) WITHOUT ROWID");
+            connection.execute("CREATE INDEX IF NOT EXISTS " + appearance.reverseIndex + " ON " + appearance.linkTable
+                    + " (" + appearance.idColumn + ", CharacterId)");
+        }
+        return !upToDate;
+    }
+
+    /**
+     * Records that the catalog holds every stored record, once it has been rebuilt.
+     *
+     * @param connection writer connection
+     * @throws SQLException if the state cannot be written
+     */
+    public void markUpToDate(PooledConnection connection) throws SQLException {
+        connection.execute("INSERT OR REPLACE INTO CatalogState (Id, UpToDate) VALUES (1, 1)");
+    }
+
+    /**
+     * Records that stored records were written or removed while the catalog was not kept up to date,
+     * so it is rebuilt the next time it is enabled. Does nothing if the database has no catalog.
+     *
+     * @param connection writer connection
+     * @throws SQLException if the state cannot be written
+     */
+    public static void markOutOfDate(PooledConnection connection) throws SQLException {
+        PreparedStatement pr = connection.prepare("SELECT 1 FROM sqlite_master WHERE name = 'CatalogState';");
+        try(ResultSet rs = pr.executeQuery()){
+            if(!rs.next()){
+                return;
+            }
+        }
+        connection.execute("UPDATE CatalogState SET UpToDate = 0");
+    }
+
+    /**
+     * Replaces the catalog rows of the given characters, on a connection already inside a transaction.
+     *
+     * <p>Characters without a Marvel ID are skipped.</p>
+     *
+     * @param connection writer connection
+     * @param documents characters to catalog, keyed by the name they are cached under
+     * @throws SQLException if the catalog cannot be written
+     */
+    public void index(PooledConnection connection, Map<String, CharacterInfo> documents) throws SQLException {
+        if(documents.isEmpty()){
+            return;
+        }
+        PreparedStatement character = connection.prepare("INSERT OR REPLACE INTO MarvelCharacter (Id, Name, Description, Modified) VALUES (?, ?, ?, ?);");
+        PreparedStatement name = connection.prepare("INSERT OR REPLACE INTO CachedName (Name, CharacterId) VALUES (?, ?);");
+        Set<Integer> seen = new HashSet<>();
+        for(Map.Entry<String, CharacterInfo> document : documents.entrySet()){
+            CharacterInfo info = document.getValue();
+            if(info.getId() <= 0){
+                continue;
+            }
+            name.setString(1, document.getKey());
+            name.setLong(2, info.getId());
+            name.addBatch();
+            if(!seen.add(info.getId())){
+                continue;
+            }
+            character.setLong(1, info.getId());
+            character.setString(2, info.getName());
+            character.setString(3, info.getDescription());
+            character.setString(4, info.getModified());
+            character.addBatch();
+
+            List<Comic> comics = info.getComicList();
+            if(comics != null){
+                List<Object[]> items = new ArrayList<>();
+                for(Comic comic : comics){
+                    items.add(new Object[]{comic.getResourcePath(), comic.getName()});
+                }
+                link(connection, Appearance.COMIC, info.getId(), items);
+            }
+            List<Story> stories = info.getStoryList();
+            if(stories != null){
+                List<Object[]> items = new ArrayList<>();
+                for(Story story : stories){
+                    items.add(new Object[]{story.getResourcePath(), story.getName(), story.getType()});
+                }
+                link(connection, Appearance.STORY, info.getId(), items);
+            }
+            List<Event> events = info.getEventList();
+            if(events != null){
+                List<Object[]> items = new ArrayList<>();
+                for(Event event : events){
+                    items.add(new Object[]{event.getResourcePath(), event.getName()});
+                }
+                link(connection, Appearance.EVENT, info.getId(), items);
+            }
+            List<Series> seriesList = info.getSeriesList();
+            if(seriesList != null){
+                List<Object[]> items = new ArrayList<>();
+                for(Series series : seriesList){
+                    items.add(new Object[]{series.getResourcePath(), series.getName()});
+                }
+                link(connection, Appearance.SERIES, info.getId(), items);
+            }
+        }
+        character.executeBatch();
+        name.executeBatch();
+    }
+
+    /**
+     * Replaces the links of a character to items of one kind, adding or renaming the items themselves.
+     *
+     * @param connection writer connection
+     * @param appearance kind of the items
+     * @param characterId Marvel ID of the character
+     * @param items resource path, title and, for stories, type of each item
+     * @throws SQLException if the catalog cannot be written
+     */
+    private void link(PooledConnection connection, Appearance appearance, long characterId, List<Object[]> items) throws SQLException {
+        PreparedStatement delete = connection.prepare("DELETE FROM " + appearance.linkTable + " WHERE CharacterId = ?;");
+        delete.setLong(1, characterId);
+        delete.executeUpdate();
+
+        boolean typed = appearance == Appearance.STORY;
+        PreparedStatement item = connection.prepare("INSERT OR REPLACE INTO " + appearance.table
+                + (typed ? " (Id, Title, Type) VALUES (?, ?, ?);" : " (Id, Title) VALUES (?, ?);"));
+        PreparedStatement link = connection.prepare("INSERT OR IGNORE INTO " + appearance.linkTable
+                + " (CharacterId, " + appearance.idColumn + ") VALUES (?, ?);");
+        for(Object[] fields : items){
+            long id = idOf((String) fields[0]);
+            if(id <= 0 || fields[1] == null){
+                continue;
+            }
+            item.setLong(1, id);
+            item.setString(2, (String) fields[1]);
+            if(typed){
+                item.setString(3, (String) fields[2]);
+            }
+            item.addBatch();
+            link.setLong(1, characterId);
+            link.setLong(2, id);
+            link.addBatch();
+        }
+        item.executeBatch();
+        link.executeBatch();
+    }
+
+    /**
+     * Marvel ID of an item, the last path segment of its resource URI such as ".../v1/public/comics/21366".
+     *
+     * @param resourcePath resource URI of the item
+     * @return long - Marvel ID, 0 if the URI does not end in an ID
+     */
+    public static long idOf(String resourcePath){
+        if(resourcePath == null){
+            return 0;
+        }
+        String path = resourcePath.endsWith("/") ? resourcePath.substring(0, resourcePath.length() - 1) : resourcePath;
+        try{
+            return Long.parseLong(path.substring(path.lastIndexOf('/') + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Removes the given names from the catalog, on a connection already inside a transaction.
+     *
+     * <p>A character no longer cached under any name is removed with its links.
+     * Items stay in their tables, as other characters may still link to them.</p>
+     *
+     * @param connection writer connection
+     * @param names keys of removed records
+     * @throws SQLException if the catalog cannot be written
+     */
+    public void remove(PooledConnection connection, List<String> names) throws SQLException {
+        PreparedStatement find = connection.prepare("SELECT CharacterId FROM CachedName WHERE Name = ?;");
+        PreparedStatement delete = connection.prepare("DELETE FROM CachedName WHERE Name = ?;");
+        Set<Long> characterIds = new HashSet<>();
+        for(String name : names){
+            find.setString(1, name);
+            try(ResultSet rs = find.executeQuery()){
+                if(rs.next()){
+                    characterIds.add(rs.getLong("CharacterId"));
+                }
+            }
+            delete.setString(1, name);
+            delete.addBatch();
+        }
+        delete.executeBatch();
+
+        PreparedStatement referenced = connection.prepare("SELECT 1 FROM CachedName WHERE CharacterId = ? LIMIT 1;");
+        for(long characterId : characterIds){
+            referenced.setLong(1, characterId);
+            try(ResultSet rs = referenced.executeQuery()){
+                if(rs.next()){
+                    continue;
+                }
+            }
+            for(Appearance appearance : Appearance.values()){
+                PreparedStatement unlink = connection.prepare("DELETE FROM " + appearance.linkTable + " WHERE CharacterId = ?;");
+                unlink.setLong(1, characterId);
+                unlink.executeUpdate();
+            }
+            PreparedStatement character = connection.prepare("DELETE FROM MarvelCharacter WHERE Id = ?;");
+            character.setLong(1, characterId);
+            character.executeUpdate();
+        }
+    }
+
+    /**
+     * Removes every row of the catalog, on a connection already inside a transaction.
+     *
+     * @param connection writer connection
+     * @throws SQLException if the catalog cannot be written
+     */
+    public void clear(PooledConnection connection) throws SQLException {
+        connection.execute("DELETE FROM CachedName");
+        connection.execute("DELETE FROM MarvelCharacter");
+        for(Appearance appearance : Appearance.values()){
+            connection.execute("DELETE FROM " + appearance.linkTable);
+            connection.execute("DELETE FROM " + appearance.table);
+        }
+    }
+
+    /**
+     * Finds cached characters appearing in an item, through the reversed index of the link table.
+     *
+     * @param appearance kind of the item
+     * @param id Marvel ID of the item
+     * @return List&lt;String&gt; - one name each character is cached under, sorted, empty if none or the query fails
+     */
+    public List<String> findCharacters(Appearance appearance, long id){
+        String sql = "SELECT MIN(n.Name) AS Name FROM " + appearance.linkTable + " l"
+                + " JOIN CachedName n ON n.CharacterId = l.CharacterId"
+                + " WHERE l." + appearance.idColumn + " = ? GROUP BY l.CharacterId ORDER BY 1;";
+        return queryNames(sql, pr -> pr.setLong(1, id));
+    }
+
+    /**
+     * Finds cached characters sharing items of one kind with a cached character, most shared items first.
+     *
+     * @param name name the character is cached under
+     * @param appearance kind of the items
+     * @param limit maximum number of names to return
+     * @return List&lt;String&gt; - one name each other character is cached under, empty if none or the query fails
+     */
+    public List<String> findCoAppearing(String name, Appearance appearance, int limit){
+        String sql = "SELECT (SELECT MIN(Name) FROM CachedName WHERE CharacterId = other.CharacterId) AS Name, COUNT(*) AS Shared"
+                + " FROM CachedName n"
+                + " JOIN " + appearance.linkTable + " own ON own.CharacterId = n.CharacterId"
+                + " JOIN " + appearance.linkTable + " other ON other." + appearance.idColumn + " = own." + appearance.idColumn
+                + " AND other.CharacterId <> own.CharacterId"
+                + " WHERE n.Name = ? AND EXISTS (SELECT 1 FROM CachedName WHERE CharacterId = other.CharacterId)"
+                + " GROUP BY other.CharacterId ORDER BY Shared DESC, Name LIMIT ?;";
+        return queryNames(sql, pr -> {
+            pr.setString(1, name);
+            pr.setInt(2, limit);
+        });
+    }
+
+    /**
+     * Finds the titles of items of one kind two cached characters both appear in.
+     *
+     * @param first name the first character is cached under
+     * @param second name the second character is cached under
+     * @param appearance kind of the items
+     * @return List&lt;String&gt; - titles, sorted, empty if none or the query fails
+     */
+    public List<String> findShared(String first, String second, Appearance appearance){
+        String sql = "SELECT t.Title AS Name FROM CachedName a"
+                + " JOIN " + appearance.linkTable + " la ON la.CharacterId = a.CharacterId"
+                + " JOIN CachedName b ON b.Name = ?"
+                + " JOIN " + appearance.linkTable + " lb ON lb.CharacterId = b.CharacterId AND lb." + appearance.idColumn
+                + " = la." + appearance.idColumn
+                + " JOIN " + appearance.table + " t ON t.Id = la." + appearance.idColumn
+                + " WHERE a.Name = ? ORDER BY t.Title;";
+        return queryNames(sql, pr -> {
+            pr.setString(1, second);
+            pr.setString(2, first);
+        });
+    }
+
+    /**
+     * Sets the parameters of a catalog query
+     */
+    private interface Parameters {
+        void set(PreparedStatement pr) throws SQLException;
+    }
+
+    /**
+     * Runs a catalog query on a read-only connection and collects its Name column.
+     *
+     * @param sql query selecting a Name column
+     * @param parameters sets the parameters of the query
+     * @return List&lt;String&gt; - values of the Name column, empty if the query fails
+     */
+    private List<String> queryNames(String sql, Parameters parameters){
+        List<String> names = new ArrayList<>();
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(sql);
+                parameters.set(pr);
+                try(ResultSet rs = pr.executeQuery()){
+                    while(rs.next()){
+                        names.add(rs.getString("Name"));
+                    }
+                }
+                return names;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return names;
+    }
+}
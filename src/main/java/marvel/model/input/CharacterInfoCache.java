@@ -0,0 +1,348 @@
+package marvel.model.input;
+
+import marvel.model.character.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of parsed CharacterInfo objects, placed in front of the cache database by CacheHandler.
+ *
+ * <p>Bounded by a maximum number of entries, a maximum estimated size in bytes, or both.</p>
+ *
+ * <p>Uses a frequency-aware policy: entries are kept in least-recently-used order,
+ * and a compact count-min sketch estimates how often each name has been requested recently.
+ * When the cache is full a new entry only replaces the least recently used one if its name has been requested more often,
+ * so a burst of one-off lookups cannot flush out frequently viewed characters.
+ * The sketch counters are halved periodically so old popularity fades.</p>
+ *
+ * <p>Cached objects are shared with callers and must not be modified once cached.</p>
+ *
+ * @see CacheHandler
+ */
+public class CharacterInfoCache {
+    /**
+     * Maximum value of a sketch counter
+     */
+    private static final int MAX_FREQUENCY = 15;
+    /**
+     * Seeds used to derive one index per sketch row from a hash
+     */
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    /**
+     * A cached CharacterInfo with its estimated size
+     */
+    private static class Entry {
+        /**
+         * Cached character
+         */
+        final CharacterInfo info;
+        /**
+         * Estimated size of the character in bytes
+         */
+        final long weight;
+
+        Entry(CharacterInfo info, long weight){
+            this.info = info;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Maximum number of entries, 0 if unbounded
+     */
+    private final int maxEntries;
+    /**
+     * Maximum total estimated size in bytes, 0 if unbounded
+     */
+    private final long maxBytes;
+    /**
+     * Cached entries in least-recently-used order, eldest first
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Count-min sketch rows of request frequencies
+     */
+    private final int[][] sketch;
+    /**
+     * Bit mask applied to hashes to index a sketch row
+     */
+    private final int sketchMask;
+    /**
+     * Number of sketch increments after which all counters are halved
+     */
+    private final int sampleSize;
+    /**
+     * Sketch increments since the last halving
+     */
+    private int additions = 0;
+    /**
+     * Total estimated size in bytes of cached entries
+     */
+    private long weightedSize = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    private long rejectionCount = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries maximum number of cached characters, 0 for no entry limit
+     * @param maxBytes maximum total estimated size in bytes, 0 for no size limit
+     * @throws IllegalArgumentException if either bound is negative or both are 0
+     */
+    public CharacterInfoCache(int maxEntries, long maxBytes){
+        if(maxEntries < 0 || maxBytes < 0 || (maxEntries == 0 && maxBytes == 0)){
+            throw new IllegalArgumentException();
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+
+        //size the sketch from the expected number of entries, assuming roughly 8KB per character when bounded by size
+        long expected = maxEntries > 0 ? maxEntries : Math.max(1, maxBytes / 8192);
+        int width = Integer.highestOneBit((int) Math.min(1 << 20, Math.max(64, expected * 4)) - 1) << 1;
+        this.sketch = new int[SEEDS.length][width];
+        this.sketchMask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    /**
+     * Returns the cached character for the given name and records the request.
+     *
+     * @param name name the character was cached under
+     * @return CharacterInfo - cached character, null if not cached
+     */
+    public synchronized CharacterInfo get(String name){
+        if(name == null){
+            return null;
+        }
+        recordRequest(name);
+        Entry entry = entries.get(name);
+        if(entry == null){
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.info;
+    }
+
+    /**
+     * Caches a character under the given name, if the admission policy allows it.
+     *
+     * <p>When full, least recently used entries are evicted only if they have been requested less often than the new name.</p>
+     *
+     * @param name name to cache the character under
+     * @param info character to cache
+     * @return boolean - true if the character was cached, false if it was rejected
+     */
+    public synchronized boolean put(String name, CharacterInfo info){
+        if(name == null || info == null){
+            return false;
+        }
+        recordRequest(name);
+        long weight = estimateSize(info);
+        if(maxBytes > 0 && weight > maxBytes){
+            rejectionCount++;
+            return false;
+        }
+
+        Entry previous = entries.remove(name);
+        if(previous != null){
+            weightedSize -= previous.weight;
+        } else {
+            int frequency = frequency(name);
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while(isOverCapacity(1, weight) && eldest.hasNext()){
+                Map.Entry<String, Entry> victim = eldest.next();
+                if(frequency <= frequency(victim.getKey())){
+                    rejectionCount++;
+                    return false;
+                }
+                eldest.remove();
+                weightedSize -= victim.getValue().weight;
+                evictionCount++;
+            }
+        }
+
+        //replacing an entry can still exceed the size bound if the new version is larger
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while(isOverCapacity(1, weight) && eldest.hasNext()){
+            Map.Entry<String, Entry> victim = eldest.next();
+            eldest.remove();
+            weightedSize -= victim.getValue().weight;
+            evictionCount++;
+        }
+
+        entries.put(name, new Entry(info, weight));
+        weightedSize += weight;
+        return true;
+    }
+
+    /**
+     * Removes the cached character for the given name, if any.
+     *
+     * @param name name the character was cached under
+     */
+    public synchronized void invalidate(String name){
+        Entry entry = entries.remove(name);
+        if(entry != null){
+            weightedSize -= entry.weight;
+        }
+    }
+
+    /**
+     * Removes every cached character.
+     */
+    public synchronized void clear(){
+        entries.clear();
+        weightedSize = 0;
+    }
+
+    /**
+     * Number of cached characters
+     *
+     * @return int - number of entries
+     */
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    /**
+     * Total estimated size of cached characters
+     *
+     * @return long - estimated size in bytes
+     */
+    public synchronized long getWeightedSize() {
+        return weightedSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    /**
+     * Estimates the memory used by a CharacterInfo and its child objects.
+     *
+     * <p>Counts 2 bytes per string character plus a fixed overhead per object, which is close enough for bounding the cache.</p>
+     *
+     * @param info character to estimate
+     * @return long - estimated size in bytes
+     */
+    public static long estimateSize(CharacterInfo info){
+        long size = 96 + sizeOf(info.getName()) + sizeOf(info.getDescription()) + sizeOf(info.getModified());
+        if(info.getThumbnail() != null){
+            size += 32 + sizeOf(info.getThumbnail().getPath()) + sizeOf(info.getThumbnail().getExtension());
+        }
+        if(info.getUrls() != null){
+            for(ResourceUrl url : info.getUrls()){
+                size += 32 + sizeOf(url.getType()) + sizeOf(url.getUrl());
+            }
+        }
+        size += listSize(info.getComicList());
+        size += listSize(info.getStoryList());
+        size += listSize(info.getEventList());
+        size += listSize(info.getSeriesList());
+        return size;
+    }
+
+    /**
+     * Estimates the size of a list of comics, stories, events or series.
+     */
+    private static long listSize(List<?> items){
+        if(items == null){
+            return 0;
+        }
+        long size = 24 + 8L * items.size();
+        for(Object item : items){
+            if(item instanceof Comic){
+                size += 32 + sizeOf(((Comic) item).getName()) + sizeOf(((Comic) item).getResourcePath());
+            } else if(item instanceof Story){
+                Story story = (Story) item;
+                size += 40 + sizeOf(story.getName()) + sizeOf(story.getType()) + sizeOf(story.getResourcePath());
+            } else if(item instanceof Event){
+                size += 32 + sizeOf(((Event) item).getName()) + sizeOf(((Event) item).getResourcePath());
+            } else if(item instanceof Series){
+                size += 32 + sizeOf(((Series) item).getName()) + sizeOf(((Series) item).getResourcePath());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the size of a string.
+     */
+    private static long sizeOf(String value){
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    /**
+     * Whether adding an entry would exceed either bound.
+     */
+    private boolean isOverCapacity(int extraEntries, long extraBytes){
+        if(maxEntries > 0 && entries.size() + extraEntries > maxEntries){
+            return true;
+        }
+        return maxBytes > 0 && weightedSize + extraBytes > maxBytes;
+    }
+
+    /**
+     * Increments the sketch counters for a name, halving all counters once the sample size is reached.
+     */
+    private void recordRequest(String name){
+        int hash = spread(name.hashCode());
+        for(int i = 0 ; i < SEEDS.length ; i++){
+            int index = indexOf(hash, i);
+            if(sketch[i][index] < MAX_FREQUENCY){
+                sketch[i][index]++;
+            }
+        }
+        if(++additions >= sampleSize){
+            for(int[] row : sketch){
+                for(int j = 0 ; j < row.length ; j++){
+                    row[j] >>>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+
+    /**
+     * Estimated number of recent requests for a name, the minimum over all sketch rows.
+     */
+    private int frequency(String name){
+        int hash = spread(name.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for(int i = 0 ; i < SEEDS.length ; i++){
+            frequency = Math.min(frequency, sketch[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hash, int row){
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+        return (h ^ (h >>> 16)) & sketchMask;
+    }
+
+    private static int spread(int hash){
+        hash ^= hash >>> 16;
+        hash *= 0x45D9F3B;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,251 @@
+package marvel.model.input;
+
+import marvel.model.character.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes CharacterInfo objects, with their comics, stories, events, series, URLs and thumbnail, to a compact binary form and back.
+ *
+ * <p>Used by CacheHandler to store characters so that loading from cache is a straight decode, with no JSON parsing.</p>
+ *
+ * <p>Every encoding starts with a format version byte. Integers are written as variable length integers,
+ * strings as a variable length byte count followed by UTF-8 bytes, and lists as an element count.
+ * Null strings and lists are written with a count of -1 so they decode back to null.</p>
+ *
+ * <p>Decoders must keep reading every version they have ever written, so old cached rows stay readable.</p>
+ *
+ * @see CacheHandler
+ */
+public class CharacterInfoCodec {
+    /**
+     * Format version written by encode()
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Encodes a character into the current binary format.
+     *
+     * @param info character to encode, must not be null
+     * @return byte[] - binary encoding of the character
+     */
+    public byte[] encode(CharacterInfo info){
+        if(info == null){
+            throw new NullPointerException();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try{
+            out.writeByte(VERSION);
+            writeVarInt(out, info.getId());
+            writeString(out, info.getName());
+            writeString(out, info.getDescription());
+            writeString(out, info.getModified());
+
+            Thumbnail thumbnail = info.getThumbnail();
+            out.writeBoolean(thumbnail != null);
+            if(thumbnail != null){
+                writeString(out, thumbnail.getPath());
+                writeString(out, thumbnail.getExtension());
+            }
+
+            writeVarInt(out, info.getNComics());
+            writeVarInt(out, info.getNStories());
+            writeVarInt(out, info.getNEvents());
+            writeVarInt(out, info.getNSeries());
+
+            List<ResourceUrl> urls = info.getUrls();
+            writeVarInt(out, urls == null ? -1 : urls.size());
+            if(urls != null){
+                for(ResourceUrl url : urls){
+                    writeString(out, url.getType());
+                    writeString(out, url.getUrl());
+                }
+            }
+
+            List<Comic> comics = info.getComicList();
+            writeVarInt(out, comics == null ? -1 : comics.size());
+            if(comics != null){
+                for(Comic comic : comics){
+                    writeString(out, comic.getName());
+                    writeString(out, comic.getResourcePath());
+                }
+            }
+
+            List<Story> stories = info.getStoryList();
+            writeVarInt(out, stories == null ? -1 : stories.size());
+            if(stories != null){
+                for(Story story : stories){
+                    writeString(out, story.getName());
+                    writeString(out, story.getType());
+                    writeString(out, story.getResourcePath());
+                }
+            }
+
+            List<Event> events = info.getEventList();
+            writeVarInt(out, events == null ? -1 : events.size());
+            if(events != null){
+                for(Event event : events){
+                    writeString(out, event.getName());
+                    writeString(out, event.getResourcePath());
+                }
+            }
+
+            List<Series> seriesList = info.getSeriesList();
+            writeVarInt(out, seriesList == null ? -1 : seriesList.size());
+            if(seriesList != null){
+                for(Series series : seriesList){
+                    writeString(out, series.getName());
+                    writeString(out, series.getResourcePath());
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            //writing to a byte array cannot fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a character from its binary form.
+     *
+     * @param data bytes produced by encode()
+     * @return CharacterInfo - decoded character
+     * @throws IOException if the data is truncated, corrupt, or written in an unknown format version
+     */
+    public CharacterInfo decode(byte[] data) throws IOException {
+        if(data == null || data.length == 0){
+            throw new EOFException("Empty character encoding");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readUnsignedByte();
+        if(version != VERSION){
+            throw new IOException("Unknown character encoding version " + version);
+        }
+
+        CharacterInfo info = new CharacterInfo(readVarInt(in), readString(in), readString(in), readString(in));
+        if(in.readBoolean()){
+            info.setThumbnail(new Thumbnail(readString(in), readString(in)));
+        }
+        info.setNComics(readVarInt(in));
+        info.setNStories(readVarInt(in));
+        info.setNEvents(readVarInt(in));
+        info.setNSeries(readVarInt(in));
+
+        int count = readVarInt(in);
+        if(count >= 0){
+            List<ResourceUrl> urls = new ArrayList<>(count);
+            for(int i = 0 ; i < count ; i++){
+                urls.add(new ResourceUrl(readString(in), readString(in)));
+            }
+            info.setUrls(urls);
+        }
+
+        count = readVarInt(in);
+        List<Comic> comics = null;
+        if(count >= 0){
+            comics = new ArrayList<>(count);
+            for(int i = 0 ; i < count ; i++){
+                comics.add(new Comic(readString(in), readString(in)));
+            }
+        }
+        info.setComicList(comics);
+
+        count = readVarInt(in);
+        List<Story> stories = null;
+        if(count >= 0){
+            stories = new ArrayList<>(count);
+            for(int i = 0 ; i < count ; i++){
+                stories.add(new Story(readString(in), readString(in), readString(in)));
+            }
+        }
+        info.setStoryList(stories);
+
+        count = readVarInt(in);
+        List<Event> events = null;
+        if(count >= 0){
+            events = new ArrayList<>(count);
+            for(int i = 0 ; i < count ; i++){
+                events.add(new Event(readString(in), readString(in)));
+            }
+        }
+        info.setEventList(events);
+
+        count = readVarInt(in);
+        List<Series> seriesList = null;
+        if(count >= 0){
+            seriesList = new ArrayList<>(count);
+            for(int i = 0 ; i < count ; i++){
+                seriesList.add(new Series(readString(in), readString(in)));
+            }
+        }
+        info.setSeriesList(seriesList);
+
+        return info;
+    }
+
+    /**
+     * Writes a nullable string as a length prefixed UTF-8 byte sequence.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if(value == null){
+            writeVarInt(out, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString().
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if(length < 0){
+            return null;
+        }
+        if(length > in.available()){
+            throw new EOFException("Truncated character encoding");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an int as a zig-zag variable length integer, 7 bits per byte, so small and negative values stay short.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int zigZag = (value << 1) ^ (value >> 31);
+        while((zigZag & ~0x7F) != 0){
+            out.writeByte((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        out.writeByte(zigZag);
+    }
+
+    /**
+     * Reads an int written by writeVarInt().
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int zigZag = 0;
+        for(int shift = 0 ; shift < 35 ; shift += 7){
+            int b = in.readUnsignedByte();
+            zigZag |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
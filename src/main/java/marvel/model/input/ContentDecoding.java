@@ -0,0 +1,579 @@
+package marvel.model.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Body handlers that decode gzip and deflate encoded responses, counting the bytes received against the bytes decoded.
+ *
+ * <p>HttpClient neither asks for compressed responses nor decodes them, so requests send ACCEPT_ENCODING
+ * and read their body through ofString() or ofInputStream() of this class. A body with no Content-Encoding,
+ * or one not listed in ACCEPT_ENCODING, is passed through as it is.</p>
+ *
+ * <p>Neither handler holds the compressed body in memory as a whole. ofInputStream() inflates as the body is read,
+ * so a parser reading the stream consumes the response as it arrives. ofString() inflates each chunk as it arrives,
+ * on the HttpClient thread delivering it and without blocking, and only the decoded bytes are kept until the String is built.</p>
+ *
+ * <p>A deflate body is accepted both as a zlib stream, as the HTTP specification asks, and as a raw DEFLATE stream
+ * with no zlib header, as some servers send.</p>
+ *
+ * <p>Read the counters with the getters, or through JMX once register() has been called.</p>
+ *
+ * @see MarvelApiHandler
+ * @see ContentDecodingMBean
+ */
+public class ContentDecoding extends RegisteredMBean implements ContentDecodingMBean {
+    /**
+     * Value of the Accept-Encoding header of requests whose body is read through this class
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    /**
+     * JMX domain and type the counters are registered under
+     */
+    public static final String OBJECT_NAME_PREFIX = "marvel.http:type=ContentDecoding,name=";
+
+    private static final int IDENTITY = 0;
+    private static final int GZIP = 1;
+    private static final int DEFLATE = 2;
+
+    /**
+     * Response bodies read through this instance, encoded or not
+     */
+    private final LongAdder responses = new LongAdder();
+    /**
+     * Response bodies that arrived gzip or deflate encoded
+     */
+    private final LongAdder compressedResponses = new LongAdder();
+    /**
+     * Bytes of response bodies as received, before decoding
+     */
+    private final LongAdder compressedBytes = new LongAdder();
+    /**
+     * Bytes of response bodies after decoding, equal to the bytes received for bodies that were not encoded
+     */
+    private final LongAdder uncompressedBytes = new LongAdder();
+
+    /**
+     * Constructor for a ContentDecoding with all counters at zero
+     */
+    public ContentDecoding(){
+        super(OBJECT_NAME_PREFIX);
+    }
+
+    /**
+     * Body handler that decodes the body as it arrives and reads it into a String, in the charset of its Content-Type or UTF-8.
+     *
+     * <p>The body completes exceptionally with an IOException if it is not validly encoded or ends before its encoding does.</p>
+     *
+     * @return HttpResponse.BodyHandler&lt;String&gt; - handler for HttpClient.send() and sendAsync()
+     */
+    public HttpResponse.BodyHandler<String> ofString(){
+        return info -> {
+            String encoding = encodingOf(info.headers());
+            count(encoding);
+            return new DecodingSubscriber(new ChunkDecoder(encoding), charsetOf(info.headers()));
+        };
+    }
+
+    /**
+     * Body handler that gives the body as a stream, decoded as it is read.
+     *
+     * <p>The response is available as soon as its headers arrive. Nothing is read from the body until the caller reads the stream.</p>
+     *
+     * @return HttpResponse.BodyHandler&lt;InputStream&gt; - handler for HttpClient.send() and sendAsync()
+     */
+    public HttpResponse.BodyHandler<InputStream> ofInputStream(){
+        return info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), body -> decode(body, info.headers()));
+    }
+
+    /**
+     * Wraps a body in the decoder for its Content-Encoding and in the counters.
+     *
+     * <p>The decoder is created on the first read rather than here, as reading the gzip header blocks
+     * and this runs on the HttpClient thread delivering the response.</p>
+     *
+     * @param body body as received
+     * @param headers headers of the response
+     * @return InputStream - decoded body
+     */
+    private InputStream decode(InputStream body, HttpHeaders headers){
+        String encoding = encodingOf(headers);
+        InputStream received = new CountingInputStream(body, compressedBytes);
+        switch (count(encoding)){
+            case GZIP:
+                return new CountingInputStream(new LazyInputStream(received, true), uncompressedBytes);
+            case DEFLATE:
+                return new CountingInputStream(new LazyInputStream(received, false), uncompressedBytes);
+            default:
+                return new CountingInputStream(received, uncompressedBytes);
+        }
+    }
+
+    /**
+     * Content-Encoding of a response
+     *
+     * @param headers headers of the response
+     * @return String - encoding in lower case, "identity" if none is given
+     */
+    private static String encodingOf(HttpHeaders headers){
+        return headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Counts a response by its encoding
+     *
+     * @param encoding Content-Encoding of the response, in lower case
+     * @return int - GZIP, DEFLATE, or IDENTITY for an encoding that is passed through
+     */
+    private int count(String encoding){
+        responses.increment();
+        int decoder = decoderOf(encoding);
+        if(decoder != IDENTITY){
+            compressedResponses.increment();
+        }
+        return decoder;
+    }
+
+    /**
+     * Decoder for a Content-Encoding
+     *
+     * @param encoding Content-Encoding in lower case
+     * @return int - GZIP, DEFLATE, or IDENTITY for an encoding that is passed through
+     */
+    private static int decoderOf(String encoding){
+        switch (encoding){
+            case "gzip":
+            case "x-gzip":
+                return GZIP;
+            case "deflate":
+                return DEFLATE;
+            default:
+                return IDENTITY;
+        }
+    }
+
+    /**
+     * Checks whether the first two bytes of a deflate body are a zlib header, as opposed to the start of raw DEFLATE data.
+     *
+     * @param first first byte of the body
+     * @param second second byte of the body
+     * @return boolean - true for a zlib header using the deflate method with a valid check value
+     */
+    private static boolean isZlibHeader(int first, int second){
+        return (first & 0x0F) == 8 && (first & 0xFF) >> 4 <= 7 && (((first & 0xFF) << 8) | (second & 0xFF)) % 31 == 0;
+    }
+
+    /**
+     * Charset of a text body, from the charset parameter of its Content-Type
+     *
+     * @param headers headers of the response
+     * @return Charset - charset of the body, UTF-8 if none is given or it is not supported
+     */
+    private static Charset charsetOf(HttpHeaders headers){
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        for(String parameter : contentType.split(";")){
+            String[] pair = parameter.trim().split("=", 2);
+            if(pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")){
+                try{
+                    return Charset.forName(pair[1].trim().replace("\"", ""));
+                } catch (IllegalArgumentException e){
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Body subscriber that inflates each chunk of a body as it arrives, and builds the String once the body is complete
+     */
+    private class DecodingSubscriber implements HttpResponse.BodySubscriber<String> {
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        private final ChunkDecoder decoder;
+        private final Charset charset;
+        private Flow.Subscription subscription;
+
+        private DecodingSubscriber(ChunkDecoder decoder, Charset charset){
+            this.decoder = decoder;
+            this.charset = charset;
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> chunks) {
+            if(body.isDone()){
+                return;
+            }
+            try{
+                for(ByteBuffer chunk : chunks){
+                    compressedBytes.add(chunk.remaining());
+                    int before = decoded.size();
+                    decoder.decode(chunk, decoded);
+                    uncompressedBytes.add(decoded.size() - before);
+                }
+            } catch (IOException e){
+                decoder.end();
+                subscription.cancel();
+                body.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            decoder.end();
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if(body.isDone()){
+                return;
+            }
+            try{
+                decoder.finish();
+                body.complete(decoded.toString(charset));
+            } catch (IOException e){
+                body.completeExceptionally(e);
+            } finally {
+                decoder.end();
+            }
+        }
+    }
+
+    /**
+     * Decodes a body given chunk by chunk, without blocking for the next chunk.
+     *
+     * <p>A gzip header is collected until complete, then the data is inflated, and the gzip trailer is checked
+     * against the CRC-32 and size of the inflated data. A deflate body is inflated as zlib or as raw DEFLATE
+     * depending on its first two bytes. A body with no bytes at all decodes to nothing, whatever its encoding.</p>
+     */
+    private static class ChunkDecoder {
+        private static final int GZIP_TRAILER_LENGTH = 8;
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final int kind;
+        /**
+         * Bytes received before the inflater can be created: the gzip header, or the first bytes of a deflate body
+         */
+        private final ByteArrayOutputStream start = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream trailer = new ByteArrayOutputStream();
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[8192];
+        private Inflater inflater;
+
+        private ChunkDecoder(String encoding){
+            this.kind = decoderOf(encoding);
+        }
+
+        /**
+         * Decodes the next chunk of the body
+         *
+         * @param chunk bytes received, read to the end
+         * @param out receives the decoded bytes
+         * @throws IOException if the body is not validly encoded
+         */
+        private void decode(ByteBuffer chunk, ByteArrayOutputStream out) throws IOException {
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            if(kind == IDENTITY){
+                out.write(bytes, 0, bytes.length);
+                return;
+            }
+            int offset = 0;
+            if(inflater == null){
+                start.write(bytes, 0, bytes.length);
+                bytes = start.toByteArray();
+                offset = kind == GZIP ? gzipHeaderLength(bytes) : (bytes.length < 2 ? -1 : 0);
+                if(offset < 0){
+                    return;
+                }
+                inflater = new Inflater(kind == GZIP || !isZlibHeader(bytes[0], bytes[1]));
+            }
+            if(inflater.finished()){
+                keepTrailer(bytes, offset, bytes.length - offset);
+                return;
+            }
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            try{
+                while(!inflater.finished() && !inflater.needsInput()){
+                    int n = inflater.inflate(buffer);
+                    if(n == 0 && inflater.needsDictionary()){
+                        throw new ZipException("Deflate body needs a preset dictionary");
+                    }
+                    crc.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                }
+            } catch (DataFormatException e){
+                throw new ZipException(e.getMessage());
+            }
+            if(inflater.finished()){
+                keepTrailer(bytes, bytes.length - inflater.getRemaining(), inflater.getRemaining());
+            }
+        }
+
+        /**
+         * Checks the body ended where its encoding does, and that a gzip trailer matches the inflated data
+         *
+         * @throws IOException if the body ended early or its trailer does not match
+         */
+        private void finish() throws IOException {
+            if(kind == IDENTITY || (inflater == null && start.size() == 0)){
+                return;
+            }
+            if(inflater == null || !inflater.finished()){
+                throw new EOFException("Unexpected end of " + (kind == GZIP ? "gzip" : "deflate") + " body");
+            }
+            if(kind == GZIP){
+                byte[] bytes = trailer.toByteArray();
+                if(bytes.length < GZIP_TRAILER_LENGTH){
+                    throw new EOFException("Unexpected end of gzip trailer");
+                }
+                if(littleEndian(bytes, 0) != crc.getValue() || littleEndian(bytes, 4) != (inflater.getBytesWritten() & 0xFFFFFFFFL)){
+                    throw new ZipException("Corrupt gzip trailer");
+                }
+            }
+        }
+
+        /**
+         * Frees the inflater, once the body is complete or has failed
+         */
+        private void end(){
+            if(inflater != null){
+                inflater.end();
+            }
+        }
+
+        /**
+         * Keeps the bytes after the end of the deflate data, up to the length of a gzip trailer
+         */
+        private void keepTrailer(byte[] bytes, int offset, int length){
+            int kept = Math.min(length, GZIP_TRAILER_LENGTH - trailer.size());
+            if(kept > 0){
+                trailer.write(bytes, offset, kept);
+            }
+        }
+
+        /**
+         * Length of the gzip header at the start of a body
+         *
+         * @param bytes bytes of the body received so far
+         * @return int - length of the header, -1 if more bytes are needed to tell
+         * @throws ZipException if the body does not start with a gzip header
+         */
+        private static int gzipHeaderLength(byte[] bytes) throws ZipException {
+            if(bytes.length < 10){
+                return -1;
+            }
+            if((bytes[0] & 0xFF) != 0x1F || (bytes[1] & 0xFF) != 0x8B || bytes[2] != 8){
+                throw new ZipException("Not in GZIP format");
+            }
+            int flags = bytes[3] & 0xFF;
+            int position = 10;
+            if((flags & FEXTRA) != 0){
+                if(bytes.length < position + 2){
+                    return -1;
+                }
+                position += 2 + ((bytes[position] & 0xFF) | ((bytes[position + 1] & 0xFF) << 8));
+            }
+            for(int field : new int[]{FNAME, FCOMMENT}){
+                if((flags & field) != 0){
+                    while(position < bytes.length && bytes[position] != 0){
+                        position++;
+                    }
+                    if(position >= bytes.length){
+                        return -1;
+                    }
+                    position++;
+                }
+            }
+            if((flags & FHCRC) != 0){
+                position += 2;
+            }
+            return position <= bytes.length ? position : -1;
+        }
+
+        private static long littleEndian(byte[] bytes, int offset){
+            return (bytes[offset] & 0xFFL) | (bytes[offset + 1] & 0xFFL) << 8 | (bytes[offset + 2] & 0xFFL) << 16 | (bytes[offset + 3] & 0xFFL) << 24;
+        }
+    }
+
+    /**
+     * Input stream that adds the number of bytes read through it to a counter
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final LongAdder counter;
+
+        private CountingInputStream(InputStream in, LongAdder counter){
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0){
+                counter.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if(n > 0){
+                counter.add(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            counter.add(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Input stream that inflates a gzip, zlib or raw DEFLATE encoded stream, creating the inflater on first use
+     */
+    private static class LazyInputStream extends InputStream {
+        private final InputStream encoded;
+        private final boolean gzip;
+        private InputStream decoded;
+
+        private LazyInputStream(InputStream encoded, boolean gzip){
+            this.encoded = encoded;
+            this.gzip = gzip;
+        }
+
+        /**
+         * Returns the inflating stream, reading the gzip header or the first two bytes of a deflate stream the first time
+         *
+         * @return InputStream - decoded stream
+         * @throws IOException if the gzip header cannot be read
+         */
+        private InputStream decoded() throws IOException {
+            if(decoded == null){
+                decoded = gzip ? new GZIPInputStream(encoded) : inflating(encoded);
+            }
+            return decoded;
+        }
+
+        /**
+         * Wraps a deflate stream in an inflater for zlib or raw DEFLATE data, depending on its first two bytes
+         *
+         * @param encoded deflate encoded stream
+         * @return InputStream - decoded stream
+         * @throws IOException if the first bytes cannot be read
+         */
+        private static InputStream inflating(InputStream encoded) throws IOException {
+            PushbackInputStream in = new PushbackInputStream(encoded, 2);
+            byte[] first = in.readNBytes(2);
+            in.unread(first);
+            if(first.length == 2 && isZlibHeader(first[0], first[1])){
+                return new InflaterInputStream(in);
+            }
+            Inflater raw = new Inflater(true);
+            return new InflaterInputStream(in, raw){
+                @Override
+                public void close() throws IOException {
+                    try{
+                        super.close();
+                    } finally {
+                        raw.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return decoded().read(buffer, offset, length);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decoded == null ? 0 : decoded.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(decoded != null){
+                decoded.close();
+            } else {
+                encoded.close();
+            }
+        }
+    }
+
+    @Override
+    public long getResponseCount() {
+        return responses.sum();
+    }
+
+    @Override
+    public long getCompressedResponseCount() {
+        return compressedResponses.sum();
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    @Override
+    public long getSavedBytes() {
+        return Math.max(0, getUncompressedBytes() - getCompressedBytes());
+    }
+}
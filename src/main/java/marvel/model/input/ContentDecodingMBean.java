@@ -0,0 +1,33 @@
+package marvel.model.input;
+
+/**
+ * JMX management interface of ContentDecoding, shown under marvel.http:type=ContentDecoding in JConsole or VisualVM.
+ *
+ * @see ContentDecoding
+ */
+public interface ContentDecodingMBean {
+    /**
+     * @return long - number of response bodies read
+     */
+    public long getResponseCount();
+
+    /**
+     * @return long - number of response bodies that arrived gzip or deflate encoded
+     */
+    public long getCompressedResponseCount();
+
+    /**
+     * @return long - bytes of response bodies received, as sent by the server
+     */
+    public long getCompressedBytes();
+
+    /**
+     * @return long - bytes of response bodies after decoding
+     */
+    public long getUncompressedBytes();
+
+    /**
+     * @return long - bytes not downloaded thanks to compression
+     */
+    public long getSavedBytes();
+}
@@ -0,0 +1,167 @@
+package marvel.model.input;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values, such as latencies in nanoseconds or sizes in bytes.
+ *
+ * <p>Values are counted in logarithmic buckets - each power of two is split into SUB_BUCKETS equal buckets,
+ * so percentiles are reported with a relative error below 1 / SUB_BUCKETS at any scale.
+ * Recording a value is a couple of shifts and a LongAdder increment, cheap enough for every cache lookup.</p>
+ *
+ * <p>Safe to use from multiple threads. Percentiles read while values are being recorded may miss the latest values.</p>
+ *
+ * @see CacheMetrics
+ */
+public class Histogram {
+    /**
+     * Number of buckets each power of two is split into, a power of two itself
+     */
+    private static final int SUB_BUCKETS = 8;
+    /**
+     * log2 of SUB_BUCKETS
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    /**
+     * Enough buckets for every non-negative long
+     */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructor for an empty Histogram
+     */
+    public Histogram(){
+        for(int i = 0 ; i < BUCKET_COUNT ; i++){
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value, negative values are recorded as 0
+     *
+     * @param value value to record
+     */
+    public void record(long value){
+        value = Math.max(0, value);
+        buckets[bucketOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Getter for the number of values recorded
+     *
+     * @return long - value count
+     */
+    public long getCount(){
+        return count.sum();
+    }
+
+    /**
+     * Getter for the sum of the values recorded
+     *
+     * @return long - value sum
+     */
+    public long getSum(){
+        return sum.sum();
+    }
+
+    /**
+     * Getter for the largest value recorded
+     *
+     * @return long - maximum, 0 if nothing was recorded
+     */
+    public long getMax(){
+        return max.get();
+    }
+
+    /**
+     * Mean of the values recorded
+     *
+     * @return double - mean, 0 if nothing was recorded
+     */
+    public double getMean(){
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Value below which the given fraction of recorded values fall, reported as the upper bound of its bucket
+     *
+     * @param fraction fraction between 0 and 1, such as 0.99 for the 99th percentile
+     * @return long - percentile, 0 if nothing was recorded
+     */
+    public long getPercentile(double fraction){
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for(int i = 0 ; i < BUCKET_COUNT ; i++){
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, fraction)) * total));
+        long seen = 0;
+        for(int i = 0 ; i < BUCKET_COUNT ; i++){
+            seen += counts[i];
+            if(seen >= rank){
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears every recorded value
+     */
+    public void reset(){
+        for(LongAdder bucket : buckets){
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Bucket a value is counted in - values below SUB_BUCKETS get a bucket each,
+     * larger values share a bucket with values that have the same leading SUB_BUCKET_BITS + 1 bits
+     *
+     * @param value non-negative value
+     * @return int - bucket index
+     */
+    private static int bucketOf(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Largest value counted in a bucket
+     *
+     * @param bucket bucket index
+     * @return long - upper bound of the bucket
+     */
+    private static long upperBound(int bucket){
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << shift;
+        long upper = lower + (1L << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
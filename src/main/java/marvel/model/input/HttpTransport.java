@@ -0,0 +1,496 @@
+package marvel.model.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP transport shared by the API handlers: one HttpClient, so connections to a host are reused by every handler,
+ * with timeouts, its own executor, a limit of requests in flight to each host and timings of every request.
+ *
+ * <p>The client prefers HTTP/2, which carries concurrent requests to a host over a single connection,
+ * and falls back to HTTP/1.1 with a pool of kept-alive connections if the server does not offer it.
+ * It runs on virtual threads when the JVM has them, found by reflection as the project targets Java 11,
+ * and on a pool of daemon threads otherwise.</p>
+ *
+ * <p>A request to a host that already has maxInFlightPerHost requests in flight waits in a queue for one of them to complete,
+ * without holding a thread. A request completes once its status line and headers have arrived,
+ * and its body too unless the body is read as a stream.</p>
+ *
+ * <p>The time each request waited in the queue and took to complete is recorded, in total and for each host.
+ * Read the numbers through the getters, or through JMX once register() has been called.</p>
+ *
+ * @see MarvelApiHandler#setTransport(HttpTransport)
+ * @see HttpTransportMBean
+ */
+public class HttpTransport extends RegisteredMBean implements HttpTransportMBean {
+    /**
+     * Timeout for opening a connection when not configured
+     */
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    /**
+     * Timeout for a response when not configured
+     */
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 20000;
+    /**
+     * Requests in flight to one host when not configured
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_HOST = 8;
+    /**
+     * JMX domain and type the transport is registered under
+     */
+    public static final String OBJECT_NAME_PREFIX = "marvel.http:type=HttpTransport,name=";
+
+    /**
+     * Transport with the default settings, used by handlers that have not been given one
+     */
+    private static volatile HttpTransport defaultTransport;
+
+    /**
+     * Requests to one host, and how long they took
+     */
+    private static class Host {
+        private final Histogram latency = new Histogram();
+        private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        /**
+         * Requests in flight, guarded by this
+         */
+        private int inFlight = 0;
+
+        /**
+         * Asks for room to send a request
+         *
+         * @param max maximum number of requests in flight
+         * @return CompletableFuture&lt;Void&gt; - completes when the request may be sent, cancel it to leave the queue
+         */
+        private synchronized CompletableFuture<Void> acquire(int max){
+            if(inFlight < max && waiting.isEmpty()){
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> slot = new CompletableFuture<>();
+            waiting.add(slot);
+            return slot;
+        }
+
+        /**
+         * Gives the room of a completed request to the oldest request waiting, if any
+         */
+        private void release(){
+            CompletableFuture<Void> next;
+            synchronized (this){
+                do{
+                    next = waiting.poll();
+                } while(next != null && next.isDone());
+                if(next == null){
+                    inFlight--;
+                }
+            }
+            if(next != null && !next.complete(null)){
+                release();
+            }
+        }
+
+        private synchronized int getInFlight(){
+            return inFlight;
+        }
+
+        private synchronized int getQueued(){
+            int queued = 0;
+            for(CompletableFuture<Void> slot : waiting){
+                queued += slot.isDone() ? 0 : 1;
+            }
+            return queued;
+        }
+    }
+
+    private final Duration connectTimeout;
+    private final Duration requestTimeout;
+    private final int maxInFlightPerHost;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    /**
+     * HttpClient every request is sent on, created on first use
+     */
+    private volatile HttpClient client;
+    /**
+     * Requests and timings of each host, keyed by host and port
+     */
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder http2Responses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final Histogram requestNanos = new Histogram();
+    private final Histogram queueNanos = new Histogram();
+
+    /**
+     * Constructor for an HttpTransport with the default timeouts and limit
+     */
+    public HttpTransport(){
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_REQUEST_TIMEOUT_MILLIS, DEFAULT_MAX_IN_FLIGHT_PER_HOST);
+    }
+
+    /**
+     * Constructor for an HttpTransport
+     *
+     * @param connectTimeoutMillis timeout for opening a connection
+     * @param requestTimeoutMillis timeout for a response to arrive once a request is sent
+     * @param maxInFlightPerHost maximum number of requests in flight to one host
+     * @throws IllegalArgumentException if a timeout or the limit is less than 1
+     */
+    public HttpTransport(long connectTimeoutMillis, long requestTimeoutMillis, int maxInFlightPerHost){
+        super(OBJECT_NAME_PREFIX);
+        if(connectTimeoutMillis < 1 || requestTimeoutMillis < 1 || maxInFlightPerHost < 1){
+            throw new IllegalArgumentException();
+        }
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMillis);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-transport");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Getter for the transport with the default settings, shared by every handler not given a transport of its own
+     *
+     * @return HttpTransport - default transport, created on first use
+     */
+    public static HttpTransport getDefault(){
+        HttpTransport current = defaultTransport;
+        if(current == null){
+            synchronized (HttpTransport.class){
+                current = defaultTransport;
+                if(current == null){
+                    current = new HttpTransport();
+                    defaultTransport = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task, if the JVM has virtual threads.
+     *
+     * @return ExecutorService - virtual thread executor, null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e){
+            return null;
+        }
+    }
+
+    /**
+     * Creates the HttpClient ahead of the first request, so a background thread pays for it instead of the first request.
+     *
+     * <p>Does nothing if the client already exists.</p>
+     */
+    public void warmUp(){
+        client();
+    }
+
+    /**
+     * Returns the HttpClient, creating it on first use.
+     *
+     * <p>Creating a client starts its selector thread and loads the TLS classes, which is slow enough to delay startup,
+     * so it is not done in the constructor.</p>
+     *
+     * @return HttpClient - client every request is sent on
+     */
+    private HttpClient client(){
+        HttpClient current = client;
+        if(current == null){
+            synchronized (this){
+                current = client;
+                if(current == null){
+                    current = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_2)
+                            .connectTimeout(connectTimeout)
+                            .executor(executor)
+                            .build();
+                    client = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Starts building a request with the request timeout of this transport
+     *
+     * @return HttpRequest.Builder - builder for the request
+     */
+    public HttpRequest.Builder newRequest(){
+        return HttpRequest.newBuilder().timeout(requestTimeout);
+    }
+
+    /**
+     * Sends a request without blocking, once its host has fewer than maxInFlightPerHost requests in flight.
+     *
+     * <p>Cancelling the returned future leaves the queue, or cancels the exchange if the request has been sent.</p>
+     *
+     * @param request request to send
+     * @param bodyHandler reads the body of the response
+     * @param <T> type of the body
+     * @return CompletableFuture&lt;HttpResponse&lt;T&gt;&gt; - completes with the response, or exceptionally if the request fails or times out
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler){
+        Host host = hosts.computeIfAbsent(hostOf(request.uri()), key -> new Host());
+        long queuedAt = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        CompletableFuture<Void> slot = host.acquire(maxInFlightPerHost);
+        AtomicReference<CompletableFuture<?>> step = new AtomicReference<>(slot);
+        result.whenComplete((ignored, e) -> {
+            if(result.isCancelled()){
+                step.get().cancel(true);
+            }
+        });
+        slot.thenCompose(ignored -> {
+            long sentAt = System.nanoTime();
+            queueNanos.record(sentAt - queuedAt);
+            CompletableFuture<HttpResponse<T>> sent;
+            try{
+                sent = client().sendAsync(request, bodyHandler);
+            } catch (RuntimeException e){
+                sent = CompletableFuture.failedFuture(e);
+            }
+            step.set(sent);
+            if(result.isDone()){
+                sent.cancel(true);
+            }
+            return sent.whenComplete((response, e) -> {
+                host.release();
+                record(host, sentAt, response, e);
+            });
+        }).whenComplete((response, e) -> {
+            if(e != null){
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else if(!result.complete(response)){
+                discard(response);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sends a request and waits for the response, once its host has fewer than maxInFlightPerHost requests in flight.
+     *
+     * @param request request to send
+     * @param bodyHandler reads the body of the response
+     * @param <T> type of the body
+     * @return HttpResponse&lt;T&gt; - the response
+     * @throws IOException if the request fails or times out
+     * @throws InterruptedException if interrupted while waiting, the request is then cancelled
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> response = sendAsync(request, bodyHandler);
+        try{
+            return response.get();
+        } catch (InterruptedException e){
+            response.cancel(true);
+            throw e;
+        } catch (ExecutionException e){
+            if(e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Closes the body of a response no one will read, if it is a stream, so its connection is released.
+     *
+     * @param response response to discard, may be null
+     */
+    public static void discard(HttpResponse<?> response){
+        if(response != null && response.body() instanceof Closeable){
+            try{
+                ((Closeable) response.body()).close();
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Records the outcome and time of a request sent.
+     *
+     * @param host host the request was sent to
+     * @param sentAt time the request was sent, from System.nanoTime()
+     * @param response response received, null if the request failed
+     * @param e why the request failed, null if it did not
+     */
+    private void record(Host host, long sentAt, HttpResponse<?> response, Throwable e){
+        if(e != null){
+            failures.increment();
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if(cause instanceof HttpTimeoutException){
+                timeouts.increment();
+            }
+            return;
+        }
+        long elapsed = System.nanoTime() - sentAt;
+        responses.increment();
+        if(response.version() == HttpClient.Version.HTTP_2){
+            http2Responses.increment();
+        }
+        requestNanos.record(elapsed);
+        host.latency.record(elapsed);
+    }
+
+    /**
+     * Key of the host a request is sent to
+     *
+     * @param uri address of the request
+     * @return String - host and port
+     */
+    private static String hostOf(URI uri){
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * Getter for the times requests to a host took, from sending to their response
+     *
+     * @param host host name, such as gateway.marvel.com
+     * @return Histogram - request times in nanoseconds, null if no request has been sent to the host
+     */
+    public Histogram getHostLatency(String host){
+        for(String key : hosts.keySet()){
+            if(key.substring(0, key.lastIndexOf(':')).equals(host)){
+                return hosts.get(key).latency;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Getter for the times requests took, from sending to their response
+     *
+     * @return Histogram - request times in nanoseconds
+     */
+    public Histogram getRequestLatency(){
+        return requestNanos;
+    }
+
+    /**
+     * Stops the threads of the transport. Requests sent afterwards fail.
+     *
+     * <p>The default transport is shared, and is not to be shut down.</p>
+     */
+    public void shutdown(){
+        executor.shutdown();
+        unregister();
+    }
+
+    @Override
+    public long getConnectTimeoutMillis() {
+        return connectTimeout.toMillis();
+    }
+
+    @Override
+    public long getRequestTimeoutMillis() {
+        return requestTimeout.toMillis();
+    }
+
+    @Override
+    public int getMaxInFlightPerHost() {
+        return maxInFlightPerHost;
+    }
+
+    @Override
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public int getInFlightCount() {
+        int inFlight = 0;
+        for(Host host : hosts.values()){
+            inFlight += host.getInFlight();
+        }
+        return inFlight;
+    }
+
+    @Override
+    public int getQueuedCount() {
+        int queued = 0;
+        for(Host host : hosts.values()){
+            queued += host.getQueued();
+        }
+        return queued;
+    }
+
+    @Override
+    public long getResponseCount() {
+        return responses.sum();
+    }
+
+    @Override
+    public long getHttp2ResponseCount() {
+        return http2Responses.sum();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public double getMeanRequestMillis() {
+        return requestNanos.getMean() / 1_000_000.0;
+    }
+
+    @Override
+    public double getP50RequestMillis() {
+        return requestNanos.getPercentile(0.5) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP99RequestMillis() {
+        return requestNanos.getPercentile(0.99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getMaxRequestMillis() {
+        return requestNanos.getMax() / 1_000_000.0;
+    }
+
+    @Override
+    public double getMeanQueueMillis() {
+        return queueNanos.getMean() / 1_000_000.0;
+    }
+
+    @Override
+    public double getP99QueueMillis() {
+        return queueNanos.getPercentile(0.99) / 1_000_000.0;
+    }
+}
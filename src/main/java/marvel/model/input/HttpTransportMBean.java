@@ -0,0 +1,90 @@
+package marvel.model.input;
+
+/**
+ * JMX management interface of HttpTransport, shown under marvel.http:type=HttpTransport in JConsole or VisualVM.
+ *
+ * <p>Times are in milliseconds. Percentiles are accurate to within an eighth of their value.</p>
+ *
+ * @see HttpTransport
+ */
+public interface HttpTransportMBean {
+    /**
+     * @return long - timeout for opening a connection
+     */
+    public long getConnectTimeoutMillis();
+
+    /**
+     * @return long - timeout for a response to arrive once a request is sent
+     */
+    public long getRequestTimeoutMillis();
+
+    /**
+     * @return int - maximum number of requests in flight to one host
+     */
+    public int getMaxInFlightPerHost();
+
+    /**
+     * @return boolean - whether requests run on virtual threads
+     */
+    public boolean isVirtualThreads();
+
+    /**
+     * @return int - requests in flight to every host
+     */
+    public int getInFlightCount();
+
+    /**
+     * @return int - requests waiting for a host to have fewer than the maximum in flight
+     */
+    public int getQueuedCount();
+
+    /**
+     * @return long - responses received
+     */
+    public long getResponseCount();
+
+    /**
+     * @return long - responses received over HTTP/2
+     */
+    public long getHttp2ResponseCount();
+
+    /**
+     * @return long - requests that failed without a response, including timeouts
+     */
+    public long getFailureCount();
+
+    /**
+     * @return long - requests that timed out
+     */
+    public long getTimeoutCount();
+
+    /**
+     * @return double - mean time from sending a request to its response
+     */
+    public double getMeanRequestMillis();
+
+    /**
+     * @return double - median time from sending a request to its response
+     */
+    public double getP50RequestMillis();
+
+    /**
+     * @return double - 99th percentile time from sending a request to its response
+     */
+    public double getP99RequestMillis();
+
+    /**
+     * @return double - slowest request
+     */
+    public double getMaxRequestMillis();
+
+    /**
+     * @return double - mean time a request waited for its host to have room
+     */
+    public double getMeanQueueMillis();
+
+    /**
+     * @return double - 99th percentile time a request waited for its host to have room
+     */
+    public double getP99QueueMillis();
+}
@@ -2,6 +2,11 @@ package marvel.model.input;
 
 import marvel.model.character.CharacterInfo;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
 /**
  *
  * Sub model interface for methods relating to interacting with the input Marvel API.
@@ -39,6 +44,37 @@ public interface InputModel {
      */
     public CharacterInfo getInfoByName(String name);
 
+    /**
+     * Asynchronous version of getInfoByName(), which does not block the calling thread while the API answers.
+     *
+     * <p>Cancelling the returned future abandons the search.</p>
+     *
+     * @param name Specified character name to search API with
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with the character if name is a valid Marvel character name, null otherwise
+     */
+    public CompletableFuture<CharacterInfo> getInfoByNameAsync(String name);
+
+    /**
+     * Looks up many characters at once, answering cached names first and searching the rest with at most parallelism searches at a time.
+     *
+     * <p>Each distinct name is given to onResult once, with its character or null, in the order the lookups complete.
+     * Calls to onResult never overlap.</p>
+     *
+     * @param names character names to look up
+     * @param parallelism maximum number of searches in flight at once
+     * @param onResult called with each name and its character, or null if none was found
+     * @return CompletableFuture&lt;Void&gt; - completes once every name has been given to onResult, cancel it to stop the lookup
+     */
+    public CompletableFuture<Void> getInfoByNames(List<String> names, int parallelism, BiConsumer<String, CharacterInfo> onResult);
+
+    /**
+     * Loads every comic, story, event and series of a character, where a search lists only the first 20 of each
+     *
+     * @param info character from a search
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with a copy of the character holding the complete lists, cancel it to stop loading
+     */
+    public CompletableFuture<CharacterInfo> loadAllAppearances(CharacterInfo info);
+
     /**
      * Use given name as key to create CharacterInfo from cached response in the database
      * @param name Name of character to retrieve data for
@@ -46,6 +82,23 @@ public interface InputModel {
      */
     public CharacterInfo getInfoByNameFromCache(String name);
 
+    /**
+     * Looks up the character cached under the given name in a single round trip,
+     * replacing a call to isInfoInCache() followed by getInfoByNameFromCache()
+     *
+     * @param name Name of character to retrieve data for
+     * @return Optional&lt;CharacterInfo&gt; - object created from cached data, empty if no cached data is found
+     */
+    public Optional<CharacterInfo> findInCache(String name);
+
+    /**
+     * Searches cached characters by keywords or prefixes of their names and descriptions, without calling the API
+     *
+     * @param query words or word prefixes to search for
+     * @return List&lt;String&gt; - names the matching characters are cached under, best matches first
+     */
+    public List<String> searchCache(String query);
+
     /**
      * Generate the full image path for retrieving a representative image of the given character,
      * using CharacterInfo info's Thumbnail attribute.
@@ -59,4 +112,17 @@ public interface InputModel {
 
     /** Checks if given name matches a cached response in the database */
     public boolean isInfoInCache(String name);
+
+    /**
+     * Checks if the API recently found no character for given name, telling a confirmed miss apart from a failed search
+     *
+     * @param name Name of character searched for
+     * @return boolean - true if a search for name returned no character within the miss time to live, otherwise false
+     */
+    public boolean isKnownMiss(String name);
+
+    /**
+     * Releases resources held by this model, such as connections to the cache database.
+     */
+    public void shutdown();
 }
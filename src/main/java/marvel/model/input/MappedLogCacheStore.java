@@ -0,0 +1,979 @@
+package marvel.model.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * CacheStore backed by an append-only log file that is memory-mapped for reading, with an in-memory offset index.
+ *
+ * <p>Every write appends a record to the end of the log and points the index entry for its name at the new record.
+ * A lookup is a single index lookup followed by copying the record's response and payload out of the mapped file into new arrays -
+ * no system call, no SQL parsing and no row decoding, though reads are not zero-copy, as CacheEntry holds byte arrays.
+ * Entity tags and fetch times are held in the index, so readHeader() and contains() never touch the file.</p>
+ *
+ * <p>Records replaced by a later write or removed by delete(), and the small TOUCH and DELETE records that update them, become garbage.
+ * When garbage makes up more than half of a large enough log, the live records are copied to a new log on a background thread,
+ * which then replaces the old one. Lookups keep running while live records are copied,
+ * and are only paused while records appended during the copy are moved across and the files are swapped.</p>
+ *
+ * <p>The log starts with a header holding a magic number, the format version and the end offset of the last complete record.
+ * Each record is laid out as its body length, the CRC32 of its body, then the body. On opening, the log is replayed to rebuild the index
+ * and stops at the first record whose checksum does not match, so a record torn by a crash is dropped rather than read.
+ * Like the SQLite store in synchronous NORMAL mode, the file is not forced to disk after every write.</p>
+ *
+ * <p>A mapped file is limited to 2GB.</p>
+ *
+ * @see CacheStore
+ * @see SqliteCacheStore
+ */
+public class MappedLogCacheStore implements CacheStore {
+    /**
+     * Magic number at the start of the log, "MCLG"
+     */
+    private static final int MAGIC = 0x4d434c47;
+    /**
+     * Version of the log format
+     */
+    public static final int VERSION = 1;
+    /**
+     * Size of the log header - magic number, version and end offset
+     */
+    private static final int HEADER_SIZE = 16;
+    /**
+     * Position of the end offset in the header
+     */
+    private static final int END_POSITION = 8;
+    /**
+     * Size of the length and checksum in front of each record body
+     */
+    private static final int RECORD_PREFIX_SIZE = 8;
+    /**
+     * Record type holding a whole CacheEntry
+     */
+    private static final byte PUT = 1;
+    /**
+     * Record type updating the fetch time and entity tag of an earlier PUT record
+     */
+    private static final byte TOUCH = 2;
+    /**
+     * Record type removing the record stored under a name
+     */
+    private static final byte DELETE = 3;
+    /**
+     * Size the log file is first mapped with, doubled whenever it fills up
+     */
+    private static final long INITIAL_CAPACITY = 1 << 20;
+    /**
+     * Largest log that can be mapped as a single buffer
+     */
+    private static final long MAX_CAPACITY = Integer.MAX_VALUE;
+    /**
+     * Smallest log worth compacting
+     */
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+    /**
+     * Fraction of the log that must be garbage before it is compacted
+     */
+    private static final double COMPACTION_GARBAGE_RATIO = 0.5;
+
+    /**
+     * Location of a live PUT record in the log, together with the header fields of the record
+     */
+    private static final class Slot {
+        final long offset;
+        final int size;
+        final int format;
+        final int codec;
+        final int dictionaryId;
+        final String etag;
+        final long fetchedAt;
+        final long responseOffset;
+        final int responseLength;
+        final long payloadOffset;
+        final int payloadLength;
+
+        Slot(long offset, int size, int format, int codec, int dictionaryId, String etag, long fetchedAt,
+             long responseOffset, int responseLength, long payloadOffset, int payloadLength) {
+            this.offset = offset;
+            this.size = size;
+            this.format = format;
+            this.codec = codec;
+            this.dictionaryId = dictionaryId;
+            this.etag = etag;
+            this.fetchedAt = fetchedAt;
+            this.responseOffset = responseOffset;
+            this.responseLength = responseLength;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+
+        Slot touched(long fetchedAt, String etag){
+            return new Slot(offset, size, format, codec, dictionaryId, etag == null ? this.etag : etag, fetchedAt,
+                    responseOffset, responseLength, payloadOffset, payloadLength);
+        }
+    }
+
+    /**
+     * Path to the log file
+     */
+    private final Path path;
+    /**
+     * Index from name to the live record for it, sorted by name for scan().
+     * Replaced as a whole by replay(), so methods reading it without the lock see either the old or the new index, never a partial one
+     */
+    private volatile ConcurrentSkipListMap<String, Slot> index = new ConcurrentSkipListMap<>();
+    /**
+     * Access times recorded by recordAccess(), kept in memory only
+     */
+    private final ConcurrentHashMap<String, Long> accessTimes = new ConcurrentHashMap<>();
+    /**
+     * Guards the channel, buffer and end offset - reads share the lock, appends and remapping take it exclusively
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Runs compactions in the background
+     */
+    private final ExecutorService compactor;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    /**
+     * Offset just after the last complete record
+     */
+    private long end;
+    /**
+     * Bytes of records that are no longer referenced by the index
+     */
+    private long garbage;
+    private volatile boolean compacting = false;
+    private volatile boolean closed = false;
+    private volatile long compactionCount = 0;
+
+    /**
+     * Constructor for MappedLogCacheStore, opens the log at the given path or creates it if it does not exist, and rebuilds the index.
+     *
+     * @param path path to the log file
+     * @throws IOException if the log cannot be opened, or the file is not a cache log of a supported version
+     */
+    public MappedLogCacheStore(Path path) throws IOException {
+        this.path = path;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        open();
+    }
+
+    /**
+     * Opens and maps the log file, writing a header to a new file and replaying an existing one.
+     *
+     * @throws IOException if the log cannot be opened or read
+     */
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if(size > MAX_CAPACITY){
+            throw new IOException("Cache log is larger than " + MAX_CAPACITY + " bytes");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if(size < HEADER_SIZE){
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            setEnd(HEADER_SIZE);
+            garbage = 0;
+            return;
+        }
+        if(buffer.getInt(0) != MAGIC){
+            throw new IOException("Not a cache log: " + path);
+        }
+        if(buffer.getInt(4) != VERSION){
+            throw new IOException("Unsupported cache log version " + buffer.getInt(4));
+        }
+        replay(buffer.getLong(END_POSITION), true);
+    }
+
+    /**
+     * Rebuilds the index by reading every record from the start of the log. Must hold the write lock, or run before the store is shared.
+     *
+     * <p>The new index is built aside and then swapped in, so lookups that do not take the lock keep using the old one until it is complete.</p>
+     *
+     * @param limit offset just after the last record to read
+     * @param verify whether to check the checksum of every record, stopping at the first record that does not match
+     */
+    private void replay(long limit, boolean verify){
+        ConcurrentSkipListMap<String, Slot> rebuilt = new ConcurrentSkipListMap<>();
+        garbage = 0;
+        long position = HEADER_SIZE;
+        limit = Math.min(limit, buffer.capacity());
+        CRC32 crc = new CRC32();
+        while(position + RECORD_PREFIX_SIZE <= limit){
+            int length = buffer.getInt((int) position);
+            if(length <= 0 || position + RECORD_PREFIX_SIZE + length > limit){
+                break;
+            }
+            ByteBuffer body = slice(position + RECORD_PREFIX_SIZE, length);
+            if(verify){
+                crc.reset();
+                crc.update(body.duplicate());
+                if((int) crc.getValue() != buffer.getInt((int) position + 4)){
+                    System.out.println("Dropping damaged cache log records from offset " + position);
+                    break;
+                }
+            }
+            apply(rebuilt, position, body);
+            position += RECORD_PREFIX_SIZE + length;
+        }
+        index = rebuilt;
+        setEnd(position);
+    }
+
+    /**
+     * Applies a record read from the log to an index.
+     *
+     * @param target index to update
+     * @param offset offset of the record
+     * @param body body of the record
+     */
+    private void apply(ConcurrentSkipListMap<String, Slot> target, long offset, ByteBuffer body){
+        int size = RECORD_PREFIX_SIZE + body.remaining();
+        long base = offset + RECORD_PREFIX_SIZE;
+        int start = body.position();
+        byte type = body.get();
+        String name = readString(body);
+        if(type == PUT){
+            int format = body.getInt();
+            int codec = body.getInt();
+            int dictionaryId = body.getInt();
+            String etag = readString(body);
+            long fetchedAt = body.getLong();
+            int responseLength = body.getInt();
+            long responseOffset = base + body.position() - start;
+            body.position(body.position() + Math.max(0, responseLength));
+            int payloadLength = body.getInt();
+            long payloadOffset = base + body.position() - start;
+            Slot previous = target.put(name, new Slot(offset, size, format, codec, dictionaryId, etag, fetchedAt,
+                    responseOffset, responseLength, payloadOffset, payloadLength));
+            if(previous != null){
+                garbage += previous.size;
+            }
+        } else if(type == TOUCH){
+            long fetchedAt = body.getLong();
+            String etag = readString(body);
+            Slot slot = target.get(name);
+            if(slot != null){
+                target.put(name, slot.touched(fetchedAt, etag));
+            }
+            garbage += size;
+        } else if(type == DELETE){
+            Slot previous = target.remove(name);
+            if(previous != null){
+                garbage += previous.size;
+            }
+            garbage += size;
+        }
+    }
+
+    /**
+     * Reads the record stored under a name, copying its response and payload out of the mapped log
+     *
+     * @param name key of the record
+     * @return CacheEntry - stored record, null if not found or the store is closed
+     * @throws IOException never, the mapped log is read directly
+     */
+    @Override
+    public CacheEntry read(String name) throws IOException {
+        lock.readLock().lock();
+        try{
+            Slot slot = index.get(name);
+            if(slot == null || closed){
+                return null;
+            }
+            return toEntry(buffer, name, slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the record stored under a name from the index alone, without its response and payload
+     *
+     * @param name key of the record
+     * @return CacheEntry - stored record with null response and payload, null if not found or the store is closed
+     */
+    @Override
+    public CacheEntry readHeader(String name) {
+        Slot slot = index.get(name);
+        if(slot == null || closed){
+            return null;
+        }
+        return new CacheEntry(name, slot.format, slot.codec, slot.dictionaryId, null, null, slot.etag, slot.fetchedAt);
+    }
+
+    /**
+     * Whether a record is stored under a name, answered from the index alone
+     *
+     * @param name key of the record
+     * @return boolean - true if a record is found, otherwise false
+     */
+    @Override
+    public boolean contains(String name) {
+        return !closed && index.containsKey(name);
+    }
+
+    /**
+     * Appends records to the log.
+     *
+     * <p>A record identical to the stored one is not appended - a TOUCH record is appended instead
+     * if the new record was fetched later or has a new entity tag.</p>
+     *
+     * @param entries records to write
+     * @return boolean[] - for each record in order, true if it was appended, false if an identical record was already stored
+     * @throws IOException if the store is closed or the log is full
+     */
+    @Override
+    public boolean[] write(List<CacheEntry> entries) throws IOException {
+        boolean[] written = new boolean[entries.size()];
+        lock.writeLock().lock();
+        try{
+            checkOpen();
+            for(int i = 0 ; i < entries.size() ; i++){
+                CacheEntry entry = entries.get(i);
+                Slot slot = index.get(entry.getName());
+                if(slot != null && isSame(slot, entry)){
+                    boolean newEtag = entry.getEtag() != null && !entry.getEtag().equals(slot.etag);
+                    if(entry.getFetchedAt() > slot.fetchedAt || newEtag){
+                        appendTouch(entry.getName(), Math.max(entry.getFetchedAt(), slot.fetchedAt), entry.getEtag());
+                    }
+                    continue;
+                }
+                appendPut(entry);
+                written[i] = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeCompact();
+        return written;
+    }
+
+    /**
+     * Appends a TOUCH record setting the fetch time of the record stored under a name
+     *
+     * @param name key of the record
+     * @param fetchedAt new fetch time, in milliseconds since the epoch
+     * @return boolean - true if a record was updated, false if not found
+     * @throws IOException if the store is closed or the log is full
+     */
+    @Override
+    public boolean touch(String name, long fetchedAt) throws IOException {
+        lock.writeLock().lock();
+        try{
+            checkOpen();
+            if(!index.containsKey(name)){
+                return false;
+            }
+            appendTouch(name, fetchedAt, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeCompact();
+        return true;
+    }
+
+    /**
+     * Reads records in name order from the sorted index
+     *
+     * @param afterName only records with names after this one are returned, empty string to start from the first record
+     * @param limit maximum number of records to return
+     * @return List&lt;CacheEntry&gt; - records after afterName in name order
+     * @throws IOException never, the mapped log is read directly
+     */
+    @Override
+    public List<CacheEntry> scan(String afterName, int limit) throws IOException {
+        List<CacheEntry> entries = new ArrayList<>();
+        for(String name : index.tailMap(afterName, false).keySet()){
+            if(entries.size() >= limit){
+                break;
+            }
+            CacheEntry entry = read(name);
+            if(entry != null){
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Lists the names of every stored record from the index
+     *
+     * @return List&lt;String&gt; - names of stored records in name order
+     */
+    @Override
+    public List<String> names() {
+        return closed ? new ArrayList<>() : new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Records access times in memory. They are not written to the log, so after reopening records count as read when fetched.
+     *
+     * @param accessedAt access time of each name, in milliseconds since the epoch
+     */
+    @Override
+    public void recordAccess(Map<String, Long> accessedAt) {
+        for(Map.Entry<String, Long> access : accessedAt.entrySet()){
+            if(index.containsKey(access.getKey())){
+                accessTimes.merge(access.getKey(), access.getValue(), Math::max);
+            }
+        }
+    }
+
+    /**
+     * Lists the names of the records read least recently by sorting the index by access time
+     *
+     * @param limit maximum number of names to return
+     * @return List&lt;String&gt; - names of stored records, least recently read first
+     */
+    @Override
+    public List<String> leastRecentlyAccessed(int limit) {
+        List<Map.Entry<String, Long>> times = new ArrayList<>();
+        for(Map.Entry<String, Slot> entry : index.entrySet()){
+            times.add(Map.entry(entry.getKey(), accessTimes.getOrDefault(entry.getKey(), entry.getValue().fetchedAt)));
+        }
+        times.sort(Map.Entry.comparingByValue());
+        List<String> names = new ArrayList<>();
+        for(int i = 0 ; i < times.size() && i < limit ; i++){
+            names.add(times.get(i).getKey());
+        }
+        return names;
+    }
+
+    /**
+     * Appends a DELETE record for each stored name
+     *
+     * @param names keys of the records to remove
+     * @return int - number of records removed
+     * @throws IOException if the store is closed or the log is full
+     */
+    @Override
+    public int delete(List<String> names) throws IOException {
+        int deleted = 0;
+        lock.writeLock().lock();
+        try{
+            checkOpen();
+            for(String name : names){
+                if(!index.containsKey(name)){
+                    continue;
+                }
+                byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer body = ByteBuffer.allocate(1 + 4 + nameBytes.length);
+                body.put(DELETE);
+                writeBytes(body, nameBytes);
+                body.flip();
+                append(body);
+                accessTimes.remove(name);
+                deleted++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeCompact();
+        return deleted;
+    }
+
+    /**
+     * Number of records in the index
+     *
+     * @return long - record count
+     */
+    @Override
+    public long count() {
+        return index.size();
+    }
+
+    /**
+     * Bytes of the log held by live records
+     *
+     * @return long - size in bytes
+     */
+    @Override
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try{
+            return end - garbage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for a running compaction, then forces the log to disk and closes it
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try{
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try{
+            if(closed){
+                return;
+            }
+            closed = true;
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live records to a new log and replaces the old log with it. Only one compaction runs at a time.
+     *
+     * <p>Live records are copied from a snapshot of the index without blocking lookups or writes.
+     * Records appended in the meantime are then moved across while holding the write lock,
+     * and the index is rebuilt from the new log before the lock is released.</p>
+     *
+     * <p>Does nothing if the log holds no garbage.</p>
+     *
+     * @throws IOException if the new log cannot be written or moved into place, in which case the store keeps using the old log
+     */
+    @Override
+    public synchronized void compact() throws IOException {
+        lock.readLock().lock();
+        try{
+            if(garbage == 0){
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".compact");
+        MappedByteBuffer source;
+        long copyEnd;
+        List<Map.Entry<String, Slot>> live;
+        lock.readLock().lock();
+        try{
+            checkOpen();
+            source = buffer;
+            copyEnd = end;
+            live = new ArrayList<>(index.entrySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean swapped = false;
+        try{
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+            out.write(header);
+            //records below copyEnd never change, so they are read from the snapshot buffer without a lock
+            for(Map.Entry<String, Slot> entry : live){
+                Slot slot = entry.getValue();
+                if(slot.offset >= copyEnd){
+                    continue;
+                }
+                if(slot.fetchedAt == fetchedAtInRecord(source, slot) && Objects.equals(slot.etag, etagInRecord(source, slot))){
+                    ByteBuffer record = source.duplicate();
+                    record.position((int) slot.offset).limit((int) slot.offset + slot.size);
+                    out.write(record);
+                } else {
+                    //fold TOUCH records into a new PUT record, so the new log starts without garbage
+                    out.write(encodeRecord(putBody(toEntry(source, entry.getKey(), slot))));
+                }
+            }
+
+            lock.writeLock().lock();
+            try{
+                checkOpen();
+                if(end > copyEnd){
+                    ByteBuffer tail = buffer.duplicate();
+                    tail.position((int) copyEnd).limit((int) end);
+                    out.write(tail);
+                }
+                long newEnd = out.position();
+                ByteBuffer endField = ByteBuffer.allocate(8);
+                endField.putLong(newEnd).flip();
+                out.write(endField, END_POSITION);
+                out.force(true);
+                buffer.force();
+
+                //the new log is mapped through the channel it was written with, and the old log is only closed once
+                //the new one has replaced it, so a failure up to the move leaves the store running on the old log
+                MappedByteBuffer compacted = out.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(out.size(), INITIAL_CAPACITY));
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                FileChannel old = channel;
+                channel = out;
+                buffer = compacted;
+                swapped = true;
+                replay(newEnd, false);
+                compactionCount++;
+                try{
+                    old.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            if(!swapped){
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Starts a background compaction if garbage makes up enough of a large enough log.
+     */
+    private void maybeCompact(){
+        if(compacting || closed){
+            return;
+        }
+        lock.readLock().lock();
+        try{
+            if(end < MIN_COMPACTION_SIZE || garbage < end * COMPACTION_GARBAGE_RATIO){
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        compacting = true;
+        try{
+            compactor.execute(() -> {
+                try{
+                    compact();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    compacting = false;
+                }
+            });
+        } catch (RuntimeException e) {
+            compacting = false;
+        }
+    }
+
+    /**
+     * Number of compactions completed since the store was opened
+     *
+     * @return long - compaction count
+     */
+    public long getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Size of the log up to the end of the last record
+     *
+     * @return long - log size in bytes
+     */
+    public long getLogSize(){
+        lock.readLock().lock();
+        try{
+            return end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes of the log held by records that have been replaced, reclaimed by the next compaction
+     *
+     * @return long - garbage in bytes
+     */
+    public long getGarbageSize(){
+        lock.readLock().lock();
+        try{
+            return garbage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a PUT record for an entry and points the index at it. Must hold the write lock.
+     *
+     * @param entry record to append
+     * @throws IOException if the log is full
+     */
+    private void appendPut(CacheEntry entry) throws IOException {
+        append(putBody(entry));
+    }
+
+    /**
+     * Builds the body of a PUT record
+     *
+     * @param entry record to encode
+     * @return ByteBuffer - record body ready to read
+     */
+    private static ByteBuffer putBody(CacheEntry entry){
+        byte[] response = entry.getResponse() == null ? null : entry.getResponse().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = entry.getPayload();
+        byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] etag = entry.getEtag() == null ? null : entry.getEtag().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + 4 + name.length + 12 + 4 + (etag == null ? 0 : etag.length) + 8
+                + 4 + (response == null ? 0 : response.length) + 4 + (payload == null ? 0 : payload.length));
+        body.put(PUT);
+        writeBytes(body, name);
+        body.putInt(entry.getFormat()).putInt(entry.getCodec()).putInt(entry.getDictionaryId());
+        writeBytes(body, etag);
+        body.putLong(entry.getFetchedAt());
+        writeBytes(body, response);
+        writeBytes(body, payload);
+        body.flip();
+        return body;
+    }
+
+    /**
+     * Appends a TOUCH record and updates the index. Must hold the write lock.
+     *
+     * @param name key of the record
+     * @param fetchedAt new fetch time
+     * @param etag new entity tag, null to keep the current one
+     * @throws IOException if the log is full
+     */
+    private void appendTouch(String name, long fetchedAt, String etag) throws IOException {
+        append(touchBody(name, fetchedAt, etag));
+    }
+
+    /**
+     * Builds the body of a TOUCH record
+     *
+     * @param name key of the record
+     * @param fetchedAt new fetch time
+     * @param etag new entity tag, null to keep the current one
+     * @return ByteBuffer - record body ready to read
+     */
+    private static ByteBuffer touchBody(String name, long fetchedAt, String etag){
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] etagBytes = etag == null ? null : etag.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + 4 + nameBytes.length + 8 + 4 + (etagBytes == null ? 0 : etagBytes.length));
+        body.put(TOUCH);
+        writeBytes(body, nameBytes);
+        body.putLong(fetchedAt);
+        writeBytes(body, etagBytes);
+        body.flip();
+        return body;
+    }
+
+    /**
+     * Prefixes a record body with its length and checksum
+     *
+     * @param body record body ready to read
+     * @return ByteBuffer - whole record ready to read
+     */
+    private static ByteBuffer encodeRecord(ByteBuffer body){
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(RECORD_PREFIX_SIZE + body.remaining());
+        record.putInt(body.remaining()).putInt((int) crc.getValue()).put(body.duplicate()).flip();
+        return record;
+    }
+
+    /**
+     * Writes a record to the end of the log, growing the mapping if needed, and applies it to the index. Must hold the write lock.
+     *
+     * @param body record body ready to read
+     * @throws IOException if the log would grow past MAX_CAPACITY
+     */
+    private void append(ByteBuffer body) throws IOException {
+        ByteBuffer record = encodeRecord(body);
+        long needed = end + record.remaining();
+        if(needed > buffer.capacity()){
+            if(needed > MAX_CAPACITY){
+                throw new IOException("Cache log is full");
+            }
+            long capacity = Math.min(MAX_CAPACITY, Math.max(needed, (long) buffer.capacity() * 2));
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        long offset = end;
+        ByteBuffer target = buffer.duplicate();
+        target.position((int) offset);
+        target.put(record);
+        apply(index, offset, slice(offset + RECORD_PREFIX_SIZE, record.limit() - RECORD_PREFIX_SIZE));
+        setEnd(offset + record.limit());
+    }
+
+    /**
+     * Sets the end offset in memory and in the log header
+     *
+     * @param end offset just after the last complete record
+     */
+    private void setEnd(long end){
+        this.end = end;
+        buffer.putLong(END_POSITION, end);
+    }
+
+    /**
+     * Whether an entry has the same content as the record in a slot, compared in place in the mapped log
+     *
+     * @param slot live record
+     * @param entry new record
+     * @return boolean - true if format, codec, response and payload are all equal
+     */
+    private boolean isSame(Slot slot, CacheEntry entry){
+        if(slot.format != entry.getFormat() || slot.codec != entry.getCodec()){
+            return false;
+        }
+        byte[] response = entry.getResponse() == null ? null : entry.getResponse().getBytes(StandardCharsets.UTF_8);
+        return sameBytes(slot.responseOffset, slot.responseLength, response)
+                && sameBytes(slot.payloadOffset, slot.payloadLength, entry.getPayload());
+    }
+
+    /**
+     * Compares bytes in the mapped log with an array
+     *
+     * @param offset offset of the bytes in the log
+     * @param length number of bytes, -1 for null
+     * @param bytes array to compare with, may be null
+     * @return boolean - true if both are null or hold the same bytes
+     */
+    private boolean sameBytes(long offset, int length, byte[] bytes){
+        if(bytes == null || length < 0){
+            return bytes == null && length < 0;
+        }
+        return length == bytes.length && slice(offset, length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads the fetch time written in the PUT record of a slot, which differs from the slot's if a TOUCH record followed it
+     *
+     * @param source buffer holding the record
+     * @param slot live record
+     * @return long - fetch time in the PUT record
+     */
+    private static long fetchedAtInRecord(ByteBuffer source, Slot slot){
+        return source.getLong((int) slot.responseOffset - 12);
+    }
+
+    /**
+     * Reads the entity tag written in the PUT record of a slot
+     *
+     * @param source buffer holding the record
+     * @param slot live record
+     * @return String - entity tag in the PUT record, may be null
+     */
+    private static String etagInRecord(ByteBuffer source, Slot slot){
+        ByteBuffer body = source.duplicate();
+        body.position((int) slot.offset + RECORD_PREFIX_SIZE + 1);
+        readString(body);
+        body.position(body.position() + 12);
+        return readString(body);
+    }
+
+    /**
+     * Copies the response and payload of the record in a slot out of the mapped log into new arrays
+     *
+     * @param source buffer holding the record
+     * @param name key of the record
+     * @param slot live record
+     * @return CacheEntry - record with the slot's fetch time and entity tag
+     */
+    private static CacheEntry toEntry(ByteBuffer source, String name, Slot slot){
+        String response = null;
+        if(slot.responseLength >= 0){
+            byte[] bytes = new byte[slot.responseLength];
+            slice(source, slot.responseOffset, slot.responseLength).get(bytes);
+            response = new String(bytes, StandardCharsets.UTF_8);
+        }
+        byte[] payload = null;
+        if(slot.payloadLength >= 0){
+            payload = new byte[slot.payloadLength];
+            slice(source, slot.payloadOffset, slot.payloadLength).get(payload);
+        }
+        return new CacheEntry(name, slot.format, slot.codec, slot.dictionaryId, response, payload, slot.etag, slot.fetchedAt);
+    }
+
+    /**
+     * Returns a view of part of the mapped log
+     *
+     * @param offset start of the view
+     * @param length length of the view
+     * @return ByteBuffer - view positioned at 0 with the given length
+     */
+    private ByteBuffer slice(long offset, int length){
+        return slice(buffer, offset, length);
+    }
+
+    /**
+     * Returns a view of part of a buffer
+     *
+     * @param source buffer to view
+     * @param offset start of the view
+     * @param length length of the view
+     * @return ByteBuffer - view positioned at 0 with the given length
+     */
+    private static ByteBuffer slice(ByteBuffer source, long offset, int length){
+        ByteBuffer view = source.duplicate();
+        view.position((int) offset).limit((int) offset + length);
+        return view.slice();
+    }
+
+    /**
+     * Throws if the store has been closed
+     *
+     * @throws IOException if close() has been called
+     */
+    private void checkOpen() throws IOException {
+        if(closed){
+            throw new IOException("Cache log is closed");
+        }
+    }
+
+    /**
+     * Writes a length-prefixed byte array, -1 for null
+     *
+     * @param buffer buffer to write to
+     * @param bytes bytes to write, may be null
+     */
+    private static void writeBytes(ByteBuffer buffer, byte[] bytes){
+        if(bytes == null){
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string written by writeBytes()
+     *
+     * @param buffer buffer to read from
+     * @return String - string read, null if written as null
+     */
+    private static String readString(ByteBuffer buffer){
+        int length = buffer.getInt();
+        if(length < 0){
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
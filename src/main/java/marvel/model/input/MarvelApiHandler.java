@@ -1,19 +1,48 @@
 package marvel.model.input;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpRequest;
-import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * API handler that handles sending and retrieving requests to the Marvel web API.
  *
+ * <p>Every request waits for a permit from a RateLimiter before it is sent, so the daily quota of the account is not exceeded.
+ * A 429 Too Many Requests or 5xx response is retried up to MAX_RETRIES times, after an exponential backoff with random jitter,
+ * or after the time given in its Retry-After header if that is longer. A response whose Retry-After asks for more than
+ * BACKOFF_MAX_MILLIS, as when the daily quota is used up, is returned as it is instead of holding the request for hours.</p>
+ *
+ * <p>Responses are requested gzip or deflate encoded, and decoded by ContentDecoding as they are read.</p>
+ *
  * @see OnlineMarvelModel
  * @see ResponseHandler
  */
 public class MarvelApiHandler {
+    /**
+     * Number of times a request answered 429 or 5xx is sent again
+     */
+    public static final int MAX_RETRIES = 3;
+    /**
+     * Backoff before the first retry, doubled for each retry after it
+     */
+    public static final long BACKOFF_BASE_MILLIS = 500;
+    /**
+     * Longest wait before a retry - a response asking for longer with Retry-After is not retried
+     */
+    public static final long BACKOFF_MAX_MILLIS = 30000;
+    /**
+     * URL of the characters endpoint requests are sent to when none is set
+     */
+    public static final String DEFAULT_BASE_URL = "https://gateway.marvel.com/v1/public/characters";
+
     /**
      * User's Marvel API developer public key
      */
@@ -23,9 +52,21 @@ public class MarvelApiHandler {
      */
     private String privateKey;
     /**
-     * HttpClient used to send and retrieve response
+     * URL of the characters endpoint requests are sent to
      */
-    private HttpClient client;
+    private volatile String baseUrl = DEFAULT_BASE_URL;
+    /**
+     * Transport requests are sent on, the shared default transport if none is set
+     */
+    private volatile HttpTransport transport;
+    /**
+     * Budget every request takes a permit from
+     */
+    private volatile RateLimiter rateLimiter = new RateLimiter(RateLimiter.DEFAULT_DAILY_LIMIT, RateLimiter.DEFAULT_PER_SECOND_LIMIT);
+    /**
+     * Decodes compressed response bodies and counts the bytes they saved
+     */
+    private final ContentDecoding contentDecoding = new ContentDecoding();
 
     /**
      * Constructor for MarvelApiHandler,
@@ -47,7 +88,80 @@ public class MarvelApiHandler {
         }
         this.publicKey = publicKey;
         this.privateKey = privateKey;
-        client = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Sets the budget requests take permits from, replacing the default of RateLimiter.DEFAULT_DAILY_LIMIT calls a day
+     * and RateLimiter.DEFAULT_PER_SECOND_LIMIT calls a second.
+     *
+     * @param rateLimiter budget of calls to the API
+     */
+    public void setRateLimiter(RateLimiter rateLimiter){
+        if(rateLimiter == null){
+            throw new NullPointerException();
+        }
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Getter for the budget requests take permits from
+     *
+     * @return RateLimiter - budget of calls to the API
+     */
+    public RateLimiter getRateLimiter(){
+        return rateLimiter;
+    }
+
+    /**
+     * Getter for the decoder of response bodies, which counts the bytes received and decoded
+     *
+     * @return ContentDecoding - decoder of response bodies
+     */
+    public ContentDecoding getContentDecoding(){
+        return contentDecoding;
+    }
+
+    /**
+     * Sets the transport requests are sent on, so connections, timeouts and limits are shared with other handlers.
+     *
+     * @param transport transport to send requests on
+     */
+    public void setTransport(HttpTransport transport){
+        if(transport == null){
+            throw new NullPointerException();
+        }
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the URL of the characters endpoint requests are sent to, replacing DEFAULT_BASE_URL, such as for a local test server
+     *
+     * @param baseUrl URL of the characters endpoint, without a trailing slash
+     */
+    public void setBaseUrl(String baseUrl){
+        if(baseUrl == null){
+            throw new NullPointerException();
+        }
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Returns the transport requests are sent on
+     *
+     * @return HttpTransport - the transport set, or the shared default transport
+     */
+    private HttpTransport transport(){
+        HttpTransport current = transport;
+        return current != null ? current : HttpTransport.getDefault();
+    }
+
+    /**
+     * Creates the HttpClient of the transport ahead of the first request, so a background thread pays for it instead of the first request.
+     *
+     * <p>Does nothing if the client already exists.</p>
+     */
+    public void warmUp(){
+        transport().warmUp();
     }
 
     /**
@@ -77,10 +191,298 @@ public class MarvelApiHandler {
      *
      * <p>Uses ResponseHandler to parse JSON response and build CharacterInfo object</p>
      *
+     * <p>Unlike appearance pages, the body is read whole into a String, as it is cached as it is
+     * and a search response holds at most 20 items of each list.</p>
+     *
      * @param name String of character name to send GET request with, no spaces within string
      * @return String - return response body from API, return null if keys are null or empty
      */
     public String getCharacterInfoByName(String name){
+        return bodyOf(fetchCharacterInfo(name, null));
+    }
+
+    /**
+     * Body of a response to an unconditional request, as returned by getCharacterInfoByName().
+     *
+     * @param response response from the API, may be null
+     * @return String - body of a 200 response or of an error response, null otherwise
+     */
+    public static String bodyOf(ApiResponse response){
+        if(response == null){
+            return null;
+        }
+        if(response.getStatusCode() > 400){
+            System.out.println("Error searching for character info\n");
+            return response.getBody();
+
+        } else if(response.getStatusCode() == 200){
+            return response.getBody();
+        }
+        return null;
+    }
+
+    /**
+     * Sends a conditional GET request to Marvel API for searching character information by name String.
+     *
+     * <p>If an entity tag from a previous response is given it is sent in the If-None-Match header,
+     * and the API answers 304 Not Modified without a body if the data has not changed since.</p>
+     *
+     * <p>The entity tag of the returned data is read from the ETag header, or from the etag field of the body if there is no header.</p>
+     *
+     * @param name String of character name to send GET request with, no spaces within string
+     * @param etag Entity tag of the cached response for this name, null to request the full response
+     * @return ApiResponse - status code, body and entity tag of the response, null if keys are null or empty, name is invalid, or the request fails
+     */
+    public ApiResponse fetchCharacterInfo(String name, String etag){
+        HttpRequest request = buildRequest(name, etag);
+        if(request == null){
+            return null;
+        }
+        CompletableFuture<ApiResponse> response = sendAsync(request, etag, RateLimiter.Priority.INTERACTIVE);
+        try{
+            return response.get();
+
+        } catch (InterruptedException | ExecutionException e){
+            response.cancel(true);
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Sends the same request as fetchCharacterInfo() without blocking the calling thread.
+     *
+     * <p>The returned future completes on a thread of the HttpClient. It completes with null where fetchCharacterInfo() returns null,
+     * including when the request fails. Cancelling it cancels the underlying HTTP exchange.</p>
+     *
+     * @param name String of character name to send GET request with, no spaces within string
+     * @param etag Entity tag of the cached response for this name, null to request the full response
+     * @return CompletableFuture&lt;ApiResponse&gt; - completes with the status code, body and entity tag of the response
+     */
+    public CompletableFuture<ApiResponse> fetchCharacterInfoAsync(String name, String etag){
+        return fetchCharacterInfoAsync(name, etag, RateLimiter.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Sends the same request as fetchCharacterInfoAsync(), taking its permit with the given priority.
+     *
+     * @param name String of character name to send GET request with, no spaces within string
+     * @param etag Entity tag of the cached response for this name, null to request the full response
+     * @param priority BULK for requests of batch jobs, which may not use the reserve of the daily budget
+     * @return CompletableFuture&lt;ApiResponse&gt; - completes with the status code, body and entity tag of the response
+     */
+    public CompletableFuture<ApiResponse> fetchCharacterInfoAsync(String name, String etag, RateLimiter.Priority priority){
+        HttpRequest request = buildRequest(name, etag);
+        if(request == null){
+            return CompletableFuture.completedFuture(null);
+        }
+        return sendAsync(request, etag, priority);
+    }
+
+    /**
+     * Requests one page of the comics, stories, events or series of a character without blocking the calling thread.
+     *
+     * <p>The returned future completes with null if keys are null or empty or the request fails.
+     * Cancelling it cancels the underlying HTTP exchange.</p>
+     *
+     * <p>Pages are requested with BULK priority, as a character may have over a hundred of them.</p>
+     *
+     * @param characterId Marvel ID of the character
+     * @param resource last segment of the resource path, such as "comics"
+     * @param offset number of items to skip
+     * @param limit maximum number of items in the page, at most 100
+     * @return CompletableFuture&lt;ApiResponse&gt; - completes with the status code and body of the page
+     */
+    public CompletableFuture<ApiResponse> fetchResourcePageAsync(int characterId, String resource, int offset, int limit){
+        HttpRequest request = buildPageRequest(characterId, resource, offset, limit);
+        if(request == null){
+            return CompletableFuture.completedFuture(null);
+        }
+        return sendAsync(request, null, RateLimiter.Priority.BULK);
+    }
+
+    /**
+     * Requests the same page as fetchResourcePageAsync(), giving the body as a stream that can be parsed as it arrives.
+     *
+     * <p>The returned future completes as soon as the status line and headers are received. The caller must read the body to the end
+     * or close it, to release the connection. The body is not copied into memory first, so a parser reading it
+     * holds only the part it has not consumed yet. A compressed body is inflated as it is read.</p>
+     *
+     * <p>The returned future completes with null if keys are null or empty or the request fails.
+     * Cancelling it cancels the underlying HTTP exchange.</p>
+     *
+     * @param characterId Marvel ID of the character
+     * @param resource last segment of the resource path, such as "comics"
+     * @param offset number of items to skip
+     * @param limit maximum number of items in the page, at most 100
+     * @return CompletableFuture&lt;HttpResponse&lt;InputStream&gt;&gt; - completes with the status code, headers and body stream of the page
+     */
+    public CompletableFuture<HttpResponse<InputStream>> fetchResourcePageStreamAsync(int characterId, String resource, int offset, int limit){
+        HttpRequest request = buildPageRequest(characterId, resource, offset, limit);
+        if(request == null){
+            return CompletableFuture.completedFuture(null);
+        }
+        return send(request, contentDecoding.ofInputStream(), RateLimiter.Priority.BULK);
+    }
+
+    /**
+     * Builds a GET request for one page of the comics, stories, events or series of a character.
+     *
+     * @param characterId Marvel ID of the character
+     * @param resource last segment of the resource path, such as "comics"
+     * @param offset number of items to skip
+     * @param limit maximum number of items in the page
+     * @return HttpRequest - the request, null if keys are null or empty
+     */
+    private HttpRequest buildPageRequest(int characterId, String resource, int offset, int limit){
+        if(publicKey == null || privateKey == null || publicKey.isEmpty() || privateKey.isEmpty()){
+            return null;
+        }
+        return transport().newRequest()
+                .GET()
+                .headers("accept", "application/json")
+                .header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING)
+                .uri(URI.create(baseUrl + "/" + characterId + "/" + resource
+                        + "?offset=" + offset + "&limit=" + limit
+                        + "&ts=1359&apikey=" + this.publicKey + "&hash=" + generateHash()))
+                .build();
+    }
+
+    /**
+     * Sends a request with the body read into a String and converts the response to an ApiResponse.
+     *
+     * @param request request to send
+     * @param etag Entity tag sent with the request, kept for a 304 Not Modified response
+     * @param priority priority of the permit taken for each attempt
+     * @return CompletableFuture&lt;ApiResponse&gt; - completes with the last response, or null if the request fails;
+     * cancelling it gives up the wait for a permit or cancels the exchange
+     */
+    private CompletableFuture<ApiResponse> sendAsync(HttpRequest request, String etag, RateLimiter.Priority priority){
+        CompletableFuture<HttpResponse<String>> sent = send(request, contentDecoding.ofString(), priority);
+        CompletableFuture<ApiResponse> response = sent.thenApply(httpResponse -> httpResponse == null ? null : toApiResponse(httpResponse, etag));
+        response.whenComplete((ignored, e) -> {
+            if(response.isCancelled()){
+                sent.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Sends a request on the HttpClient without blocking, once the rate limiter gives a permit, retrying 429 and 5xx responses.
+     *
+     * @param request request to send
+     * @param bodyHandler reads the body of each response
+     * @param priority priority of the permit taken for each attempt
+     * @param <T> type of the body
+     * @return CompletableFuture&lt;HttpResponse&lt;T&gt;&gt; - completes with the last response, or null if the request fails;
+     * cancelling it gives up the wait for a permit or cancels the exchange
+     */
+    private <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, RateLimiter.Priority priority){
+        CompletableFuture<HttpResponse<T>> response = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> step = new AtomicReference<>();
+        response.whenComplete((ignored, e) -> {
+            CompletableFuture<?> current = step.get();
+            if(response.isCancelled() && current != null){
+                current.cancel(true);
+            }
+        });
+        attempt(request, bodyHandler, priority, 0, response, step);
+        return response;
+    }
+
+    /**
+     * Waits for a permit and sends one attempt of a request, scheduling the next attempt if the response is to be retried.
+     *
+     * <p>The body of a response that is retried is closed if it is a stream, so its connection is released.</p>
+     *
+     * @param request request to send
+     * @param bodyHandler reads the body of each response
+     * @param priority priority of the permit to take
+     * @param retry number of attempts already made
+     * @param response future of the request, nothing is sent once it is done
+     * @param step set to the permit or exchange waited on, so it can be cancelled with the request
+     * @param <T> type of the body
+     */
+    private <T> void attempt(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, RateLimiter.Priority priority, int retry,
+                             CompletableFuture<HttpResponse<T>> response, AtomicReference<CompletableFuture<?>> step){
+        if(response.isDone()){
+            return;
+        }
+        RateLimiter limiter = rateLimiter;
+        CompletableFuture<Void> permit = limiter.acquire(priority);
+        step.set(permit);
+        if(response.isDone()){
+            permit.cancel(true);
+            return;
+        }
+        permit.thenCompose(ignored -> {
+            CompletableFuture<HttpResponse<T>> sent = transport().sendAsync(request, bodyHandler);
+            step.set(sent);
+            if(response.isDone()){
+                sent.cancel(true);
+            }
+            return sent;
+        }).whenComplete((httpResponse, e) -> {
+            if(response.isDone()){
+                HttpTransport.discard(httpResponse);
+                return;
+            }
+            if(e != null){
+                e.printStackTrace();
+                response.complete(null);
+                return;
+            }
+            int status = httpResponse.statusCode();
+            if(retry < MAX_RETRIES && (status == ApiResponse.TOO_MANY_REQUESTS || status >= 500)){
+                long delay = backoffMillis(retry, httpResponse.headers().firstValue("Retry-After"));
+                if(status == ApiResponse.TOO_MANY_REQUESTS){
+                    limiter.backOff(Math.min(delay, BACKOFF_MAX_MILLIS));
+                }
+                //a longer Retry-After, such as for a used up daily quota, fails the request now rather than parking it
+                if(delay <= BACKOFF_MAX_MILLIS){
+                    limiter.recordRetry(status);
+                    HttpTransport.discard(httpResponse);
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                            .execute(() -> attempt(request, bodyHandler, priority, retry + 1, response, step));
+                    return;
+                }
+            }
+            if(!response.complete(httpResponse)){
+                HttpTransport.discard(httpResponse);
+            }
+        });
+    }
+
+    /**
+     * Time to wait before retrying a request, half of the exponential backoff for the attempt plus a random part of the other half,
+     * so clients refused at the same time do not all retry at the same time.
+     *
+     * @param retry number of attempts already made, less one
+     * @param retryAfter value of the Retry-After header of the response, in seconds
+     * @return long - milliseconds to wait, at least as long as Retry-After asks, so it may be over BACKOFF_MAX_MILLIS
+     */
+    private static long backoffMillis(int retry, Optional<String> retryAfter){
+        long backoff = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(retry, 20));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        if(retryAfter.isPresent()){
+            try{
+                delay = Math.max(delay, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.get().trim())));
+            } catch (NumberFormatException e){
+                // an HTTP date rather than a number of seconds, the backoff is used instead
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Builds a GET request for searching character information by name String.
+     *
+     * @param name String of character name to send GET request with, no spaces within string
+     * @param etag Entity tag of the cached response for this name, null to request the full response
+     * @return HttpRequest - the request, null if keys are null or empty or name is invalid
+     */
+    private HttpRequest buildRequest(String name, String etag){
 
         if(publicKey == null || privateKey == null){
             return null;
@@ -89,32 +491,38 @@ public class MarvelApiHandler {
         if(publicKey.equals("") || publicKey.isEmpty() || privateKey.equals("") || privateKey.isEmpty()){
             return null;
         }
-        if(name.contains(" ")){
+        if(name == null || name.contains(" ")){
             return null;
         }
 
-        try{
-            HttpRequest request = HttpRequest.newBuilder()
-                    .GET()
-                    .headers("accept", "application/json")
-                    .uri(URI.create("https://gateway.marvel.com/v1/public/characters".concat("?name=").concat(name)
-                            .concat("&ts=1359")
-                            .concat("&apikey=").concat(this.publicKey)
-                            .concat("&hash=").concat(generateHash())))
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            if(response.statusCode() > 400){
-                System.out.println("Error searching for character info\n");
-                return response.body();
-
-            } else if(response.statusCode() == 200){
-                return response.body();
-            }
-        } catch (IOException | InterruptedException e){
-            e.printStackTrace();
+        HttpRequest.Builder builder = transport().newRequest()
+                .GET()
+                .headers("accept", "application/json")
+                .header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING)
+                .uri(URI.create(baseUrl.concat("?name=").concat(name)
+                        .concat("&ts=1359")
+                        .concat("&apikey=").concat(this.publicKey)
+                        .concat("&hash=").concat(generateHash())));
+        if(etag != null && !etag.isEmpty()){
+            builder.header("If-None-Match", etag);
         }
-        return null;
+        return builder.build();
+    }
+
+    /**
+     * Converts an HTTP response to an ApiResponse, reading the entity tag from the ETag header or from the body.
+     *
+     * @param response HTTP response from the API
+     * @param etag Entity tag sent with the request, kept for a 304 Not Modified response
+     * @return ApiResponse - status code, body and entity tag of the response
+     */
+    private static ApiResponse toApiResponse(HttpResponse<String> response, String etag){
+        if(response.statusCode() == ApiResponse.NOT_MODIFIED){
+            return new ApiResponse(ApiResponse.NOT_MODIFIED, null, etag);
+        }
+        String body = response.body();
+        String responseEtag = response.headers().firstValue("ETag").orElseGet(() -> ResponseHandler.parseEtag(body));
+        return new ApiResponse(response.statusCode(), body, responseEtag);
     }
 
 }
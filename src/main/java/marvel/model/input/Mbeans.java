@@ -0,0 +1,64 @@
+package marvel.model.input;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registers the MBeans of the cache and the API handlers with the platform MBean server.
+ *
+ * <p>Every registered instance gets its own id in its JMX name, so several instances of one type in a JVM do not clash.</p>
+ */
+final class Mbeans {
+    /**
+     * Id of the last registered instance
+     */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private Mbeans(){
+    }
+
+    /**
+     * Registers an MBean under a name of the given JMX domain and type.
+     *
+     * <p>A failure to register is printed and otherwise ignored.</p>
+     *
+     * @param bean MBean to register
+     * @param type JMX domain and type ending in "name=", such as CacheMetrics.OBJECT_NAME_PREFIX
+     * @param name name to register under
+     * @return ObjectName - JMX name the bean was registered under, null if it could not be registered
+     */
+    static ObjectName register(Object bean, String type, String name){
+        try{
+            ObjectName objectName = new ObjectName(type + ObjectName.quote(name) + ",id=" + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Removes an MBean from the platform MBean server, if it is registered.
+     *
+     * <p>A failure to unregister is printed and otherwise ignored.</p>
+     *
+     * @param objectName JMX name the bean was registered under, null does nothing
+     */
+    static void unregister(ObjectName objectName){
+        if(objectName == null){
+            return;
+        }
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(objectName)){
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package marvel.model.input;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the names stored in the cache database.
+ *
+ * <p>Answers whether a name might be cached without touching SQLite. A false answer is always correct,
+ * so lookups for names that are definitely not cached skip the database entirely.
+ * A true answer may be wrong with roughly the false positive rate the filter was sized for,
+ * in which case the database is queried as before.</p>
+ *
+ * <p>Names can only be added. Removing a record from the database leaves its name in the filter,
+ * which only costs a wasted query, until the filter is rebuilt.</p>
+ *
+ * <p>Safe to use from multiple threads.</p>
+ *
+ * @see CacheHandler
+ */
+public class NameFilter {
+    /**
+     * Bits of the filter, 64 per element
+     */
+    private final AtomicLongArray bits;
+    /**
+     * Number of bits in the filter
+     */
+    private final long bitCount;
+    /**
+     * Number of bits set for each name
+     */
+    private final int hashCount;
+    /**
+     * Number of names the filter was sized for
+     */
+    private final int capacity;
+    /**
+     * Number of add() calls so far
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructor for NameFilter, sized for the expected number of names and false positive rate.
+     *
+     * @param capacity number of names the filter is expected to hold
+     * @param falsePositiveRate fraction of mightContain() calls for absent names that may return true, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if capacity is not positive or falsePositiveRate is out of range
+     */
+    public NameFilter(int capacity, double falsePositiveRate){
+        if(capacity <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1){
+            throw new IllegalArgumentException();
+        }
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a name to the filter
+     *
+     * @param name name of a cached record
+     */
+    public void add(String name){
+        long hash = hash(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for(int i = 0 ; i < hashCount ; i++){
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)){
+                current = bits.get(word);
+            }
+        }
+        size.incrementAndGet();
+    }
+
+    /**
+     * Whether a name might have been added to the filter
+     *
+     * @param name name to look up
+     * @return boolean - false if the name was definitely never added, true if it might have been
+     */
+    public boolean mightContain(String name){
+        long hash = hash(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for(int i = 0 ; i < hashCount ; i++){
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether more names have been added than the filter was sized for, so its false positive rate is higher than requested
+     *
+     * @return boolean - true if the filter should be rebuilt with a larger capacity
+     */
+    public boolean isFull(){
+        return size.get() > capacity;
+    }
+
+    /**
+     * Getter for the number of names the filter was sized for
+     *
+     * @return int - capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Getter for the number of add() calls so far, names added more than once are counted each time
+     *
+     * @return int - number of names added
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a name, split into two 32-bit hashes for double hashing
+     *
+     * @param name name to hash
+     * @return long - hash of the name
+     */
+    private static long hash(String name){
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0 ; i < name.length() ; i++){
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        //FNV mixes the low bits poorly for short strings, so finish with a murmur-style avalanche
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -5,6 +5,11 @@ import marvel.model.character.*;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
  * Dummy offline version implementation of InputModel.
@@ -75,7 +80,7 @@ public class OfflineMarvelModel implements InputModel{
      * Retrieves a CharacterInfo object containing data about a character with the given name
      *
      * Simulates a response from successful character name search.
-     * Will always return a dummy character
+     * Will always return a dummy character, cached under the name trimmed and in lower case like OnlineMarvelModel
      *
      * @param name Specified character name to search API with
      * @return CharacterInfo - dummy CharacterInfo object with dummy data
@@ -89,7 +94,9 @@ public class OfflineMarvelModel implements InputModel{
             String dummyResponse = Files.readString(Path.of(dummyResponseFilePath));
             if(dummyResponse != null){
                 CharacterInfo info = responseHandler.parseResponseBody(dummyResponse);
-                cacheHandler.saveToCache(name, dummyResponse);
+                String key = name == null ? null : CacheHandler.keyOf(name);
+                cacheHandler.saveToCache(key, dummyResponse);
+                cacheHandler.rememberInfo(key, info);
                 return info;
             }
         }catch(IOException e){
@@ -98,25 +105,70 @@ public class OfflineMarvelModel implements InputModel{
 
         return null;
     }
+
+    /**
+     * Returns a future already completed with the dummy character, as reading it does not wait on a network.
+     *
+     * @param name Specified character name to search API with
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completed with the dummy CharacterInfo object
+     */
+    @Override
+    public CompletableFuture<CharacterInfo> getInfoByNameAsync(String name) {
+        return CompletableFuture.completedFuture(getInfoByName(name));
+    }
+
+    /**
+     * Gives the dummy character for each distinct name to onResult in turn, ignoring parallelism as nothing waits on a network.
+     *
+     * @param names character names to look up
+     * @param parallelism ignored
+     * @param onResult called with each name and the dummy character
+     * @return CompletableFuture&lt;Void&gt; - already completed
+     */
+    @Override
+    public CompletableFuture<Void> getInfoByNames(List<String> names, int parallelism, BiConsumer<String, CharacterInfo> onResult) {
+        for(String name : new LinkedHashSet<>(names)){
+            onResult.accept(name, getInfoByName(name));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns the character as is, as the dummy character has no further pages to load
+     *
+     * @param info character from a search
+     * @return CompletableFuture&lt;CharacterInfo&gt; - already completed with info
+     */
+    @Override
+    public CompletableFuture<CharacterInfo> loadAllAppearances(CharacterInfo info) {
+        return CompletableFuture.completedFuture(info);
+    }
+
     /**
      * Returns CharaterInfo created from a cached data with key matching given name.
      *
      * <p>Returns null if no matching data is found by cache handler</p>
      *
-     * <p>Uses cached response with key matching given name to create CharacterInfo object.</p>
+     * <p>Uses cached response with key matching given name to create CharacterInfo object.
+     * Delegates to CacheHandler, which serves recently parsed characters from memory</p>
      *
-     * @param name To be used as key for searching record in database
+     * @param name To be used as key for searching record in database, looked up trimmed and in lower case like getInfoByName()
      * @return CharacterInfo - object created from cached data found, return null on error or cache not found
      */
     @Override
     public CharacterInfo getInfoByNameFromCache(String name) {
-        String response = cacheHandler.loadFromCache(name);
+        return name == null ? null : cacheHandler.loadInfoFromCache(CacheHandler.keyOf(name));
+    }
 
-        if(response != null){
-            CharacterInfo info = responseHandler.parseResponseBody(response);
-            return info;
-        }
-        return null;
+    /**
+     * Looks up the character cached under the given name in a single round trip, trimmed and in lower case like getInfoByName().
+     *
+     * @param name To be used as key for searching record in database
+     * @return Optional&lt;CharacterInfo&gt; - object created from cached data found, empty on error or cache not found
+     */
+    @Override
+    public Optional<CharacterInfo> findInCache(String name) {
+        return name == null ? Optional.empty() : cacheHandler.findInCache(CacheHandler.keyOf(name));
     }
 
     /**
@@ -150,6 +202,19 @@ public class OfflineMarvelModel implements InputModel{
         path = path.concat(info.getThumbnail().getExtension());
         return path;
     }
+    /**
+     * Searches cached characters by keywords or prefixes of their names and descriptions
+     *
+     * <p>Delegates to CacheHandler's full-text index, returning at most CacheHandler.DEFAULT_SEARCH_LIMIT names</p>
+     *
+     * @param query words or word prefixes to search for
+     * @return List&lt;String&gt; - names the matching characters are cached under, best matches first
+     */
+    @Override
+    public List<String> searchCache(String query) {
+        return cacheHandler.searchCache(query, CacheHandler.DEFAULT_SEARCH_LIMIT);
+    }
+
     /**
      * Checks if given name matches a cached response in the database
      *
@@ -163,7 +228,28 @@ public class OfflineMarvelModel implements InputModel{
         if(name == null || name.isEmpty()){
             throw new IllegalArgumentException();
         }
-        return cacheHandler.isInfoInCache(name);
+        return cacheHandler.isInfoInCache(CacheHandler.keyOf(name));
+    }
+
+    /**
+     * Never reports a miss, as searches always return the dummy character
+     *
+     * @param name Name of character searched for
+     * @return boolean - always false
+     */
+    @Override
+    public boolean isKnownMiss(String name) {
+        return false;
+    }
+
+    /**
+     * Closes the connections held by the cache handler, if one is set.
+     */
+    @Override
+    public void shutdown() {
+        if(cacheHandler != null){
+            cacheHandler.close();
+        }
     }
 
 }
@@ -2,9 +2,30 @@ package marvel.model.input;
 
 import marvel.model.character.CharacterInfo;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
 /**
  * Online version implementation of InputModel. Returns live data retrieved from Marvel web API.
  *
+ * <p>Concurrent searches for the same name, compared ignoring case and surrounding spaces, share a single lookup -
+ * one request, one parse and one cache write - and every caller gets its result.</p>
+ *
  * @see MarvelApiHandler
  */
 public class OnlineMarvelModel implements InputModel{
@@ -24,6 +45,35 @@ public class OnlineMarvelModel implements InputModel{
      */
     private ResponseHandler responseHandler;
 
+    /**
+     * Runs the cache lookups, parsing and cache writes of asynchronous searches
+     */
+    private volatile Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * A lookup in flight, shared by every caller searching for the same name until it completes
+     */
+    private static class Flight {
+        /**
+         * Completes with the result of the lookup
+         */
+        private final CompletableFuture<CharacterInfo> shared = new CompletableFuture<>();
+        /**
+         * Callers that have not cancelled, the lookup is cancelled when the last one does
+         */
+        private final AtomicInteger waiters = new AtomicInteger(1);
+    }
+
+    /**
+     * Lookups in flight, keyed by normalized name
+     */
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Number of searches answered by joining a lookup already in flight
+     */
+    private final LongAdder coalesced = new LongAdder();
+
     /**
      * Constructor for OnlineMarvelModel
      */
@@ -60,11 +110,32 @@ public class OnlineMarvelModel implements InputModel{
         this.cacheHandler = handler;
     }
 
+    /**
+     * Sets the executor the stages of asynchronous searches run on, the common fork join pool by default.
+     *
+     * <p>Stages read and write the cache database, so an executor with threads that may block suits heavy use.
+     * Waiting on the API holds no thread of the executor.</p>
+     *
+     * @param executor executor for getInfoByNameAsync() stages
+     */
+    public void setExecutor(Executor executor) {
+        if(executor == null){
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+    }
+
     /**
      * Sends and process GET request for retrieving information about character given name.
      *
      * <p>Saves the response body string to the cache database upon successful GET request from the API, s</p>
      *
+     * <p>If a response for this name is already cached with an entity tag, sends a conditional request instead,
+     * and on 304 Not Modified returns the cached character without downloading or parsing the body again.</p>
+     *
+     * <p>Names the API recently found no character for are answered with null without sending a request,
+     * and a response with no results is remembered as a miss.</p>
+     *
      * <p>Throws IllegalStateArgumentException if name is null or empty</p>
      *
      * <p>Throws IllegalStateArgumentException if handler classes references are null</p>
@@ -73,6 +144,9 @@ public class OnlineMarvelModel implements InputModel{
      *
      * <p>Delegates saving response body from a successful search to CacheHandler</p>
      *
+     * <p>The name is searched and cached trimmed and in lower case, so searches for the same name in any case
+     * share one cached record. If a search for the same name is already in flight, waits for its result instead of sending another request.</p>
+     *
      * @param name Specified character name to search API with
      * @return CharacterInfo - object that represents data related to a specified character if name is a valid Marvel character name, null otherwise
      */
@@ -81,17 +155,512 @@ public class OnlineMarvelModel implements InputModel{
         if(name == null || responseHandler == null || apiHandler == null || cacheHandler == null){
             throw new IllegalStateException();
         }
-        String response = apiHandler.getCharacterInfoByName(name);
+        String key = CacheHandler.keyOf(name);
+        Flight mine = new Flight();
+        Flight flight = board(key, mine);
+        if(flight != mine){
+            try{
+                return flight.shared.join();
+            } catch (CompletionException e) {
+                if(e.getCause() instanceof RuntimeException){
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try{
+            CharacterInfo info = lookup(key);
+            mine.shared.complete(info);
+            return info;
+        } catch (RuntimeException | Error e) {
+            mine.shared.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Joins the lookup in flight for a name, or registers the given one if there is none.
+     *
+     * <p>A lookup every caller has cancelled cannot be joined, and is replaced.</p>
+     *
+     * @param key normalized name
+     * @param mine lookup to register if none is in flight
+     * @return Flight - the lookup joined, or mine if the caller has to run the lookup itself
+     */
+    private Flight board(String key, Flight mine){
+        while(true){
+            Flight existing = inFlight.putIfAbsent(key, mine);
+            if(existing == null){
+                mine.shared.whenComplete((info, e) -> inFlight.remove(key, mine));
+                return mine;
+            }
+            if(existing.waiters.getAndUpdate(waiters -> waiters == 0 ? 0 : waiters + 1) > 0){
+                coalesced.increment();
+                return existing;
+            }
+            inFlight.remove(key, existing);
+        }
+    }
+
+    /**
+     * Getter for the number of searches that joined a lookup already in flight instead of sending their own request
+     *
+     * @return long - number of coalesced searches
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Searches for a character, answering from the miss cache, a conditional request or a full request.
+     *
+     * <p>The response to a conditional request is used as it is - a 200 is handled like the response to a full request,
+     * and a failed request is not repeated. A full request is only sent after a 304 if the cached record is gone since.</p>
+     *
+     * @param name Specified character name to search API with
+     * @return CharacterInfo - character found, null otherwise
+     */
+    private CharacterInfo lookup(String name) {
+        if(cacheHandler.isKnownMiss(name)){
+            return null;
+        }
+        String etag = cacheHandler.getEtag(name);
+        if(etag == null){
+            return handleBody(name, apiHandler.getCharacterInfoByName(name));
+        }
+        ApiResponse response = apiHandler.fetchCharacterInfo(name, etag);
+        if(response != null && response.isNotModified()){
+            CharacterInfo cached = notModified(name);
+            return cached != null ? cached : handleBody(name, apiHandler.getCharacterInfoByName(name));
+        }
+        return handleBody(name, MarvelApiHandler.bodyOf(response));
+    }
+
+    /**
+     * Asynchronous version of getInfoByName(), answering the same way without blocking the calling thread.
+     *
+     * <p>The cache lookup, the handling of the API response and the cache writes are chained stages on the executor,
+     * while requests are in flight on the HttpClient, so many searches can be in flight without a thread each.</p>
+     *
+     * <p>Like getInfoByName(), the name is searched and cached trimmed and in lower case.
+     * Searches for the same name already in flight are joined rather than repeated. Cancelling the returned future
+     * only abandons the search for this caller - the request in flight is cancelled, and stages not run yet are skipped,
+     * once every caller sharing it has cancelled.</p>
+     *
+     * <p>Throws IllegalStateArgumentException if name is null or handler classes references are null</p>
+     *
+     * @param name Specified character name to search API with
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with the character if name is a valid Marvel character name, null otherwise
+     */
+    @Override
+    public CompletableFuture<CharacterInfo> getInfoByNameAsync(String name) {
+        return searchAsync(name, RateLimiter.Priority.INTERACTIVE);
+    }
+
+    /**
+     * getInfoByNameAsync() with the priority its requests take permits from the rate limiter with.
+     *
+     * <p>A search joining one already in flight shares its request, and so the priority of the search it joined.</p>
+     *
+     * @param name Specified character name to search API with
+     * @param priority BULK for searches of batch jobs, which may not use the reserve of the daily budget
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with the character if name is a valid Marvel character name, null otherwise
+     */
+    private CompletableFuture<CharacterInfo> searchAsync(String name, RateLimiter.Priority priority) {
+        if(name == null || responseHandler == null || apiHandler == null || cacheHandler == null){
+            throw new IllegalStateException();
+        }
+        String key = CacheHandler.keyOf(name);
+        Flight mine = new Flight();
+        Flight flight = board(key, mine);
+        if(flight == mine){
+            CompletableFuture<CharacterInfo> lookup = lookupAsync(key, priority);
+            lookup.whenComplete((info, e) -> {
+                if(e != null){
+                    mine.shared.completeExceptionally(e);
+                } else {
+                    mine.shared.complete(info);
+                }
+            });
+            mine.shared.whenComplete((info, e) -> {
+                if(mine.shared.isCancelled()){
+                    lookup.cancel(true);
+                }
+            });
+        }
+        CompletableFuture<CharacterInfo> copy = flight.shared.thenApply(info -> info);
+        copy.whenComplete((info, e) -> {
+            if(copy.isCancelled() && flight.waiters.decrementAndGet() == 0){
+                flight.shared.cancel(true);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Asynchronous version of lookup(), with stages chained on the executor.
+     *
+     * <p>Like lookup(), the response to a conditional request is used as it is, and a full request is only sent after a 304
+     * if the cached record is gone since.</p>
+     *
+     * @param name Specified character name to search API with
+     * @param priority priority of the permits requests take from the rate limiter
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with the character found, null otherwise; cancelling it cancels the request in flight
+     */
+    private CompletableFuture<CharacterInfo> lookupAsync(String name, RateLimiter.Priority priority) {
+        Executor stages = executor;
+        CompletableFuture<CharacterInfo> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<ApiResponse>> inFlight = new AtomicReference<>();
+        result.whenComplete((ignored, e) -> {
+            CompletableFuture<ApiResponse> request = inFlight.get();
+            if(result.isCancelled() && request != null){
+                request.cancel(true);
+            }
+        });
+
+        CompletableFuture.supplyAsync(() -> result.isDone() || cacheHandler.isKnownMiss(name), stages)
+                .thenCompose(skip -> {
+                    if(skip){
+                        return CompletableFuture.completedFuture((CharacterInfo) null);
+                    }
+                    String etag = cacheHandler.getEtag(name);
+                    if(etag == null){
+                        return fetchAsync(name, result, inFlight, stages, priority);
+                    }
+                    return send(name, etag, result, inFlight, priority)
+                            .thenComposeAsync(response -> {
+                                if(result.isDone()){
+                                    return CompletableFuture.completedFuture((CharacterInfo) null);
+                                }
+                                if(response != null && response.isNotModified()){
+                                    CharacterInfo cached = notModified(name);
+                                    return cached != null ? CompletableFuture.completedFuture(cached) : fetchAsync(name, result, inFlight, stages, priority);
+                                }
+                                return CompletableFuture.completedFuture(handleBody(name, MarvelApiHandler.bodyOf(response)));
+                            }, stages);
+                })
+                .whenComplete((info, e) -> {
+                    if(e != null){
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(info);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Looks up many characters at once, with at most parallelism requests to the API in flight.
+     *
+     * <p>Each distinct name is looked up once. Names cached and not stale are answered first from the cache,
+     * read in a few slices in parallel, then the rest are searched like getInfoByNameAsync(), so no thread is held while the API answers.
+     * Their requests take BULK permits from the rate limiter, leaving the reserve of the daily budget to interactive searches.</p>
+     *
+     * <p>Results are given to onResult in the order they complete, one at a time, on the executor or HttpClient threads.
+     * A lookup that fails is given as null, like a name with no character.</p>
+     *
+     * <p>Cancelling the returned future stops starting new lookups and cancels the ones in flight.</p>
+     *
+     * @param names character names to look up
+     * @param parallelism maximum number of lookups waiting on the API at once
+     * @param onResult called with each name and its character, or null if none was found
+     * @return CompletableFuture&lt;Void&gt; - completes once every name has been given to onResult
+     */
+    @Override
+    public CompletableFuture<Void> getInfoByNames(List<String> names, int parallelism, BiConsumer<String, CharacterInfo> onResult) {
+        if(names == null || onResult == null){
+            throw new NullPointerException();
+        }
+        if(parallelism < 1){
+            throw new IllegalArgumentException();
+        }
+        if(responseHandler == null || apiHandler == null || cacheHandler == null){
+            throw new IllegalStateException();
+        }
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(names));
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Set<CompletableFuture<CharacterInfo>> running = ConcurrentHashMap.newKeySet();
+        done.whenComplete((ignored, e) -> {
+            if(done.isCancelled()){
+                for(CompletableFuture<CharacterInfo> lookup : running){
+                    lookup.cancel(true);
+                }
+            }
+        });
+        Object deliveryLock = new Object();
+        BiConsumer<String, CharacterInfo> deliver = (name, info) -> {
+            synchronized (deliveryLock){
+                if(done.isDone()){
+                    return;
+                }
+                try{
+                    onResult.accept(name, info);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+
+        //the cache pass is split into contiguous slices read in parallel, one per reader connection of the cache
+        int slices = Math.min(CacheHandler.DEFAULT_READER_COUNT, Math.max(1, distinct.size()));
+        boolean[] cachedFlags = new boolean[distinct.size()];
+        CompletableFuture<?>[] cachePass = new CompletableFuture<?>[slices];
+        for(int slice = 0 ; slice < slices ; slice++){
+            int from = slice * distinct.size() / slices;
+            int to = (slice + 1) * distinct.size() / slices;
+            cachePass[slice] = CompletableFuture.runAsync(() -> {
+                for(int i = from ; i < to && !done.isDone() ; i++){
+                    String key = CacheHandler.keyOf(distinct.get(i));
+                    Optional<CharacterInfo> cached = cacheHandler.isStale(key) ? Optional.empty() : cacheHandler.findInCache(key);
+                    if(cached.isPresent()){
+                        cachedFlags[i] = true;
+                        deliver.accept(distinct.get(i), cached.get());
+                    }
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(cachePass).thenRunAsync(() -> {
+            Queue<String> misses = new ConcurrentLinkedQueue<>();
+            for(int i = 0 ; i < distinct.size() ; i++){
+                if(!cachedFlags[i]){
+                    misses.add(distinct.get(i));
+                }
+            }
+            if(misses.isEmpty()){
+                done.complete(null);
+                return;
+            }
+            AtomicInteger remaining = new AtomicInteger(misses.size());
+            for(int i = Math.min(parallelism, misses.size()) ; i > 0 ; i--){
+                fetchNext(misses, remaining, running, deliver, done);
+            }
+        }, executor).whenComplete((ignored, e) -> {
+            if(e != null){
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Starts lookups of the next names of a batch until one has to wait on the API, then carries on from the thread
+     * that completes it.
+     *
+     * <p>Lookups that complete at once, such as known misses, are finished in a loop rather than by starting the next one
+     * from their completion, so a long run of them does not grow the stack.</p>
+     *
+     * @param misses names of the batch not started yet
+     * @param remaining names of the batch not delivered yet
+     * @param running lookups of the batch in flight
+     * @param deliver gives a result to the caller
+     * @param done completed once every name has been delivered
+     */
+    private void fetchNext(Queue<String> misses, AtomicInteger remaining, Set<CompletableFuture<CharacterInfo>> running,
+                           BiConsumer<String, CharacterInfo> deliver, CompletableFuture<Void> done){
+        while(true){
+            String name = misses.poll();
+            if(name == null || done.isDone()){
+                return;
+            }
+            CompletableFuture<CharacterInfo> lookup;
+            try{
+                lookup = searchAsync(name, RateLimiter.Priority.BULK);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+            running.add(lookup);
+            if(done.isCancelled()){
+                lookup.cancel(true);
+            }
+            if(!lookup.isDone()){
+                lookup.whenComplete((info, e) -> {
+                    if(finishLookup(name, lookup, info, e, remaining, running, deliver, done)){
+                        fetchNext(misses, remaining, running, deliver, done);
+                    }
+                });
+                return;
+            }
+            CharacterInfo info = null;
+            Throwable error = null;
+            try{
+                info = lookup.join();
+            } catch (CompletionException | CancellationException e) {
+                error = e;
+            }
+            if(!finishLookup(name, lookup, info, error, remaining, running, deliver, done)){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delivers the result of a completed lookup of a batch
+     *
+     * @param name name looked up
+     * @param lookup the completed lookup
+     * @param info character found, null if none
+     * @param error exception the lookup completed with, null if none
+     * @param remaining names of the batch not delivered yet
+     * @param running lookups of the batch in flight
+     * @param deliver gives a result to the caller
+     * @param done completed once every name has been delivered
+     * @return boolean - true if names of the batch are left to deliver, otherwise false
+     */
+    private boolean finishLookup(String name, CompletableFuture<CharacterInfo> lookup, CharacterInfo info, Throwable error,
+                                 AtomicInteger remaining, Set<CompletableFuture<CharacterInfo>> running,
+                                 BiConsumer<String, CharacterInfo> deliver, CompletableFuture<Void> done){
+        running.remove(lookup);
+        if(error != null && !lookup.isCancelled()){
+            error.printStackTrace();
+        }
+        deliver.accept(name, error == null ? info : null);
+        if(remaining.decrementAndGet() == 0){
+            done.complete(null);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loads every comic, story, event and series of a character with an AppearanceLoader,
+     * fetching up to AppearanceLoader.DEFAULT_PAGES_IN_FLIGHT pages at once and caching each page.
+     *
+     * <p>Throws IllegalStateArgumentException if info is null or handler classes references are null</p>
+     *
+     * @param info character from a search
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with a copy of the character holding the complete lists
+     */
+    @Override
+    public CompletableFuture<CharacterInfo> loadAllAppearances(CharacterInfo info) {
+        if(info == null || responseHandler == null || apiHandler == null || cacheHandler == null){
+            throw new IllegalStateException();
+        }
+        return new AppearanceLoader(apiHandler, responseHandler, cacheHandler, executor, AppearanceLoader.DEFAULT_PAGES_IN_FLIGHT).load(info);
+    }
+
+    /**
+     * Sends an unconditional request for a character without blocking, and handles the response on the executor.
+     *
+     * @param name Specified character name to search API with
+     * @param result future of the search, no request is sent once it is done
+     * @param inFlight holds the request in flight, so it can be cancelled with the search
+     * @param stages executor to handle the response on
+     * @param priority priority of the permit the request takes from the rate limiter
+     * @return CompletableFuture&lt;CharacterInfo&gt; - completes with the character, null if the response holds none
+     */
+    private CompletableFuture<CharacterInfo> fetchAsync(String name, CompletableFuture<CharacterInfo> result,
+                                                        AtomicReference<CompletableFuture<ApiResponse>> inFlight, Executor stages,
+                                                        RateLimiter.Priority priority){
+        return send(name, null, result, inFlight, priority)
+                .thenApplyAsync(response -> result.isDone() ? null : handleBody(name, MarvelApiHandler.bodyOf(response)), stages);
+    }
+
+    /**
+     * Sends a request without blocking, unless the search it belongs to is already done.
+     *
+     * @param name Specified character name to search API with
+     * @param etag Entity tag of the cached response, null for an unconditional request
+     * @param result future of the search
+     * @param inFlight set to the request sent
+     * @param priority priority of the permit the request takes from the rate limiter
+     * @return CompletableFuture&lt;ApiResponse&gt; - completes with the response, null if no request was sent or it failed
+     */
+    private CompletableFuture<ApiResponse> send(String name, String etag, CompletableFuture<CharacterInfo> result,
+                                                AtomicReference<CompletableFuture<ApiResponse>> inFlight, RateLimiter.Priority priority){
+        if(result.isDone()){
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<ApiResponse> request = priority == RateLimiter.Priority.INTERACTIVE
+                ? apiHandler.fetchCharacterInfoAsync(name, etag)
+                : apiHandler.fetchCharacterInfoAsync(name, etag, priority);
+        inFlight.set(request);
+        if(result.isCancelled()){
+            request.cancel(true);
+        }
+        return request;
+    }
+
+    /**
+     * Caches the body of a response with a character, or remembers the name as a miss if the API found no character.
+     *
+     * @param name Key to cache the response under
+     * @param response Response body from the API, may be null
+     * @return CharacterInfo - parsed character, null if the response holds no character
+     */
+    private CharacterInfo handleBody(String name, String response){
         if(response != null){
-            CharacterInfo info = responseHandler.parseResponseBody(response);
-            if(info != null){
-                cacheHandler.saveToCache(name, response);
+            CharacterInfo info = saveResponse(name, response);
+            if(info == null && responseHandler.isEmptyResult(response)){
+                cacheHandler.saveMissToCache(name);
             }
             return info;
         }
         return null;
     }
 
+    /**
+     * Sends a conditional request for a cached character and returns the up to date character.
+     *
+     * <p>On 304 Not Modified the cached record is marked as fetched now and the cached character is returned.
+     * On 200 the new response is parsed and cached.</p>
+     *
+     * @param name Key of the cached record
+     * @param etag Entity tag of the cached response
+     * @return CharacterInfo - current character, null if the request failed or the cached record could not be loaded
+     */
+    private CharacterInfo revalidate(String name, String etag){
+        return revalidated(name, etag, apiHandler.fetchCharacterInfo(name, etag));
+    }
+
+    /**
+     * Handles the response to a conditional request for a cached character.
+     *
+     * @param name Key of the cached record
+     * @param etag Entity tag of the cached response
+     * @param response response from the API, may be null
+     * @return CharacterInfo - current character, null if the request failed or the cached record could not be loaded
+     */
+    private CharacterInfo revalidated(String name, String etag, ApiResponse response){
+        if(response == null){
+            return null;
+        }
+        if(response.isNotModified()){
+            return notModified(name);
+        }
+        if(response.getStatusCode() == 200 && response.getBody() != null){
+            return saveResponse(name, response.getBody());
+        }
+        return null;
+    }
+
+    /**
+     * Marks a cached record as fetched now, after the API answered a conditional request for it with 304 Not Modified.
+     *
+     * @param name Key of the cached record
+     * @return CharacterInfo - cached character, null if the cached record could not be loaded
+     */
+    private CharacterInfo notModified(String name){
+        cacheHandler.touch(name);
+        return cacheHandler.loadInfoFromCache(name);
+    }
+
+    /**
+     * Parses a response body and caches it if it holds a character.
+     *
+     * @param name Key to cache the response under
+     * @param response Response body from the API
+     * @return CharacterInfo - parsed character, null if the response holds no character
+     */
+    private CharacterInfo saveResponse(String name, String response){
+        CharacterInfo info = responseHandler.parseResponseBody(response);
+        if(info != null){
+            cacheHandler.saveToCache(name, response);
+            cacheHandler.rememberInfo(name, info);
+        }
+        return info;
+    }
+
     /**
      * Generate the full image path for retrieving a representative image of the given character,
      * using CharacterInfo info's Thumbnail attribute.
@@ -125,17 +694,54 @@ public class OnlineMarvelModel implements InputModel{
     /**
      * Use cached response with key matching given name to create CharacterInfo object.
      *
+     * <p>Delegates to CacheHandler, which serves recently parsed characters from memory</p>
+     *
+     * <p>If the cached record has outlived the cache's time to live it is revalidated with a conditional request first.
+     * The cached character is still returned if the API cannot be reached.</p>
+     *
      * @param name Key for searching record in database
      * @return CharacterInfo - object created from cached data found, return null on error or cache not found
      */
     @Override
     public CharacterInfo getInfoByNameFromCache(String name) {
+        return findInCache(name).orElse(null);
+    }
 
-        String response = cacheHandler.loadFromCache(name);
-
-        CharacterInfo info = responseHandler.parseResponseBody(response);
+    /**
+     * Looks up the character cached under the given name in a single round trip.
+     *
+     * <p>If the cached record has outlived the cache's time to live it is revalidated with a conditional request first.
+     * The cached character is still returned if the API cannot be reached.</p>
+     *
+     * @param name Key for searching record in database, looked up trimmed and in lower case like getInfoByName()
+     * @return Optional&lt;CharacterInfo&gt; - object created from cached data found, empty on error or cache not found
+     */
+    @Override
+    public Optional<CharacterInfo> findInCache(String name) {
+        if(name == null){
+            return Optional.empty();
+        }
+        String key = CacheHandler.keyOf(name);
+        if(apiHandler != null && responseHandler != null && cacheHandler.isStale(key)){
+            CharacterInfo info = revalidate(key, cacheHandler.getEtag(key));
+            if(info != null){
+                return Optional.of(info);
+            }
+        }
+        return cacheHandler.findInCache(key);
+    }
 
-        return info;
+    /**
+     * Searches cached characters by keywords or prefixes of their names and descriptions
+     *
+     * <p>Delegates to CacheHandler's full-text index, returning at most CacheHandler.DEFAULT_SEARCH_LIMIT names</p>
+     *
+     * @param query words or word prefixes to search for
+     * @return List&lt;String&gt; - names the matching characters are cached under, best matches first
+     */
+    @Override
+    public List<String> searchCache(String query) {
+        return cacheHandler.searchCache(query, CacheHandler.DEFAULT_SEARCH_LIMIT);
     }
 
     /**
@@ -151,7 +757,33 @@ public class OnlineMarvelModel implements InputModel{
         if(name == null || name.isEmpty()){
             throw new IllegalArgumentException();
         }
-        return cacheHandler.isInfoInCache(name);
+        return cacheHandler.isInfoInCache(CacheHandler.keyOf(name));
+    }
+
+    /**
+     * Checks if the API recently found no character for given name, which the cache remembers as a miss
+     *
+     * <p>Throws IllegalStateArgumentException if name is null or empty</p>
+     *
+     * @param name Name of character searched for
+     * @return boolean - return true if a miss for name is remembered, otherwise false
+     */
+    @Override
+    public boolean isKnownMiss(String name) {
+        if(name == null || name.isEmpty()){
+            throw new IllegalArgumentException();
+        }
+        return cacheHandler.isKnownMiss(CacheHandler.keyOf(name));
+    }
+
+    /**
+     * Closes the connections held by the cache handler, if one is set.
+     */
+    @Override
+    public void shutdown() {
+        if(cacheHandler != null){
+            cacheHandler.close();
+        }
     }
 
 }
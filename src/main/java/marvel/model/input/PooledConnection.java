@@ -0,0 +1,98 @@
+package marvel.model.input;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single connection to the cache database owned by a CacheConnectionPool.
+ *
+ * <p>Keeps every PreparedStatement it has created keyed by its SQL text,
+ * so repeated queries reuse the same compiled statement instead of preparing a new one on every call.</p>
+ *
+ * <p>Instances are not thread safe - the pool hands each connection to one caller at a time.</p>
+ *
+ * @see CacheConnectionPool
+ */
+public class PooledConnection {
+    /**
+     * Underlying JDBC connection to the database
+     */
+    private final Connection connection;
+    /**
+     * Prepared statements created on this connection, keyed by SQL text
+     */
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    /**
+     * Wraps an open JDBC connection.
+     *
+     * @param connection open connection to the cache database
+     */
+    PooledConnection(Connection connection){
+        this.connection = connection;
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, preparing it on first use and reusing it afterwards.
+     *
+     * <p>Parameters set by a previous caller are cleared before the statement is returned.</p>
+     *
+     * @param sql SQL text of the statement
+     * @return PreparedStatement - statement bound to this connection
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if(statement == null){
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Executes a statement that takes no parameters and returns no result, such as a PRAGMA or DDL statement.
+     *
+     * @param sql SQL text to execute
+     * @throws SQLException if execution fails
+     */
+    public void execute(String sql) throws SQLException {
+        try(Statement statement = connection.createStatement()){
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Getter for the underlying JDBC connection, used for transaction control.
+     *
+     * @return Connection - underlying JDBC connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Closes all cached statements and the underlying connection.
+     */
+    void close(){
+        for(PreparedStatement statement : statements.values()){
+            try{
+                statement.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        statements.clear();
+        try{
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package marvel.model.input;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client side budget of calls to the Marvel API, a token bucket per day and a token bucket per second.
+ *
+ * <p>Every request takes a token from both buckets before it is sent. The daily bucket holds dailyLimit tokens
+ * and refills evenly over a day, the per second bucket holds perSecondLimit tokens and refills every second.
+ * A request that finds a bucket empty is queued, and is given its permit as soon as both buckets have a token again,
+ * without holding a thread while it waits.</p>
+ *
+ * <p>The last reserve tokens of the daily bucket are kept for INTERACTIVE requests, so BULK jobs such as batch lookups
+ * slow down to the refill rate instead of using up the calls a user searching needs. Queued interactive requests
+ * are given permits before queued bulk requests.</p>
+ *
+ * <p>The budget starts full. Calls made by an earlier run of the application are taken back out with restoreUsage(),
+ * from the count getUsedDaily() gave when that run stopped, so restarting does not reset the daily budget.
+ * Read the remaining budget with getRemainingDaily(), or through JMX once register() has been called.</p>
+ *
+ * @see MarvelApiHandler#setRateLimiter(RateLimiter)
+ * @see RateLimiterMBean
+ */
+public class RateLimiter extends RegisteredMBean implements RateLimiterMBean {
+    /**
+     * Calls a day allowed by a Marvel API developer account
+     */
+    public static final long DEFAULT_DAILY_LIMIT = 3000;
+    /**
+     * Calls a second allowed when not configured
+     */
+    public static final long DEFAULT_PER_SECOND_LIMIT = 10;
+    /**
+     * JMX domain and type the limiter is registered under
+     */
+    public static final String OBJECT_NAME_PREFIX = "marvel.api:type=RateLimiter,name=";
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NANOS_PER_DAY = TimeUnit.DAYS.toNanos(1);
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Whose request a permit is for
+     */
+    public enum Priority {
+        /**
+         * A request a user is waiting on, which may use the reserve
+         */
+        INTERACTIVE,
+        /**
+         * A request of a batch job, which may not use the reserve
+         */
+        BULK
+    }
+
+    private final long dailyLimit;
+    private final long perSecondLimit;
+    private final long reserve;
+
+    /**
+     * Tokens in the daily bucket, guarded by this
+     */
+    private double dailyTokens;
+    /**
+     * Tokens in the per second bucket, guarded by this
+     */
+    private double secondTokens;
+    /**
+     * Time the buckets were last refilled, from System.nanoTime(), guarded by this
+     */
+    private long refilledNanos;
+    /**
+     * No permit is given before this time, from System.nanoTime(), guarded by this
+     */
+    private long pausedUntilNanos;
+    /**
+     * Whether a drain of the queues is scheduled, guarded by this
+     */
+    private boolean drainScheduled = false;
+
+    private final Deque<CompletableFuture<Void>> interactiveQueue = new ArrayDeque<>();
+    private final Deque<CompletableFuture<Void>> bulkQueue = new ArrayDeque<>();
+
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    /**
+     * Constructor for a RateLimiter keeping a tenth of the daily budget for interactive requests
+     *
+     * @param dailyLimit calls allowed per day
+     * @param perSecondLimit calls allowed per second
+     * @throws IllegalArgumentException if a limit is less than 1
+     */
+    public RateLimiter(long dailyLimit, long perSecondLimit){
+        this(dailyLimit, perSecondLimit, dailyLimit / 10);
+    }
+
+    /**
+     * Constructor for a RateLimiter
+     *
+     * @param dailyLimit calls allowed per day
+     * @param perSecondLimit calls allowed per second
+     * @param reserve calls of the daily budget only interactive requests may use
+     * @throws IllegalArgumentException if a limit is less than 1, or reserve is negative or not less than dailyLimit
+     */
+    public RateLimiter(long dailyLimit, long perSecondLimit, long reserve){
+        super(OBJECT_NAME_PREFIX);
+        if(dailyLimit < 1 || perSecondLimit < 1 || reserve < 0 || reserve >= dailyLimit){
+            throw new IllegalArgumentException();
+        }
+        this.dailyLimit = dailyLimit;
+        this.perSecondLimit = perSecondLimit;
+        this.reserve = reserve;
+        this.dailyTokens = dailyLimit;
+        this.secondTokens = perSecondLimit;
+        this.refilledNanos = System.nanoTime();
+        this.pausedUntilNanos = refilledNanos;
+    }
+
+    /**
+     * Asks for a permit to send one request.
+     *
+     * <p>The returned future is already complete if the budget allows the request now. Otherwise the request is queued
+     * and the future completes once it may be sent. Cancelling it gives up the place in the queue.</p>
+     *
+     * @param priority whose request the permit is for
+     * @return CompletableFuture&lt;Void&gt; - completes when the request may be sent
+     */
+    public CompletableFuture<Void> acquire(Priority priority){
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this){
+            long now = System.nanoTime();
+            refill(now);
+            boolean ahead = !interactiveQueue.isEmpty() || (priority == Priority.BULK && !bulkQueue.isEmpty());
+            if(!ahead && tryTake(priority, now)){
+                granted.increment();
+                permit.complete(null);
+                return permit;
+            }
+            queueOf(priority).add(permit);
+            throttled.increment();
+            scheduleDrain(now);
+        }
+        return permit;
+    }
+
+    /**
+     * Holds back every permit for a while, after the API answered 429 Too Many Requests.
+     *
+     * @param millis milliseconds to give no permits for
+     */
+    public void backOff(long millis){
+        synchronized (this){
+            long now = System.nanoTime();
+            pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(millis));
+            if(!interactiveQueue.isEmpty() || !bulkQueue.isEmpty()){
+                scheduleDrain(now);
+            }
+        }
+    }
+
+    /**
+     * Takes out of the daily bucket the calls an earlier run used, less what the bucket has refilled since.
+     *
+     * @param used calls of the daily budget used when the earlier run saved its usage, as given by getUsedDaily()
+     * @param savedAtMillis time the usage was saved, from System.currentTimeMillis()
+     */
+    public synchronized void restoreUsage(long used, long savedAtMillis){
+        long elapsed = Math.max(System.currentTimeMillis() - savedAtMillis, 0);
+        double stillUsed = used - (double) elapsed * dailyLimit / MILLIS_PER_DAY;
+        if(stillUsed > 0){
+            refill(System.nanoTime());
+            dailyTokens = Math.max(dailyTokens - stillUsed, 0);
+        }
+    }
+
+    /**
+     * Counts a request sent again after an error response
+     *
+     * @param statusCode status code of the response retried
+     */
+    public void recordRetry(int statusCode){
+        retries.increment();
+        if(statusCode == ApiResponse.TOO_MANY_REQUESTS){
+            rateLimited.increment();
+        }
+    }
+
+    /**
+     * Adds the tokens earned since the last refill, up to the size of each bucket.
+     *
+     * @param now current time from System.nanoTime()
+     */
+    private void refill(long now){
+        long elapsed = now - refilledNanos;
+        if(elapsed <= 0){
+            return;
+        }
+        secondTokens = Math.min(perSecondLimit, secondTokens + (double) elapsed * perSecondLimit / NANOS_PER_SECOND);
+        dailyTokens = Math.min(dailyLimit, dailyTokens + (double) elapsed * dailyLimit / NANOS_PER_DAY);
+        refilledNanos = now;
+    }
+
+    /**
+     * Takes a token from both buckets if the budget allows a request of the given priority now.
+     *
+     * @param priority whose request the token is for
+     * @param now current time from System.nanoTime()
+     * @return boolean - true if the tokens were taken
+     */
+    private boolean tryTake(Priority priority, long now){
+        if(now < pausedUntilNanos || secondTokens < 1 || dailyTokens - 1 < floorOf(priority)){
+            return false;
+        }
+        secondTokens -= 1;
+        dailyTokens -= 1;
+        return true;
+    }
+
+    /**
+     * Puts back the tokens of a permit that was cancelled before it was given.
+     */
+    private synchronized void refund(){
+        secondTokens = Math.min(perSecondLimit, secondTokens + 1);
+        dailyTokens = Math.min(dailyLimit, dailyTokens + 1);
+        granted.decrement();
+    }
+
+    /**
+     * Tokens of the daily bucket a request of the given priority may not use
+     *
+     * @param priority whose request it is
+     * @return long - reserve for bulk requests, 0 for interactive ones
+     */
+    private long floorOf(Priority priority){
+        return priority == Priority.BULK ? reserve : 0;
+    }
+
+    /**
+     * Queue of waiting requests of the given priority
+     *
+     * @param priority whose requests
+     * @return Deque&lt;CompletableFuture&lt;Void&gt;&gt; - permits not given yet, oldest first
+     */
+    private Deque<CompletableFuture<Void>> queueOf(Priority priority){
+        return priority == Priority.BULK ? bulkQueue : interactiveQueue;
+    }
+
+    /**
+     * Schedules drain() for when the budget will next allow the oldest waiting request, unless already scheduled.
+     *
+     * @param now current time from System.nanoTime()
+     */
+    private void scheduleDrain(long now){
+        if(drainScheduled){
+            return;
+        }
+        Priority next = interactiveQueue.isEmpty() ? Priority.BULK : Priority.INTERACTIVE;
+        long wait = Math.max(pausedUntilNanos - now, 0);
+        wait = Math.max(wait, (long) Math.ceil((1 - secondTokens) * NANOS_PER_SECOND / perSecondLimit));
+        wait = Math.max(wait, (long) Math.ceil((floorOf(next) + 1 - dailyTokens) * NANOS_PER_DAY / dailyLimit));
+        drainScheduled = true;
+        CompletableFuture.delayedExecutor(Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS).execute(this::drain);
+    }
+
+    /**
+     * Gives permits to waiting requests, interactive ones first, while the budget allows,
+     * and schedules itself again if any are left waiting.
+     */
+    private void drain(){
+        List<CompletableFuture<Void>> given = new ArrayList<>();
+        synchronized (this){
+            drainScheduled = false;
+            long now = System.nanoTime();
+            refill(now);
+            for(Priority priority : Priority.values()){
+                Deque<CompletableFuture<Void>> queue = queueOf(priority);
+                while(!queue.isEmpty()){
+                    if(queue.peek().isDone()){
+                        queue.poll();
+                    } else if(tryTake(priority, now)){
+                        given.add(queue.poll());
+                        granted.increment();
+                    } else {
+                        break;
+                    }
+                }
+                if(!queue.isEmpty()){
+                    break;
+                }
+            }
+            if(!interactiveQueue.isEmpty() || !bulkQueue.isEmpty()){
+                scheduleDrain(now);
+            }
+        }
+        for(CompletableFuture<Void> permit : given){
+            if(!permit.complete(null)){
+                refund();
+            }
+        }
+    }
+
+    @Override
+    public long getDailyLimit() {
+        return dailyLimit;
+    }
+
+    @Override
+    public long getPerSecondLimit() {
+        return perSecondLimit;
+    }
+
+    @Override
+    public long getReserve() {
+        return reserve;
+    }
+
+    @Override
+    public synchronized long getRemainingDaily() {
+        refill(System.nanoTime());
+        return (long) dailyTokens;
+    }
+
+    /**
+     * Getter for the calls of the daily budget used and not refilled yet, to be saved for restoreUsage() on the next run
+     *
+     * @return long - calls used, rounded up
+     */
+    public synchronized long getUsedDaily() {
+        refill(System.nanoTime());
+        return (long) Math.ceil(dailyLimit - dailyTokens);
+    }
+
+    @Override
+    public synchronized int getQueuedCount() {
+        int queued = 0;
+        for(CompletableFuture<Void> permit : interactiveQueue){
+            queued += permit.isDone() ? 0 : 1;
+        }
+        for(CompletableFuture<Void> permit : bulkQueue){
+            queued += permit.isDone() ? 0 : 1;
+        }
+        return queued;
+    }
+
+    @Override
+    public long getGrantedCount() {
+        return granted.sum();
+    }
+
+    @Override
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+}
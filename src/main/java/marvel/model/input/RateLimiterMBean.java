@@ -0,0 +1,53 @@
+package marvel.model.input;
+
+/**
+ * JMX management interface of RateLimiter, shown under marvel.api:type=RateLimiter in JConsole or VisualVM.
+ *
+ * @see RateLimiter
+ */
+public interface RateLimiterMBean {
+    /**
+     * @return long - number of calls allowed per day
+     */
+    public long getDailyLimit();
+
+    /**
+     * @return long - number of calls allowed per second
+     */
+    public long getPerSecondLimit();
+
+    /**
+     * @return long - calls of the daily budget only interactive requests may use
+     */
+    public long getReserve();
+
+    /**
+     * @return long - calls left in the daily budget
+     */
+    public long getRemainingDaily();
+
+    /**
+     * @return int - requests waiting for a permit
+     */
+    public int getQueuedCount();
+
+    /**
+     * @return long - permits given
+     */
+    public long getGrantedCount();
+
+    /**
+     * @return long - requests that had to wait for a permit
+     */
+    public long getThrottledCount();
+
+    /**
+     * @return long - requests sent again after a 429 or 5xx response
+     */
+    public long getRetryCount();
+
+    /**
+     * @return long - 429 Too Many Requests responses received
+     */
+    public long getRateLimitedCount();
+}
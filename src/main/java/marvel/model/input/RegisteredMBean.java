@@ -0,0 +1,61 @@
+package marvel.model.input;
+
+import javax.management.ObjectName;
+
+/**
+ * Base of the MBeans of the cache and the API handlers, keeping the JMX name an instance is registered under.
+ *
+ * <p>Subclasses implement their own MBean interface, such as CacheMetricsMBean, and give the JMX domain and type
+ * they are registered under to the constructor.</p>
+ *
+ * @see Mbeans
+ */
+public abstract class RegisteredMBean {
+    /**
+     * JMX domain and type ending in "name=" the bean is registered under
+     */
+    private final String objectNamePrefix;
+    /**
+     * JMX name the bean is registered under, null if not registered
+     */
+    private volatile ObjectName objectName = null;
+
+    /**
+     * Constructor for a RegisteredMBean
+     *
+     * @param objectNamePrefix JMX domain and type ending in "name=", such as CacheMetrics.OBJECT_NAME_PREFIX
+     */
+    protected RegisteredMBean(String objectNamePrefix){
+        this.objectNamePrefix = objectNamePrefix;
+    }
+
+    /**
+     * Registers the bean with the platform MBean server, so it can be watched with JConsole or any JMX client.
+     *
+     * <p>Does nothing if already registered. A failure to register is printed and otherwise ignored.</p>
+     *
+     * @param name name to register under, such as the API or the cache database the bean is for
+     */
+    public synchronized void register(String name){
+        if(objectName == null){
+            objectName = Mbeans.register(this, objectNamePrefix, name);
+        }
+    }
+
+    /**
+     * Removes the bean from the platform MBean server, if registered
+     */
+    public synchronized void unregister(){
+        Mbeans.unregister(objectName);
+        objectName = null;
+    }
+
+    /**
+     * Getter for the JMX name the bean is registered under
+     *
+     * @return ObjectName - JMX name, null if not registered
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+}
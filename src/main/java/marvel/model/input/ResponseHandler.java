@@ -5,8 +5,20 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Handler for handling JSON response body strings from Marvel API request results.
@@ -14,6 +26,11 @@ import java.util.List;
  * @see MarvelApiHandler
  */
 public class ResponseHandler {
+    /**
+     * Matches the top level etag field of a Marvel API response
+     */
+    private static final Pattern ETAG_PATTERN = Pattern.compile("\"etag\"\\s*:\\s*\"([^\"]*)\"");
+
     /**
      * Parses a JSON response from a Marvel API GET request response
      *
@@ -43,6 +60,25 @@ public class ResponseHandler {
 
     }
 
+    /**
+     * Checks whether a JSON response from a Marvel API GET request was processed but found no characters
+     *
+     * @param body response body from GET request
+     * @return boolean - true if status code equals 200 and data count is zero, otherwise false
+     */
+    public boolean isEmptyResult(String body){
+        if(body == null || body.isEmpty()){
+            return false;
+        }
+        try{
+            JSONObject response = new JSONObject(body);
+            return response.getInt("code") == 200 && response.getJSONObject("data").getInt("count") == 0;
+        } catch(JSONException e){
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     /**
      * Parses JSON response body string and build CharacterInfo object from resource items represented by JSONObjects.
      *
@@ -136,6 +172,235 @@ public class ResponseHandler {
         return null;
     }
 
+    /**
+     * Parses a page of the comics a character appears in
+     *
+     * @param body response body of a /characters/{id}/comics request
+     * @return List&lt;Comic&gt; - comics in the page, null if the body cannot be parsed
+     */
+    public List<Comic> parseComicPage(String body){
+        return body == null || body.isEmpty() ? null : parseComicPage(new StringReader(body));
+    }
+
+    /**
+     * Parses a page of the comics a character appears in as it is read, without building the whole response in memory
+     *
+     * @param body response body of a /characters/{id}/comics request, read to the end or to the first error
+     * @return List&lt;Comic&gt; - comics in the page, null if the body cannot be parsed
+     */
+    public List<Comic> parseComicPage(Reader body){
+        return parsePage(body, item -> item.containsKey("title") && item.containsKey("resourceURI")
+                ? new Comic(item.get("title"), item.get("resourceURI")) : null);
+    }
+
+    /**
+     * Parses a page of the stories a character appears in
+     *
+     * @param body response body of a /characters/{id}/stories request
+     * @return List&lt;Story&gt; - stories in the page, null if the body cannot be parsed
+     */
+    public List<Story> parseStoryPage(String body){
+        return body == null || body.isEmpty() ? null : parseStoryPage(new StringReader(body));
+    }
+
+    /**
+     * Parses a page of the stories a character appears in as it is read, without building the whole response in memory
+     *
+     * @param body response body of a /characters/{id}/stories request, read to the end or to the first error
+     * @return List&lt;Story&gt; - stories in the page, null if the body cannot be parsed
+     */
+    public List<Story> parseStoryPage(Reader body){
+        return parsePage(body, item -> item.containsKey("title") && item.containsKey("type") && item.containsKey("resourceURI")
+                ? new Story(item.get("title"), item.get("type"), item.get("resourceURI")) : null);
+    }
+
+    /**
+     * Parses a page of the events a character appears in
+     *
+     * @param body response body of a /characters/{id}/events request
+     * @return List&lt;Event&gt; - events in the page, null if the body cannot be parsed
+     */
+    public List<Event> parseEventPage(String body){
+        return body == null || body.isEmpty() ? null : parseEventPage(new StringReader(body));
+    }
+
+    /**
+     * Parses a page of the events a character appears in as it is read, without building the whole response in memory
+     *
+     * @param body response body of a /characters/{id}/events request, read to the end or to the first error
+     * @return List&lt;Event&gt; - events in the page, null if the body cannot be parsed
+     */
+    public List<Event> parseEventPage(Reader body){
+        return parsePage(body, item -> item.containsKey("title") && item.containsKey("resourceURI")
+                ? new Event(item.get("title"), item.get("resourceURI")) : null);
+    }
+
+    /**
+     * Parses a page of the series a character appears in
+     *
+     * @param body response body of a /characters/{id}/series request
+     * @return List&lt;Series&gt; - series in the page, null if the body cannot be parsed
+     */
+    public List<Series> parseSeriesPage(String body){
+        return body == null || body.isEmpty() ? null : parseSeriesPage(new StringReader(body));
+    }
+
+    /**
+     * Parses a page of the series a character appears in as it is read, without building the whole response in memory
+     *
+     * @param body response body of a /characters/{id}/series request, read to the end or to the first error
+     * @return List&lt;Series&gt; - series in the page, null if the body cannot be parsed
+     */
+    public List<Series> parseSeriesPage(Reader body){
+        return parsePage(body, item -> item.containsKey("title") && item.containsKey("resourceURI")
+                ? new Series(item.get("title"), item.get("resourceURI")) : null);
+    }
+
+    /**
+     * Parses the results of a page response with a PageContentHandler, building each item as soon as its closing brace is read.
+     *
+     * @param body response body of a page request
+     * @param build builds an item from its fields, returning null if a field it needs is missing
+     * @param <T> type of the items
+     * @return List&lt;T&gt; - items in the page, null if the body cannot be parsed, has a status code other than 200 or has an item that cannot be built
+     */
+    private <T> List<T> parsePage(Reader body, Function<Map<String, String>, T> build){
+        PageContentHandler<T> handler = new PageContentHandler<>(build);
+        try{
+            new JSONParser().parse(body, handler);
+        } catch (IOException | ParseException e){
+            e.printStackTrace();
+            return null;
+        }
+        return handler.getItems();
+    }
+
+    /**
+     * Receives the events of a streaming parse of a page response, keeping only the status code
+     * and the fields directly inside each item of data.results.
+     *
+     * <p>Nested objects and arrays of an item, such as its thumbnail or creators, are skipped without being built.
+     * Parsing stops at once if the status code is not 200 or an item cannot be built.</p>
+     *
+     * @param <T> type of the items
+     */
+    private static class PageContentHandler<T> implements ContentHandler {
+        /**
+         * Depth of the objects of data.results, counting the response object as 1
+         */
+        private static final int ITEM_DEPTH = 4;
+
+        private final Function<Map<String, String>, T> build;
+        private final List<T> items = new ArrayList<>();
+        /**
+         * Key of the entry being read in the open object at each depth
+         */
+        private final String[] keys = new String[ITEM_DEPTH + 1];
+        /**
+         * Number of objects and arrays open
+         */
+        private int depth = 0;
+        private int code = 0;
+        private boolean inResults = false;
+        private boolean sawResults = false;
+        private boolean failed = false;
+        /**
+         * Fields of the item being read, null outside an item
+         */
+        private Map<String, String> item = null;
+
+        private PageContentHandler(Function<Map<String, String>, T> build){
+            this.build = build;
+        }
+
+        /**
+         * Getter for the items parsed
+         *
+         * @return List&lt;T&gt; - items in order, null if the page was not a complete successful response
+         */
+        private List<T> getItems(){
+            return !failed && code == 200 && sawResults ? items : null;
+        }
+
+        @Override
+        public void startJSON() {
+        }
+
+        @Override
+        public void endJSON() {
+        }
+
+        @Override
+        public boolean startObject() {
+            depth++;
+            if(inResults && depth == ITEM_DEPTH){
+                item = new HashMap<>();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            if(inResults && depth == ITEM_DEPTH){
+                T built = build.apply(item);
+                item = null;
+                if(built == null){
+                    failed = true;
+                    return false;
+                }
+                items.add(built);
+            }
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            if(depth < keys.length){
+                keys[depth] = key;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            if(depth == 2 && "data".equals(keys[1]) && "results".equals(keys[2])){
+                inResults = true;
+                sawResults = true;
+            }
+            depth++;
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            depth--;
+            if(depth == 2){
+                inResults = false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if(depth == 1 && "code".equals(keys[1])){
+                code = value instanceof Number ? ((Number) value).intValue() : 0;
+                if(code != 200){
+                    failed = true;
+                    return false;
+                }
+            } else if(item != null && depth == ITEM_DEPTH && value != null){
+                item.put(keys[ITEM_DEPTH], value.toString());
+            }
+            return true;
+        }
+    }
+
     /**
      * Parses response body from failed request of status code 409.
      *
@@ -157,4 +422,21 @@ public class ResponseHandler {
         }
         return null;
     }
+
+    /**
+     * Extracts the entity tag from a Marvel API response body without parsing the whole body.
+     *
+     * <p>The entity tag identifies the version of the returned data, and is sent back in the If-None-Match header
+     * of later requests to check whether cached data is still current.</p>
+     *
+     * @param body response body from GET request
+     * @return String - value of the etag field, null if body is null or has no etag field
+     */
+    public static String parseEtag(String body){
+        if(body == null){
+            return null;
+        }
+        Matcher matcher = ETAG_PATTERN.matcher(body);
+        return matcher.find() ? matcher.group(1) : null;
+    }
 }
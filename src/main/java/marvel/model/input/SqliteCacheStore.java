@@ -0,0 +1,538 @@
+package marvel.model.input;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CacheStore backed by the Character table of the SQLite cache database.
+ *
+ * <p>The table is keyed by <b>Name</b>, a primary key set to replace on conflict,
+ * and holds the <b>Response</b>, <b>Format</b>, <b>Payload</b>, <b>Codec</b>, <b>DictionaryId</b>, <b>ETag</b> and <b>FetchedAt</b> of each record.
+ * Columns added by later versions are added to an existing table when the store is opened.</p>
+ *
+ * <p>An indexed <b>AccessedAt</b> column orders records for eviction. It starts at the fetch time and is raised by recordAccess().
+ * Space freed by removed records is returned to the file system by incremental vacuum in compact(),
+ * once a database created before incremental vacuum was turned on has been converted by enableIncrementalVacuum().</p>
+ *
+ * <p>Runs every query through a CacheConnectionPool, so lookups use the read-only connections
+ * and writes are serialised on the single writer connection.</p>
+ *
+ * @see CacheStore
+ * @see CacheConnectionPool
+ */
+public class SqliteCacheStore implements CacheStore {
+    /**
+     * Columns of the Character table read into a CacheEntry
+     */
+    private static final String ENTRY_COLUMNS = "Name, Format, Codec, DictionaryId, Response, Payload, ETag, FetchedAt";
+    /**
+     * Columns of the Character table read into a CacheEntry without its response and payload
+     */
+    private static final String HEADER_COLUMNS = "Name, Format, Codec, DictionaryId, NULL AS Response, NULL AS Payload, ETag, FetchedAt";
+    /**
+     * Value of the auto_vacuum pragma when incremental vacuum is on
+     */
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+    /**
+     * Number of free pages returned to the file system by each compaction step
+     */
+    private static final int COMPACTION_STEP_PAGES = 256;
+
+    /**
+     * Pool of connections to the cache database
+     */
+    private final CacheConnectionPool pool;
+
+    /**
+     * Constructor for SqliteCacheStore, creates the Character table if the database does not have one yet.
+     *
+     * @param pool pool of connections to the cache database
+     * @throws SQLException if the table cannot be created or altered
+     */
+    public SqliteCacheStore(CacheConnectionPool pool) throws SQLException {
+        this.pool = pool;
+        pool.write(connection -> {
+            connection.execute("CREATE TABLE IF NOT EXISTS Character (Name VARCHAR PRIMARY KEY ON CONFLICT REPLACE, Response VARCHAR)");
+            addMissingColumns(connection);
+            return null;
+        });
+    }
+
+    /**
+     * Adds columns that older cache databases were created without to the Character table.
+     *
+     * @param connection writer connection
+     * @throws SQLException if the table cannot be altered
+     */
+    private void addMissingColumns(PooledConnection connection) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try(Statement statement = connection.getConnection().createStatement();
+            ResultSet rs = statement.executeQuery("PRAGMA table_info(Character)")){
+            while(rs.next()){
+                columns.add(rs.getString("name"));
+            }
+        }
+        if(!columns.contains("Format")){
+            connection.execute("ALTER TABLE Character ADD COLUMN Format INTEGER NOT NULL DEFAULT " + CacheEntry.FORMAT_JSON);
+        }
+        if(!columns.contains("Payload")){
+            connection.execute("ALTER TABLE Character ADD COLUMN Payload BLOB");
+        }
+        if(!columns.contains("Codec")){
+            connection.execute("ALTER TABLE Character ADD COLUMN Codec INTEGER NOT NULL DEFAULT " + CacheEntry.CODEC_NONE);
+        }
+        if(!columns.contains("DictionaryId")){
+            connection.execute("ALTER TABLE Character ADD COLUMN DictionaryId INTEGER NOT NULL DEFAULT 0");
+        }
+        if(!columns.contains("ETag")){
+            connection.execute("ALTER TABLE Character ADD COLUMN ETag VARCHAR");
+        }
+        if(!columns.contains("FetchedAt")){
+            connection.execute("ALTER TABLE Character ADD COLUMN FetchedAt INTEGER NOT NULL DEFAULT 0");
+        }
+        if(!columns.contains("AccessedAt")){
+            connection.execute("ALTER TABLE Character ADD COLUMN AccessedAt INTEGER NOT NULL DEFAULT 0");
+            connection.execute("UPDATE Character SET AccessedAt = FetchedAt");
+        }
+        connection.execute("CREATE INDEX IF NOT EXISTS CharacterAccessedAt ON Character (AccessedAt)");
+    }
+
+    /**
+     * Reads the record stored under a name with a single query
+     *
+     * @param name key of the record
+     * @return CacheEntry - stored record, null if not found
+     * @throws IOException if the query fails
+     */
+    @Override
+    public CacheEntry read(String name) throws IOException {
+        return readOne("SELECT " + ENTRY_COLUMNS + " from Character where Name = ?;", name);
+    }
+
+    /**
+     * Reads the record stored under a name without selecting its response and payload
+     *
+     * @param name key of the record
+     * @return CacheEntry - stored record with null response and payload, null if not found
+     * @throws IOException if the query fails
+     */
+    @Override
+    public CacheEntry readHeader(String name) throws IOException {
+        return readOne("SELECT " + HEADER_COLUMNS + " from Character where Name = ?;", name);
+    }
+
+    /**
+     * Runs a query selecting a record by name
+     *
+     * @param query query with the name as its only parameter
+     * @param name key of the record
+     * @return CacheEntry - record at the first row, null if there are no rows
+     * @throws IOException if the query fails
+     */
+    private CacheEntry readOne(String query, String name) throws IOException {
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                pr.setString(1, name);
+                try(ResultSet rs = pr.executeQuery()){
+                    return rs.next() ? readRow(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Whether a record is stored under a name, without reading it
+     *
+     * @param name key of the record
+     * @return boolean - true if a record is found, otherwise false
+     * @throws IOException if the query fails
+     */
+    @Override
+    public boolean contains(String name) throws IOException {
+        String query = "SELECT 1 from Character where Name = ?;";
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                pr.setString(1, name);
+                try(ResultSet rs = pr.executeQuery()){
+                    return rs.next();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes records in a single transaction.
+     *
+     * <p>Each insert is skipped by a NOT EXISTS check if an identical record is stored,
+     * and the skipped records have their fetch time refreshed in the same transaction.</p>
+     *
+     * @param entries records to write
+     * @return boolean[] - for each record in order, true if it was written, false if an identical record was already stored
+     * @throws IOException if the transaction fails
+     */
+    @Override
+    public boolean[] write(List<CacheEntry> entries) throws IOException {
+        String query = "INSERT INTO Character (Name, Response, Format, Codec, DictionaryId, Payload, ETag, FetchedAt, AccessedAt) \n" +
+                "SELECT ?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?8 WHERE NOT EXISTS " +
+                "(SELECT 1 FROM Character WHERE Name = ?9 AND Format = ?10 AND Codec = ?11 AND Response IS ?12 AND Payload IS ?13)";
+        String refresh = "UPDATE Character SET FetchedAt = ?, ETag = coalesce(?, ETag) WHERE Name = ? AND FetchedAt < ?";
+
+        try{
+            return pool.transaction(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                for(CacheEntry entry : entries){
+                    pr.setString(1, entry.getName());
+                    pr.setString(2, entry.getResponse());
+                    pr.setInt(3, entry.getFormat());
+                    pr.setInt(4, entry.getCodec());
+                    pr.setInt(5, entry.getDictionaryId());
+                    pr.setBytes(6, entry.getPayload());
+                    pr.setString(7, entry.getEtag());
+                    pr.setLong(8, entry.getFetchedAt());
+                    pr.setString(9, entry.getName());
+                    pr.setInt(10, entry.getFormat());
+                    pr.setInt(11, entry.getCodec());
+                    pr.setString(12, entry.getResponse());
+                    pr.setBytes(13, entry.getPayload());
+                    pr.addBatch();
+                }
+                int[] counts = pr.executeBatch();
+                boolean[] written = new boolean[counts.length];
+
+                //identical records are not rewritten, but fetching them again still makes them current
+                PreparedStatement update = connection.prepare(refresh);
+                boolean refreshed = false;
+                for(int i = 0 ; i < counts.length ; i++){
+                    if(counts[i] > 0){
+                        written[i] = true;
+                    } else {
+                        CacheEntry entry = entries.get(i);
+                        update.setLong(1, entry.getFetchedAt());
+                        update.setString(2, entry.getEtag());
+                        update.setString(3, entry.getName());
+                        update.setLong(4, entry.getFetchedAt());
+                        update.addBatch();
+                        refreshed = true;
+                    }
+                }
+                if(refreshed){
+                    update.executeBatch();
+                }
+                return written;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Sets the fetch time of the record stored under a name
+     *
+     * @param name key of the record
+     * @param fetchedAt new fetch time, in milliseconds since the epoch
+     * @return boolean - true if a record was updated, false if not found
+     * @throws IOException if the update fails
+     */
+    @Override
+    public boolean touch(String name, long fetchedAt) throws IOException {
+        String query = "UPDATE Character SET FetchedAt = ? WHERE Name = ?;";
+        try{
+            return pool.write(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                pr.setLong(1, fetchedAt);
+                pr.setString(2, name);
+                return pr.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads records in name order using the primary key index, so each batch costs the same however far into the table it is
+     *
+     * @param afterName only records with names after this one are returned, empty string to start from the first record
+     * @param limit maximum number of records to return
+     * @return List&lt;CacheEntry&gt; - records after afterName in name order
+     * @throws IOException if the query fails
+     */
+    @Override
+    public List<CacheEntry> scan(String afterName, int limit) throws IOException {
+        String query = "SELECT " + ENTRY_COLUMNS + " from Character where Name > ? ORDER BY Name LIMIT ?;";
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                pr.setString(1, afterName);
+                pr.setInt(2, limit);
+                List<CacheEntry> rows = new ArrayList<>();
+                try(ResultSet rs = pr.executeQuery()){
+                    while(rs.next()){
+                        rows.add(readRow(rs));
+                    }
+                }
+                return rows;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Lists the names of every stored record, read from the primary key index only
+     *
+     * @return List&lt;String&gt; - names of stored records
+     * @throws IOException if the query fails
+     */
+    @Override
+    public List<String> names() throws IOException {
+        try{
+            return pool.read(connection -> {
+                List<String> found = new ArrayList<>();
+                PreparedStatement pr = connection.prepare("SELECT Name from Character;");
+                try(ResultSet rs = pr.executeQuery()){
+                    while(rs.next()){
+                        found.add(rs.getString("Name"));
+                    }
+                }
+                return found;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Raises the access time of each record in a single transaction, never lowering it
+     *
+     * @param accessedAt access time of each name, in milliseconds since the epoch
+     * @throws IOException if the transaction fails
+     */
+    @Override
+    public void recordAccess(Map<String, Long> accessedAt) throws IOException {
+        if(accessedAt.isEmpty()){
+            return;
+        }
+        String query = "UPDATE Character SET AccessedAt = ?1 WHERE Name = ?2 AND AccessedAt < ?1;";
+        try{
+            pool.transaction(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                for(Map.Entry<String, Long> access : accessedAt.entrySet()){
+                    pr.setLong(1, access.getValue());
+                    pr.setString(2, access.getKey());
+                    pr.addBatch();
+                }
+                pr.executeBatch();
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Lists the names of the records read least recently, using the AccessedAt index
+     *
+     * @param limit maximum number of names to return
+     * @return List&lt;String&gt; - names of stored records, least recently read first
+     * @throws IOException if the query fails
+     */
+    @Override
+    public List<String> leastRecentlyAccessed(int limit) throws IOException {
+        String query = "SELECT Name from Character ORDER BY AccessedAt LIMIT ?;";
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(query);
+                pr.setInt(1, limit);
+                List<String> found = new ArrayList<>();
+                try(ResultSet rs = pr.executeQuery()){
+                    while(rs.next()){
+                        found.add(rs.getString("Name"));
+                    }
+                }
+                return found;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Removes records in a single transaction
+     *
+     * @param names keys of the records to remove
+     * @return int - number of records removed
+     * @throws IOException if the transaction fails
+     */
+    @Override
+    public int delete(List<String> names) throws IOException {
+        if(names.isEmpty()){
+            return 0;
+        }
+        try{
+            return pool.transaction(connection -> {
+                PreparedStatement pr = connection.prepare("DELETE FROM Character WHERE Name = ?;");
+                for(String name : names){
+                    pr.setString(1, name);
+                    pr.addBatch();
+                }
+                int deleted = 0;
+                for(int count : pr.executeBatch()){
+                    deleted += Math.max(0, count);
+                }
+                return deleted;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Number of rows in the Character table
+     *
+     * @return long - record count
+     * @throws IOException if the query fails
+     */
+    @Override
+    public long count() throws IOException {
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare("SELECT count(*) from Character;");
+                try(ResultSet rs = pr.executeQuery()){
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Bytes of the responses and payloads held in the Character table.
+     *
+     * <p>Only character records are counted - not the compression dictionaries, misses, full-text index and catalog
+     * CacheHandler keeps in the same database, nor page and index overhead. Sums every row, so it reads the whole table.</p>
+     *
+     * @return long - size in bytes
+     * @throws IOException if the query fails
+     */
+    @Override
+    public long sizeInBytes() throws IOException {
+        String sql = "SELECT TOTAL(COALESCE(length(CAST(Response AS BLOB)), 0) + COALESCE(length(Payload), 0)) FROM Character;";
+        try{
+            return pool.read(connection -> {
+                PreparedStatement pr = connection.prepare(sql);
+                try(ResultSet rs = pr.executeQuery()){
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns free pages to the file system with incremental vacuum, COMPACTION_STEP_PAGES at a time.
+     *
+     * <p>Each step is a short write on the writer connection, so writes queue behind at most one step,
+     * and lookups on the reader connections are never held up in WAL mode.</p>
+     *
+     * <p>Does nothing on a database created before incremental vacuum was turned on, until enableIncrementalVacuum() has converted it.</p>
+     *
+     * @throws IOException if a step fails
+     */
+    @Override
+    public void compact() throws IOException {
+        try{
+            long mode = pool.write(connection -> pragma(connection, "auto_vacuum"));
+            if(mode != AUTO_VACUUM_INCREMENTAL){
+                return;
+            }
+            long free = Long.MAX_VALUE;
+            while(true){
+                long remaining = pool.write(connection -> {
+                    connection.execute("PRAGMA incremental_vacuum(" + COMPACTION_STEP_PAGES + ")");
+                    return pragma(connection, "freelist_count");
+                });
+                //stop once nothing is left, or a step frees nothing because another connection holds the pages
+                if(remaining == 0 || remaining >= free){
+                    break;
+                }
+                free = remaining;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Converts a database created before incremental vacuum was turned on, so compact() can reclaim space in steps.
+     *
+     * <p>The conversion takes a full VACUUM, which rewrites the whole database and holds up every write until it is done,
+     * so it is run once on request rather than by compact().</p>
+     *
+     * @return boolean - true if the database was converted, false if it already used incremental vacuum
+     * @throws IOException if the database cannot be converted
+     */
+    public boolean enableIncrementalVacuum() throws IOException {
+        try{
+            return pool.write(connection -> {
+                if(pragma(connection, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL){
+                    return false;
+                }
+                connection.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                connection.execute("VACUUM");
+                return true;
+            });
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads a numeric pragma
+     *
+     * @param connection connection to read with
+     * @param name name of the pragma
+     * @return long - value of the pragma
+     * @throws SQLException if the pragma cannot be read
+     */
+    private static long pragma(PooledConnection connection, String name) throws SQLException {
+        try(Statement statement = connection.getConnection().createStatement();
+            ResultSet rs = statement.executeQuery("PRAGMA " + name)){
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Does nothing - the connection pool is shared with CacheHandler, which closes it
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Reads the record at the current row of a result set selecting ENTRY_COLUMNS or HEADER_COLUMNS.
+     *
+     * @param rs result set positioned on a row
+     * @return CacheEntry - record at the row
+     * @throws SQLException if a column cannot be read
+     */
+    private static CacheEntry readRow(ResultSet rs) throws SQLException {
+        return new CacheEntry(rs.getString("Name"), rs.getInt("Format"), rs.getInt("Codec"), rs.getInt("DictionaryId"),
+                rs.getString("Response"), rs.getBytes("Payload"), rs.getString("ETag"), rs.getLong("FetchedAt"));
+    }
+}
@@ -1,11 +1,12 @@
 package marvel.model.output;
+import marvel.model.input.ContentDecoding;
+import marvel.model.input.HttpTransport;
 import marvel.model.input.OnlineMarvelModel;
 import marvel.model.input.ResponseHandler;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -24,9 +25,13 @@ public class PastebinApiHandler {
      */
     private String publicKey;
     /**
-     * HttpClient used to send and retrieve response
+     * Transport requests are sent on, the shared default transport if none is set
      */
-    private HttpClient client;
+    private volatile HttpTransport transport;
+    /**
+     * Decodes compressed response bodies and counts the bytes they saved
+     */
+    private final ContentDecoding contentDecoding = new ContentDecoding();
 
     /**
      * URL to paste generated for last report sent out
@@ -51,7 +56,44 @@ public class PastebinApiHandler {
             throw new IllegalArgumentException();
         }
         this.publicKey = publicKey;
-        client = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Getter for the decoder of response bodies, which counts the bytes received and decoded
+     *
+     * @return ContentDecoding - decoder of response bodies
+     */
+    public ContentDecoding getContentDecoding(){
+        return contentDecoding;
+    }
+
+    /**
+     * Sets the transport reports are sent on, shared with the Marvel API handler
+     *
+     * @param transport transport to send requests on
+     */
+    public void setTransport(HttpTransport transport){
+        if(transport == null){
+            throw new NullPointerException();
+        }
+        this.transport = transport;
+    }
+
+    /**
+     * Returns the transport set, or the shared default transport if none was
+     *
+     * @return HttpTransport - transport requests are sent on
+     */
+    private HttpTransport transport(){
+        HttpTransport current = transport;
+        return current != null ? current : HttpTransport.getDefault();
+    }
+
+    /**
+     * Creates the HttpClient of the transport now rather than when the first report is sent. Does nothing if it already exists.
+     */
+    public void warmUp(){
+        transport().warmUp();
     }
 
     /**
@@ -92,13 +134,14 @@ public class PastebinApiHandler {
         }
 
         try{
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest request = transport().newRequest()
                     .POST(HttpRequest.BodyPublishers.ofString(sb.toString()))
                     .header("Content-Type", "application/x-www-form-urlencoded")
+                    .header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING)
                     .uri(URI.create("https://pastebin.com/api/api_post.php"))
                     .build();
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = transport().send(request, contentDecoding.ofString());
             if(response.statusCode() < 400){
                 System.out.println(response.body());
                 this.lastOutputUrl = response.body();
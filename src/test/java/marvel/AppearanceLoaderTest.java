@@ -0,0 +1,129 @@
+package marvel;
+
+import marvel.model.character.CharacterInfo;
+import marvel.model.character.Comic;
+import marvel.model.input.AppearanceLoader;
+import marvel.model.input.CacheHandler;
+import marvel.model.input.MarvelApiHandler;
+import marvel.model.input.ResponseHandler;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test suite for AppearanceLoader, which loads the complete lists of a character page by page.
+ */
+public class AppearanceLoaderTest {
+
+    /**
+     * Builds a successful page response holding comics numbered from first to last
+     *
+     * @param first number of the first comic of the page
+     * @param last number of the last comic of the page
+     * @return HttpResponse&lt;InputStream&gt; - response with the page as its unread body
+     */
+    private HttpResponse<InputStream> page(int first, int last){
+        return page(first, last, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds a successful page response holding comics numbered from first to last, cut off after length bytes
+     *
+     * @param first number of the first comic of the page
+     * @param last number of the last comic of the page
+     * @param length number of bytes of the body the response ends after
+     * @return HttpResponse&lt;InputStream&gt; - response with the page as its unread body
+     */
+    @SuppressWarnings("unchecked")
+    private HttpResponse<InputStream> page(int first, int last, int length){
+        StringBuilder results = new StringBuilder();
+        for(int i = first ; i <= last ; i++){
+            if(i > first){
+                results.append(',');
+            }
+            results.append("{\"id\":").append(i).append(",\"title\":\"Comic ").append(i)
+                    .append("\",\"resourceURI\":\"comics/").append(i).append("\"}");
+        }
+        String body = "{\"code\":200,\"data\":{\"offset\":" + first + ",\"results\":[" + results + "]}}";
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        when(response.body()).thenReturn(new ByteArrayInputStream(bytes, 0, Math.min(length, bytes.length)));
+        return response;
+    }
+
+    /**
+     * Testing the comics of a character with more than PAGE_SIZE comics are assembled in offset order,
+     * whatever order their pages arrive in
+     */
+    @Test
+    public void testPagesAssembledInOffsetOrder() throws Exception {
+        //GIVEN
+        MarvelApiHandler apiHandler = mock(MarvelApiHandler.class);
+        CacheHandler cacheHandler = mock(CacheHandler.class);
+        CompletableFuture<HttpResponse<InputStream>> first = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<InputStream>> second = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<InputStream>> third = new CompletableFuture<>();
+        when(apiHandler.fetchResourcePageStreamAsync(1009351, "comics", 0, AppearanceLoader.PAGE_SIZE)).thenReturn(first);
+        when(apiHandler.fetchResourcePageStreamAsync(1009351, "comics", 100, AppearanceLoader.PAGE_SIZE)).thenReturn(second);
+        when(apiHandler.fetchResourcePageStreamAsync(1009351, "comics", 200, AppearanceLoader.PAGE_SIZE)).thenReturn(third);
+        CharacterInfo hulk = new CharacterInfo(1009351, "Hulk", "Very mad", "1999-99-99");
+        hulk.setNComics(250);
+        AppearanceLoader loader = new AppearanceLoader(apiHandler, new ResponseHandler(), cacheHandler, Runnable::run, 10);
+
+        //WHEN
+        CompletableFuture<CharacterInfo> loading = loader.load(hulk);
+        third.complete(page(200, 249));
+        first.complete(page(0, 99));
+        boolean doneEarly = loading.isDone();
+        second.complete(page(100, 199));
+        CharacterInfo full = loading.get(1, TimeUnit.SECONDS);
+
+        //THEN
+        assertFalse(doneEarly);
+        List<Comic> comics = full.getComicList();
+        assertEquals(250, comics.size());
+        for(int i = 0 ; i < comics.size() ; i++){
+            assertEquals("Comic " + i, comics.get(i).getName());
+            assertEquals("comics/" + i, comics.get(i).getResourcePath());
+        }
+        verify(apiHandler, times(3)).fetchResourcePageStreamAsync(eq(1009351), eq("comics"), anyInt(), eq(AppearanceLoader.PAGE_SIZE));
+        verify(cacheHandler, times(3)).saveToCache(anyString(), anyString());
+    }
+
+    /**
+     * Testing a list with a page cut off before its end keeps the items of the search response, and the cut page is not cached
+     */
+    @Test
+    public void testTruncatedPageKeepsSearchItems() throws Exception {
+        //GIVEN
+        MarvelApiHandler apiHandler = mock(MarvelApiHandler.class);
+        CacheHandler cacheHandler = mock(CacheHandler.class);
+        when(apiHandler.fetchResourcePageStreamAsync(1009351, "comics", 0, AppearanceLoader.PAGE_SIZE))
+                .thenReturn(CompletableFuture.completedFuture(page(0, 99)));
+        when(apiHandler.fetchResourcePageStreamAsync(1009351, "comics", 100, AppearanceLoader.PAGE_SIZE))
+                .thenReturn(CompletableFuture.completedFuture(page(100, 149, 2000)));
+        CharacterInfo hulk = new CharacterInfo(1009351, "Hulk", "Very mad", "1999-99-99");
+        hulk.setNComics(150);
+        List<Comic> searchItems = List.of(new Comic("Comic 0", "comics/0"));
+        hulk.setComicList(searchItems);
+        AppearanceLoader loader = new AppearanceLoader(apiHandler, new ResponseHandler(), cacheHandler, Runnable::run, 10);
+
+        //WHEN
+        CharacterInfo full = loader.load(hulk).get(1, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(searchItems, full.getComicList());
+        verify(cacheHandler, times(1)).saveToCache(anyString(), anyString());
+        verify(cacheHandler, times(0)).saveToCache(contains("offset=100"), anyString());
+    }
+}
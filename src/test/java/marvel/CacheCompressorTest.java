@@ -0,0 +1,62 @@
+package marvel;
+
+import marvel.model.input.CacheCompressor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CacheCompressor, used by CacheHandler to compress cached records with a trained dictionary.
+ */
+public class CacheCompressorTest {
+    /**
+     * Path to dummy API response used as training sample
+     */
+    String dummyResponsePath = "./src/main/resources/marvel/DummyApiResponse.json";
+
+    /**
+     * Testing a response compressed with a dictionary trained on a similar response decompresses to the same bytes,
+     * and compresses smaller than without the dictionary
+     */
+    @Test
+    public void testDictionaryRoundTrip() throws IOException {
+        //GIVEN
+        byte[] sample = Files.readAllBytes(Path.of(dummyResponsePath));
+        byte[] response = new String(sample).replace("Spider", "Iron").getBytes();
+        byte[] dictionary = CacheCompressor.trainDictionary(List.of(sample), CacheCompressor.MAX_DICTIONARY_SIZE);
+        CacheCompressor compressor = new CacheCompressor();
+
+        //WHEN
+        byte[] plain = compressor.compress(response, null);
+        byte[] compressed = compressor.compress(response, dictionary);
+
+        //THEN
+        assertTrue(dictionary.length > 0);
+        assertTrue(compressed.length < plain.length);
+        assertArrayEquals(response, compressor.decompress(compressed, dictionary));
+        assertEquals(1, compressor.getDecodeCount());
+        assertTrue(compressor.getCompressionRatio() > 1.0);
+    }
+
+    /**
+     * Testing data compressed with a dictionary cannot be decompressed without it
+     */
+    @Test
+    public void testMissingDictionary() throws IOException {
+        //GIVEN
+        byte[] sample = Files.readAllBytes(Path.of(dummyResponsePath));
+        byte[] dictionary = CacheCompressor.trainDictionary(List.of(sample), CacheCompressor.MAX_DICTIONARY_SIZE);
+        CacheCompressor compressor = new CacheCompressor();
+        byte[] compressed = compressor.compress(sample, dictionary);
+
+        //WHEN-THEN
+        assertThrows(IOException.class, ()->{
+            compressor.decompress(compressed, null);
+        });
+    }
+}
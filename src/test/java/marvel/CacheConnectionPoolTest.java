@@ -0,0 +1,201 @@
+package marvel;
+
+import marvel.model.input.CacheConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CacheConnectionPool and the PooledConnections it hands out.
+ */
+public class CacheConnectionPoolTest {
+    /**
+     * Pool under test, opened on a fresh database for each test
+     */
+    CacheConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        String path = Files.createTempDirectory("pool").resolve("cache.sqlite").toString();
+        pool = new CacheConnectionPool(path, 2);
+        pool.write(connection -> {
+            connection.execute("CREATE TABLE Item (Name TEXT PRIMARY KEY)");
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown(){
+        pool.close();
+    }
+
+    /**
+     * Testing a reader sees the last committed state while the writer holds an open transaction
+     */
+    @Test
+    public void testReaderNotBlockedByWriter() throws Exception {
+        //GIVEN
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> {
+            try{
+                pool.transaction(connection -> {
+                    PreparedStatement insert = connection.prepare("INSERT INTO Item (Name) VALUES (?)");
+                    insert.setString(1, "hulk");
+                    insert.executeUpdate();
+                    inserted.countDown();
+                    try{
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(inserted.await(10, TimeUnit.SECONDS));
+
+        //WHEN
+        int during = count();
+        release.countDown();
+        write.get(10, TimeUnit.SECONDS);
+        int after = count();
+
+        //THEN
+        assertEquals(0, during);
+        assertEquals(1, after);
+    }
+
+    /**
+     * Testing two readers are handed out at the same time
+     */
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        //GIVEN
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+
+        //WHEN
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try{
+                return pool.read(connection -> {
+                    first.countDown();
+                    try{
+                        return second.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        return false;
+                    }
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+        pool.read(connection -> {
+            second.countDown();
+            return null;
+        });
+
+        //THEN
+        assertTrue(waiting.get(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Testing reader connections reject writes
+     */
+    @Test
+    public void testReaderIsQueryOnly(){
+        //GIVEN
+        SQLException error = null;
+
+        //WHEN
+        try{
+            pool.read(connection -> {
+                connection.execute("INSERT INTO Item (Name) VALUES ('thor')");
+                return null;
+            });
+        } catch (SQLException e) {
+            error = e;
+        }
+
+        //THEN
+        assertNotNull(error);
+    }
+
+    /**
+     * Testing the same SQL text reuses one prepared statement with its parameters cleared
+     */
+    @Test
+    public void testStatementReuse() throws Exception {
+        //GIVEN
+        String sql = "INSERT INTO Item (Name) VALUES (?)";
+        PreparedStatement first = pool.write(connection -> {
+            PreparedStatement insert = connection.prepare(sql);
+            insert.setString(1, "hulk");
+            insert.executeUpdate();
+            return insert;
+        });
+
+        //WHEN
+        PreparedStatement second = pool.write(connection -> connection.prepare(sql));
+        SQLException error = null;
+        try{
+            pool.write(connection -> connection.prepare(sql).executeUpdate());
+        } catch (SQLException e) {
+            error = e;
+        }
+
+        //THEN
+        assertSame(first, second);
+        assertNotNull(error);
+        assertEquals(1, count());
+    }
+
+    /**
+     * Testing a closed pool refuses further work
+     */
+    @Test
+    public void testClosedPool(){
+        //GIVEN
+        pool.close();
+        SQLException error = null;
+
+        //WHEN
+        try{
+            count();
+        } catch (SQLException e) {
+            error = e;
+        }
+
+        //THEN
+        assertTrue(pool.isClosed());
+        assertNotNull(error);
+    }
+
+    /**
+     * Counts the rows in the test table through a reader connection.
+     *
+     * @return int - number of rows
+     * @throws SQLException if the query fails
+     */
+    private int count() throws SQLException {
+        return pool.read(connection -> {
+            try(ResultSet rows = connection.prepare("SELECT COUNT(*) FROM Item").executeQuery()){
+                rows.next();
+                return rows.getInt(1);
+            }
+        });
+    }
+}
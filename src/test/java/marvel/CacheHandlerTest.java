@@ -0,0 +1,242 @@
+package marvel;
+
+import marvel.model.input.CacheHandler;
+import marvel.model.input.CharacterCatalog;
+import marvel.model.input.RateLimiter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CacheHandler on a SQLite database of its own, created for each test.
+ */
+public class CacheHandlerTest {
+    /**
+     * Handler under test
+     */
+    CacheHandler handler;
+    /**
+     * Response of the dummy API, cached under different names by the tests
+     */
+    String dummyResponse;
+    /**
+     * Path to the database of the handler under test
+     */
+    String path;
+
+    @Before
+    public void setUp() throws Exception {
+        path = Files.createTempDirectory("cache").resolve("cache.sqlite").toString();
+        handler = new CacheHandler(path, 2);
+        dummyResponse = Files.readString(Paths.get("./src/main/resources/marvel/DummyApiResponse.json"));
+    }
+
+    @After
+    public void tearDown(){
+        handler.close();
+    }
+
+    /**
+     * Testing a record is stale once it outlives the time to live, and fresh again once touched
+     */
+    @Test
+    public void testTimeToLive() throws Exception {
+        //GIVEN
+        handler.saveToCache("hulk", dummyResponse);
+        boolean neverExpires = handler.isStale("hulk");
+        handler.setTimeToLive(500);
+        boolean fresh = handler.isStale("hulk");
+        Thread.sleep(600);
+
+        //WHEN
+        boolean expired = handler.isStale("hulk");
+        handler.touch("hulk");
+        boolean touched = handler.isStale("hulk");
+
+        //THEN
+        assertFalse(neverExpires);
+        assertTrue(expired);
+        assertFalse(fresh);
+        assertFalse(touched);
+        assertFalse(handler.isStale("thor"));
+        assertEquals("386610002c4ec3cc69e71f9450f4a8451eda1a5b", handler.getEtag("hulk"));
+    }
+
+    /**
+     * Testing word prefixes of the search name, character name and description find the cached characters
+     */
+    @Test
+    public void testSearchByPrefix(){
+        //GIVEN
+        handler.saveToCache("spider-man", character("Spider-Man", "Bitten by a radioactive spider"));
+        handler.saveToCache("spider-woman", character("Spider-Woman", "Venom blasts and flight"));
+        handler.saveToCache("hulk", character("Hulk", "Exposed to gamma radiation"));
+
+        //WHEN
+        List<String> spiders = handler.searchCache("spi", 10);
+        List<String> radio = handler.searchCache("radio", 10);
+        List<String> limited = handler.searchCache("spi", 1);
+
+        //THEN
+        assertEquals(2, spiders.size());
+        assertTrue(spiders.containsAll(Arrays.asList("spider-man", "spider-woman")));
+        assertEquals(2, radio.size());
+        assertTrue(radio.containsAll(Arrays.asList("spider-man", "hulk")));
+        assertEquals(1, limited.size());
+        for(String name : spiders){
+            assertTrue(handler.findInCache(name).isPresent());
+        }
+    }
+
+    /**
+     * Testing every keyword of a query must match, and a name that matches nothing finds no characters
+     */
+    @Test
+    public void testSearchByKeywords(){
+        //GIVEN
+        handler.saveToCache("spider-man", character("Spider-Man", "Bitten by a radioactive spider"));
+        handler.saveToCache("hulk", character("Hulk", "Exposed to gamma radiation"));
+
+        //WHEN
+        List<String> bitten = handler.searchCache("radioactive bitten", 10);
+        List<String> gamma = handler.searchCache("gamma radiation", 10);
+        List<String> none = handler.searchCache("gamma bitten", 10);
+        List<String> blank = handler.searchCache("  ", 10);
+
+        //THEN
+        assertEquals(Arrays.asList("spider-man"), bitten);
+        assertEquals(Arrays.asList("hulk"), gamma);
+        assertTrue(none.isEmpty());
+        assertTrue(blank.isEmpty());
+        assertEquals("Hulk", handler.findInCache(gamma.get(0)).get().getName());
+    }
+
+    /**
+     * Testing maintenance evicts the least recently read characters until the cached characters are under the byte limit
+     */
+    @Test
+    public void testEvictLeastRecentlyRead() throws Exception {
+        //GIVEN
+        long recordSize = character("Hero A", "A hero").getBytes(StandardCharsets.UTF_8).length;
+        handler.enableSizeLimit(CacheHandler.NO_LIMIT, recordSize * 7 / 2, 60 * 60 * 1000L);
+        for(String letter : Arrays.asList("A", "B", "C", "D", "E", "F")){
+            handler.saveToCache("hero-" + letter.toLowerCase(), character("Hero " + letter, "A hero"));
+        }
+        Thread.sleep(10);
+        for(String name : Arrays.asList("hero-a", "hero-c", "hero-e")){
+            assertTrue(handler.findInCache(name).isPresent());
+        }
+
+        //WHEN
+        int evicted = handler.runMaintenance();
+        int evictedAgain = handler.runMaintenance();
+
+        //THEN
+        assertEquals(3, evicted);
+        assertEquals(0, evictedAgain);
+        assertEquals(3, handler.getEvictionCount());
+        for(String name : Arrays.asList("hero-a", "hero-c", "hero-e")){
+            assertTrue(handler.isInfoInCache(name));
+        }
+        for(String name : Arrays.asList("hero-b", "hero-d", "hero-f")){
+            assertFalse(handler.isInfoInCache(name));
+            assertFalse(handler.findInCache(name).isPresent());
+        }
+    }
+
+    /**
+     * Testing a catalog enabled again is rebuilt with the characters cached while it was turned off
+     */
+    @Test
+    public void testCatalogRebuiltAfterWritesWithoutIt(){
+        //GIVEN
+        handler.enableCatalog();
+        handler.saveToCache("hulk", character("Hulk", "Exposed to gamma radiation"));
+        handler.close();
+        CacheHandler withoutCatalog = new CacheHandler(path, 2);
+        withoutCatalog.saveToCache("thor", character("Thor", "God of thunder").replace("123456", "654321"));
+        withoutCatalog.close();
+
+        //WHEN
+        handler = new CacheHandler(path, 2);
+        CharacterCatalog catalog = handler.enableCatalog();
+
+        //THEN
+        assertEquals(Arrays.asList("hulk", "thor"), catalog.findCharacters(CharacterCatalog.Appearance.COMIC, 1234));
+    }
+
+    /**
+     * Testing the used daily budget of a rate limiter saved to the cache is restored by the next handler opening it
+     */
+    @Test
+    public void testApiUsageSurvivesRestart(){
+        //GIVEN
+        RateLimiter limiter = new RateLimiter(3000, 100, 0);
+        for(int i = 0 ; i < 50 ; i++){
+            limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        }
+        RateLimiter restarted = new RateLimiter(3000, 100, 0);
+
+        //WHEN
+        boolean unknown = handler.restoreApiUsage("marvel", restarted);
+        handler.saveApiUsage("marvel", limiter);
+        handler.close();
+        handler = new CacheHandler(path, 2);
+        boolean restored = handler.restoreApiUsage("marvel", restarted);
+
+        //THEN
+        assertFalse(unknown);
+        assertTrue(restored);
+        assertEquals(2950, restarted.getRemainingDaily());
+        assertFalse(handler.restoreApiUsage("pastebin", new RateLimiter(3000, 100, 0)));
+    }
+
+    /**
+     * Testing records and misses saved under names as they were typed are moved to their normalized key,
+     * keeping the most recently fetched record when several names share a key
+     */
+    @Test
+    public void testNormalizeKeys() throws Exception {
+        //GIVEN
+        handler.saveToCache("Hulk", character("Hulk", "Exposed to gamma radiation"));
+        Thread.sleep(5);
+        handler.saveToCache(" HULK ", character("Hulk", "Smashes when angry"));
+        handler.saveToCache("thor", character("Thor", "God of thunder"));
+        handler.saveMissToCache("Nobody");
+
+        //WHEN
+        int normalized = handler.normalizeKeys();
+        int normalizedAgain = handler.normalizeKeys();
+
+        //THEN
+        assertEquals(2, normalized);
+        assertEquals(0, normalizedAgain);
+        assertEquals("Smashes when angry", handler.findInCache(CacheHandler.keyOf("Hulk")).get().getDescription());
+        assertFalse(handler.isInfoInCache("Hulk"));
+        assertFalse(handler.isInfoInCache(" HULK "));
+        assertTrue(handler.isInfoInCache("thor"));
+        assertEquals(Arrays.asList("hulk"), handler.searchCache("smashes", 10));
+        assertTrue(handler.searchCache("gamma", 10).isEmpty());
+        assertFalse(handler.isKnownMiss("Nobody"));
+    }
+
+    /**
+     * Builds a response of the dummy API for a character with the given name and description.
+     *
+     * @param name character name
+     * @param description character description
+     * @return String - JSON response holding the character
+     */
+    private String character(String name, String description){
+        return dummyResponse.replace("Dummy Hero is a hero created for the dummy Marvel API", description)
+                .replace("Dummy Hero", name);
+    }
+}
@@ -0,0 +1,68 @@
+package marvel;
+
+import marvel.model.input.CacheMetrics;
+import marvel.model.input.Histogram;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CacheMetrics and the Histogram it keeps latencies in.
+ */
+public class CacheMetricsTest {
+
+    /**
+     * Testing percentiles are within an eighth of the exact value
+     */
+    @Test
+    public void testHistogramPercentiles(){
+        //GIVEN
+        Histogram histogram = new Histogram();
+
+        //WHEN
+        for(long value = 1 ; value <= 100000 ; value++){
+            histogram.record(value);
+        }
+
+        //THEN
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000.5, histogram.getMean(), 0.001);
+        assertTrue(Math.abs(histogram.getPercentile(0.5) - 50000) <= 50000 / 8);
+        assertTrue(Math.abs(histogram.getPercentile(0.99) - 99000) <= 99000 / 8);
+        assertEquals(100000, histogram.getPercentile(1.0));
+    }
+
+    /**
+     * Testing lookups are counted by outcome and the counts can be read through JMX
+     */
+    @Test
+    public void testSnapshotAndJmx() throws Exception {
+        //GIVEN
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.recordLookup(CacheMetrics.Lookup.MEMORY_HIT, 1000);
+        metrics.recordLookup(CacheMetrics.Lookup.STORE_HIT, 50000);
+        metrics.recordLookup(CacheMetrics.Lookup.FILTERED_MISS, 500);
+        metrics.recordLookup(CacheMetrics.Lookup.MISS, 40000);
+        metrics.recordNegativeLookup(true);
+
+        //WHEN
+        CacheMetrics.Snapshot snapshot = metrics.snapshot();
+        metrics.register("test.sqlite");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Object hits = server.getAttribute(metrics.getObjectName(), "HitCount");
+        metrics.unregister();
+
+        //THEN
+        assertEquals(4, snapshot.getLookups());
+        assertEquals(2, snapshot.getHits());
+        assertEquals(1, snapshot.getFilteredMisses());
+        assertEquals(0.5, snapshot.getHitRate(), 0.0001);
+        assertEquals(1, snapshot.getNegativeHits());
+        assertEquals(2L, hits);
+        assertNull(metrics.getObjectName());
+    }
+}
@@ -0,0 +1,80 @@
+package marvel;
+
+import marvel.model.input.CacheEntry;
+import marvel.model.input.CacheSnapshot;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CacheSnapshot, the file format used to copy a cache between machines.
+ */
+public class CacheSnapshotTest {
+
+    /**
+     * Testing JSON and binary records read back with the same fields
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        //GIVEN
+        Path path = Files.createTempDirectory("snapshot").resolve("cache.snapshot");
+        try(CacheSnapshot.Writer writer = new CacheSnapshot.Writer(path)){
+            writer.write(new CacheEntry("hulk", CacheEntry.FORMAT_JSON, CacheEntry.CODEC_NONE, 0, "{\"name\":\"Hulk\"}", null, "etag-1", 100));
+            writer.write(new CacheEntry("thor", CacheEntry.FORMAT_BINARY, CacheEntry.CODEC_NONE, 0, null, new byte[]{1, 2, 3}, null, 200));
+        }
+
+        //WHEN
+        CacheEntry hulk;
+        CacheEntry thor;
+        CacheEntry end;
+        try(CacheSnapshot.Reader reader = new CacheSnapshot.Reader(path)){
+            hulk = reader.next();
+            thor = reader.next();
+            end = reader.next();
+        }
+
+        //THEN
+        assertEquals("hulk", hulk.getName());
+        assertEquals("{\"name\":\"Hulk\"}", hulk.getResponse());
+        assertEquals("etag-1", hulk.getEtag());
+        assertEquals(100, hulk.getFetchedAt());
+        assertEquals(CacheEntry.FORMAT_BINARY, thor.getFormat());
+        assertArrayEquals(new byte[]{1, 2, 3}, thor.getPayload());
+        assertNull(thor.getEtag());
+        assertNull(end);
+        assertEquals(2, CacheSnapshot.verify(path));
+    }
+
+    /**
+     * Testing a truncated snapshot fails verification
+     */
+    @Test
+    public void testTruncatedSnapshotRejected() throws IOException {
+        //GIVEN
+        Path path = Files.createTempDirectory("snapshot").resolve("cache.snapshot");
+        try(CacheSnapshot.Writer writer = new CacheSnapshot.Writer(path)){
+            for(int i = 0 ; i < 1000 ; i++){
+                writer.write(new CacheEntry("character-" + i, CacheEntry.FORMAT_BINARY, CacheEntry.CODEC_NONE, 0,
+                        null, ("payload-" + i).getBytes(), null, i));
+            }
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+
+        //WHEN
+        IOException error = null;
+        try{
+            CacheSnapshot.verify(path);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        //THEN
+        assertNotNull(error);
+    }
+}
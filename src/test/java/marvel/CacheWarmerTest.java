@@ -0,0 +1,123 @@
+package marvel;
+
+import marvel.model.character.CharacterInfo;
+import marvel.model.input.CacheWarmer;
+import marvel.model.input.InputModel;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test suite for CacheWarmer, which fills the cache from a list of names.
+ */
+public class CacheWarmerTest {
+
+    /**
+     * Answers bulk lookups on the mock with the given results, like OnlineMarvelModel which gives null for a failed search
+     *
+     * @param input mocked input model
+     * @param results character for each name, names missing from the map are given null
+     * @return List&lt;String&gt; - names the warm-up asked for, in order
+     */
+    private static List<String> answerLookups(InputModel input, Map<String, CharacterInfo> results){
+        List<String> requested = new ArrayList<>();
+        when(input.getInfoByNames(anyList(), anyInt(), any())).thenAnswer(invocation -> {
+            List<String> names = invocation.getArgument(0);
+            BiConsumer<String, CharacterInfo> onResult = invocation.getArgument(2);
+            for(String name : names){
+                requested.add(name);
+                onResult.accept(name, results.get(name));
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        return requested;
+    }
+
+    /**
+     * Testing names are counted by outcome, confirmed misses are recorded
+     * and names whose search failed are neither recorded nor counted as not found
+     */
+    @Test
+    public void testWarmCountsAndRecordsProgress() throws Exception {
+        //GIVEN
+        InputModel input = mock(InputModel.class);
+        Map<String, CharacterInfo> results = new HashMap<>();
+        results.put("hulk", new CharacterInfo(1, "Hulk", "", ""));
+        List<String> requested = answerLookups(input, results);
+        when(input.isKnownMiss("nobody")).thenReturn(true);
+        when(input.isInfoInCache("loki")).thenReturn(true);
+        Path progressFile = Files.createTempDirectory("warm").resolve("names.progress");
+
+        //WHEN
+        CacheWarmer.Progress progress = new CacheWarmer(input, 2).warm(Arrays.asList("hulk", "nobody", "thor", "loki", "hulk"), progressFile);
+
+        //THEN
+        assertEquals(4, progress.getTotal());
+        assertEquals(1, progress.getCached());
+        assertEquals(1, progress.getNotFound());
+        assertEquals(1, progress.getFailed());
+        assertEquals(1, progress.getSkipped());
+        List<String> recorded = Files.readAllLines(progressFile);
+        assertTrue(recorded.contains("hulk") && recorded.contains("nobody"));
+        assertFalse(recorded.contains("thor"));
+        assertEquals(Arrays.asList("hulk", "nobody", "thor"), requested);
+    }
+
+    /**
+     * Testing a warm-up during an outage, where every search returns null, records nothing and is retried in full by the next run
+     */
+    @Test
+    public void testWarmDuringOutageRecordsNothing() throws Exception {
+        //GIVEN
+        InputModel input = mock(InputModel.class);
+        List<String> requested = answerLookups(input, new HashMap<>());
+        Path progressFile = Files.createTempDirectory("warm").resolve("names.progress");
+
+        //WHEN
+        CacheWarmer.Progress first = new CacheWarmer(input, 2).warm(Arrays.asList("hulk", "thor"), progressFile);
+        CacheWarmer.Progress second = new CacheWarmer(input, 2).warm(Arrays.asList("hulk", "thor"), progressFile);
+
+        //THEN
+        assertEquals(2, first.getFailed());
+        assertEquals(0, first.getNotFound());
+        assertEquals(2, second.getFailed());
+        assertEquals(0, second.getSkipped());
+        assertTrue(Files.readAllLines(progressFile).isEmpty());
+        assertEquals(Arrays.asList("hulk", "thor", "hulk", "thor"), requested);
+    }
+
+    /**
+     * Testing a second run skips names recorded by the first, and searches through the bulk lookup rather than one name at a time
+     */
+    @Test
+    public void testWarmResumesFromProgressFile() throws Exception {
+        //GIVEN
+        InputModel input = mock(InputModel.class);
+        Map<String, CharacterInfo> results = new HashMap<>();
+        results.put("loki", new CharacterInfo(1, "Loki", "", ""));
+        List<String> requested = answerLookups(input, results);
+        Path progressFile = Files.createTempDirectory("warm").resolve("names.progress");
+        Files.write(progressFile, Arrays.asList("hulk", "thor"));
+
+        //WHEN
+        CacheWarmer.Progress progress = new CacheWarmer(input, 4).warm(Arrays.asList("hulk", "thor", "loki"), progressFile);
+
+        //THEN
+        assertEquals(2, progress.getSkipped());
+        assertEquals(1, progress.getCached());
+        assertEquals(Arrays.asList("loki"), requested);
+        verify(input, times(1)).getInfoByNames(anyList(), eq(4), any());
+        verify(input, never()).getInfoByName(anyString());
+    }
+}
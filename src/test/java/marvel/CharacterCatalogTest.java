@@ -0,0 +1,147 @@
+package marvel;
+
+import marvel.model.character.CharacterInfo;
+import marvel.model.character.Comic;
+import marvel.model.input.CacheConnectionPool;
+import marvel.model.input.CharacterCatalog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CharacterCatalog, the normalized copy of cached characters and the comics they appear in.
+ */
+public class CharacterCatalogTest {
+    /**
+     * Pool the catalog under test runs on, closed after each test
+     */
+    CacheConnectionPool pool;
+    /**
+     * Catalog under test
+     */
+    CharacterCatalog catalog;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new CacheConnectionPool(Files.createTempDirectory("catalog").resolve("cache.sqlite").toString(), 2);
+        catalog = new CharacterCatalog(pool);
+        pool.write(catalog::createSchema);
+    }
+
+    @After
+    public void tearDown(){
+        pool.close();
+    }
+
+    /**
+     * Builds a character appearing in the comics with the given IDs, each titled "Comic " and its ID.
+     *
+     * @param id Marvel ID of the character
+     * @param name character name
+     * @param comicIds Marvel IDs of its comics
+     * @return CharacterInfo - character listing the comics
+     */
+    private CharacterInfo character(int id, String name, int... comicIds){
+        CharacterInfo info = new CharacterInfo(id, name, "", "");
+        List<Comic> comics = new ArrayList<>();
+        for(int comicId : comicIds){
+            comics.add(new Comic("Comic " + comicId, "http://gateway.marvel.com/v1/public/comics/" + comicId));
+        }
+        info.setComicList(comics);
+        return info;
+    }
+
+    /**
+     * Catalogs characters in a single transaction, like CacheHandler after a write.
+     *
+     * @param documents characters keyed by the name they are cached under
+     */
+    private void index(Map<String, CharacterInfo> documents) throws Exception {
+        pool.transaction(connection -> {
+            catalog.index(connection, documents);
+            return null;
+        });
+    }
+
+    /**
+     * Removes names in a single transaction, like CacheHandler after an eviction.
+     *
+     * @param names names the removed records were cached under
+     */
+    private void remove(String... names) throws Exception {
+        pool.transaction(connection -> {
+            catalog.remove(connection, Arrays.asList(names));
+            return null;
+        });
+    }
+
+    /**
+     * Testing a character written again links only to the comics of its latest response
+     */
+    @Test
+    public void testIndexReplacesLinks() throws Exception {
+        //GIVEN
+        index(Map.of("hulk", character(1, "Hulk", 10, 20)));
+
+        //WHEN
+        index(Map.of("hulk", character(1, "Hulk", 20, 30)));
+
+        //THEN
+        assertTrue(catalog.findCharacters(CharacterCatalog.Appearance.COMIC, 10).isEmpty());
+        assertEquals(Arrays.asList("hulk"), catalog.findCharacters(CharacterCatalog.Appearance.COMIC, 20));
+        assertEquals(Arrays.asList("hulk"), catalog.findCharacters(CharacterCatalog.Appearance.COMIC, 30));
+    }
+
+    /**
+     * Testing removing one name keeps a character still cached under another name, and removing the last name drops it
+     */
+    @Test
+    public void testRemoveKeepsCharacterCachedUnderAnotherName() throws Exception {
+        //GIVEN
+        index(Map.of("hulk", character(1, "Hulk", 10), "the hulk", character(1, "Hulk", 10)));
+
+        //WHEN
+        remove("hulk");
+        List<String> afterFirst = catalog.findCharacters(CharacterCatalog.Appearance.COMIC, 10);
+        remove("the hulk");
+        List<String> afterLast = catalog.findCharacters(CharacterCatalog.Appearance.COMIC, 10);
+
+        //THEN
+        assertEquals(Arrays.asList("the hulk"), afterFirst);
+        assertTrue(afterLast.isEmpty());
+    }
+
+    /**
+     * Testing characters in a comic, characters sharing comics most first, and comics two characters share
+     */
+    @Test
+    public void testQueries() throws Exception {
+        //GIVEN
+        index(Map.of("hulk", character(1, "Hulk", 10, 20, 30),
+                "thor", character(2, "Thor", 20, 30),
+                "loki", character(3, "Loki", 30),
+                "groot", character(4, "Groot", 40)));
+
+        //WHEN
+        List<String> inComic = catalog.findCharacters(CharacterCatalog.Appearance.COMIC, 30);
+        List<String> coAppearing = catalog.findCoAppearing("hulk", CharacterCatalog.Appearance.COMIC, 10);
+        List<String> limited = catalog.findCoAppearing("hulk", CharacterCatalog.Appearance.COMIC, 1);
+        List<String> shared = catalog.findShared("hulk", "thor", CharacterCatalog.Appearance.COMIC);
+
+        //THEN
+        assertEquals(Arrays.asList("hulk", "loki", "thor"), inComic);
+        assertEquals(Arrays.asList("thor", "loki"), coAppearing);
+        assertEquals(Arrays.asList("thor"), limited);
+        assertEquals(Arrays.asList("Comic 20", "Comic 30"), shared);
+        assertTrue(catalog.findShared("hulk", "groot", CharacterCatalog.Appearance.COMIC).isEmpty());
+        assertTrue(catalog.findCoAppearing("groot", CharacterCatalog.Appearance.COMIC, 10).isEmpty());
+    }
+}
@@ -0,0 +1,109 @@
+package marvel;
+
+import marvel.model.character.CharacterInfo;
+import marvel.model.input.CharacterInfoCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CharacterInfoCache, the in-memory cache of parsed characters used by CacheHandler.
+ */
+public class CharacterInfoCacheTest {
+
+    /**
+     * Testing a cached character is returned by later lookups
+     */
+    @Test
+    public void testPutThenGet(){
+        //GIVEN
+        CharacterInfoCache cache = new CharacterInfoCache(2, 0);
+        CharacterInfo spiderman = new CharacterInfo(1234, "spiderman","Can jump around buildings", "1999-99-99");
+
+        //WHEN
+        cache.put("spider-man", spiderman);
+
+        //THEN
+        assertSame(spiderman, cache.get("spider-man"));
+        assertNull(cache.get("hulk"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Testing a frequently requested character is not evicted by a one-off lookup when the cache is full
+     */
+    @Test
+    public void testFrequentEntryKeptWhenFull(){
+        //GIVEN cache of one entry holding a popular character
+        CharacterInfoCache cache = new CharacterInfoCache(1, 0);
+        CharacterInfo spiderman = new CharacterInfo(1234, "spiderman","Can jump around buildings", "1999-99-99");
+        cache.put("spider-man", spiderman);
+        for(int i = 0 ; i < 5 ; i++){
+            cache.get("spider-man");
+        }
+
+        //WHEN
+        boolean admitted = cache.put("groot", new CharacterInfo(1, "groot", "I am groot", "1999-99-99"));
+
+        //THEN
+        assertFalse(admitted);
+        assertSame(spiderman, cache.get("spider-man"));
+        assertEquals(1, cache.getRejectionCount());
+    }
+
+    /**
+     * Testing a character requested more often than the cached one replaces it when the cache is full
+     */
+    @Test
+    public void testPopularEntryEvictsColdEntry(){
+        //GIVEN
+        CharacterInfoCache cache = new CharacterInfoCache(1, 0);
+        cache.put("groot", new CharacterInfo(1, "groot", "I am groot", "1999-99-99"));
+        for(int i = 0 ; i < 5 ; i++){
+            cache.get("hulk");
+        }
+
+        //WHEN
+        boolean admitted = cache.put("hulk", new CharacterInfo(2, "hulk", "Smash", "1999-99-99"));
+
+        //THEN
+        assertTrue(admitted);
+        assertNull(cache.get("groot"));
+        assertNotNull(cache.get("hulk"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    /**
+     * Testing the size bound keeps the estimated size of cached characters under the limit
+     */
+    @Test
+    public void testByteBound(){
+        //GIVEN
+        CharacterInfo spiderman = new CharacterInfo(1234, "spiderman","Can jump around buildings", "1999-99-99");
+        long size = CharacterInfoCache.estimateSize(spiderman);
+        CharacterInfoCache cache = new CharacterInfoCache(0, size);
+
+        //WHEN
+        cache.put("spider-man", spiderman);
+        cache.invalidate("spider-man");
+        cache.put("spider-man", spiderman);
+
+        //THEN
+        assertEquals(1, cache.size());
+        assertEquals(size, cache.getWeightedSize());
+    }
+
+    /**
+     * Testing invalid bounds are rejected
+     */
+    @Test
+    public void testInvalidBounds(){
+        assertThrows(IllegalArgumentException.class, ()->{
+            new CharacterInfoCache(0, 0);
+        });
+        assertThrows(IllegalArgumentException.class, ()->{
+            new CharacterInfoCache(-1, 10);
+        });
+    }
+}
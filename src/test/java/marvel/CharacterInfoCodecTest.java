@@ -0,0 +1,97 @@
+package marvel;
+
+import marvel.model.character.*;
+import marvel.model.input.CharacterInfoCodec;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for CharacterInfoCodec, the binary format cached characters are stored in.
+ */
+public class CharacterInfoCodecTest {
+
+    /**
+     * Testing a character with every list populated decodes to the same data
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        //GIVEN
+        CharacterInfo spiderman = new CharacterInfo(1009610, "Spider-Man","Bitten by a radioactive spider", "2020-07-21T10:30:10-0400");
+        List<ResourceUrl> urls = new ArrayList<>();
+        urls.add(new ResourceUrl("wiki", "dummy-url.com"));
+        spiderman.setUrls(urls);
+        spiderman.setThumbnail(new Thumbnail("fakepath", "jpg"));
+        List<Comic> comics = new ArrayList<>();
+        comics.add(new Comic("Amazing Spider-Man (1963) #1", "http://gateway.marvel.com/v1/public/comics/12345"));
+        spiderman.setComicList(comics);
+        List<Story> stories = new ArrayList<>();
+        stories.add(new Story("Cover #1", "cover", "http://gateway.marvel.com/v1/public/stories/1"));
+        spiderman.setStoryList(stories);
+        spiderman.setNComics(4000);
+        spiderman.setNStories(-1);
+
+        //WHEN
+        CharacterInfoCodec codec = new CharacterInfoCodec();
+        CharacterInfo decoded = codec.decode(codec.encode(spiderman));
+
+        //THEN
+        assertEquals(spiderman.getId(), decoded.getId());
+        assertEquals(spiderman.getName(), decoded.getName());
+        assertEquals(spiderman.getDescription(), decoded.getDescription());
+        assertEquals(spiderman.getModified(), decoded.getModified());
+        assertEquals("fakepath", decoded.getThumbnail().getPath());
+        assertEquals("jpg", decoded.getThumbnail().getExtension());
+        assertEquals("dummy-url.com", decoded.getUrls().get(0).getUrl());
+        assertEquals(comics.get(0).getResourcePath(), decoded.getComicList().get(0).getResourcePath());
+        assertEquals("cover", decoded.getStoryList().get(0).getType());
+        assertEquals(0, decoded.getEventList().size());
+        assertEquals(4000, decoded.getNComics());
+        assertEquals(-1, decoded.getNStories());
+    }
+
+    /**
+     * Testing null thumbnail, URLs and lists decode back to null
+     */
+    @Test
+    public void testNullFields() throws IOException {
+        //GIVEN
+        CharacterInfo groot = new CharacterInfo(1, "groot", null, "1999-99-99");
+        groot.setStoryList(null);
+
+        //WHEN
+        CharacterInfoCodec codec = new CharacterInfoCodec();
+        CharacterInfo decoded = codec.decode(codec.encode(groot));
+
+        //THEN
+        assertNull(decoded.getDescription());
+        assertNull(decoded.getThumbnail());
+        assertNull(decoded.getUrls());
+        assertNull(decoded.getStoryList());
+        assertNotNull(decoded.getComicList());
+    }
+
+    /**
+     * Testing truncated data and unknown versions are rejected
+     */
+    @Test
+    public void testInvalidData(){
+        CharacterInfoCodec codec = new CharacterInfoCodec();
+        byte[] encoded = codec.encode(new CharacterInfo(1, "groot", "I am groot", "1999-99-99"));
+        byte[] truncated = new byte[encoded.length / 2];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        byte[] future = encoded.clone();
+        future[0] = (byte) (CharacterInfoCodec.VERSION + 1);
+
+        assertThrows(IOException.class, ()->{
+            codec.decode(truncated);
+        });
+        assertThrows(IOException.class, ()->{
+            codec.decode(future);
+        });
+    }
+}
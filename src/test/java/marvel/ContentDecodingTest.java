@@ -0,0 +1,233 @@
+package marvel;
+
+import marvel.model.input.ContentDecoding;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for ContentDecoding.
+ */
+public class ContentDecodingTest {
+
+    /**
+     * Delivers a body to the subscriber of a body handler in one chunk and returns what the handler makes of it
+     */
+    private static <T> T deliver(HttpResponse.BodyHandler<T> handler, String contentEncoding, byte[] body) throws Exception {
+        return deliver(handler, contentEncoding, body, Math.max(body.length, 1));
+    }
+
+    /**
+     * Delivers a body to the subscriber of a body handler in chunks of at most chunkSize bytes and returns what the handler makes of it
+     */
+    private static <T> T deliver(HttpResponse.BodyHandler<T> handler, String contentEncoding, byte[] body, int chunkSize) throws Exception {
+        HttpHeaders headers = HttpHeaders.of(contentEncoding == null ? Map.of() : Map.of("Content-Encoding", List.of(contentEncoding)), (name, value) -> true);
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        });
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for(int offset = 0 ; offset < body.length ; offset += chunkSize){
+            subscriber.onNext(List.of(ByteBuffer.wrap(body, offset, Math.min(chunkSize, body.length - offset))));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(GZIPOutputStream out = new GZIPOutputStream(bytes)){
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(String text, boolean raw) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try(DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)){
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Testing a gzip body is inflated and the bytes received and decoded are counted
+     */
+    @Test
+    public void testGzipString() throws Exception {
+        //GIVEN
+        ContentDecoding decoding = new ContentDecoding();
+        String json = "{\"code\":200,\"data\":{\"results\":[" + "{\"title\":\"Spider-Man\"},".repeat(200) + "{}]}}";
+        byte[] compressed = gzip(json);
+
+        //WHEN
+        String body = deliver(decoding.ofString(), "gzip", compressed);
+
+        //THEN
+        assertEquals(json, body);
+        assertEquals(1, decoding.getCompressedResponseCount());
+        assertEquals(compressed.length, decoding.getCompressedBytes());
+        assertEquals(json.length(), decoding.getUncompressedBytes());
+        assertTrue(decoding.getSavedBytes() > 0);
+    }
+
+    /**
+     * Testing a gzip body given as a stream is inflated as it is read
+     */
+    @Test
+    public void testGzipStream() throws Exception {
+        //GIVEN
+        ContentDecoding decoding = new ContentDecoding();
+        String json = "{\"code\":200,\"data\":{\"results\":[]}}";
+
+        //WHEN
+        String body;
+        try(InputStream stream = deliver(decoding.ofInputStream(), "gzip", gzip(json))){
+            body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        //THEN
+        assertEquals(json, body);
+        assertEquals(json.length(), decoding.getUncompressedBytes());
+    }
+
+    /**
+     * Testing a body with no Content-Encoding is passed through as a stream, counted as received
+     */
+    @Test
+    public void testIdentityStream() throws Exception {
+        //GIVEN
+        ContentDecoding decoding = new ContentDecoding();
+        byte[] plain = "{\"code\":200}".getBytes(StandardCharsets.UTF_8);
+
+        //WHEN
+        String body;
+        try(InputStream stream = deliver(decoding.ofInputStream(), null, plain)){
+            body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        //THEN
+        assertEquals("{\"code\":200}", body);
+        assertEquals(1, decoding.getResponseCount());
+        assertEquals(0, decoding.getCompressedResponseCount());
+        assertEquals(plain.length, decoding.getCompressedBytes());
+        assertEquals(0, decoding.getSavedBytes());
+    }
+
+    /**
+     * Testing a gzip body arriving in chunks that split its header, data and trailer is inflated chunk by chunk
+     */
+    @Test
+    public void testGzipStringInChunks() throws Exception {
+        //GIVEN
+        ContentDecoding decoding = new ContentDecoding();
+        String json = "{\"code\":200,\"data\":{\"results\":[" + "{\"title\":\"Spider-Man\"},".repeat(200) + "{}]}}";
+        byte[] compressed = gzip(json);
+
+        //WHEN
+        String byteByByte = deliver(decoding.ofString(), "gzip", compressed, 1);
+        String chunked = deliver(decoding.ofString(), "gzip", compressed, 7);
+
+        //THEN
+        assertEquals(json, byteByByte);
+        assertEquals(json, chunked);
+        assertEquals(2L * compressed.length, decoding.getCompressedBytes());
+        assertEquals(2L * json.length(), decoding.getUncompressedBytes());
+    }
+
+    /**
+     * Testing a deflate body is inflated whether it is a zlib stream or raw DEFLATE data with no zlib header
+     */
+    @Test
+    public void testDeflateZlibAndRaw() throws Exception {
+        //GIVEN
+        ContentDecoding decoding = new ContentDecoding();
+        String json = "{\"code\":200,\"data\":{\"results\":[" + "{\"title\":\"Hulk\"},".repeat(100) + "{}]}}";
+        byte[] zlib = deflate(json, false);
+        byte[] raw = deflate(json, true);
+
+        //WHEN
+        String zlibString = deliver(decoding.ofString(), "deflate", zlib, 5);
+        String rawString = deliver(decoding.ofString(), "deflate", raw, 5);
+        String zlibStream;
+        try(InputStream stream = deliver(decoding.ofInputStream(), "deflate", zlib)){
+            zlibStream = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String rawStream;
+        try(InputStream stream = deliver(decoding.ofInputStream(), "deflate", raw)){
+            rawStream = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        //THEN
+        assertEquals(json, zlibString);
+        assertEquals(json, rawString);
+        assertEquals(json, zlibStream);
+        assertEquals(json, rawStream);
+        assertEquals(4, decoding.getCompressedResponseCount());
+    }
+
+    /**
+     * Testing a gzip body cut off before its end fails rather than giving part of the body, and an empty body gives an empty String
+     */
+    @Test
+    public void testTruncatedGzipString() throws Exception {
+        //GIVEN
+        ContentDecoding decoding = new ContentDecoding();
+        byte[] compressed = gzip("{\"code\":200,\"data\":{\"results\":[]}}");
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 4);
+        Throwable error = null;
+
+        //WHEN
+        try{
+            deliver(decoding.ofString(), "gzip", truncated, 3);
+        } catch (ExecutionException e) {
+            error = e.getCause();
+        }
+        String empty = deliver(decoding.ofString(), "gzip", new byte[0]);
+
+        //THEN
+        assertTrue(error instanceof IOException);
+        assertEquals("", empty);
+    }
+}
@@ -0,0 +1,110 @@
+package marvel;
+
+import com.sun.net.httpserver.HttpServer;
+import marvel.model.input.HttpTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for HttpTransport, against a local server answering after a delay.
+ */
+public class HttpTransportTest {
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private URI uri;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/slow", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try{
+                Thread.sleep(200);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try(OutputStream out = exchange.getResponseBody()){
+                out.write(body);
+            }
+        });
+        server.start();
+        uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/slow");
+    }
+
+    @After
+    public void tearDown(){
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    /**
+     * Testing no more than the per host limit of requests are in flight at once, and every request is timed
+     */
+    @Test
+    public void testPerHostLimit() throws Exception {
+        //GIVEN
+        HttpTransport transport = new HttpTransport(1000, 5000, 2);
+
+        //WHEN
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for(int i = 0 ; i < 5 ; i++){
+            responses.add(transport.sendAsync(transport.newRequest().uri(uri).build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        for(CompletableFuture<HttpResponse<String>> response : responses){
+            assertEquals("ok", response.get(10, TimeUnit.SECONDS).body());
+        }
+
+        //THEN
+        assertEquals(2, maxActive.get());
+        assertEquals(5, transport.getResponseCount());
+        assertEquals(0, transport.getInFlightCount());
+        assertEquals(5, transport.getHostLatency("localhost").getCount());
+        assertTrue(transport.getP50RequestMillis() >= 150);
+        transport.shutdown();
+    }
+
+    /**
+     * Testing a request with no response within the request timeout fails and is counted as timed out
+     */
+    @Test
+    public void testRequestTimeout() throws Exception {
+        //GIVEN
+        HttpTransport transport = new HttpTransport(1000, 50, 2);
+
+        //WHEN
+        try{
+            transport.send(transport.newRequest().uri(uri).build(), HttpResponse.BodyHandlers.ofString());
+            fail();
+        } catch (HttpTimeoutException e){
+            //THEN
+            assertEquals(1, transport.getTimeoutCount());
+            assertEquals(0, transport.getResponseCount());
+        }
+        transport.shutdown();
+    }
+}
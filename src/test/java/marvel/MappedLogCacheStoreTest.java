@@ -0,0 +1,176 @@
+package marvel;
+
+import marvel.model.input.CacheEntry;
+import marvel.model.input.MappedLogCacheStore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for MappedLogCacheStore, the append-only log backend for cached characters.
+ */
+public class MappedLogCacheStoreTest {
+
+    private CacheEntry entry(String name, String payload, long fetchedAt){
+        return new CacheEntry(name, CacheEntry.FORMAT_BINARY, CacheEntry.CODEC_NONE, 0, null, payload.getBytes(), "etag-" + name, fetchedAt);
+    }
+
+    /**
+     * Testing records survive closing and reopening the log, and identical records are not appended again
+     */
+    @Test
+    public void testWriteReopenAndSkipIdentical() throws IOException {
+        //GIVEN
+        Path path = Files.createTempDirectory("mapped-log").resolve("cache.log");
+        MappedLogCacheStore store = new MappedLogCacheStore(path);
+        boolean[] written = store.write(List.of(entry("hulk", "smash", 1), entry("thor", "hammer", 1)));
+        long size = store.getLogSize();
+
+        //WHEN
+        boolean[] rewritten = store.write(Collections.singletonList(entry("hulk", "smash", 5)));
+        store.close();
+        MappedLogCacheStore reopened = new MappedLogCacheStore(path);
+
+        //THEN
+        assertTrue(written[0] && written[1]);
+        assertFalse(rewritten[0]);
+        assertTrue(reopened.getLogSize() > size);
+        CacheEntry hulk = reopened.read("hulk");
+        assertEquals("smash", new String(hulk.getPayload()));
+        assertEquals(5, hulk.getFetchedAt());
+        assertEquals("etag-hulk", reopened.readHeader("hulk").getEtag());
+        assertEquals(List.of("hulk", "thor"), reopened.names());
+        assertNull(reopened.read("loki"));
+        reopened.close();
+    }
+
+    /**
+     * Testing records read recently are evicted last, and removed records stay removed after reopening
+     */
+    @Test
+    public void testLeastRecentlyAccessedAndDelete() throws IOException {
+        //GIVEN
+        Path path = Files.createTempDirectory("mapped-log").resolve("cache.log");
+        MappedLogCacheStore store = new MappedLogCacheStore(path);
+        store.write(List.of(entry("hulk", "smash", 1), entry("thor", "hammer", 2), entry("loki", "trick", 3)));
+        store.recordAccess(Map.of("hulk", 10L));
+
+        //WHEN
+        List<String> oldest = store.leastRecentlyAccessed(2);
+        int deleted = store.delete(oldest);
+        store.close();
+        MappedLogCacheStore reopened = new MappedLogCacheStore(path);
+
+        //THEN
+        assertEquals(List.of("thor", "loki"), oldest);
+        assertEquals(2, deleted);
+        assertEquals(1, reopened.count());
+        assertNull(reopened.read("thor"));
+        assertEquals("smash", new String(reopened.read("hulk").getPayload()));
+        reopened.close();
+    }
+
+    /**
+     * Testing compaction drops replaced records and keeps the latest version of each
+     */
+    @Test
+    public void testCompact() throws IOException {
+        //GIVEN
+        Path path = Files.createTempDirectory("mapped-log").resolve("cache.log");
+        MappedLogCacheStore store = new MappedLogCacheStore(path);
+        for(int version = 0 ; version < 10 ; version++){
+            List<CacheEntry> entries = new ArrayList<>();
+            for(int i = 0 ; i < 50 ; i++){
+                entries.add(entry("character-" + i, "version-" + version, version));
+            }
+            store.write(entries);
+        }
+        store.touch("character-0", 100);
+        long size = store.getLogSize();
+
+        //WHEN
+        store.compact();
+
+        //THEN
+        assertTrue(store.getLogSize() < size / 5);
+        assertEquals(0, store.getGarbageSize());
+        assertEquals("version-9", new String(store.read("character-7").getPayload()));
+        assertEquals(100, store.readHeader("character-0").getFetchedAt());
+        assertEquals(50, store.scan("", 100).size());
+        store.close();
+    }
+
+    /**
+     * Testing the log stays writable after compaction, and writes made after it survive reopening
+     */
+    @Test
+    public void testWriteAfterCompactAndReopen() throws IOException {
+        //GIVEN
+        Path path = Files.createTempDirectory("mapped-log").resolve("cache.log");
+        MappedLogCacheStore store = new MappedLogCacheStore(path);
+        store.write(List.of(entry("hulk", "smash", 1), entry("thor", "hammer", 1)));
+        store.write(List.of(entry("hulk", "smash harder", 2)));
+        store.compact();
+
+        //WHEN
+        store.write(List.of(entry("loki", "trick", 3)));
+        store.close();
+        MappedLogCacheStore reopened = new MappedLogCacheStore(path);
+
+        //THEN
+        assertEquals(1, store.getCompactionCount());
+        assertEquals(List.of("hulk", "loki", "thor"), reopened.names());
+        assertEquals("smash harder", new String(reopened.read("hulk").getPayload()));
+        assertEquals("trick", new String(reopened.read("loki").getPayload()));
+        assertFalse(Files.exists(path.resolveSibling("cache.log.compact")));
+        reopened.close();
+    }
+
+    /**
+     * Testing lookups that do not take the lock never see a partly rebuilt index while compactions run
+     */
+    @Test
+    public void testIndexCompleteDuringCompaction() throws Exception {
+        //GIVEN
+        Path path = Files.createTempDirectory("mapped-log").resolve("cache.log");
+        MappedLogCacheStore store = new MappedLogCacheStore(path);
+        List<CacheEntry> entries = new ArrayList<>();
+        for(int i = 0 ; i < 200 ; i++){
+            entries.add(entry("character-" + i, "payload-" + i, 1));
+        }
+        store.write(entries);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger partial = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while(running.get()){
+                if(store.names().size() != 200 || store.count() != 200 || store.readHeader("character-199") == null){
+                    partial.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+
+        //WHEN
+        for(int round = 0 ; round < 20 ; round++){
+            store.touch("character-0", round + 2);
+            store.compact();
+        }
+        running.set(false);
+        reader.join();
+
+        //THEN
+        assertEquals(0, partial.get());
+        assertEquals(20, store.getCompactionCount());
+        store.close();
+    }
+}
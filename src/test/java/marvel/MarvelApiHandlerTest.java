@@ -0,0 +1,169 @@
+package marvel;
+
+import com.sun.net.httpserver.HttpServer;
+import marvel.model.input.ApiResponse;
+import marvel.model.input.HttpTransport;
+import marvel.model.input.MarvelApiHandler;
+import marvel.model.input.RateLimiter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for the retries of MarvelApiHandler, against a local server answering with scripted status codes.
+ */
+public class MarvelApiHandlerTest {
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    /**
+     * Status code and Retry-After header of each answer of the server in turn, the last one repeated once the rest are used
+     */
+    private final Queue<String[]> script = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch firstRequest = new CountDownLatch(1);
+    private MarvelApiHandler handler;
+    private RateLimiter limiter;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/characters", exchange -> {
+            requests.incrementAndGet();
+            String[] answer = script.size() > 1 ? script.poll() : script.peek();
+            int status = Integer.parseInt(answer[0]);
+            if(answer[1] != null){
+                exchange.getResponseHeaders().add("Retry-After", answer[1]);
+            }
+            byte[] body = ("{\"code\":" + status + ",\"etag\":\"etag-" + status + "\"}").getBytes();
+            exchange.sendResponseHeaders(status, body.length);
+            try(OutputStream out = exchange.getResponseBody()){
+                out.write(body);
+            }
+            firstRequest.countDown();
+        });
+        server.start();
+
+        handler = new MarvelApiHandler("public", "private");
+        handler.setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/characters");
+        handler.setTransport(new HttpTransport(1000, 5000, 4));
+        limiter = new RateLimiter(100, 100, 0);
+        handler.setRateLimiter(limiter);
+    }
+
+    @After
+    public void tearDown(){
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    /**
+     * Adds an answer of the server to the script
+     *
+     * @param status status code
+     * @param retryAfter value of the Retry-After header, null for none
+     */
+    private void answer(int status, String retryAfter){
+        script.add(new String[]{String.valueOf(status), retryAfter});
+    }
+
+    /**
+     * Testing a 429 is retried after its Retry-After, holding back the permits of other requests until then
+     */
+    @Test
+    public void testRetryAfterTooManyRequests() throws Exception {
+        //GIVEN
+        answer(429, "1");
+        answer(200, null);
+        long start = System.nanoTime();
+
+        //WHEN
+        CompletableFuture<ApiResponse> response = handler.fetchCharacterInfoAsync("hulk", null);
+        assertTrue(firstRequest.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        CompletableFuture<Void> permit = limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        boolean permitHeldBack = !permit.isDone();
+        ApiResponse result = response.get(10, TimeUnit.SECONDS);
+
+        //THEN
+        assertTrue(permitHeldBack);
+        assertEquals(200, result.getStatusCode());
+        assertEquals("etag-200", result.getEtag());
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, requests.get());
+        assertEquals(1, limiter.getRetryCount());
+        assertEquals(1, limiter.getRateLimitedCount());
+        permit.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Testing a 5xx is retried MAX_RETRIES times, after which the last response is returned
+     */
+    @Test
+    public void testServerErrorRetriedUpToMaxRetries() throws Exception {
+        //GIVEN
+        answer(503, null);
+
+        //WHEN
+        ApiResponse result = handler.fetchCharacterInfoAsync("hulk", null).get(20, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(503, result.getStatusCode());
+        assertEquals(MarvelApiHandler.MAX_RETRIES + 1, requests.get());
+        assertEquals(MarvelApiHandler.MAX_RETRIES, limiter.getRetryCount());
+        assertEquals(0, limiter.getRateLimitedCount());
+    }
+
+    /**
+     * Testing a 5xx followed by a success returns the success, and a 404 is never retried
+     */
+    @Test
+    public void testServerErrorThenSuccess() throws Exception {
+        //GIVEN
+        answer(500, null);
+        answer(404, null);
+
+        //WHEN
+        ApiResponse result = handler.fetchCharacterInfoAsync("hulk", null).get(10, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(404, result.getStatusCode());
+        assertEquals(2, requests.get());
+        assertEquals(1, limiter.getRetryCount());
+    }
+
+    /**
+     * Testing a 429 whose Retry-After is longer than BACKOFF_MAX_MILLIS, as for a used up daily quota, is returned at once
+     */
+    @Test
+    public void testLongRetryAfterNotRetried() throws Exception {
+        //GIVEN
+        answer(429, "3600");
+        long start = System.nanoTime();
+
+        //WHEN
+        ApiResponse result = handler.fetchCharacterInfoAsync("hulk", null).get(10, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(429, result.getStatusCode());
+        assertEquals(1, requests.get());
+        assertEquals(0, limiter.getRetryCount());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(MarvelApiHandler.BACKOFF_MAX_MILLIS));
+    }
+}
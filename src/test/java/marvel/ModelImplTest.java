@@ -8,12 +8,17 @@ import marvel.model.input.InputModel;
 import marvel.model.output.OfflinePastebinModel;
 import marvel.model.output.OutputModel;
 import marvel.model.output.ReportService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -118,6 +123,18 @@ public class ModelImplTest {
 
     }
 
+    /**
+     * Tagged by @After, called after every test.
+     *
+     * <p>Shuts the model down so the cache database it opened is closed before the next test opens it again</p>
+     *
+     * @see After
+     */
+    @After
+    public void ModelImplTearDown(){
+        model.shutdown();
+    }
+
     /**
      * Testing ModelImpl sub model retrieval method
      */
@@ -449,7 +466,7 @@ public class ModelImplTest {
     @Test
     public void testLoadInfoFromCacheValid(){
         //GIVEN
-        when(input.getInfoByNameFromCache("spiderman")).thenReturn(spiderman);
+        when(input.findInCache("spiderman")).thenReturn(Optional.of(spiderman));
         when(input.isInfoInCache("spiderman")).thenReturn(true);
 
         //WHEN
@@ -459,8 +476,10 @@ public class ModelImplTest {
 
         //WHEN
         model.loadInfoFromCache("spiderman");
-        //THEN
-        verify(input, times(1)).getInfoByNameFromCache("spiderman");
+        //THEN - loaded with a single lookup, without checking the cache again
+        verify(input, times(1)).findInCache("spiderman");
+        verify(input, times(1)).isInfoInCache("spiderman");
+        assertSame(spiderman, model.getCurrentCharacter());
 
     }
     /**
@@ -469,7 +488,7 @@ public class ModelImplTest {
     @Test
     public void testLoadInfoFromCacheNoCache(){
         //GIVEN
-        when(input.getInfoByNameFromCache("spiderman")).thenReturn(spiderman);
+        when(input.findInCache("spiderman")).thenReturn(Optional.empty());
         when(input.isInfoInCache("spiderman")).thenReturn(false);
 
         //WHEN
@@ -481,8 +500,9 @@ public class ModelImplTest {
         //WHEN
         model.loadInfoFromCache("spiderman");
         //THEN
-        verify(input, times(2)).isInfoInCache("spiderman");
-        verify(input, times(0)).getInfoByNameFromCache("spiderman");
+        verify(input, times(1)).isInfoInCache("spiderman");
+        verify(input, times(1)).findInCache("spiderman");
+        assertNull(model.getCurrentCharacter());
 
     }
 
@@ -576,6 +596,91 @@ public class ModelImplTest {
         assertEquals("loki", searchedList.get(2));
     }
 
+    /**
+     * Testing stale-while-revalidate mode returns the cached character at once,
+     * then notifies observers again with the refreshed character when the API data changed
+     */
+    @Test
+    public void testStaleWhileRevalidateChanged(){
+        //GIVEN
+        observer = mock(ModelObserver.class);
+        model.addObserver(observer);
+        model.setStaleWhileRevalidate(true);
+        ((ModelImpl) model).setRefreshExecutor(Runnable::run);
+        CharacterInfo updated = new CharacterInfo(1234, "spider-man","Can swing around buildings", "2000-99-99");
+        when(input.findInCache("spider-man")).thenReturn(Optional.of(spiderman));
+        when(input.getInfoByName("spider-man")).thenReturn(updated);
+
+        //WHEN
+        model.getCharacterInfo("spider-man");
+
+        //THEN
+        verify(observer, times(2)).updateCharacterInfo();
+        assertEquals("Can swing around buildings", model.getCurrentCharacter().getDescription());
+        assertEquals(1, model.getSearchedList().size());
+    }
+
+    /**
+     * Testing stale-while-revalidate mode does not notify observers again
+     * when the API returns a distinct character holding the same data
+     */
+    @Test
+    public void testStaleWhileRevalidateUnchanged(){
+        //GIVEN
+        observer = mock(ModelObserver.class);
+        model.addObserver(observer);
+        model.setStaleWhileRevalidate(true);
+        ((ModelImpl) model).setRefreshExecutor(Runnable::run);
+        CharacterInfo refreshed = new CharacterInfo(1234, "spider-man","Can jump around buildings", "1999-99-99");
+        refreshed.setUrls(new ArrayList<>(spiderman.getUrls()));
+        refreshed.setThumbnail(new Thumbnail("fakepath", "jpg"));
+        when(input.findInCache("spider-man")).thenReturn(Optional.of(spiderman));
+        when(input.getInfoByName("spider-man")).thenReturn(refreshed);
+
+        //WHEN
+        model.getCharacterInfo("spider-man");
+
+        //THEN
+        verify(input, times(1)).getInfoByName("spider-man");
+        verify(observer, times(1)).updateCharacterInfo();
+        assertSame(spiderman, model.getCurrentCharacter());
+    }
+
+    /**
+     * Testing the constructor returns before the cache is open, and getInputSubModel() waits until the cache handler
+     * has been given to the input sub model, recording the cache phases in the timeline given
+     */
+    @Test
+    public void testInputSubModelWaitsForCache() throws Exception {
+        //GIVEN
+        model.shutdown();
+        CountDownLatch release = new CountDownLatch(1);
+        InputModel slowInput = mock(InputModel.class);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(slowInput).setCacheHandler(any());
+        StartupTimeline timeline = new StartupTimeline();
+
+        //WHEN
+        model = new ModelImpl(slowInput, output, new ConfigHandler(configFilePath), timeline);
+        CompletableFuture<InputModel> subModel = CompletableFuture.supplyAsync(model::getInputSubModel);
+        Thread.sleep(200);
+        boolean doneBeforeRelease = subModel.isDone();
+        release.countDown();
+
+        //THEN
+        assertFalse(doneBeforeRelease);
+        assertSame(slowInput, subModel.get(10, TimeUnit.SECONDS));
+        verify(slowInput, times(1)).setCacheHandler(any());
+        List<String> phases = new ArrayList<>();
+        for(StartupTimeline.Phase phase : timeline.getPhases()){
+            phases.add(phase.getName());
+        }
+        assertTrue(phases.indexOf("cache open") >= 0);
+        assertTrue(phases.indexOf("cache setup") > phases.indexOf("cache open"));
+    }
+
     /**
      * Testing expected behavior on setIndexSelected() in ModelImpl and expected exception when selected index is out of range 0-2
      */
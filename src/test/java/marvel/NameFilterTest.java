@@ -0,0 +1,55 @@
+package marvel;
+
+import marvel.model.input.NameFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for NameFilter, the Bloom filter CacheHandler uses to skip lookups for names that are not cached.
+ */
+public class NameFilterTest {
+
+    /**
+     * Testing every added name is reported as possibly present, and most absent names are ruled out
+     */
+    @Test
+    public void testMembership(){
+        //GIVEN
+        NameFilter filter = new NameFilter(1000, 0.01);
+
+        //WHEN
+        for(int i = 0 ; i < 1000 ; i++){
+            filter.add("character-" + i);
+        }
+
+        //THEN
+        for(int i = 0 ; i < 1000 ; i++){
+            assertTrue(filter.mightContain("character-" + i));
+        }
+        int falsePositives = 0;
+        for(int i = 0 ; i < 10000 ; i++){
+            if(filter.mightContain("unknown-" + i)){
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300);
+        assertFalse(filter.isFull());
+    }
+
+    /**
+     * Testing the filter reports being full once more names are added than it was sized for
+     */
+    @Test
+    public void testFull(){
+        NameFilter filter = new NameFilter(2, 0.01);
+        filter.add("groot");
+        filter.add("hulk");
+        assertFalse(filter.isFull());
+        filter.add("loki");
+        assertTrue(filter.isFull());
+        assertThrows(IllegalArgumentException.class, ()->{
+            new NameFilter(0, 0.01);
+        });
+    }
+}
@@ -10,11 +10,17 @@ import marvel.model.character.Thumbnail;
 import marvel.model.input.*;
 import marvel.model.output.OutputModel;
 import net.bytebuddy.agent.VirtualMachine;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -102,6 +108,18 @@ public class OnlineMarvelModelTest {
 
     }
 
+    /**
+     * Tagged by @After, called after every test.
+     *
+     * <p>Shuts the model down so the cache database it opened is closed before the next test opens it again</p>
+     *
+     * @see After
+     */
+    @After
+    public void ModelImplTearDown(){
+        model.shutdown();
+    }
+
     /**
      * Testing InputModel's getInfoByName() invalid name search
      *
@@ -120,6 +138,7 @@ public class OnlineMarvelModelTest {
 
         //GIVEN
         ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
         model = new ModelImpl(input, output, config);
         model.getInputSubModel().setApiHandler(handler);
         model.getInputSubModel().setResponseHandler(responseHandler);
@@ -171,6 +190,7 @@ public class OnlineMarvelModelTest {
 
         //GIVEN
         ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
         model = new ModelImpl(input, output, config);
         model.getInputSubModel().setApiHandler(handler);
         model.getInputSubModel().setResponseHandler(responseHandler);
@@ -190,6 +210,40 @@ public class OnlineMarvelModelTest {
     }
 
 
+    /**
+     * Testing InputModel's getInfoByName() answers a name the API recently found no character for without sending a request,
+     * and remembers an empty result as a miss
+     */
+    @Test
+    public void testInputModelGetInfoByNameKnownMiss(){
+        //mock marvelApiHandler
+        input = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+
+        //GIVEN
+        ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
+        model = new ModelImpl(input, output, config);
+        model.getInputSubModel().setApiHandler(handler);
+        model.getInputSubModel().setResponseHandler(responseHandler);
+        model.getInputSubModel().setCacheHandler(chandler);
+        when(handler.getCharacterInfoByName("wonder-woman")).thenReturn("empty");
+        when(responseHandler.isEmptyResult("empty")).thenReturn(true);
+        when(chandler.isKnownMiss("superman")).thenReturn(true);
+
+        //WHEN
+        model.getCharacterInfo("wonder-woman");
+        model.getCharacterInfo("superman");
+
+        //THEN
+        verify(chandler, times(1)).saveMissToCache("wonder-woman");
+        verify(handler, times(0)).getCharacterInfoByName("superman");
+        verify(chandler, times(0)).saveToCache(anyString(), anyString());
+        assertNull(model.getCurrentCharacter());
+    }
+
     /**
      * Testing expected CharacterInfo returned from input model after search.
      *
@@ -205,6 +259,7 @@ public class OnlineMarvelModelTest {
 
         //GIVEN
         ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
         model = new ModelImpl(input, output, config);
         model.getInputSubModel().setApiHandler(handler);
         model.getInputSubModel().setResponseHandler(responseHandler);
@@ -243,6 +298,7 @@ public class OnlineMarvelModelTest {
 
         //GIVEN
         ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
         model = new ModelImpl(input, output, config);
         model.getInputSubModel().setApiHandler(handler);
         model.getInputSubModel().setCacheHandler(chandler);
@@ -271,6 +327,7 @@ public class OnlineMarvelModelTest {
 
         //GIVEN
         ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
         model = new ModelImpl(input, output, config);
         model.getInputSubModel().setApiHandler(null);
         model.getInputSubModel().setResponseHandler(handler);
@@ -296,6 +353,7 @@ public class OnlineMarvelModelTest {
 
         //GIVEN
         ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
         model = new ModelImpl(input, output, config);
         model.getInputSubModel().setApiHandler(apiHandler);
         model.getInputSubModel().setResponseHandler(handler);
@@ -325,6 +383,7 @@ public class OnlineMarvelModelTest {
 
         //GIVEN
         ConfigHandler config = new ConfigHandler(configFilePath);
+        model.shutdown();
         model = new ModelImpl(input, output, config);
         model.getInputSubModel().setApiHandler(handler);
         model.getInputSubModel().setResponseHandler(responseHandler);
@@ -344,4 +403,351 @@ public class OnlineMarvelModelTest {
         assertNull(model.getCurrentCharacter());
     }
 
+    /**
+     * Testing getInfoByNameAsync() parses and caches the response like getInfoByName(), without the blocking request
+     */
+    @Test
+    public void testGetInfoByNameAsync() throws Exception {
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+        online.setExecutor(Runnable::run);
+        CharacterInfo spiderman = new CharacterInfo(1234, "spiderman","Can jump around buildings", "1999-99-99");
+
+        //GIVEN
+        when(handler.fetchCharacterInfoAsync("spider-man", null))
+                .thenReturn(CompletableFuture.completedFuture(new ApiResponse(200, dummyResponseBody, null)));
+        when(responseHandler.parseResponseBody(dummyResponseBody)).thenReturn(spiderman);
+
+        //WHEN
+        CharacterInfo info = online.getInfoByNameAsync("spider-man").get(1, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(spiderman, info);
+        verify(handler, times(0)).getCharacterInfoByName(anyString());
+        verify(chandler, times(1)).saveToCache("spider-man", dummyResponseBody);
+    }
+
+    /**
+     * Testing a 304 answer to a conditional request returns the cached character without a second request
+     */
+    @Test
+    public void testConditionalRequestNotModified(){
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+
+        //GIVEN
+        when(chandler.getEtag("spider-man")).thenReturn("etag-1");
+        when(handler.fetchCharacterInfo("spider-man", "etag-1")).thenReturn(new ApiResponse(ApiResponse.NOT_MODIFIED, null, "etag-1"));
+        when(chandler.loadInfoFromCache("spider-man")).thenReturn(spiderman);
+
+        //WHEN
+        CharacterInfo info = online.getInfoByName("spider-man");
+
+        //THEN
+        assertEquals(spiderman, info);
+        verify(chandler, times(1)).touch("spider-man");
+        verify(handler, times(0)).getCharacterInfoByName(anyString());
+        verify(responseHandler, times(0)).parseResponseBody(anyString());
+        verify(chandler, times(0)).saveToCache(anyString(), anyString());
+    }
+
+    /**
+     * Testing a 200 answer to a conditional request is parsed and cached without a second request
+     */
+    @Test
+    public void testConditionalRequestModified(){
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+
+        //GIVEN
+        when(chandler.getEtag("spider-man")).thenReturn("etag-1");
+        when(handler.fetchCharacterInfo("spider-man", "etag-1")).thenReturn(new ApiResponse(200, dummyResponseBody, "etag-2"));
+        when(responseHandler.parseResponseBody(dummyResponseBody)).thenReturn(spiderman);
+
+        //WHEN
+        CharacterInfo info = online.getInfoByName("spider-man");
+
+        //THEN
+        assertEquals(spiderman, info);
+        verify(handler, times(1)).fetchCharacterInfo("spider-man", "etag-1");
+        verify(handler, times(0)).getCharacterInfoByName(anyString());
+        verify(chandler, times(0)).touch(anyString());
+        verify(chandler, times(1)).saveToCache("spider-man", dummyResponseBody);
+    }
+
+    /**
+     * Testing a failed conditional request is not repeated as a full request
+     */
+    @Test
+    public void testConditionalRequestFailed(){
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+
+        //GIVEN
+        when(chandler.getEtag("spider-man")).thenReturn("etag-1");
+        when(handler.fetchCharacterInfo("spider-man", "etag-1")).thenReturn(null);
+
+        //WHEN
+        CharacterInfo info = online.getInfoByName("spider-man");
+
+        //THEN
+        assertNull(info);
+        verify(handler, times(1)).fetchCharacterInfo("spider-man", "etag-1");
+        verify(handler, times(0)).getCharacterInfoByName(anyString());
+    }
+
+    /**
+     * Testing getInfoByNameAsync() answers a 304 from the cache without sending a full request
+     */
+    @Test
+    public void testConditionalRequestNotModifiedAsync() throws Exception {
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+        online.setExecutor(Runnable::run);
+
+        //GIVEN
+        when(chandler.getEtag("spider-man")).thenReturn("etag-1");
+        when(handler.fetchCharacterInfoAsync("spider-man", "etag-1"))
+                .thenReturn(CompletableFuture.completedFuture(new ApiResponse(ApiResponse.NOT_MODIFIED, null, "etag-1")));
+        when(chandler.loadInfoFromCache("spider-man")).thenReturn(spiderman);
+
+        //WHEN
+        CharacterInfo info = online.getInfoByNameAsync("spider-man").get(1, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(spiderman, info);
+        verify(chandler, times(1)).touch("spider-man");
+        verify(handler, times(0)).fetchCharacterInfoAsync("spider-man", null);
+    }
+
+    /**
+     * Testing a cached character is revalidated only once it outlives the cache's time to live
+     */
+    @Test
+    public void testFindInCacheRevalidatesStaleRecord(){
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+
+        //GIVEN
+        when(chandler.isStale("spider-man")).thenReturn(false);
+        when(chandler.isStale("hulk")).thenReturn(true);
+        when(chandler.getEtag("hulk")).thenReturn("etag-1");
+        when(handler.fetchCharacterInfo("hulk", "etag-1")).thenReturn(new ApiResponse(ApiResponse.NOT_MODIFIED, null, "etag-1"));
+        when(chandler.findInCache("spider-man")).thenReturn(Optional.of(spiderman));
+        CharacterInfo hulk = new CharacterInfo(324, "hulk","Very mad", "1999-99-99");
+        when(chandler.loadInfoFromCache("hulk")).thenReturn(hulk);
+
+        //WHEN
+        Optional<CharacterInfo> fresh = online.findInCache("spider-man");
+        Optional<CharacterInfo> stale = online.findInCache("hulk");
+
+        //THEN
+        assertEquals(spiderman, fresh.get());
+        assertEquals(hulk, stale.get());
+        verify(handler, times(0)).fetchCharacterInfo(eq("spider-man"), any());
+        verify(chandler, times(1)).touch("hulk");
+    }
+
+    /**
+     * Testing searches for the same name in different case while one is in flight send one request and cache under one key
+     */
+    @Test
+    public void testConcurrentSearchesShareOneRequest() throws Exception {
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+
+        //GIVEN
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(handler.getCharacterInfoByName("hulk")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "hulk body";
+        });
+        CharacterInfo hulk = new CharacterInfo(324, "hulk","Very mad", "1999-99-99");
+        when(responseHandler.parseResponseBody("hulk body")).thenReturn(hulk);
+        CompletableFuture<CharacterInfo> first = CompletableFuture.supplyAsync(() -> online.getInfoByName("Hulk"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //WHEN
+        CompletableFuture<CharacterInfo> second = online.getInfoByNameAsync(" hulk ");
+        long coalesced = online.getCoalescedCount();
+        release.countDown();
+
+        //THEN
+        assertEquals(1, coalesced);
+        assertEquals(hulk, first.get(5, TimeUnit.SECONDS));
+        assertEquals(hulk, second.get(5, TimeUnit.SECONDS));
+        verify(handler, times(1)).getCharacterInfoByName(anyString());
+        verify(chandler, times(1)).saveToCache("hulk", "hulk body");
+        verify(chandler, times(1)).saveToCache(anyString(), anyString());
+    }
+
+    /**
+     * Testing a bulk lookup answers cached names before any request is sent, and looks up each distinct name once
+     */
+    @Test
+    public void testBulkLookupServesCacheFirst() throws Exception {
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+        online.setExecutor(Runnable::run);
+
+        //GIVEN
+        CharacterInfo hulk = new CharacterInfo(324, "hulk","Very mad", "1999-99-99");
+        CharacterInfo thor = new CharacterInfo(325, "thor","Has a hammer", "1999-99-99");
+        List<String> delivered = new ArrayList<>();
+        when(chandler.findInCache("hulk")).thenReturn(Optional.of(hulk));
+        when(chandler.findInCache("thor")).thenReturn(Optional.empty());
+        when(chandler.findInCache("loki")).thenReturn(Optional.empty());
+        when(handler.fetchCharacterInfoAsync("thor", null, RateLimiter.Priority.BULK))
+                .thenAnswer(invocation -> {
+                    delivered.add("request thor");
+                    return CompletableFuture.completedFuture(new ApiResponse(200, "thor body", null));
+                });
+        when(handler.fetchCharacterInfoAsync("loki", null, RateLimiter.Priority.BULK))
+                .thenAnswer(invocation -> {
+                    delivered.add("request loki");
+                    return CompletableFuture.completedFuture(new ApiResponse(200, "loki body", null));
+                });
+        when(responseHandler.parseResponseBody("thor body")).thenReturn(thor);
+
+        //WHEN
+        online.getInfoByNames(List.of("thor", "hulk", "loki", "thor"), 1, (name, info) -> delivered.add(name))
+                .get(1, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(List.of("hulk", "request thor", "thor", "request loki", "loki"), delivered);
+        verify(handler, times(0)).fetchCharacterInfoAsync(eq("hulk"), any(), any());
+        verify(handler, times(1)).fetchCharacterInfoAsync(eq("thor"), any(), any());
+        verify(chandler, times(1)).saveToCache("thor", "thor body");
+    }
+
+    /**
+     * Testing a bulk lookup never has more requests waiting on the API than its parallelism, and starts the next as one completes
+     */
+    @Test
+    public void testBulkLookupRespectsParallelism() throws Exception {
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+        online.setExecutor(Runnable::run);
+
+        //GIVEN
+        List<CompletableFuture<ApiResponse>> requests = new ArrayList<>();
+        when(chandler.findInCache(anyString())).thenReturn(Optional.empty());
+        when(handler.fetchCharacterInfoAsync(anyString(), any(), eq(RateLimiter.Priority.BULK)))
+                .thenAnswer(invocation -> {
+                    CompletableFuture<ApiResponse> request = new CompletableFuture<>();
+                    requests.add(request);
+                    return request;
+                });
+        List<String> delivered = new ArrayList<>();
+        CompletableFuture<Void> done = online.getInfoByNames(List.of("a", "b", "c", "d", "e"), 2, (name, info) -> delivered.add(name));
+        int sentAtStart = requests.size();
+
+        //WHEN
+        int maxWaiting = 0;
+        for(int i = 0 ; i < requests.size() ; i++){
+            int waiting = 0;
+            for(CompletableFuture<ApiResponse> request : requests){
+                if(!request.isDone()){
+                    waiting++;
+                }
+            }
+            maxWaiting = Math.max(maxWaiting, waiting);
+            requests.get(i).complete(new ApiResponse(200, null, null));
+        }
+        done.get(1, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(2, sentAtStart);
+        assertEquals(2, maxWaiting);
+        assertEquals(5, requests.size());
+        assertEquals(5, delivered.size());
+    }
+
+    /**
+     * Testing a long bulk lookup of known misses, whose searches complete at once, delivers every name without growing the stack
+     */
+    @Test
+    public void testBulkLookupOfKnownMisses() throws Exception {
+        //mock marvelApiHandler
+        OnlineMarvelModel online = new OnlineMarvelModel();
+        MarvelApiHandler handler = mock(MarvelApiHandler.class);
+        ResponseHandler responseHandler = mock(ResponseHandler.class);
+        CacheHandler chandler = mock(CacheHandler.class);
+        online.setApiHandler(handler);
+        online.setResponseHandler(responseHandler);
+        online.setCacheHandler(chandler);
+        online.setExecutor(Runnable::run);
+
+        //GIVEN
+        List<String> names = new ArrayList<>();
+        for(int i = 0 ; i < 20000 ; i++){
+            names.add("nobody-" + i);
+        }
+        when(chandler.findInCache(anyString())).thenReturn(Optional.empty());
+        when(chandler.isKnownMiss(anyString())).thenReturn(true);
+        AtomicInteger delivered = new AtomicInteger();
+
+        //WHEN
+        online.getInfoByNames(names, 2, (name, info) -> delivered.incrementAndGet()).get(10, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(20000, delivered.get());
+        verify(handler, times(0)).fetchCharacterInfoAsync(anyString(), any(), any());
+    }
 }
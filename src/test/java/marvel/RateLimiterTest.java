@@ -0,0 +1,90 @@
+package marvel;
+
+import marvel.model.input.RateLimiter;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for RateLimiter.
+ */
+public class RateLimiterTest {
+
+    /**
+     * Testing a request over the per second budget is queued and given a permit once the bucket refills
+     */
+    @Test
+    public void testQueuesOverPerSecondLimit() throws Exception {
+        //GIVEN
+        RateLimiter limiter = new RateLimiter(100, 2, 0);
+
+        //WHEN
+        CompletableFuture<Void> first = limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        CompletableFuture<Void> second = limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        CompletableFuture<Void> third = limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+
+        //THEN
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        assertEquals(1, limiter.getQueuedCount());
+
+        third.get(5, TimeUnit.SECONDS);
+        assertEquals(0, limiter.getQueuedCount());
+        assertEquals(3, limiter.getGrantedCount());
+        assertEquals(1, limiter.getThrottledCount());
+        assertEquals(97, limiter.getRemainingDaily());
+    }
+
+    /**
+     * Testing bulk requests cannot use the reserve of the daily budget while interactive requests can
+     */
+    @Test
+    public void testBulkLeavesReserve(){
+        //GIVEN
+        RateLimiter limiter = new RateLimiter(5, 100, 2);
+        for(int i = 0 ; i < 3 ; i++){
+            assertTrue(limiter.acquire(RateLimiter.Priority.BULK).isDone());
+        }
+
+        //WHEN
+        CompletableFuture<Void> bulk = limiter.acquire(RateLimiter.Priority.BULK);
+        CompletableFuture<Void> interactive = limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+
+        //THEN
+        assertFalse(bulk.isDone());
+        assertTrue(interactive.isDone());
+        assertEquals(1, limiter.getRemainingDaily());
+
+        bulk.cancel(true);
+        assertEquals(0, limiter.getQueuedCount());
+    }
+
+    /**
+     * Testing usage saved by an earlier run is taken out of the budget, less what has refilled since it was saved
+     */
+    @Test
+    public void testRestoreUsage(){
+        //GIVEN
+        RateLimiter earlier = new RateLimiter(2400, 100, 0);
+        for(int i = 0 ; i < 60 ; i++){
+            assertTrue(earlier.acquire(RateLimiter.Priority.INTERACTIVE).isDone());
+        }
+        long used = earlier.getUsedDaily();
+        RateLimiter limiter = new RateLimiter(2400, 100, 0);
+        RateLimiter later = new RateLimiter(2400, 100, 0);
+
+        //WHEN
+        limiter.restoreUsage(used, System.currentTimeMillis());
+        later.restoreUsage(used, System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(30));
+
+        //THEN
+        assertEquals(60, used);
+        assertEquals(2340, limiter.getRemainingDaily());
+        assertEquals(60, limiter.getUsedDaily());
+        assertEquals(2390, later.getRemainingDaily());
+    }
+}
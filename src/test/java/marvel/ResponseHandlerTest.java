@@ -0,0 +1,117 @@
+package marvel;
+
+import marvel.model.character.Comic;
+import marvel.model.character.Story;
+import marvel.model.input.ResponseHandler;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for the streaming page parsers of ResponseHandler.
+ */
+public class ResponseHandlerTest {
+    /**
+     * Page of two comics, the second with a title outside ASCII, and a nested object that is skipped
+     */
+    private static final String COMIC_PAGE = "{\"code\":200,\"status\":\"Ok\",\"data\":{\"offset\":0,\"limit\":100,\"total\":2,\"results\":["
+            + "{\"id\":1,\"title\":\"Hulk (2008) #1\",\"resourceURI\":\"comics/1\",\"thumbnail\":{\"path\":\"p\",\"extension\":\"jpg\"}},"
+            + "{\"id\":2,\"title\":\"Hulk \u00e9 \u2713 \uD83D\uDCA5\",\"resourceURI\":\"comics/2\",\"creators\":{\"items\":[{\"name\":\"x\"}]}}"
+            + "]}}";
+
+    /**
+     * Input stream handing out at most chunkSize bytes per read, like a body arriving in small network chunks
+     */
+    private static class ChunkedInputStream extends InputStream {
+        private final ByteArrayInputStream in;
+        private final int chunkSize;
+
+        private ChunkedInputStream(byte[] bytes, int chunkSize){
+            this.in = new ByteArrayInputStream(bytes);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return in.read(buffer, offset, Math.min(length, chunkSize));
+        }
+    }
+
+    /**
+     * Testing a page arriving in chunks that split tokens and multi-byte characters parses like the whole body
+     */
+    @Test
+    public void testPageSplitAcrossChunks(){
+        //GIVEN
+        ResponseHandler handler = new ResponseHandler();
+        byte[] bytes = COMIC_PAGE.getBytes(StandardCharsets.UTF_8);
+
+        //WHEN
+        List<Comic> whole = handler.parseComicPage(new StringReader(COMIC_PAGE));
+        List<Comic> chunked = handler.parseComicPage(new InputStreamReader(new ChunkedInputStream(bytes, 3), StandardCharsets.UTF_8));
+        List<Comic> byteByByte = handler.parseComicPage(new InputStreamReader(new ChunkedInputStream(bytes, 1), StandardCharsets.UTF_8));
+
+        //THEN
+        assertEquals(2, whole.size());
+        for(List<Comic> comics : List.of(chunked, byteByByte)){
+            assertEquals(2, comics.size());
+            assertEquals("Hulk (2008) #1", comics.get(0).getName());
+            assertEquals("comics/1", comics.get(0).getResourcePath());
+            assertEquals("Hulk \u00e9 \u2713 \uD83D\uDCA5", comics.get(1).getName());
+            assertEquals("comics/2", comics.get(1).getResourcePath());
+        }
+    }
+
+    /**
+     * Testing a page cut off before its end is rejected, wherever it is cut
+     */
+    @Test
+    public void testTruncatedPage(){
+        //GIVEN
+        ResponseHandler handler = new ResponseHandler();
+        byte[] bytes = COMIC_PAGE.getBytes(StandardCharsets.UTF_8);
+
+        //WHEN
+        int parsed = 0;
+        for(int length = 0 ; length < bytes.length ; length += 7){
+            InputStream truncated = new ChunkedInputStream(Arrays.copyOf(bytes, length), 5);
+            if(handler.parseComicPage(new InputStreamReader(truncated, StandardCharsets.UTF_8)) != null){
+                parsed++;
+            }
+        }
+
+        //THEN
+        assertEquals(0, parsed);
+        assertNull(handler.parseComicPage(""));
+    }
+
+    /**
+     * Testing a page with an error status or an item missing a field is rejected rather than read in part
+     */
+    @Test
+    public void testFailedPage(){
+        //GIVEN
+        ResponseHandler handler = new ResponseHandler();
+
+        //WHEN
+        List<Comic> error = handler.parseComicPage("{\"code\":409,\"status\":\"Limit greater than 100.\"}");
+        List<Story> missingType = handler.parseStoryPage("{\"code\":200,\"data\":{\"results\":[{\"title\":\"t\",\"resourceURI\":\"r\"}]}}");
+
+        //THEN
+        assertNull(error);
+        assertNull(missingType);
+    }
+}
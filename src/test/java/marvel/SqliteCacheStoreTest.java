@@ -0,0 +1,152 @@
+package marvel;
+
+import marvel.model.input.CacheConnectionPool;
+import marvel.model.input.CacheEntry;
+import marvel.model.input.SqliteCacheStore;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for SqliteCacheStore, the SQLite backend for cached characters.
+ */
+public class SqliteCacheStoreTest {
+    /**
+     * Pool the store under test runs on, closed after each test
+     */
+    CacheConnectionPool pool;
+
+    @After
+    public void tearDown(){
+        if(pool != null){
+            pool.close();
+        }
+    }
+
+    private CacheEntry entry(String name, int payloadSize){
+        return new CacheEntry(name, CacheEntry.FORMAT_BINARY, CacheEntry.CODEC_NONE, 0, null, new byte[payloadSize], "etag-" + name, 1);
+    }
+
+    private List<CacheEntry> entries(int count, int payloadSize){
+        List<CacheEntry> entries = new ArrayList<>();
+        for(int i = 0 ; i < count ; i++){
+            entries.add(entry("hero-" + i, payloadSize));
+        }
+        return entries;
+    }
+
+    private List<String> names(List<CacheEntry> entries){
+        List<String> names = new ArrayList<>();
+        for(CacheEntry entry : entries){
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Testing the size counts the stored responses and payloads, and not the other tables of the database
+     */
+    @Test
+    public void testSizeCountsOnlyCharacters() throws Exception {
+        //GIVEN
+        pool = new CacheConnectionPool(Files.createTempDirectory("sqlite-store").resolve("cache.sqlite").toString(), 2);
+        SqliteCacheStore store = new SqliteCacheStore(pool);
+        store.write(List.of(entry("hulk", 100), entry("thor", 50),
+                new CacheEntry("loki", CacheEntry.FORMAT_JSON, "{\"name\":\"Loki\"}", null)));
+        long size = store.sizeInBytes();
+
+        //WHEN
+        pool.write(connection -> {
+            connection.execute("CREATE TABLE Other (Data BLOB)");
+            connection.execute("INSERT INTO Other (Data) VALUES (zeroblob(100000))");
+            return null;
+        });
+
+        //THEN
+        assertEquals(150 + "{\"name\":\"Loki\"}".length(), size);
+        assertEquals(size, store.sizeInBytes());
+    }
+
+    /**
+     * Testing compaction returns the pages of deleted records to the file system
+     */
+    @Test
+    public void testCompactReclaimsDeletedRecords() throws Exception {
+        //GIVEN
+        pool = new CacheConnectionPool(Files.createTempDirectory("sqlite-store").resolve("cache.sqlite").toString(), 2);
+        SqliteCacheStore store = new SqliteCacheStore(pool);
+        List<CacheEntry> entries = entries(50, 4096);
+        store.write(entries);
+        long pages = pragma("page_count");
+
+        //WHEN
+        int deleted = store.delete(names(entries));
+        long freed = pragma("freelist_count");
+        store.compact();
+
+        //THEN
+        assertEquals(50, deleted);
+        assertEquals(0, store.sizeInBytes());
+        assertTrue(freed > 0);
+        assertEquals(0, pragma("freelist_count"));
+        assertTrue(pragma("page_count") < pages);
+    }
+
+    /**
+     * Testing a database created before incremental vacuum is only compacted once converted, and is converted once
+     */
+    @Test
+    public void testOlderDatabaseConvertedOnce() throws Exception {
+        //GIVEN
+        String path = Files.createTempDirectory("sqlite-store").resolve("cache.sqlite").toString();
+        try(Connection older = DriverManager.getConnection("jdbc:sqlite:" + path)){
+            older.createStatement().execute("CREATE TABLE Older (Id INTEGER)");
+        }
+        pool = new CacheConnectionPool(path, 2);
+        SqliteCacheStore store = new SqliteCacheStore(pool);
+        List<CacheEntry> entries = entries(50, 4096);
+        store.write(entries);
+        store.delete(names(entries));
+
+        //WHEN
+        store.compact();
+        long beforeConversion = pragma("freelist_count");
+        boolean converted = store.enableIncrementalVacuum();
+        boolean convertedAgain = store.enableIncrementalVacuum();
+        store.write(entries);
+        store.delete(names(entries));
+        store.compact();
+
+        //THEN
+        assertTrue(beforeConversion > 0);
+        assertTrue(converted);
+        assertFalse(convertedAgain);
+        assertEquals(2, pragma("auto_vacuum"));
+        assertEquals(0, pragma("freelist_count"));
+    }
+
+    /**
+     * Reads a numeric pragma on the writer connection, which sees every committed write.
+     *
+     * @param name name of the pragma
+     * @return long - value of the pragma
+     * @throws SQLException if the pragma cannot be read
+     */
+    private long pragma(String name) throws SQLException {
+        return pool.write(connection -> {
+            try(ResultSet rs = connection.prepare("PRAGMA " + name).executeQuery()){
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+    }
+}
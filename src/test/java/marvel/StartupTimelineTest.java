@@ -0,0 +1,61 @@
+package marvel;
+
+import marvel.model.StartupTimeline;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test suite for StartupTimeline, which records the phases of application startup.
+ */
+public class StartupTimelineTest {
+
+    /**
+     * Testing phases are listed in order of start, whatever order they end in, after the phase of the JVM
+     */
+    @Test
+    public void testPhasesInOrderOfStart() throws Exception {
+        //GIVEN
+        StartupTimeline timeline = new StartupTimeline(500);
+        long first = timeline.start();
+        Thread.sleep(5);
+        long second = timeline.start();
+
+        //WHEN
+        timeline.end("second", second);
+        Thread.sleep(5);
+        timeline.end("first", first);
+        List<StartupTimeline.Phase> phases = timeline.getPhases();
+
+        //THEN
+        assertEquals(3, phases.size());
+        assertEquals("jvm", phases.get(0).getName());
+        assertEquals(-500, phases.get(0).getStartMillis());
+        assertEquals(500, phases.get(0).getDurationMillis());
+        assertEquals("first", phases.get(1).getName());
+        assertEquals("second", phases.get(2).getName());
+        assertTrue(phases.get(1).getDurationMillis() >= phases.get(2).getDurationMillis() + 5);
+        assertEquals(Thread.currentThread().getName(), phases.get(1).getThread());
+    }
+
+    /**
+     * Testing a timeline not started at launch has no JVM phase, and lists its phases one per line
+     */
+    @Test
+    public void testTimelineWithoutJvmPhase(){
+        //GIVEN
+        StartupTimeline timeline = new StartupTimeline();
+
+        //WHEN
+        timeline.end("cache open", timeline.start());
+
+        //THEN
+        assertEquals(1, timeline.getPhases().size());
+        assertEquals("cache open", timeline.getPhases().get(0).getName());
+        String printed = timeline.toString();
+        assertEquals(2, printed.split("\n").length);
+        assertTrue(printed.contains("cache open"));
+    }
+}